@@ -0,0 +1,543 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A concurrent map of primitive long keys to objects.
+ * <p/>
+ * Entries are kept in open addressing tables (linear probing) split in sections, each section
+ * guarded by its own {@link StampedLock}. Keys are stored inline in a {@code long[]}, so there are
+ * no boxed keys nor entry objects: reads don't allocate and a mapping costs a key and a value slot
+ * instead of a {@link java.util.concurrent.ConcurrentHashMap} node plus a {@link Long}.
+ * <p/>
+ * Lookups use optimistic reads and only take the section read lock when a writer interfered.
+ * Tables only grow, they are never shrunk. Null values are not supported.
+ */
+public class ConcurrentLongHashMap<V>
+{
+   private static final Object DELETED = new Object();
+
+   private static final float FILL_FACTOR = 0.66f;
+
+   private static final int DEFAULT_EXPECTED_ITEMS = 256;
+
+   private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+   private final Section<V>[] sections;
+
+   /**
+    * Processes the entries of the map, see {@link ConcurrentLongHashMap#forEach(EntryProcessor)}.
+    */
+   public interface EntryProcessor<V>
+   {
+      void accept(long key, V value);
+   }
+
+   public ConcurrentLongHashMap()
+   {
+      this(DEFAULT_EXPECTED_ITEMS, DEFAULT_CONCURRENCY_LEVEL);
+   }
+
+   public ConcurrentLongHashMap(final int expectedItems)
+   {
+      this(expectedItems, DEFAULT_CONCURRENCY_LEVEL);
+   }
+
+   @SuppressWarnings("unchecked")
+   public ConcurrentLongHashMap(final int expectedItems, final int concurrencyLevel)
+   {
+      if (expectedItems <= 0)
+      {
+         throw new IllegalArgumentException("expectedItems must be positive");
+      }
+
+      if (concurrencyLevel <= 0)
+      {
+         throw new IllegalArgumentException("concurrencyLevel must be positive");
+      }
+
+      int numSections = roundToPowerOfTwo(concurrencyLevel);
+
+      int perSectionExpectedItems = Math.max(1, expectedItems / numSections);
+
+      int perSectionCapacity = roundToPowerOfTwo((int) (perSectionExpectedItems / FILL_FACTOR) + 1);
+
+      sections = new Section[numSections];
+
+      for (int i = 0; i < numSections; i++)
+      {
+         sections[i] = new Section<V>(perSectionCapacity);
+      }
+   }
+
+   public int size()
+   {
+      int size = 0;
+      for (Section<V> section : sections)
+      {
+         size += section.size;
+      }
+      return size;
+   }
+
+   public boolean isEmpty()
+   {
+      for (Section<V> section : sections)
+      {
+         if (section.size != 0)
+         {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * @return the number of slots allocated by the map, used to estimate its memory usage
+    */
+   public long capacity()
+   {
+      long capacity = 0;
+      for (Section<V> section : sections)
+      {
+         capacity += section.table.capacity;
+      }
+      return capacity;
+   }
+
+   public V get(final long key)
+   {
+      long h = hash(key);
+      return getSection(h).get(key, (int) h);
+   }
+
+   public boolean containsKey(final long key)
+   {
+      return get(key) != null;
+   }
+
+   /**
+    * @return the previous value associated with the key, or {@code null} if there wasn't any
+    */
+   public V put(final long key, final V value)
+   {
+      checkValue(value);
+      long h = hash(key);
+      return getSection(h).put(key, value, (int) h, false);
+   }
+
+   /**
+    * @return the value already associated with the key, or {@code null} if the value was added
+    */
+   public V putIfAbsent(final long key, final V value)
+   {
+      checkValue(value);
+      long h = hash(key);
+      return getSection(h).put(key, value, (int) h, true);
+   }
+
+   /**
+    * @return the value that was associated with the key, or {@code null} if there wasn't any
+    */
+   public V remove(final long key)
+   {
+      long h = hash(key);
+      return getSection(h).remove(key, (int) h);
+   }
+
+   public void clear()
+   {
+      for (Section<V> section : sections)
+      {
+         section.clear();
+      }
+   }
+
+   /**
+    * Calls the processor for every entry. Each section is read locked while its entries are processed,
+    * so the processor must not modify this map.
+    */
+   public void forEach(final EntryProcessor<V> processor)
+   {
+      for (Section<V> section : sections)
+      {
+         section.forEach(processor);
+      }
+   }
+
+   /**
+    * @return a snapshot of the keys on the map
+    */
+   public List<Long> keys()
+   {
+      final List<Long> keys = new ArrayList<Long>(size());
+      forEach(new EntryProcessor<V>()
+      {
+         public void accept(final long key, final V value)
+         {
+            keys.add(key);
+         }
+      });
+      return keys;
+   }
+
+   /**
+    * @return a snapshot of the values on the map
+    */
+   public List<V> values()
+   {
+      final List<V> values = new ArrayList<V>(size());
+      forEach(new EntryProcessor<V>()
+      {
+         public void accept(final long key, final V value)
+         {
+            values.add(value);
+         }
+      });
+      return values;
+   }
+
+   private Section<V> getSection(final long hash)
+   {
+      // the higher bits select the section, the lower bits select the bucket inside the section
+      return sections[(int) (hash >>> 32) & (sections.length - 1)];
+   }
+
+   private static void checkValue(final Object value)
+   {
+      if (value == null)
+      {
+         throw new NullPointerException("null values are not supported");
+      }
+   }
+
+   private static final long HASH_MIXER = 0xc6a4a7935bd1e995L;
+
+   private static final int HASH_SHIFT = 47;
+
+   static long hash(final long key)
+   {
+      long hash = key * HASH_MIXER;
+      hash ^= hash >>> HASH_SHIFT;
+      hash *= HASH_MIXER;
+      return hash;
+   }
+
+   private static int roundToPowerOfTwo(final int n)
+   {
+      return 1 << (32 - Integer.numberOfLeadingZeros(n - 1));
+   }
+
+   /**
+    * Keys and values are replaced together when rehashing, so a reader always sees arrays of the same capacity.
+    */
+   private static final class Table
+   {
+      private final long[] keys;
+
+      // null means an empty bucket, DELETED means a bucket that was used and must be probed through
+      private final Object[] values;
+
+      private final int capacity;
+
+      private Table(final int capacity)
+      {
+         this.keys = new long[capacity];
+         this.values = new Object[capacity];
+         this.capacity = capacity;
+      }
+   }
+
+   @SuppressWarnings("serial")
+   private static final class Section<V> extends StampedLock
+   {
+      private Table table;
+
+      private volatile int size;
+
+      // live and deleted buckets, as both are probed through
+      private int usedBuckets;
+
+      private int resizeThreshold;
+
+      private Section(final int capacity)
+      {
+         this.table = new Table(capacity);
+         this.resizeThreshold = (int) (capacity * FILL_FACTOR);
+      }
+
+      @SuppressWarnings("unchecked")
+      private V get(final long key, final int keyHash)
+      {
+         long stamp = tryOptimisticRead();
+         boolean acquiredLock = false;
+
+         try
+         {
+            Table current = table;
+            int bucket = keyHash & (current.capacity - 1);
+
+            while (true)
+            {
+               long storedKey = current.keys[bucket];
+               Object storedValue = current.values[bucket];
+
+               if (!acquiredLock && !validate(stamp))
+               {
+                  // a writer changed the section while we were reading, go again holding the lock
+                  stamp = readLock();
+                  acquiredLock = true;
+
+                  current = table;
+                  bucket = keyHash & (current.capacity - 1);
+                  storedKey = current.keys[bucket];
+                  storedValue = current.values[bucket];
+               }
+
+               if (storedValue == null)
+               {
+                  return null;
+               }
+
+               if (storedKey == key)
+               {
+                  return storedValue == DELETED ? null : (V) storedValue;
+               }
+
+               bucket = (bucket + 1) & (current.capacity - 1);
+            }
+         }
+         finally
+         {
+            if (acquiredLock)
+            {
+               unlockRead(stamp);
+            }
+         }
+      }
+
+      @SuppressWarnings("unchecked")
+      private V put(final long key, final V value, final int keyHash, final boolean onlyIfAbsent)
+      {
+         long stamp = writeLock();
+
+         try
+         {
+            Table current = table;
+            int bucket = keyHash & (current.capacity - 1);
+            int firstDeletedBucket = -1;
+
+            while (true)
+            {
+               Object storedValue = current.values[bucket];
+
+               if (storedValue == null)
+               {
+                  // the key is not on the map, reuse a deleted bucket found on the way if there was one
+                  if (firstDeletedBucket != -1)
+                  {
+                     bucket = firstDeletedBucket;
+                  }
+                  else
+                  {
+                     usedBuckets++;
+                  }
+
+                  current.keys[bucket] = key;
+                  current.values[bucket] = value;
+                  size++;
+
+                  if (usedBuckets > resizeThreshold)
+                  {
+                     rehash();
+                  }
+
+                  return null;
+               }
+
+               if (current.keys[bucket] == key)
+               {
+                  if (storedValue == DELETED)
+                  {
+                     current.values[bucket] = value;
+                     size++;
+                     return null;
+                  }
+
+                  if (!onlyIfAbsent)
+                  {
+                     current.values[bucket] = value;
+                  }
+
+                  return (V) storedValue;
+               }
+
+               if (storedValue == DELETED && firstDeletedBucket == -1)
+               {
+                  firstDeletedBucket = bucket;
+               }
+
+               bucket = (bucket + 1) & (current.capacity - 1);
+            }
+         }
+         finally
+         {
+            unlockWrite(stamp);
+         }
+      }
+
+      @SuppressWarnings("unchecked")
+      private V remove(final long key, final int keyHash)
+      {
+         long stamp = writeLock();
+
+         try
+         {
+            Table current = table;
+            int capacityMask = current.capacity - 1;
+            int bucket = keyHash & capacityMask;
+
+            while (true)
+            {
+               Object storedValue = current.values[bucket];
+
+               if (storedValue == null)
+               {
+                  return null;
+               }
+
+               if (current.keys[bucket] == key)
+               {
+                  if (storedValue == DELETED)
+                  {
+                     return null;
+                  }
+
+                  size--;
+
+                  if (current.values[(bucket + 1) & capacityMask] == null)
+                  {
+                     // nothing is probed through this bucket, so it can be emptied, along with the deleted ones before it
+                     current.values[bucket] = null;
+                     usedBuckets--;
+
+                     bucket = (bucket - 1) & capacityMask;
+                     while (current.values[bucket] == DELETED)
+                     {
+                        current.values[bucket] = null;
+                        usedBuckets--;
+                        bucket = (bucket - 1) & capacityMask;
+                     }
+                  }
+                  else
+                  {
+                     current.values[bucket] = DELETED;
+                  }
+
+                  return (V) storedValue;
+               }
+
+               bucket = (bucket + 1) & capacityMask;
+            }
+         }
+         finally
+         {
+            unlockWrite(stamp);
+         }
+      }
+
+      private void clear()
+      {
+         long stamp = writeLock();
+
+         try
+         {
+            Table current = table;
+            for (int i = 0; i < current.capacity; i++)
+            {
+               current.values[i] = null;
+            }
+            size = 0;
+            usedBuckets = 0;
+         }
+         finally
+         {
+            unlockWrite(stamp);
+         }
+      }
+
+      @SuppressWarnings("unchecked")
+      private void forEach(final EntryProcessor<V> processor)
+      {
+         long stamp = readLock();
+
+         try
+         {
+            Table current = table;
+            for (int i = 0; i < current.capacity; i++)
+            {
+               Object value = current.values[i];
+               if (value != null && value != DELETED)
+               {
+                  processor.accept(current.keys[i], (V) value);
+               }
+            }
+         }
+         finally
+         {
+            unlockRead(stamp);
+         }
+      }
+
+      /**
+       * Called holding the write lock. The table doubles when it is at least half full of live entries,
+       * otherwise it keeps its capacity and the rehash only gets rid of the deleted buckets.
+       */
+      private void rehash()
+      {
+         Table old = table;
+
+         int newCapacity = size * 2 >= old.capacity ? old.capacity * 2 : old.capacity;
+
+         Table newTable = new Table(newCapacity);
+
+         for (int i = 0; i < old.capacity; i++)
+         {
+            Object value = old.values[i];
+            if (value != null && value != DELETED)
+            {
+               long key = old.keys[i];
+               int bucket = (int) hash(key) & (newCapacity - 1);
+               while (newTable.values[bucket] != null)
+               {
+                  bucket = (bucket + 1) & (newCapacity - 1);
+               }
+               newTable.keys[bucket] = key;
+               newTable.values[bucket] = value;
+            }
+         }
+
+         table = newTable;
+         usedBuckets = size;
+         resizeThreshold = (int) (newCapacity * FILL_FACTOR);
+      }
+   }
+}
@@ -0,0 +1,373 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.utils;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A read-write lock for many readers and rare writers.
+ * <p>
+ * Each thread counts its read holds on a stripe of its own, so taking the read lock is a volatile
+ * write and a volatile read, with no CAS and no cache line shared between readers. A writer raises
+ * a flag, which makes new readers wait, and then waits for every stripe to drain.
+ * <p>
+ * Both locks are reentrant and a thread holding the write lock may also take the read lock. Read
+ * holds of a thread never wait for a writer, as that writer could be waiting for them. A thread
+ * holding only the read lock must not take the write lock. Conditions are not supported.
+ */
+public final class StripedReadWriteLock implements ReadWriteLock
+{
+   private final ConcurrentLinkedQueue<ReaderStripe> stripes = new ConcurrentLinkedQueue<ReaderStripe>();
+
+   private final ThreadLocal<ReaderStripe> threadStripe = new ThreadLocal<ReaderStripe>()
+   {
+      @Override
+      protected ReaderStripe initialValue()
+      {
+         ReaderStripe stripe = new ReaderStripe(Thread.currentThread());
+         stripes.add(stripe);
+         return stripe;
+      }
+   };
+
+   /**
+    * Held by the writer for as long as it holds the write lock, readers wait on it.
+    */
+   private final ReentrantLock writerLock = new ReentrantLock();
+
+   private volatile boolean writing;
+
+   private final Lock readLock = new ReadLock();
+
+   private final Lock writeLock = new WriteLock();
+
+   public Lock readLock()
+   {
+      return readLock;
+   }
+
+   public Lock writeLock()
+   {
+      return writeLock;
+   }
+
+   public boolean isWriteLocked()
+   {
+      return writing;
+   }
+
+   /**
+    * @return the number of read holds of the current thread
+    */
+   public int getReadHoldCount()
+   {
+      return threadStripe.get().holds;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "StripedReadWriteLock[writing=" + writing + ", stripes=" + stripes.size() + "]";
+   }
+
+   /**
+    * @return {@code true} if the read hold was taken without waiting
+    */
+   private boolean tryReadFast(final ReaderStripe stripe)
+   {
+      int holds = stripe.holds;
+      stripe.holds = holds + 1;
+
+      if (holds > 0 || !writing || writerLock.isHeldByCurrentThread())
+      {
+         return true;
+      }
+
+      stripe.holds = holds;
+      return false;
+   }
+
+   /**
+    * Called with the writer lock held, so no writer may be waiting for this stripe.
+    */
+   private void readUnderWriterLock(final ReaderStripe stripe)
+   {
+      try
+      {
+         stripe.holds++;
+      }
+      finally
+      {
+         writerLock.unlock();
+      }
+   }
+
+   /**
+    * @param nanos how long to wait for the readers, negative to wait until they are done
+    * @return {@code true} once no other thread holds the read lock
+    */
+   private boolean awaitReaders(final long nanos, final boolean interruptible) throws InterruptedException
+   {
+      final long deadline = System.nanoTime() + nanos;
+      final Thread current = Thread.currentThread();
+
+      Iterator<ReaderStripe> iterator = stripes.iterator();
+      while (iterator.hasNext())
+      {
+         ReaderStripe stripe = iterator.next();
+         Thread owner = stripe.owner.get();
+
+         if (owner == null || !owner.isAlive())
+         {
+            // the stripe of a thread that is gone, it can't release anything anymore
+            iterator.remove();
+            continue;
+         }
+
+         if (owner == current)
+         {
+            continue;
+         }
+
+         int spins = 0;
+         while (stripe.holds != 0)
+         {
+            if (interruptible && Thread.interrupted())
+            {
+               throw new InterruptedException();
+            }
+
+            if (nanos >= 0 && System.nanoTime() - deadline >= 0)
+            {
+               return false;
+            }
+
+            if (++spins < 100)
+            {
+               Thread.yield();
+            }
+            else
+            {
+               LockSupport.parkNanos(this, TimeUnit.MICROSECONDS.toNanos(100));
+            }
+         }
+      }
+
+      return true;
+   }
+
+   private boolean writeLocked(final long nanos, final boolean interruptible) throws InterruptedException
+   {
+      if (writerLock.getHoldCount() > 1)
+      {
+         return true;
+      }
+
+      writing = true;
+
+      boolean drained = false;
+      try
+      {
+         drained = awaitReaders(nanos, interruptible);
+      }
+      finally
+      {
+         if (!drained)
+         {
+            writing = false;
+            writerLock.unlock();
+         }
+      }
+
+      return drained;
+   }
+
+   private static final class ReaderStripe
+   {
+      private final WeakReference<Thread> owner;
+
+      /**
+       * Only written by the owner thread.
+       */
+      private volatile int holds;
+
+      ReaderStripe(final Thread owner)
+      {
+         this.owner = new WeakReference<Thread>(owner);
+      }
+   }
+
+   private final class ReadLock implements Lock
+   {
+      public void lock()
+      {
+         ReaderStripe stripe = threadStripe.get();
+
+         if (!tryReadFast(stripe))
+         {
+            writerLock.lock();
+            readUnderWriterLock(stripe);
+         }
+      }
+
+      public void lockInterruptibly() throws InterruptedException
+      {
+         ReaderStripe stripe = threadStripe.get();
+
+         if (!tryReadFast(stripe))
+         {
+            writerLock.lockInterruptibly();
+            readUnderWriterLock(stripe);
+         }
+      }
+
+      public boolean tryLock()
+      {
+         ReaderStripe stripe = threadStripe.get();
+
+         if (tryReadFast(stripe))
+         {
+            return true;
+         }
+
+         if (writerLock.tryLock())
+         {
+            readUnderWriterLock(stripe);
+            return true;
+         }
+
+         return false;
+      }
+
+      public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException
+      {
+         ReaderStripe stripe = threadStripe.get();
+
+         if (tryReadFast(stripe))
+         {
+            return true;
+         }
+
+         if (writerLock.tryLock(time, unit))
+         {
+            readUnderWriterLock(stripe);
+            return true;
+         }
+
+         return false;
+      }
+
+      public void unlock()
+      {
+         ReaderStripe stripe = threadStripe.get();
+         int holds = stripe.holds;
+
+         if (holds == 0)
+         {
+            throw new IllegalMonitorStateException("read lock not held by " + Thread.currentThread());
+         }
+
+         stripe.holds = holds - 1;
+      }
+
+      public Condition newCondition()
+      {
+         throw new UnsupportedOperationException();
+      }
+   }
+
+   private final class WriteLock implements Lock
+   {
+      public void lock()
+      {
+         writerLock.lock();
+
+         try
+         {
+            writeLocked(-1, false);
+         }
+         catch (InterruptedException e)
+         {
+            // not interruptible
+            throw new IllegalStateException(e);
+         }
+      }
+
+      public void lockInterruptibly() throws InterruptedException
+      {
+         writerLock.lockInterruptibly();
+         writeLocked(-1, true);
+      }
+
+      public boolean tryLock()
+      {
+         if (!writerLock.tryLock())
+         {
+            return false;
+         }
+
+         try
+         {
+            return writeLocked(0, false);
+         }
+         catch (InterruptedException e)
+         {
+            throw new IllegalStateException(e);
+         }
+      }
+
+      public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException
+      {
+         long deadline = System.nanoTime() + unit.toNanos(time);
+
+         if (!writerLock.tryLock(time, unit))
+         {
+            return false;
+         }
+
+         return writeLocked(Math.max(0, deadline - System.nanoTime()), true);
+      }
+
+      public void unlock()
+      {
+         if (!writerLock.isHeldByCurrentThread())
+         {
+            throw new IllegalMonitorStateException("write lock not held by " + Thread.currentThread());
+         }
+
+         if (writerLock.getHoldCount() == 1)
+         {
+            writing = false;
+         }
+
+         writerLock.unlock();
+      }
+
+      public Condition newCondition()
+      {
+         throw new UnsupportedOperationException();
+      }
+   }
+}
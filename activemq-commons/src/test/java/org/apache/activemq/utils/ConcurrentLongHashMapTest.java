@@ -0,0 +1,222 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentLongHashMapTest extends Assert
+{
+   @Test
+   public void testSimpleOperations()
+   {
+      ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<String>(16, 1);
+
+      assertTrue(map.isEmpty());
+      assertNull(map.put(1, "one"));
+      assertFalse(map.isEmpty());
+
+      assertNull(map.put(2, "two"));
+      assertNull(map.put(3, "three"));
+
+      assertEquals(3, map.size());
+
+      assertEquals("one", map.get(1));
+      assertEquals(3, map.size());
+
+      assertEquals("one", map.remove(1));
+      assertEquals(2, map.size());
+      assertNull(map.get(1));
+      assertNull(map.get(5));
+      assertEquals(2, map.size());
+
+      assertNull(map.put(1, "one"));
+      assertEquals(3, map.size());
+      assertEquals("one", map.put(1, "uno"));
+      assertEquals("uno", map.get(1));
+      assertEquals(3, map.size());
+
+      assertEquals("two", map.putIfAbsent(2, "dos"));
+      assertEquals("two", map.get(2));
+
+      assertNull(map.remove(-1));
+      assertTrue(map.containsKey(3));
+      assertFalse(map.containsKey(4));
+
+      map.clear();
+      assertTrue(map.isEmpty());
+      assertNull(map.get(2));
+   }
+
+   @Test(expected = NullPointerException.class)
+   public void testNullValue()
+   {
+      new ConcurrentLongHashMap<String>().put(1, null);
+   }
+
+   @Test
+   public void testRehashing()
+   {
+      int n = 16;
+      ConcurrentLongHashMap<Integer> map = new ConcurrentLongHashMap<Integer>(n / 2, 1);
+      long initialCapacity = map.capacity();
+
+      for (int i = 0; i < n; i++)
+      {
+         map.put(i, i);
+      }
+
+      assertEquals(n, map.size());
+      assertTrue(map.capacity() > initialCapacity);
+
+      for (int i = 0; i < n; i++)
+      {
+         assertEquals(Integer.valueOf(i), map.get(i));
+      }
+   }
+
+   @Test
+   public void testKeysAndValues()
+   {
+      ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<String>();
+
+      map.put(0, "zero");
+      map.put(1, "one");
+      map.put(2, "two");
+      map.put(Long.MAX_VALUE, "max");
+      map.put(Long.MIN_VALUE, "min");
+
+      List<Long> keys = map.keys();
+      Collections.sort(keys);
+      assertEquals(5, keys.size());
+      assertEquals(Long.valueOf(Long.MIN_VALUE), keys.get(0));
+      assertEquals(Long.valueOf(Long.MAX_VALUE), keys.get(4));
+
+      List<String> values = map.values();
+      Collections.sort(values);
+      assertEquals("[max, min, one, two, zero]", values.toString());
+
+      final AtomicInteger count = new AtomicInteger(0);
+      map.forEach(new ConcurrentLongHashMap.EntryProcessor<String>()
+      {
+         public void accept(final long key, final String value)
+         {
+            count.incrementAndGet();
+         }
+      });
+      assertEquals(5, count.get());
+   }
+
+   /**
+    * Random operations with a lot of deletes and reinserts, compared with a plain HashMap.
+    * This exercises the deleted buckets being reused and purged on rehash.
+    */
+   @Test
+   public void testRandomOperations()
+   {
+      ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<Long>(4, 2);
+      Map<Long, Long> expected = new HashMap<Long, Long>();
+
+      Random random = new Random(1234);
+
+      for (int i = 0; i < 100000; i++)
+      {
+         long key = random.nextInt(500);
+         if (random.nextBoolean())
+         {
+            assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+         }
+         else
+         {
+            assertEquals(expected.remove(key), map.remove(key));
+         }
+         assertEquals(expected.size(), map.size());
+      }
+
+      for (long key = 0; key < 500; key++)
+      {
+         assertEquals(expected.get(key), map.get(key));
+      }
+   }
+
+   @Test
+   public void testConcurrentInsertions() throws Throwable
+   {
+      final ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<String>();
+
+      final int threads = 8;
+      final int perThread = 10000;
+      final CountDownLatch start = new CountDownLatch(1);
+      final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+      Thread[] workers = new Thread[threads];
+
+      for (int t = 0; t < threads; t++)
+      {
+         final int threadIndex = t;
+         workers[t] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+                  for (int i = 0; i < perThread; i++)
+                  {
+                     long key = (long) threadIndex * perThread + i;
+                     map.put(key, "v");
+                     assertEquals("v", map.get(key));
+                     if (i % 2 == 0)
+                     {
+                        assertEquals("v", map.remove(key));
+                     }
+                  }
+               }
+               catch (Throwable e)
+               {
+                  errors.add(e);
+               }
+            }
+         };
+         workers[t].start();
+      }
+
+      start.countDown();
+
+      for (Thread worker : workers)
+      {
+         worker.join();
+      }
+
+      if (!errors.isEmpty())
+      {
+         throw errors.get(0);
+      }
+
+      assertEquals(threads * perThread / 2, map.size());
+   }
+}
@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StripedReadWriteLockTest extends Assert
+{
+   private final StripedReadWriteLock lock = new StripedReadWriteLock();
+
+   @Test
+   public void testReentrant() throws Exception
+   {
+      lock.readLock().lock();
+      lock.readLock().lock();
+      assertEquals(2, lock.getReadHoldCount());
+      lock.readLock().unlock();
+      lock.readLock().unlock();
+      assertEquals(0, lock.getReadHoldCount());
+
+      lock.writeLock().lock();
+      lock.writeLock().lock();
+      // the writer may read
+      assertTrue(lock.readLock().tryLock());
+      lock.readLock().unlock();
+      lock.writeLock().unlock();
+      assertTrue(lock.isWriteLocked());
+      lock.writeLock().unlock();
+      assertFalse(lock.isWriteLocked());
+   }
+
+   @Test(expected = IllegalMonitorStateException.class)
+   public void testUnlockNotHeld()
+   {
+      lock.readLock().unlock();
+   }
+
+   @Test
+   public void testWriterWaitsForReaders() throws Exception
+   {
+      final CountDownLatch reading = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+
+      Thread reader = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            lock.readLock().lock();
+            reading.countDown();
+            try
+            {
+               release.await();
+            }
+            catch (InterruptedException e)
+            {
+               // just release
+            }
+            lock.readLock().unlock();
+         }
+      };
+      reader.start();
+
+      assertTrue(reading.await(10, TimeUnit.SECONDS));
+
+      assertFalse(lock.writeLock().tryLock());
+      assertFalse(lock.writeLock().tryLock(100, TimeUnit.MILLISECONDS));
+      assertFalse(lock.isWriteLocked());
+
+      release.countDown();
+
+      assertTrue(lock.writeLock().tryLock(10, TimeUnit.SECONDS));
+      lock.writeLock().unlock();
+
+      reader.join();
+   }
+
+   @Test
+   public void testReadersWaitForWriter() throws Exception
+   {
+      lock.writeLock().lock();
+
+      final AtomicBoolean tryLocked = new AtomicBoolean(true);
+      final CountDownLatch locked = new CountDownLatch(1);
+
+      Thread reader = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            tryLocked.set(lock.readLock().tryLock());
+            lock.readLock().lock();
+            locked.countDown();
+            lock.readLock().unlock();
+         }
+      };
+      reader.start();
+
+      assertFalse(locked.await(100, TimeUnit.MILLISECONDS));
+      assertFalse(tryLocked.get());
+
+      lock.writeLock().unlock();
+
+      assertTrue(locked.await(10, TimeUnit.SECONDS));
+      reader.join();
+   }
+
+   @Test
+   public void testReentrantReadWithWriterWaiting() throws Exception
+   {
+      lock.readLock().lock();
+
+      final CountDownLatch written = new CountDownLatch(1);
+
+      Thread writer = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            lock.writeLock().lock();
+            written.countDown();
+            lock.writeLock().unlock();
+         }
+      };
+      writer.start();
+
+      long timeout = System.currentTimeMillis() + 10000;
+      while (!lock.isWriteLocked() && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(1);
+      }
+      assertTrue(lock.isWriteLocked());
+
+      // would dead lock if the writer made this thread wait
+      lock.readLock().lock();
+      assertFalse(written.await(50, TimeUnit.MILLISECONDS));
+      lock.readLock().unlock();
+      lock.readLock().unlock();
+
+      assertTrue(written.await(10, TimeUnit.SECONDS));
+      writer.join();
+   }
+
+   @Test
+   public void testExclusion() throws Exception
+   {
+      final AtomicInteger readers = new AtomicInteger(0);
+      final AtomicInteger errors = new AtomicInteger(0);
+      final AtomicBoolean running = new AtomicBoolean(true);
+
+      Thread[] threads = new Thread[4];
+
+      for (int i = 0; i < threads.length; i++)
+      {
+         threads[i] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               while (running.get())
+               {
+                  lock.readLock().lock();
+                  readers.incrementAndGet();
+                  Thread.yield();
+                  readers.decrementAndGet();
+                  lock.readLock().unlock();
+               }
+            }
+         };
+         threads[i].start();
+      }
+
+      for (int i = 0; i < 100; i++)
+      {
+         lock.writeLock().lock();
+         try
+         {
+            if (readers.get() != 0)
+            {
+               errors.incrementAndGet();
+            }
+         }
+         finally
+         {
+            lock.writeLock().unlock();
+         }
+      }
+
+      running.set(false);
+
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      assertEquals(0, errors.get());
+   }
+}
@@ -264,6 +264,33 @@ public final class ActiveMQDefaultConfiguration
    // The minimal number of data files before we can start compacting
    private static int DEFAULT_JOURNAL_COMPACT_MIN_FILES = 10;
 
+   // the maximum number of bytes of messages held in memory by all the addresses together before the largest ones start paging, -1 means no global limit
+   private static long DEFAULT_GLOBAL_MAX_SIZE = -1L;
+
+   // how many pages a paged queue reads ahead of its consumers, 0 disables the read-ahead
+   private static int DEFAULT_PAGE_READ_AHEAD = 1;
+
+   // the maximum number of bytes used by the page caches of all the addresses, -1 means a tenth of the maximum heap size
+   private static long DEFAULT_GLOBAL_PAGE_CACHE_MAX_SIZE = -1L;
+
+   // whether an ASYNCIO journal writes through io_uring instead of libaio, falling back to libaio where io_uring is not available
+   private static boolean DEFAULT_JOURNAL_USE_I_O_U_RING = false;
+
+   // true means the bodies of the message journal records of at least journal-compress-min-size bytes are compressed
+   private static boolean DEFAULT_JOURNAL_COMPRESS_RECORDS = false;
+
+   // the size a message journal record body needs to have to be compressed, when journal-compress-records is true
+   private static int DEFAULT_JOURNAL_COMPRESS_MIN_SIZE = 1024;
+
+   // number of journal files filled between checkpoints of the message journal, so a restart only replays the files written after the last checkpoint. 0 disables checkpoints
+   private static int DEFAULT_JOURNAL_CHECKPOINT_FILES = 0;
+
+   // whether the journal buffer timeout is tuned from the observed sync latency, using journal-buffer-timeout as its maximum
+   private static boolean DEFAULT_JOURNAL_BUFFER_TIMEOUT_ADAPTIVE = false;
+
+   // how many threads read and decode journal files concurrently when the journal is loaded
+   private static int DEFAULT_JOURNAL_LOAD_THREADS = 1;
+
    // XXX Only meant to be used by project developers
    private static int DEFAULT_JOURNAL_PERF_BLAST_PAGES = -1;
 
@@ -750,6 +777,78 @@ public final class ActiveMQDefaultConfiguration
       return DEFAULT_JOURNAL_COMPACT_MIN_FILES;
    }
 
+   /**
+    * the maximum number of bytes of messages held in memory by all the addresses together before the largest ones start paging, -1 means no global limit
+    */
+   public static long getDefaultGlobalMaxSize()
+   {
+      return DEFAULT_GLOBAL_MAX_SIZE;
+   }
+
+   /**
+    * how many pages a paged queue reads ahead of its consumers, 0 disables the read-ahead
+    */
+   public static int getDefaultPageReadAhead()
+   {
+      return DEFAULT_PAGE_READ_AHEAD;
+   }
+
+   /**
+    * the maximum number of bytes used by the page caches of all the addresses, -1 means a tenth of the maximum heap size
+    */
+   public static long getDefaultGlobalPageCacheMaxSize()
+   {
+      return DEFAULT_GLOBAL_PAGE_CACHE_MAX_SIZE;
+   }
+
+   /**
+    * whether an ASYNCIO journal writes through io_uring instead of libaio, falling back to libaio where io_uring is not available
+    */
+   public static boolean isDefaultJournalUseIOURing()
+   {
+      return DEFAULT_JOURNAL_USE_I_O_U_RING;
+   }
+
+   /**
+    * true means the bodies of the message journal records of at least journal-compress-min-size bytes are compressed
+    */
+   public static boolean isDefaultJournalCompressRecords()
+   {
+      return DEFAULT_JOURNAL_COMPRESS_RECORDS;
+   }
+
+   /**
+    * the size a message journal record body needs to have to be compressed, when journal-compress-records is true
+    */
+   public static int getDefaultJournalCompressMinSize()
+   {
+      return DEFAULT_JOURNAL_COMPRESS_MIN_SIZE;
+   }
+
+   /**
+    * number of journal files filled between checkpoints of the message journal, so a restart only replays the files written after the last checkpoint. 0 disables checkpoints
+    */
+   public static int getDefaultJournalCheckpointFiles()
+   {
+      return DEFAULT_JOURNAL_CHECKPOINT_FILES;
+   }
+
+   /**
+    * whether the journal buffer timeout is tuned from the observed sync latency, using journal-buffer-timeout as its maximum
+    */
+   public static boolean isDefaultJournalBufferTimeoutAdaptive()
+   {
+      return DEFAULT_JOURNAL_BUFFER_TIMEOUT_ADAPTIVE;
+   }
+
+   /**
+    * how many threads read and decode journal files concurrently when the journal is loaded
+    */
+   public static int getDefaultJournalLoadThreads()
+   {
+      return DEFAULT_JOURNAL_LOAD_THREADS;
+   }
+
    /**
     * XXX Only meant to be used by project developers
     */
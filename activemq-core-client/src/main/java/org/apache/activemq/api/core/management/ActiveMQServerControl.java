@@ -148,6 +148,136 @@ public interface ActiveMQServerControl
     */
    int getJournalCompactPercentage();
 
+   /**
+    * Returns the number of times the message journal was compacted since this server was started.
+    */
+   long getJournalCompactCount();
+
+   /**
+    * Returns the duration of the last compaction of the message journal, in milliseconds.
+    */
+   long getJournalLastCompactDuration();
+
+   /**
+    * Returns the duration of all the compactions of the message journal, in milliseconds.
+    */
+   long getJournalTotalCompactDuration();
+
+   /**
+    * Returns the disk space reclaimed by the last compaction of the message journal, in bytes.
+    */
+   long getJournalLastCompactReclaimedBytes();
+
+   /**
+    * Returns the disk space reclaimed by all the compactions of the message journal, in bytes.
+    */
+   long getJournalTotalCompactReclaimedBytes();
+
+   /**
+    * Returns the time the last compaction blocked writes on the message journal, in microseconds.
+    */
+   long getJournalLastCompactStallTime();
+
+   /**
+    * Returns the longest time a compaction blocked writes on the message journal, in microseconds.
+    */
+   long getJournalMaxCompactStallTime();
+
+   /**
+    * Returns the number of times the buffer of the message journal was written to its files.
+    */
+   long getJournalFlushCount();
+
+   /**
+    * Returns the number of flushes of the message journal done because the buffer or the file was full.
+    */
+   long getJournalSizeFlushCount();
+
+   /**
+    * Returns the number of flushes of the message journal done by the buffer timeout to write pending syncs.
+    */
+   long getJournalTimeoutFlushCount();
+
+   /**
+    * Returns the number of flushes of the message journal forced by the journal, as when moving to the next file.
+    */
+   long getJournalForcedFlushCount();
+
+   /**
+    * Returns the number of bytes written by the flushes of the message journal.
+    */
+   long getJournalFlushedBytes();
+
+   /**
+    * Returns the number of records written by the flushes of the message journal.
+    */
+   long getJournalFlushedRecords();
+
+   /**
+    * Returns the number of synced flushes of the message journal.
+    */
+   long getJournalSyncCount();
+
+   /**
+    * Returns the time taken by all the synced flushes of the message journal, in microseconds.
+    */
+   long getJournalTotalSyncTime();
+
+   /**
+    * Returns the time taken by the slowest synced flush of the message journal, in microseconds.
+    */
+   long getJournalMaxSyncTime();
+
+   /**
+    * Returns the average number of pending writes on the message journal when a write is submitted with AIO.
+    */
+   double getJournalAverageAIOQueueDepth();
+
+   /**
+    * Returns the average number of writes the message journal gives to the kernel on each AIO submit.
+    */
+   double getJournalAverageAIOSubmitBatchSize();
+
+   /**
+    * Returns the largest number of pending writes on the message journal when a write is submitted with AIO.
+    */
+   long getJournalMaxAIOQueueDepth();
+
+   /**
+    * Returns the number of times a write on the message journal waited for the journal lock, held by compactions.
+    */
+   long getJournalLockWaitCount();
+
+   /**
+    * Returns the time writes on the message journal waited for the journal lock, in microseconds.
+    */
+   long getJournalLockWaitTime();
+
+   /**
+    * Returns the number of times a write on the message journal waited for another one to be appended.
+    */
+   long getJournalAppendLockWaitCount();
+
+   /**
+    * Returns the time writes on the message journal waited for other ones to be appended, in microseconds.
+    */
+   long getJournalAppendLockWaitTime();
+
+   /**
+    * Returns the number of write buffers of the message journal taken from its buffer pool.
+    */
+   long getJournalBufferPoolHits();
+
+   /**
+    * Returns the number of write buffers of the message journal allocated because its buffer pool had none.
+    */
+   long getJournalBufferPoolMisses();
+
+   /**
+    * Returns the bytes of the write buffers of the message journal currently taken from its buffer pool.
+    */
+   long getJournalOutstandingBufferBytes();
+
    /**
     * Returns whether this server is using persistence and store data.
     */
@@ -209,6 +339,17 @@ public interface ActiveMQServerControl
     */
    String getPagingDirectory();
 
+   /**
+    * Returns the maximum number of bytes of messages held in memory by all the addresses before the largest ones start paging,
+    * -1 if there is no global limit.
+    */
+   long getGlobalMaxSize();
+
+   /**
+    * Returns the number of bytes of messages currently held in memory by all the addresses.
+    */
+   long getGlobalAddressSize();
+
    /**
     * Returns whether delivery count is persisted before messages are delivered to the consumers.
     */
@@ -407,6 +548,21 @@ public interface ActiveMQServerControl
    @Operation(desc = "Reset all message counters history", impact = MBeanOperationInfo.ACTION)
    void resetAllMessageCounterHistories() throws Exception;
 
+   /**
+    * Lists the number of synced flushes of the message journal per duration, using JSON serialization.
+    * <p>
+    * Each element has the upper limit of its bucket in microseconds as {@code maxTime}, -1 for the last one
+    * that takes the slower syncs, and the number of syncs in the bucket as {@code count}.
+    */
+   @Operation(desc = "List the number of synced flushes of the message journal per duration, in JSON format", impact = MBeanOperationInfo.INFO)
+   String listJournalSyncTimeHistogramAsJSON() throws Exception;
+
+   /**
+    * Resets the counters about the flushes, syncs and lock waits of the message journal.
+    */
+   @Operation(desc = "Reset the flush, sync and lock wait counters of the message journal", impact = MBeanOperationInfo.ACTION)
+   void resetJournalIOStatistics() throws Exception;
+
    /**
     * List all the prepared transaction, sorted by date, oldest first.
     * <br>
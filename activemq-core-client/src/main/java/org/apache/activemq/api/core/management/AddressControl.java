@@ -74,6 +74,43 @@ public interface AddressControl
     */
    long getNumberOfBytesPerPage() throws Exception;
 
+   /**
+    * Returns the number of page reads served from the page cache of this address.
+    */
+   long getPageCacheHits() throws Exception;
+
+   /**
+    * Returns the number of page reads that had to read the page file of this address.
+    */
+   long getPageCacheMisses() throws Exception;
+
+   /**
+    * Returns the number of pages evicted from the page cache of this address,
+    * either over its page-max-cache-size or over the global-page-cache-max-size.
+    */
+   long getPageCacheEvictions() throws Exception;
+
+   /**
+    * Returns the estimated number of bytes used by the page cache of this address.
+    */
+   long getPageCacheSize() throws Exception;
+
+   /**
+    * Returns the size of the messages written compressed to the page files of this address
+    * divided by their size uncompressed, or 1 if none was compressed.
+    */
+   double getPageCompressionRatio() throws Exception;
+
+   /**
+    * Returns the time in milliseconds spent compressing the messages paged on this address.
+    */
+   long getPageCompressTime() throws Exception;
+
+   /**
+    * Returns the time in milliseconds spent decompressing the messages read from the page files of this address.
+    */
+   long getPageDecompressTime() throws Exception;
+
    /**
     * Returns the names of all bindings (both queues and diverts) bound to this address
     */
@@ -18,7 +18,9 @@ package org.apache.activemq.core.protocol.core;
 
 import java.util.concurrent.locks.Lock;
 
+import io.netty.channel.FileRegion;
 import org.apache.activemq.api.core.ActiveMQException;
+import org.apache.activemq.core.protocol.core.impl.wireformat.SessionReceiveContinuationMessage;
 
 /**
  * A channel is a way of interleaving data meant for different endpoints over the same {@link org.apache.activemq.core.protocol.core.CoreRemotingConnection}.
@@ -67,6 +69,19 @@ public interface Channel
     */
    boolean sendAndFlush(Packet packet);
 
+   /**
+    * Sends a large message continuation whose body is the file region, transferred by the transport
+    * straight from the file.
+    * <p>
+    * Nothing is sent if the body has to go through the heap: an outgoing interceptor could look at
+    * it, the packet would have to be kept for resending after a failover or the transport can't write
+    * file regions. The region is released in any case.
+    * @param packet the continuation, without a body
+    * @param region the body
+    * @return true if the packet was sent
+    */
+   boolean sendFileRegion(SessionReceiveContinuationMessage packet, FileRegion region);
+
    /**
     * Sends a packet on this channel and then blocks until a response is received or a timeout
     * occurs.
@@ -25,6 +25,7 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import io.netty.channel.FileRegion;
 import org.apache.activemq.api.core.ActiveMQBuffer;
 import org.apache.activemq.api.core.ActiveMQException;
 import org.apache.activemq.api.core.ActiveMQInterruptedException;
@@ -38,7 +39,9 @@ import org.apache.activemq.core.protocol.core.CoreRemotingConnection;
 import org.apache.activemq.core.protocol.core.Packet;
 import org.apache.activemq.core.protocol.core.impl.wireformat.ActiveMQExceptionMessage;
 import org.apache.activemq.core.protocol.core.impl.wireformat.PacketsConfirmedMessage;
+import org.apache.activemq.core.protocol.core.impl.wireformat.SessionReceiveContinuationMessage;
 import org.apache.activemq.spi.core.protocol.RemotingConnection;
+import org.apache.activemq.spi.core.remoting.Connection;
 
 /**
  * A ChannelImpl
@@ -297,6 +300,64 @@ public final class ChannelImpl implements Channel
       }
    }
 
+   public boolean sendFileRegion(final SessionReceiveContinuationMessage packet, final FileRegion region)
+   {
+      Connection transport = connection.getTransportConnection();
+
+      if ((interceptors != null && !interceptors.isEmpty()) || resendCache != null || !transport.isFileRegionSupported())
+      {
+         region.release();
+         return false;
+      }
+
+      synchronized (sendLock)
+      {
+         packet.setChannelID(id);
+
+         if (isTrace)
+         {
+            ActiveMQClientLogger.LOGGER.trace("Sending packet nonblocking " + packet + " with a file region on channeID=" + id);
+         }
+
+         ActiveMQBuffer header = packet.encodeHeader(connection, (int) region.count());
+         ActiveMQBuffer trailer = packet.encodeTrailer(connection);
+
+         lock.lock();
+
+         try
+         {
+            if (failingOver)
+            {
+               // the same wait as send(Packet, boolean, boolean)
+               try
+               {
+                  failoverCondition.await(10000, TimeUnit.MILLISECONDS);
+               }
+               catch (InterruptedException e)
+               {
+                  region.release();
+                  throw new ActiveMQInterruptedException(e);
+               }
+            }
+
+            // Sanity check
+            if (transferring)
+            {
+               region.release();
+               throw new IllegalStateException("Cannot send a packet while channel is doing failover");
+            }
+         }
+         finally
+         {
+            lock.unlock();
+         }
+
+         transport.write(header, region, trailer);
+
+         return true;
+      }
+   }
+
    /**
     * Due to networking issues or server issues the server may take longer to answer than expected.. the client may timeout the call throwing an exception
     * and the client could eventually retry another call, but the server could then answer a previous command issuing a class-cast-exception.
@@ -17,6 +17,7 @@
 package org.apache.activemq.core.protocol.core.impl.wireformat;
 
 import org.apache.activemq.api.core.ActiveMQBuffer;
+import org.apache.activemq.spi.core.protocol.RemotingConnection;
 import org.apache.activemq.utils.DataConstants;
 
 /**
@@ -73,6 +74,15 @@ public class SessionReceiveContinuationMessage extends SessionContinuationMessag
       this.size = packetSize;
    }
 
+   /**
+    * A continuation whose body is written separately by the transport, see {@link #encodeHeader} and
+    * {@link #encodeTrailer}.
+    */
+   public SessionReceiveContinuationMessage(final long consumerID, final boolean continues)
+   {
+      this(consumerID, null, continues, false);
+   }
+
    /**
     * @return the consumerID
     */
@@ -89,6 +99,37 @@ public class SessionReceiveContinuationMessage extends SessionContinuationMessag
       super.encodeRest(buffer);
       buffer.writeLong(consumerID);
    }
+   /**
+    * Encodes everything before a body of {@code bodySize} bytes, in the same format as {@link #encode}.
+    */
+   public ActiveMQBuffer encodeHeader(final RemotingConnection connection, final int bodySize)
+   {
+      ActiveMQBuffer buffer = connection.createTransportBuffer(PACKET_HEADERS_SIZE + DataConstants.SIZE_INT);
+
+      size = SESSION_RECEIVE_CONTINUATION_BASE_SIZE + bodySize;
+
+      // The length doesn't include the actual length byte
+      buffer.writeInt(size - DataConstants.SIZE_INT);
+      buffer.writeByte(getType());
+      buffer.writeLong(getChannelID());
+      buffer.writeInt(bodySize);
+
+      return buffer;
+   }
+
+   /**
+    * Encodes everything after the body, in the same format as {@link #encode}.
+    */
+   public ActiveMQBuffer encodeTrailer(final RemotingConnection connection)
+   {
+      ActiveMQBuffer buffer = connection.createTransportBuffer(DataConstants.SIZE_BOOLEAN + DataConstants.SIZE_LONG);
+
+      buffer.writeBoolean(continues);
+      buffer.writeLong(consumerID);
+
+      return buffer;
+   }
+
    @Override
    public int getPacketSize()
    {
@@ -25,8 +25,12 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelOutboundHandler;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.EventLoop;
+import io.netty.channel.FileRegion;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.ssl.SslHandler;
 import org.apache.activemq.api.core.ActiveMQBuffer;
 import org.apache.activemq.api.core.ActiveMQBuffers;
@@ -347,6 +351,80 @@ public class NettyConnection implements Connection
       }
    }
 
+   public boolean isFileRegionSupported()
+   {
+      if (!(channel instanceof SocketChannel))
+      {
+         return false;
+      }
+
+      // a handler on the way out, such as SSL or HTTP, needs to see the bytes
+      for (Map.Entry<String, ChannelHandler> entry : channel.pipeline())
+      {
+         ChannelHandler handler = entry.getValue();
+
+         if (handler instanceof ChannelOutboundHandler && !(handler instanceof ActiveMQChannelHandler))
+         {
+            return false;
+         }
+      }
+
+      return true;
+   }
+
+   public void write(final ActiveMQBuffer header, final FileRegion region, final ActiveMQBuffer trailer)
+   {
+      try
+      {
+         writeLock.acquire();
+
+         try
+         {
+            // anything batched so far has to go before
+            final ByteBuf batched = batchBuffer == null ? null : batchBuffer.byteBuf();
+
+            batchBuffer = null;
+
+            final ByteBuf headerBuf = header.byteBuf();
+            final ByteBuf trailerBuf = trailer.byteBuf();
+
+            final Runnable task = new Runnable()
+            {
+               @Override
+               public void run()
+               {
+                  if (batched != null)
+                  {
+                     channel.write(batched, channel.voidPromise());
+                  }
+                  channel.write(headerBuf, channel.voidPromise());
+                  channel.write(region, channel.voidPromise());
+                  channel.writeAndFlush(trailerBuf, channel.voidPromise());
+               }
+            };
+
+            EventLoop eventLoop = channel.eventLoop();
+            if (eventLoop.inEventLoop())
+            {
+               // as on write(ActiveMQBuffer...), to keep the order with the writes of other threads
+               eventLoop.execute(task);
+            }
+            else
+            {
+               task.run();
+            }
+         }
+         finally
+         {
+            writeLock.release();
+         }
+      }
+      catch (InterruptedException e)
+      {
+         throw new ActiveMQInterruptedException(e);
+      }
+   }
+
    public String getRemoteAddress()
    {
       SocketAddress address = channel.remoteAddress();
@@ -17,6 +17,7 @@
 package org.apache.activemq.spi.core.remoting;
 
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.FileRegion;
 import org.apache.activemq.api.core.ActiveMQBuffer;
 import org.apache.activemq.api.core.TransportConfiguration;
 import org.apache.activemq.core.security.ActiveMQPrincipal;
@@ -76,6 +77,24 @@ public interface Connection
    void write(ActiveMQBuffer buffer);
 
 
+   /**
+    * @return whether {@link #write(ActiveMQBuffer, FileRegion, ActiveMQBuffer)} transfers the region
+    * from the file to the network without copying it to the heap, that is the transport writes
+    * straight to a socket and nothing on the way needs to see the bytes.
+    */
+   boolean isFileRegionSupported();
+
+   /**
+    * writes a buffer, a region of a file and another buffer to the connection, one after the other.
+    * The region is released once written. When {@link #isFileRegionSupported()} is false the region is
+    * read into a buffer first, so callers should check it before opening a file for this.
+    *
+    * @param header the buffer written before the region
+    * @param region the file region
+    * @param trailer the buffer written after the region
+    */
+   void write(ActiveMQBuffer header, FileRegion region, ActiveMQBuffer trailer);
+
    /**
     * This should close the internal channel without calling any listeners.
     * This is to avoid a situation where the broker is busy writing on an internal thread.
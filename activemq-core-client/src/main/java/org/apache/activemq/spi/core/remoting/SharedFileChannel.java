@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.spi.core.remoting;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.util.AbstractReferenceCounted;
+import org.apache.activemq.core.client.ActiveMQClientLogger;
+
+/**
+ * A file opened for reading and shared by several {@link FileRegion}s, so parts of it can be written
+ * to the network one after the other without reopening it.
+ * <p>
+ * Every region holds a reference to the file, which is only closed once the opener and all the
+ * regions written from it have released theirs, whenever the transport gets to write them.
+ */
+public final class SharedFileChannel extends AbstractReferenceCounted
+{
+   private final FileChannel channel;
+
+   public SharedFileChannel(final File file) throws IOException
+   {
+      channel = new RandomAccessFile(file, "r").getChannel();
+   }
+
+   public FileChannel getChannel()
+   {
+      return channel;
+   }
+
+   /**
+    * @return a region of {@code count} bytes from {@code position}, holding a reference to this file
+    */
+   public FileRegion newRegion(final long position, final long count)
+   {
+      retain();
+      return new Region(position, count);
+   }
+
+   @Override
+   protected void deallocate()
+   {
+      try
+      {
+         channel.close();
+      }
+      catch (IOException e)
+      {
+         ActiveMQClientLogger.LOGGER.warn(e.getMessage(), e);
+      }
+   }
+
+   private final class Region extends DefaultFileRegion
+   {
+      Region(final long position, final long count)
+      {
+         super(channel, position, count);
+      }
+
+      @Override
+      protected void deallocate()
+      {
+         // the file is shared, only give back our reference
+         SharedFileChannel.this.release();
+      }
+   }
+}
@@ -60,4 +60,9 @@ public interface AsynchronousFile
    void setBufferCallback(BufferCallback callback);
 
    int getBlockSize();
+
+   /**
+    * @return the number of operations submitted and not completed yet, up to the maxIO the file was opened with
+    */
+   int getPendingIO();
 }
@@ -19,9 +19,11 @@ package org.apache.activemq.core.asyncio.impl;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileLock;
 import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
@@ -34,6 +36,7 @@ import org.apache.activemq.core.asyncio.AIOCallback;
 import org.apache.activemq.core.asyncio.AsynchronousFile;
 import org.apache.activemq.core.asyncio.BufferCallback;
 import org.apache.activemq.core.asyncio.IOExceptionListener;
+import org.apache.activemq.core.journal.JournalIOStatistics;
 import org.apache.activemq.core.libaio.Native;
 import org.apache.activemq.journal.ActiveMQJournalLogger;
 import org.apache.activemq.utils.ReusableLatch;
@@ -53,6 +56,12 @@ public class AsynchronousFileImpl implements AsynchronousFile
 
    private static boolean loaded = false;
 
+   /**
+    * Cleared the first time the native library doesn't have writeBatch (built before it was added),
+    * from then on the writes are submitted one by one
+    */
+   private static volatile boolean batchSupported = true;
+
    /**
     * This definition needs to match Version.h on the native sources.
     * <p/>
@@ -78,6 +87,43 @@ public class AsynchronousFileImpl implements AsynchronousFile
     */
    private final PriorityQueue<CallbackHolder> pendingCallbacks = new PriorityQueue<CallbackHolder>();
 
+   /**
+    * The writes waiting for the writeExecutor, which submits all the ones found at once.
+    * There are never more than maxIO of them, as each write takes a permit from the maxIOSemaphore first.
+    */
+   private final ConcurrentLinkedQueue<PendingWrite> pendingWriteQueue = new ConcurrentLinkedQueue<PendingWrite>();
+
+   private final AtomicBoolean submitScheduled = new AtomicBoolean(false);
+
+   private final Runnable submitTask = new Runnable()
+   {
+      public void run()
+      {
+         do
+         {
+            while (!pendingWriteQueue.isEmpty())
+            {
+               submitPendingWrites();
+            }
+
+            submitScheduled.set(false);
+         }
+         // a write may have been queued after the queue was found empty, but before the flag was cleared
+         while (!pendingWriteQueue.isEmpty() && submitScheduled.compareAndSet(false, true));
+      }
+   };
+
+   // Only used by the submitTask, so they are allocated once per open
+   private long[] batchPositions;
+
+   private long[] batchSizes;
+
+   private ByteBuffer[] batchBuffers;
+
+   private AIOCallback[] batchCallbacks;
+
+   private JournalIOStatistics ioStatistics;
+
    public static void addMax(final int io)
    {
       AsynchronousFileImpl.totalMaxIO.addAndGet(io);
@@ -238,11 +284,16 @@ public class AsynchronousFileImpl implements AsynchronousFile
          this.maxIO = maxIOArgument;
          maxIOSemaphore = new Semaphore(this.maxIO);
 
+         batchPositions = new long[this.maxIO];
+         batchSizes = new long[this.maxIO];
+         batchBuffers = new ByteBuffer[this.maxIO];
+         batchCallbacks = new AIOCallback[this.maxIO];
+
          this.fileName = fileName1;
 
          try
          {
-            handler = Native.init(AsynchronousFileImpl.class, fileName1, this.maxIO, ActiveMQJournalLogger.LOGGER);
+            handler = initNative(fileName1, this.maxIO);
          }
          catch (ActiveMQException e)
          {
@@ -272,6 +323,14 @@ public class AsynchronousFileImpl implements AsynchronousFile
       }
    }
 
+   /**
+    * Opens the file on the native layer, returning the handler used by all the other native calls.
+    */
+   protected ByteBuffer initNative(final String fileName1, final int maxIOArgument) throws ActiveMQException
+   {
+      return Native.init(AsynchronousFileImpl.class, fileName1, maxIOArgument, ActiveMQJournalLogger.LOGGER);
+   }
+
    public void close() throws InterruptedException, ActiveMQException
    {
       checkOpened();
@@ -352,53 +411,31 @@ public class AsynchronousFileImpl implements AsynchronousFile
       {
          maxIOSemaphore.acquireUninterruptibly();
 
-         writeExecutor.execute(new Runnable()
+         // the writes queued while the executor is busy are submitted together
+         pendingWriteQueue.add(new PendingWrite(position, size, directByteBuffer, aioCallback));
+
+         if (submitScheduled.compareAndSet(false, true))
          {
-            public void run()
-            {
-               long sequence = nextWritingSequence.getAndIncrement();
-
-               try
-               {
-                  Native.write(AsynchronousFileImpl.this, handler, sequence, position, size, directByteBuffer, aioCallback);
-               }
-               catch (ActiveMQException e)
-               {
-                  callbackError(aioCallback, sequence, directByteBuffer, e.getType().getCode(), e.getMessage());
-               }
-               catch (RuntimeException e)
-               {
-                  callbackError(aioCallback,
-                                sequence,
-                                directByteBuffer,
-                                ActiveMQExceptionType.INTERNAL_ERROR.getCode(),
-                                e.getMessage());
-               }
-            }
-         });
+            writeExecutor.execute(submitTask);
+         }
       }
       else
       {
          maxIOSemaphore.acquireUninterruptibly();
 
-         long sequence = nextWritingSequence.getAndIncrement();
-
-         try
-         {
-            Native.write(this, handler, sequence, position, size, directByteBuffer, aioCallback);
-         }
-         catch (ActiveMQException e)
-         {
-            callbackError(aioCallback, sequence, directByteBuffer, e.getType().getCode(), e.getMessage());
-         }
-         catch (RuntimeException e)
-         {
-            callbackError(aioCallback, sequence, directByteBuffer, ActiveMQExceptionType.INTERNAL_ERROR.getCode(), e.getMessage());
-         }
+         submitWrite(nextWritingSequence.getAndIncrement(), position, size, directByteBuffer, aioCallback);
       }
 
    }
 
+   /**
+    * Used to count the native submits
+    */
+   public void setIOStatistics(final JournalIOStatistics ioStatistics)
+   {
+      this.ioStatistics = ioStatistics;
+   }
+
    public void read(final long position,
                     final long size,
                     final ByteBuffer directByteBuffer,
@@ -456,6 +493,13 @@ public class AsynchronousFileImpl implements AsynchronousFile
       return 512;
    }
 
+   public int getPendingIO()
+   {
+      Semaphore semaphore = maxIOSemaphore;
+
+      return semaphore == null ? 0 : maxIO - semaphore.availablePermits();
+   }
+
    /**
     * This needs to be synchronized because of
     * http://bugs.sun.com/view_bug.do?bug_id=6791815
@@ -544,6 +588,107 @@ public class AsynchronousFileImpl implements AsynchronousFile
       }
    }
 
+   private void submitWrite(final long sequence,
+                            final long position,
+                            final long size,
+                            final ByteBuffer directByteBuffer,
+                            final AIOCallback aioCallback)
+   {
+      try
+      {
+         Native.write(this, handler, sequence, position, size, directByteBuffer, aioCallback);
+      }
+      catch (ActiveMQException e)
+      {
+         callbackError(aioCallback, sequence, directByteBuffer, e.getType().getCode(), e.getMessage());
+      }
+      catch (RuntimeException e)
+      {
+         callbackError(aioCallback, sequence, directByteBuffer, ActiveMQExceptionType.INTERNAL_ERROR.getCode(), e.getMessage());
+      }
+
+      if (ioStatistics != null)
+      {
+         ioStatistics.aioWritesSubmitted(1);
+      }
+   }
+
+   /**
+    * Submits the queued writes, up to maxIO of them, on a single native call.
+    * The sequences follow the order of the queue, so the callbacks keep the order of the writes.
+    */
+   private void submitPendingWrites()
+   {
+      int count = 0;
+      PendingWrite write;
+
+      while (count < maxIO && (write = pendingWriteQueue.poll()) != null)
+      {
+         batchPositions[count] = write.position;
+         batchSizes[count] = write.size;
+         batchBuffers[count] = write.buffer;
+         batchCallbacks[count] = write.callback;
+         count++;
+      }
+
+      if (count == 0)
+      {
+         return;
+      }
+
+      long firstSequence = nextWritingSequence.getAndAdd(count);
+
+      boolean submitted = false;
+
+      if (count > 1 && batchSupported)
+      {
+         try
+         {
+            Native.writeBatch(this, handler, firstSequence, count, batchPositions, batchSizes, batchBuffers, batchCallbacks);
+
+            if (ioStatistics != null)
+            {
+               ioStatistics.aioWritesSubmitted(count);
+            }
+         }
+         catch (UnsatisfiedLinkError e)
+         {
+            ActiveMQJournalLogger.LOGGER.debug("The native library doesn't support batched writes", e);
+            batchSupported = false;
+         }
+         catch (ActiveMQException e)
+         {
+            for (int i = 0; i < count; i++)
+            {
+               callbackError(batchCallbacks[i], firstSequence + i, batchBuffers[i], e.getType().getCode(), e.getMessage());
+            }
+         }
+         catch (RuntimeException e)
+         {
+            for (int i = 0; i < count; i++)
+            {
+               callbackError(batchCallbacks[i], firstSequence + i, batchBuffers[i], ActiveMQExceptionType.INTERNAL_ERROR.getCode(), e.getMessage());
+            }
+         }
+
+         submitted = batchSupported;
+      }
+
+      if (!submitted)
+      {
+         for (int i = 0; i < count; i++)
+         {
+            submitWrite(firstSequence + i, batchPositions[i], batchSizes[i], batchBuffers[i], batchCallbacks[i]);
+         }
+      }
+
+      for (int i = 0; i < count; i++)
+      {
+         batchBuffers[i] = null;
+         batchCallbacks[i] = null;
+      }
+   }
+
    private void flushCallbacks()
    {
       while (!pendingCallbacks.isEmpty() && pendingCallbacks.peek().sequence == nextReadSequence)
@@ -698,6 +843,25 @@ public class AsynchronousFileImpl implements AsynchronousFile
    // Native ----------------------------------------------------------------------------
 
 
+   private static final class PendingWrite
+   {
+      final long position;
+
+      final long size;
+
+      final ByteBuffer buffer;
+
+      final AIOCallback callback;
+
+      PendingWrite(final long position, final long size, final ByteBuffer buffer, final AIOCallback callback)
+      {
+         this.position = position;
+         this.size = size;
+         this.buffer = buffer;
+         this.callback = callback;
+      }
+   }
+
    /**
     * Explicitly adding a compare to clause that returns 0 for at least the same object.
     * <p/>
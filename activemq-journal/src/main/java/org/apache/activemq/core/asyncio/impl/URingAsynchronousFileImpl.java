@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.core.asyncio.impl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+import org.apache.activemq.api.core.ActiveMQException;
+import org.apache.activemq.core.asyncio.IOExceptionListener;
+import org.apache.activemq.core.libaio.Native;
+import org.apache.activemq.journal.ActiveMQJournalLogger;
+
+/**
+ * An {@link AsynchronousFileImpl} submitting its writes and reads through io_uring instead of libaio.
+ * <p>
+ * It uses the same native library, so it's only available when that library is loaded, was built with io_uring and
+ * the kernel allows io_uring to this process. See {@link #isSupported()}.
+ */
+public class URingAsynchronousFileImpl extends AsynchronousFileImpl
+{
+   private static boolean builtWithURing;
+
+   private static final boolean supported = checkSupported();
+
+   private static boolean checkSupported()
+   {
+      if (!AsynchronousFileImpl.isLoaded())
+      {
+         return false;
+      }
+
+      try
+      {
+         boolean kernelSupport = Native.isURingSupported();
+         builtWithURing = true;
+         return kernelSupport;
+      }
+      catch (UnsatisfiedLinkError e)
+      {
+         // a native library built before io_uring was added
+         ActiveMQJournalLogger.LOGGER.debug("The native library doesn't support io_uring", e);
+         return false;
+      }
+   }
+
+   public static boolean isSupported()
+   {
+      return URingAsynchronousFileImpl.supported;
+   }
+
+   /**
+    * @return false if the native library is loaded but was built before io_uring was added, and has to be rebuilt
+    * to use io_uring
+    */
+   public static boolean isBuiltWithURing()
+   {
+      return !AsynchronousFileImpl.isLoaded() || URingAsynchronousFileImpl.builtWithURing;
+   }
+
+   public URingAsynchronousFileImpl(final Executor writeExecutor, final Executor pollerExecutor, final IOExceptionListener ioExceptionListener)
+   {
+      super(writeExecutor, pollerExecutor, ioExceptionListener);
+   }
+
+   public URingAsynchronousFileImpl(final Executor writeExecutor, final Executor pollerExecutor)
+   {
+      this(writeExecutor, pollerExecutor, null);
+   }
+
+   @Override
+   protected ByteBuffer initNative(final String fileName, final int maxIO) throws ActiveMQException
+   {
+      return Native.initURing(AsynchronousFileImpl.class, fileName, maxIO, ActiveMQJournalLogger.LOGGER);
+   }
+}
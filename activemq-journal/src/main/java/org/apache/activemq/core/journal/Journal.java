@@ -213,6 +213,16 @@ public interface Journal extends ActiveMQComponent
     */
    void scheduleCompactAndBlock(int timeout) throws Exception;
 
+   /**
+    * Returns the counters about the compactions done since the journal was started.
+    */
+   JournalCompactStatistics getCompactStatistics();
+
+   /**
+    * Returns the counters about the flushes, syncs and lock waits of the journal, which can be reset.
+    */
+   JournalIOStatistics getIOStatistics();
+
    /**
     * Stops any operation that may delete or modify old (stale) data.
     * <p>
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.core.journal;
+
+/**
+ * Counters about the compactions done on a journal since it was started.
+ * <p>
+ * The stall time is how long appends on the journal were blocked by the compactor, which only happens
+ * while it holds the journal write lock at the start and at the end of a compaction.
+ */
+public class JournalCompactStatistics
+{
+   private long compactCount;
+
+   private long lastDuration;
+
+   private long totalDuration;
+
+   private long lastReclaimedBytes;
+
+   private long totalReclaimedBytes;
+
+   private long lastStallTime;
+
+   private long maxStallTime;
+
+   /**
+    * @param duration     the duration of the whole compaction, in milliseconds
+    * @param reclaimedBytes the size of the files processed minus the size of the files created
+    * @param stallTime    the time the journal was locked, in microseconds
+    */
+   public synchronized void compactDone(final long duration, final long reclaimedBytes, final long stallTime)
+   {
+      compactCount++;
+      lastDuration = duration;
+      totalDuration += duration;
+      lastReclaimedBytes = reclaimedBytes;
+      totalReclaimedBytes += reclaimedBytes;
+      lastStallTime = stallTime;
+      maxStallTime = Math.max(maxStallTime, stallTime);
+   }
+
+   /**
+    * Adds the counters of another journal, for journals made of several ones.
+    * The last values kept are the largest ones of both.
+    */
+   public synchronized void add(final JournalCompactStatistics other)
+   {
+      synchronized (other)
+      {
+         compactCount += other.compactCount;
+         lastDuration = Math.max(lastDuration, other.lastDuration);
+         totalDuration += other.totalDuration;
+         lastReclaimedBytes = Math.max(lastReclaimedBytes, other.lastReclaimedBytes);
+         totalReclaimedBytes += other.totalReclaimedBytes;
+         lastStallTime = Math.max(lastStallTime, other.lastStallTime);
+         maxStallTime = Math.max(maxStallTime, other.maxStallTime);
+      }
+   }
+
+   public synchronized long getCompactCount()
+   {
+      return compactCount;
+   }
+
+   /**
+    * @return the duration of the last compaction, in milliseconds
+    */
+   public synchronized long getLastDuration()
+   {
+      return lastDuration;
+   }
+
+   /**
+    * @return the duration of all the compactions, in milliseconds
+    */
+   public synchronized long getTotalDuration()
+   {
+      return totalDuration;
+   }
+
+   public synchronized long getLastReclaimedBytes()
+   {
+      return lastReclaimedBytes;
+   }
+
+   public synchronized long getTotalReclaimedBytes()
+   {
+      return totalReclaimedBytes;
+   }
+
+   /**
+    * @return the time the last compaction blocked the journal, in microseconds
+    */
+   public synchronized long getLastStallTime()
+   {
+      return lastStallTime;
+   }
+
+   /**
+    * @return the longest time a compaction blocked the journal, in microseconds
+    */
+   public synchronized long getMaxStallTime()
+   {
+      return maxStallTime;
+   }
+
+   @Override
+   public synchronized String toString()
+   {
+      return "JournalCompactStatistics [compactCount=" + compactCount +
+         ", lastDuration=" + lastDuration +
+         ", totalDuration=" + totalDuration +
+         ", lastReclaimedBytes=" + lastReclaimedBytes +
+         ", totalReclaimedBytes=" + totalReclaimedBytes +
+         ", lastStallTime=" + lastStallTime +
+         ", maxStallTime=" + maxStallTime +
+         "]";
+   }
+}
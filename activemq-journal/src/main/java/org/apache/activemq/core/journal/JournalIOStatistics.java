@@ -0,0 +1,433 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.core.journal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters about the writes and syncs done on the files of a journal, and about the time spent waiting
+ * on its locks, since the journal was started or the counters were reset.
+ * <p>
+ * The counters are updated by the threads writing to the journal, so they are only a few atomic
+ * increments per flush or per contended lock. They are reset independently from each other, so the
+ * values read right after a reset may be slightly inconsistent between themselves.
+ */
+public class JournalIOStatistics
+{
+   /**
+    * The upper limits of the buckets of the sync time histogram, in microseconds.
+    * The last bucket of the histogram takes the syncs slower than the last limit.
+    */
+   private static final long[] SYNC_TIME_LIMITS = {50, 100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000,
+      100000, 250000, 500000, 1000000};
+
+   /**
+    * Why the buffer of the journal was written to its file
+    */
+   public enum FlushReason
+   {
+      /** the buffer, or the space left on the file, couldn't take the next record */
+      SIZE,
+      /** the buffer timer wrote the records a sync was pending for */
+      TIMEOUT,
+      /** the journal asked for it, as when moving to the next file or stopping */
+      FORCED
+   }
+
+   private final AtomicLong sizeFlushes = new AtomicLong();
+
+   private final AtomicLong timeoutFlushes = new AtomicLong();
+
+   private final AtomicLong forcedFlushes = new AtomicLong();
+
+   private final AtomicLong flushedBytes = new AtomicLong();
+
+   private final AtomicLong flushedRecords = new AtomicLong();
+
+   private final AtomicLong syncCount = new AtomicLong();
+
+   private final AtomicLong totalSyncTime = new AtomicLong();
+
+   private final AtomicLong maxSyncTime = new AtomicLong();
+
+   private final AtomicLongArray syncTimeHistogram = new AtomicLongArray(SYNC_TIME_LIMITS.length + 1);
+
+   private final AtomicLong aioWrites = new AtomicLong();
+
+   private final AtomicLong totalAIOQueueDepth = new AtomicLong();
+
+   private final AtomicLong maxAIOQueueDepth = new AtomicLong();
+
+   private final AtomicLong aioSubmits = new AtomicLong();
+
+   private final AtomicLong aioSubmittedWrites = new AtomicLong();
+
+   private final AtomicLong journalLockWaits = new AtomicLong();
+
+   private final AtomicLong journalLockWaitTime = new AtomicLong();
+
+   private final AtomicLong appendLockWaits = new AtomicLong();
+
+   private final AtomicLong appendLockWaitTime = new AtomicLong();
+
+   private final AtomicLong bufferPoolHits = new AtomicLong();
+
+   private final AtomicLong bufferPoolMisses = new AtomicLong();
+
+   private final AtomicLong outstandingBufferBytes = new AtomicLong();
+
+   /**
+    * @return the upper limits of the buckets of {@link #getSyncTimeHistogram()}, in microseconds
+    */
+   public static long[] getSyncTimeLimits()
+   {
+      return SYNC_TIME_LIMITS.clone();
+   }
+
+   /**
+    * @param bytes   the size of the buffer written
+    * @param records the number of records on the buffer
+    */
+   public void flushDone(final FlushReason reason, final long bytes, final int records)
+   {
+      switch (reason)
+      {
+         case SIZE:
+            sizeFlushes.incrementAndGet();
+            break;
+         case TIMEOUT:
+            timeoutFlushes.incrementAndGet();
+            break;
+         default:
+            forcedFlushes.incrementAndGet();
+      }
+
+      flushedBytes.addAndGet(bytes);
+      flushedRecords.addAndGet(records);
+   }
+
+   /**
+    * @param nanos the time between handing a synced buffer to the file and its completion, in nanoseconds
+    */
+   public void syncDone(final long nanos)
+   {
+      long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+
+      syncCount.incrementAndGet();
+      totalSyncTime.addAndGet(micros);
+      updateMax(maxSyncTime, micros);
+
+      int bucket = 0;
+      while (bucket < SYNC_TIME_LIMITS.length && micros > SYNC_TIME_LIMITS[bucket])
+      {
+         bucket++;
+      }
+      syncTimeHistogram.incrementAndGet(bucket);
+   }
+
+   /**
+    * @param queueDepth the number of writes pending on the AIO file, including the one just submitted
+    */
+   public void aioWriteSubmitted(final int queueDepth)
+   {
+      aioWrites.incrementAndGet();
+      totalAIOQueueDepth.addAndGet(queueDepth);
+      updateMax(maxAIOQueueDepth, queueDepth);
+   }
+
+   /**
+    * @param writes the number of writes given to the kernel on a single submit
+    */
+   public void aioWritesSubmitted(final int writes)
+   {
+      aioSubmits.incrementAndGet();
+      aioSubmittedWrites.addAndGet(writes);
+   }
+
+   /**
+    * @param nanos how long a thread was blocked taking the journal lock, in nanoseconds
+    */
+   public void journalLockWaited(final long nanos)
+   {
+      journalLockWaits.incrementAndGet();
+      journalLockWaitTime.addAndGet(TimeUnit.NANOSECONDS.toMicros(nanos));
+   }
+
+   /**
+    * @param nanos how long a thread was blocked taking the append lock, in nanoseconds
+    */
+   public void appendLockWaited(final long nanos)
+   {
+      appendLockWaits.incrementAndGet();
+      appendLockWaitTime.addAndGet(TimeUnit.NANOSECONDS.toMicros(nanos));
+   }
+
+   /**
+    * @param pooled if the buffer was taken from the buffer pool, or had to be allocated
+    * @param bytes  the capacity of the buffer
+    */
+   public void bufferBorrowed(final boolean pooled, final int bytes)
+   {
+      if (pooled)
+      {
+         bufferPoolHits.incrementAndGet();
+      }
+      else
+      {
+         bufferPoolMisses.incrementAndGet();
+      }
+      outstandingBufferBytes.addAndGet(bytes);
+   }
+
+   /**
+    * @param bytes the capacity of the buffer given back
+    */
+   public void bufferReleased(final int bytes)
+   {
+      outstandingBufferBytes.addAndGet(-bytes);
+   }
+
+   /**
+    * Adds the counters of another journal, for journals made of several ones.
+    */
+   public void add(final JournalIOStatistics other)
+   {
+      sizeFlushes.addAndGet(other.sizeFlushes.get());
+      timeoutFlushes.addAndGet(other.timeoutFlushes.get());
+      forcedFlushes.addAndGet(other.forcedFlushes.get());
+      flushedBytes.addAndGet(other.flushedBytes.get());
+      flushedRecords.addAndGet(other.flushedRecords.get());
+      syncCount.addAndGet(other.syncCount.get());
+      totalSyncTime.addAndGet(other.totalSyncTime.get());
+      updateMax(maxSyncTime, other.maxSyncTime.get());
+      for (int i = 0; i < syncTimeHistogram.length(); i++)
+      {
+         syncTimeHistogram.addAndGet(i, other.syncTimeHistogram.get(i));
+      }
+      aioWrites.addAndGet(other.aioWrites.get());
+      totalAIOQueueDepth.addAndGet(other.totalAIOQueueDepth.get());
+      updateMax(maxAIOQueueDepth, other.maxAIOQueueDepth.get());
+      aioSubmits.addAndGet(other.aioSubmits.get());
+      aioSubmittedWrites.addAndGet(other.aioSubmittedWrites.get());
+      journalLockWaits.addAndGet(other.journalLockWaits.get());
+      journalLockWaitTime.addAndGet(other.journalLockWaitTime.get());
+      appendLockWaits.addAndGet(other.appendLockWaits.get());
+      appendLockWaitTime.addAndGet(other.appendLockWaitTime.get());
+      bufferPoolHits.addAndGet(other.bufferPoolHits.get());
+      bufferPoolMisses.addAndGet(other.bufferPoolMisses.get());
+      outstandingBufferBytes.addAndGet(other.outstandingBufferBytes.get());
+   }
+
+   public void reset()
+   {
+      sizeFlushes.set(0);
+      timeoutFlushes.set(0);
+      forcedFlushes.set(0);
+      flushedBytes.set(0);
+      flushedRecords.set(0);
+      syncCount.set(0);
+      totalSyncTime.set(0);
+      maxSyncTime.set(0);
+      for (int i = 0; i < syncTimeHistogram.length(); i++)
+      {
+         syncTimeHistogram.set(i, 0);
+      }
+      aioWrites.set(0);
+      totalAIOQueueDepth.set(0);
+      maxAIOQueueDepth.set(0);
+      aioSubmits.set(0);
+      aioSubmittedWrites.set(0);
+      journalLockWaits.set(0);
+      journalLockWaitTime.set(0);
+      appendLockWaits.set(0);
+      appendLockWaitTime.set(0);
+      bufferPoolHits.set(0);
+      bufferPoolMisses.set(0);
+      // the outstanding bytes are not a counter, they are still outstanding after a reset
+   }
+
+   public long getFlushCount()
+   {
+      return sizeFlushes.get() + timeoutFlushes.get() + forcedFlushes.get();
+   }
+
+   public long getFlushCount(final FlushReason reason)
+   {
+      switch (reason)
+      {
+         case SIZE:
+            return sizeFlushes.get();
+         case TIMEOUT:
+            return timeoutFlushes.get();
+         default:
+            return forcedFlushes.get();
+      }
+   }
+
+   public long getFlushedBytes()
+   {
+      return flushedBytes.get();
+   }
+
+   public long getFlushedRecords()
+   {
+      return flushedRecords.get();
+   }
+
+   public long getSyncCount()
+   {
+      return syncCount.get();
+   }
+
+   /**
+    * @return the time taken by all the syncs, in microseconds
+    */
+   public long getTotalSyncTime()
+   {
+      return totalSyncTime.get();
+   }
+
+   /**
+    * @return the time taken by the slowest sync, in microseconds
+    */
+   public long getMaxSyncTime()
+   {
+      return maxSyncTime.get();
+   }
+
+   /**
+    * @return the number of syncs per bucket, bounded by {@link #getSyncTimeLimits()}
+    */
+   public long[] getSyncTimeHistogram()
+   {
+      long[] histogram = new long[syncTimeHistogram.length()];
+      for (int i = 0; i < histogram.length; i++)
+      {
+         histogram[i] = syncTimeHistogram.get(i);
+      }
+      return histogram;
+   }
+
+   public long getAIOWriteCount()
+   {
+      return aioWrites.get();
+   }
+
+   public double getAverageAIOQueueDepth()
+   {
+      long writes = aioWrites.get();
+      return writes == 0 ? 0 : (double) totalAIOQueueDepth.get() / writes;
+   }
+
+   public long getMaxAIOQueueDepth()
+   {
+      return maxAIOQueueDepth.get();
+   }
+
+   public long getAIOSubmitCount()
+   {
+      return aioSubmits.get();
+   }
+
+   /**
+    * @return the average number of writes given to the kernel on each submit
+    */
+   public double getAverageAIOSubmitBatchSize()
+   {
+      long submits = aioSubmits.get();
+      return submits == 0 ? 0 : (double) aioSubmittedWrites.get() / submits;
+   }
+
+   public long getJournalLockWaitCount()
+   {
+      return journalLockWaits.get();
+   }
+
+   /**
+    * @return the time threads were blocked taking the journal lock, in microseconds
+    */
+   public long getJournalLockWaitTime()
+   {
+      return journalLockWaitTime.get();
+   }
+
+   public long getAppendLockWaitCount()
+   {
+      return appendLockWaits.get();
+   }
+
+   /**
+    * @return the time threads were blocked taking the append lock, in microseconds
+    */
+   public long getAppendLockWaitTime()
+   {
+      return appendLockWaitTime.get();
+   }
+
+   public long getBufferPoolHits()
+   {
+      return bufferPoolHits.get();
+   }
+
+   public long getBufferPoolMisses()
+   {
+      return bufferPoolMisses.get();
+   }
+
+   /**
+    * @return the capacity of the buffers taken from the buffer pool and not given back yet
+    */
+   public long getOutstandingBufferBytes()
+   {
+      return outstandingBufferBytes.get();
+   }
+
+   @Override
+   public String toString()
+   {
+      return "JournalIOStatistics [flushes=" + getFlushCount() +
+         ", sizeFlushes=" + sizeFlushes +
+         ", timeoutFlushes=" + timeoutFlushes +
+         ", forcedFlushes=" + forcedFlushes +
+         ", flushedBytes=" + flushedBytes +
+         ", flushedRecords=" + flushedRecords +
+         ", syncCount=" + syncCount +
+         ", totalSyncTime=" + totalSyncTime +
+         ", maxSyncTime=" + maxSyncTime +
+         ", aioWrites=" + aioWrites +
+         ", maxAIOQueueDepth=" + maxAIOQueueDepth +
+         ", aioSubmits=" + aioSubmits +
+         ", aioSubmittedWrites=" + aioSubmittedWrites +
+         ", journalLockWaits=" + journalLockWaits +
+         ", appendLockWaits=" + appendLockWaits +
+         ", bufferPoolHits=" + bufferPoolHits +
+         ", bufferPoolMisses=" + bufferPoolMisses +
+         ", outstandingBufferBytes=" + outstandingBufferBytes +
+         "]";
+   }
+
+   private static void updateMax(final AtomicLong max, final long value)
+   {
+      long current = max.get();
+      while (value > current && !max.compareAndSet(current, value))
+      {
+         current = max.get();
+      }
+   }
+}
@@ -25,6 +25,16 @@ package org.apache.activemq.core.journal;
 public class RecordInfo
 {
    public RecordInfo(final long id, final byte userRecordType, final byte[] data, final boolean isUpdate, final short compactCount)
+   {
+      this(id, userRecordType, data, isUpdate, compactCount, false);
+   }
+
+   public RecordInfo(final long id,
+                     final byte userRecordType,
+                     final byte[] data,
+                     final boolean isUpdate,
+                     final short compactCount,
+                     final boolean compressed)
    {
       this.id = id;
 
@@ -35,6 +45,8 @@ public class RecordInfo
       this.isUpdate = isUpdate;
 
       this.compactCount = compactCount;
+
+      this.compressed = compressed;
    }
 
    /**
@@ -52,6 +64,14 @@ public class RecordInfo
 
    public boolean isUpdate;
 
+   /**
+    * If data is the compressed body of the record, as it is on the journal file.
+    * Readers outside of the journal always get the uncompressed body.
+    *
+    * @see org.apache.activemq.core.journal.impl.JournalRecordCompressor
+    */
+   public final boolean compressed;
+
    public byte getUserRecordType()
    {
       return userRecordType;
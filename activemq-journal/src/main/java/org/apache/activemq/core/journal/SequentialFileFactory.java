@@ -89,4 +89,9 @@ public interface SequentialFileFactory
    void createDirs() throws Exception;
 
    void flush();
+
+   /**
+    * Returns the counters about the writes and syncs done on the files of this factory.
+    */
+   JournalIOStatistics getIOStatistics();
 }
@@ -26,6 +26,7 @@ import org.apache.activemq.core.asyncio.AsynchronousFile;
 import org.apache.activemq.core.asyncio.BufferCallback;
 import org.apache.activemq.core.asyncio.IOExceptionListener;
 import org.apache.activemq.core.asyncio.impl.AsynchronousFileImpl;
+import org.apache.activemq.core.asyncio.impl.URingAsynchronousFileImpl;
 import org.apache.activemq.core.journal.IOAsyncTask;
 import org.apache.activemq.core.journal.SequentialFile;
 import org.apache.activemq.core.journal.SequentialFileFactory;
@@ -186,7 +187,20 @@ public class AIOSequentialFile extends AbstractSequentialFile implements IOExcep
    {
       opened = true;
 
-      aioFile = new AsynchronousFileImpl(useExecutor ? writerExecutor : null, pollerExecutor, this);
+      AsynchronousFileImpl asyncFile;
+
+      if (factory instanceof AIOSequentialFileFactory && ((AIOSequentialFileFactory) factory).isUseURing())
+      {
+         asyncFile = new URingAsynchronousFileImpl(useExecutor ? writerExecutor : null, pollerExecutor, this);
+      }
+      else
+      {
+         asyncFile = new AsynchronousFileImpl(useExecutor ? writerExecutor : null, pollerExecutor, this);
+      }
+
+      asyncFile.setIOStatistics(factory.getIOStatistics());
+
+      aioFile = asyncFile;
 
       try
       {
@@ -294,6 +308,8 @@ public class AIOSequentialFile extends AbstractSequentialFile implements IOExcep
       final long positionToWrite = position.getAndAdd(bytesToWrite);
 
       aioFile.write(positionToWrite, bytesToWrite, bytes, callback);
+
+      factory.getIOStatistics().aioWriteSubmitted(aioFile.getPendingIO());
    }
 
    public void writeInternal(final ByteBuffer bytes) throws ActiveMQException
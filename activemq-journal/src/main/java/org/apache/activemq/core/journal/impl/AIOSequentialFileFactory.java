@@ -19,7 +19,6 @@ package org.apache.activemq.core.journal.impl;
 import java.nio.ByteBuffer;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -27,6 +26,7 @@ import java.util.concurrent.TimeUnit;
 import org.apache.activemq.api.core.ActiveMQInterruptedException;
 import org.apache.activemq.core.asyncio.BufferCallback;
 import org.apache.activemq.core.asyncio.impl.AsynchronousFileImpl;
+import org.apache.activemq.core.asyncio.impl.URingAsynchronousFileImpl;
 import org.apache.activemq.core.journal.IOCriticalErrorListener;
 import org.apache.activemq.core.journal.SequentialFile;
 import org.apache.activemq.core.libaio.Native;
@@ -40,19 +40,22 @@ import org.apache.activemq.utils.ActiveMQThreadFactory;
  */
 public final class AIOSequentialFileFactory extends AbstractSequentialFileFactory
 {
-   private static final boolean trace = ActiveMQJournalLogger.LOGGER.isTraceEnabled();
+   private final DirectBufferPool bufferPool;
 
-   private final ReuseBuffersController buffersControl = new ReuseBuffersController();
+   /**
+    * Called by the native layer as soon as a write is done, so the buffer goes back to the pool
+    */
+   private final BufferCallback bufferCallback = new BufferCallback()
+   {
+      public void bufferDone(final ByteBuffer buffer)
+      {
+         bufferPool.release(buffer);
+      }
+   };
 
    private ExecutorService pollerExecutor;
 
-   // This method exists just to make debug easier.
-   // I could replace log.trace by log.info temporarily while I was debugging
-   // Journal
-   private static void trace(final String message)
-   {
-      ActiveMQJournalLogger.LOGGER.trace(message);
-   }
+   private volatile boolean useURing;
 
    public AIOSequentialFileFactory(final String journalDir)
    {
@@ -87,6 +90,25 @@ public final class AIOSequentialFileFactory extends AbstractSequentialFileFactor
                                    final IOCriticalErrorListener listener)
    {
       super(journalDir, true, bufferSize, bufferTimeout, logRates, listener);
+
+      bufferPool = new DirectBufferPool(bufferSize, new DirectBufferPool.Allocator()
+      {
+         public ByteBuffer allocate(final int size)
+         {
+            return AsynchronousFileImpl.newBuffer(size);
+         }
+
+         public void free(final ByteBuffer buffer)
+         {
+            Native.destroyBuffer(buffer);
+         }
+
+         public void clear(final ByteBuffer buffer)
+         {
+            // the whole aligned block is written, so what is after the data has to be zeroes
+            AsynchronousFileImpl.clearBuffer(buffer);
+         }
+      }, ioStatistics);
    }
 
    public SequentialFile createSequentialFile(final String fileName, final int maxIO)
@@ -97,7 +119,7 @@ public final class AIOSequentialFileFactory extends AbstractSequentialFileFactor
                                    journalDir,
                                    fileName,
                                    maxIO,
-                                   buffersControl.callback,
+                                   bufferCallback,
                                    writeExecutor,
                                    pollerExecutor);
    }
@@ -112,6 +134,35 @@ public final class AIOSequentialFileFactory extends AbstractSequentialFileFactor
       return AsynchronousFileImpl.isLoaded();
    }
 
+   /**
+    * Uses io_uring instead of libaio for the files created from now on, when io_uring is available.
+    * Otherwise this logs a warning and keeps using libaio.
+    */
+   public void setUseURing(final boolean useURing)
+   {
+      if (useURing && !URingAsynchronousFileImpl.isSupported())
+      {
+         if (URingAsynchronousFileImpl.isBuiltWithURing())
+         {
+            ActiveMQJournalLogger.LOGGER.uringNotAvailable();
+         }
+         else
+         {
+            ActiveMQJournalLogger.LOGGER.uringNotBuilt();
+         }
+         this.useURing = false;
+      }
+      else
+      {
+         this.useURing = useURing;
+      }
+   }
+
+   public boolean isUseURing()
+   {
+      return useURing;
+   }
+
    public ByteBuffer allocateDirectBuffer(final int size)
    {
 
@@ -141,7 +192,7 @@ public final class AIOSequentialFileFactory extends AbstractSequentialFileFactor
          size = (size / 512 + 1) * 512;
       }
 
-      return buffersControl.newBuffer(size);
+      return bufferPool.borrow(size);
    }
 
    public void clearBuffer(final ByteBuffer directByteBuffer)
@@ -175,9 +226,9 @@ public final class AIOSequentialFileFactory extends AbstractSequentialFileFactor
     * @see org.apache.activemq.core.journal.SequentialFileFactory#releaseBuffer(java.nio.ByteBuffer)
     */
    @Override
-   public synchronized void releaseBuffer(final ByteBuffer buffer)
+   public void releaseBuffer(final ByteBuffer buffer)
    {
-      Native.destroyBuffer(buffer);
+      bufferPool.release(buffer);
    }
 
    @Override
@@ -185,6 +236,8 @@ public final class AIOSequentialFileFactory extends AbstractSequentialFileFactor
    {
       super.start();
 
+      bufferPool.start();
+
       pollerExecutor = Executors.newCachedThreadPool(new ActiveMQThreadFactory("ActiveMQ-AIO-poller-pool" + System.identityHashCode(this),
                                                                               true,
                                                                               AIOSequentialFileFactory.getThisClassLoader()));
@@ -194,7 +247,7 @@ public final class AIOSequentialFileFactory extends AbstractSequentialFileFactor
    @Override
    public void stop()
    {
-      buffersControl.stop();
+      bufferPool.stop();
 
       if (pollerExecutor != null)
       {
@@ -222,125 +275,6 @@ public final class AIOSequentialFileFactory extends AbstractSequentialFileFactor
       stop();
    }
 
-   /**
-    * Class that will control buffer-reuse
-    */
-   private class ReuseBuffersController
-   {
-      private volatile long bufferReuseLastTime = System.currentTimeMillis();
-
-      /**
-       * This queue is fed by {@link org.apache.activemq.core.journal.impl.AIOSequentialFileFactory.ReuseBuffersController.LocalBufferCallback}
-       * which is called directly by NIO or NIO. On the case of the AIO this is almost called by the native layer as
-       * soon as the buffer is not being used any more and ready to be reused or GCed
-       */
-      private final ConcurrentLinkedQueue<ByteBuffer> reuseBuffersQueue = new ConcurrentLinkedQueue<ByteBuffer>();
-
-      private boolean stopped = false;
-
-      final BufferCallback callback = new LocalBufferCallback();
-
-      public ByteBuffer newBuffer(final int size)
-      {
-         // if a new buffer wasn't requested in 10 seconds, we clear the queue
-         // This is being done this way as we don't need another Timeout Thread
-         // just to cleanup this
-         if (bufferSize > 0 && System.currentTimeMillis() - bufferReuseLastTime > 10000)
-         {
-            if (AIOSequentialFileFactory.trace)
-            {
-               AIOSequentialFileFactory.trace("Clearing reuse buffers queue with " + reuseBuffersQueue.size() +
-                                                 " elements");
-            }
-
-            bufferReuseLastTime = System.currentTimeMillis();
-
-            clearPoll();
-         }
-
-         // if a buffer is bigger than the configured-bufferSize, we just create a new
-         // buffer.
-         if (size > bufferSize)
-         {
-            return AsynchronousFileImpl.newBuffer(size);
-         }
-         else
-         {
-            // We need to allocate buffers following the rules of the storage
-            // being used (AIO/NIO)
-            int alignedSize = calculateBlockSize(size);
-
-            // Try getting a buffer from the queue...
-            ByteBuffer buffer = reuseBuffersQueue.poll();
-
-            if (buffer == null)
-            {
-               // if empty create a new one.
-               buffer = AsynchronousFileImpl.newBuffer(bufferSize);
-
-               buffer.limit(alignedSize);
-            }
-            else
-            {
-               clearBuffer(buffer);
-
-               // set the limit of the buffer to the bufferSize being required
-               buffer.limit(alignedSize);
-            }
-
-            buffer.rewind();
-
-            return buffer;
-         }
-      }
-
-      public synchronized void stop()
-      {
-         stopped = true;
-         clearPoll();
-      }
-
-      public synchronized void clearPoll()
-      {
-         ByteBuffer reusedBuffer;
-
-         while ((reusedBuffer = reuseBuffersQueue.poll()) != null)
-         {
-            releaseBuffer(reusedBuffer);
-         }
-      }
-
-      private class LocalBufferCallback implements BufferCallback
-      {
-         public void bufferDone(final ByteBuffer buffer)
-         {
-            synchronized (ReuseBuffersController.this)
-            {
-
-               if (stopped)
-               {
-                  releaseBuffer(buffer);
-               }
-               else
-               {
-                  bufferReuseLastTime = System.currentTimeMillis();
-
-                  // If a buffer has any other than the configured bufferSize, the buffer
-                  // will be just sent to GC
-                  if (buffer.capacity() == bufferSize)
-                  {
-                     reuseBuffersQueue.offer(buffer);
-                  }
-                  else
-                  {
-                     releaseBuffer(buffer);
-                  }
-               }
-            }
-         }
-      }
-   }
-
    private static ClassLoader getThisClassLoader()
    {
       return AccessController.doPrivileged(new PrivilegedAction<ClassLoader>()
@@ -356,7 +290,7 @@ public final class AIOSequentialFileFactory extends AbstractSequentialFileFactor
    @Override
    public String toString()
    {
-      return AIOSequentialFileFactory.class.getSimpleName() + "(buffersControl.stopped=" + buffersControl.stopped +
+      return AIOSequentialFileFactory.class.getSimpleName() + "(bufferPool.stopped=" + bufferPool.isStopped() +
          "):" + super.toString();
    }
 }
@@ -30,6 +30,7 @@ import org.apache.activemq.core.journal.impl.dataformat.ByteArrayEncoding;
 import org.apache.activemq.core.journal.impl.dataformat.JournalAddRecord;
 import org.apache.activemq.core.journal.impl.dataformat.JournalInternalRecord;
 import org.apache.activemq.utils.ConcurrentHashSet;
+import org.apache.activemq.utils.ConcurrentLongHashMap;
 
 /**
  *
@@ -61,7 +62,11 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
 
    private ActiveMQBuffer writingChannel;
 
-   private final Set<Long> recordsSnapshot = new ConcurrentHashSet<Long>();
+   // The records the journal had when the task started. The journal doesn't use this map any more
+   private final ConcurrentLongHashMap<?> recordsSnapshot;
+
+   // Records the journal didn't have when the task started, but that may be referenced while it runs
+   private final Set<Long> addedToSnapshot = new ConcurrentHashSet<Long>();
 
    protected final List<JournalFile> newDataFiles = new ArrayList<JournalFile>();
 
@@ -72,7 +77,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
    protected AbstractJournalUpdateTask(final SequentialFileFactory fileFactory,
                                        final JournalImpl journal,
                                        final JournalFilesRepository filesRepository,
-                                       final Set<Long> recordsSnapshot,
+                                       final ConcurrentLongHashMap<?> recordsSnapshot,
                                        final long nextOrderingID)
    {
       super();
@@ -80,7 +85,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
       this.filesRepository = filesRepository;
       this.fileFactory = fileFactory;
       this.nextOrderingID = nextOrderingID;
-      this.recordsSnapshot.addAll(recordsSnapshot);
+      this.recordsSnapshot = recordsSnapshot;
    }
 
    // Public --------------------------------------------------------
@@ -196,7 +201,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
 
    public boolean lookupRecord(final long id)
    {
-      return recordsSnapshot.contains(id);
+      return recordsSnapshot.containsKey(id) || addedToSnapshot.contains(id);
    }
 
    // Package protected ---------------------------------------------
@@ -227,7 +232,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
 
    protected void addToRecordsSnaptshot(final long id)
    {
-      recordsSnapshot.add(id);
+      addedToSnapshot.add(id);
    }
 
    /**
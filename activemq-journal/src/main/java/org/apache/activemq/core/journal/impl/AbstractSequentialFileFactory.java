@@ -30,6 +30,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.apache.activemq.api.core.ActiveMQInterruptedException;
 import org.apache.activemq.core.journal.IOCriticalErrorListener;
+import org.apache.activemq.core.journal.JournalIOStatistics;
 import org.apache.activemq.core.journal.SequentialFile;
 import org.apache.activemq.core.journal.SequentialFileFactory;
 import org.apache.activemq.journal.ActiveMQJournalLogger;
@@ -59,6 +60,8 @@ abstract class AbstractSequentialFileFactory implements SequentialFileFactory
 
    private final IOCriticalErrorListener critialErrorListener;
 
+   protected final JournalIOStatistics ioStatistics = new JournalIOStatistics();
+
    /**
     * Asynchronous writes need to be done at another executor.
     * This needs to be done at NIO, or else we would have the callers thread blocking for the return.
@@ -77,7 +80,7 @@ abstract class AbstractSequentialFileFactory implements SequentialFileFactory
 
       if (buffered)
       {
-         timedBuffer = new TimedBuffer(bufferSize, bufferTimeout, logRates);
+         timedBuffer = new TimedBuffer(bufferSize, bufferTimeout, logRates, ioStatistics);
       }
       else
       {
@@ -152,6 +155,22 @@ abstract class AbstractSequentialFileFactory implements SequentialFileFactory
       }
    }
 
+   /**
+    * Lets the TimedBuffer tune its timeout from the sync latency, up to the configured buffer timeout.
+    */
+   public void setAdaptiveBufferTimeout(final boolean adaptive)
+   {
+      if (timedBuffer != null)
+      {
+         timedBuffer.setAdaptiveTimeout(adaptive);
+      }
+   }
+
+   public JournalIOStatistics getIOStatistics()
+   {
+      return ioStatistics;
+   }
+
    public void flush()
    {
       if (timedBuffer != null)
@@ -24,6 +24,9 @@ import org.apache.activemq.core.journal.IOCriticalErrorListener;
  * It may be used under special cases, but it shouldn't be needed under regular circumstances as the
  * system should detect the need for compacting. The regular use is to configure min-compact
  * parameters.
+ * <p>
+ * Compressed records are kept compressed. When a minimum size is given, the records of at least that
+ * size written uncompressed are compressed as well (see {@link JournalRecordCompressor}).
  * @author <a href="mailto:clebert.suconic@jboss.org">Clebert Suconic</a>
  */
 public final class CompactJournal // NO_UCD
@@ -31,15 +34,17 @@ public final class CompactJournal // NO_UCD
 
    public static void main(final String[] arg)
    {
-      if (arg.length != 4)
+      if (arg.length != 4 && arg.length != 5)
       {
-         System.err.println("Use: java -cp activemq-core.jar org.apache.activemq.core.journal.impl.CompactJournal <JournalDirectory> <JournalPrefix> <FileExtension> <FileSize>");
+         System.err.println("Use: java -cp activemq-core.jar org.apache.activemq.core.journal.impl.CompactJournal <JournalDirectory> <JournalPrefix> <FileExtension> <FileSize> [<CompressMinSize>]");
          return;
       }
 
       try
       {
-         CompactJournal.compactJournal(arg[0], arg[1], arg[2], 2, Integer.parseInt(arg[3]), null);
+         int compressMinSize = arg.length == 5 ? Integer.parseInt(arg[4]) : -1;
+
+         CompactJournal.compactJournal(arg[0], arg[1], arg[2], 2, Integer.parseInt(arg[3]), compressMinSize, null);
       }
       catch (Exception e)
       {
@@ -54,11 +59,33 @@ public final class CompactJournal // NO_UCD
                                      final int minFiles,
                                      final int fileSize,
                                      final IOCriticalErrorListener listener) throws Exception
+   {
+      compactJournal(directory, journalPrefix, journalSuffix, minFiles, fileSize, -1, listener);
+   }
+
+   /**
+    * @param compressMinSize the minimum size of the records compressed while compacting, -1 to leave them as they are
+    */
+   static void compactJournal(final String directory,
+                                     final String journalPrefix,
+                                     final String journalSuffix,
+                                     final int minFiles,
+                                     final int fileSize,
+                                     final int compressMinSize,
+                                     final IOCriticalErrorListener listener) throws Exception
    {
       NIOSequentialFileFactory nio = new NIOSequentialFileFactory(directory, listener);
 
       JournalImpl journal = new JournalImpl(fileSize, minFiles, 0, 0, nio, journalPrefix, journalSuffix, 1);
 
+      if (compressMinSize >= 0)
+      {
+         journal.setRecordCompressor(new JournalRecordCompressor(compressMinSize));
+      }
+
+      // the load keeps no record data, so reading ahead one file per processor is what bounds its memory
+      journal.setLoadThreads(Runtime.getRuntime().availableProcessors());
+
       journal.start();
 
       journal.loadInternalOnly();
@@ -0,0 +1,385 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.core.journal.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.activemq.core.journal.JournalIOStatistics;
+import org.apache.activemq.journal.ActiveMQJournalLogger;
+
+/**
+ * A pool of direct buffers for the writes of the journal.
+ * <p>
+ * The buffers are kept on size classes, powers of two from 512 bytes (so they are aligned for AIO) up
+ * to the class covering the largest pooled size, or 64KiB if that is bigger. A buffer is taken from a small cache of the calling
+ * thread first, then from the queue shared by all the threads, and it is only allocated when both are
+ * empty. Buffers bigger than the largest class are allocated and freed on every use.
+ * <p>
+ * When the journal logger is on debug, the pool remembers where each buffer was taken and logs the
+ * buffers never given back when it is stopped.
+ */
+public final class DirectBufferPool
+{
+   /**
+    * How the buffers of the pool are created and destroyed.
+    */
+   public interface Allocator
+   {
+      ByteBuffer allocate(int size);
+
+      void free(ByteBuffer buffer);
+
+      /**
+       * Clears a buffer taken again from the pool, up to its limit.
+       */
+      void clear(ByteBuffer buffer);
+   }
+
+   private static final int SMALLEST_CLASS = 512;
+
+   // the thread caches only keep the small classes, the big ones would hold too much memory per thread
+   private static final int LARGEST_CACHED_CLASS = 64 * 1024;
+
+   private static final int THREAD_CACHE_SLOTS = 4;
+
+   private static final int MAX_SHARED_BUFFERS = 32;
+
+   // if no buffer was taken for this long, the shared queues are emptied
+   private static final long IDLE_TIMEOUT = 10000;
+
+   private final Allocator allocator;
+
+   private final JournalIOStatistics statistics;
+
+   private final int[] classSizes;
+
+   private final int cachedClasses;
+
+   private final ConcurrentLinkedQueue<ByteBuffer>[] sharedBuffers;
+
+   private final AtomicInteger[] sharedCounts;
+
+   private final ConcurrentLinkedQueue<AtomicReferenceArray<ByteBuffer>> threadCaches = new ConcurrentLinkedQueue<AtomicReferenceArray<ByteBuffer>>();
+
+   private final ThreadLocal<AtomicReferenceArray<ByteBuffer>> threadCache = new ThreadLocal<AtomicReferenceArray<ByteBuffer>>()
+   {
+      @Override
+      protected AtomicReferenceArray<ByteBuffer> initialValue()
+      {
+         AtomicReferenceArray<ByteBuffer> cache = new AtomicReferenceArray<ByteBuffer>(cachedClasses * THREAD_CACHE_SLOTS);
+         threadCaches.add(cache);
+         return cache;
+      }
+   };
+
+   private final Map<ByteBuffer, Exception> allocationSites;
+
+   private volatile long lastBorrowTime = System.currentTimeMillis();
+
+   private volatile boolean stopped;
+
+   @SuppressWarnings("unchecked")
+   public DirectBufferPool(final int largestPooledSize, final Allocator allocator, final JournalIOStatistics statistics)
+   {
+      this.allocator = allocator;
+      this.statistics = statistics;
+
+      int classes = 1;
+      while ((SMALLEST_CLASS << (classes - 1)) < Math.max(largestPooledSize, LARGEST_CACHED_CLASS))
+      {
+         classes++;
+      }
+
+      classSizes = new int[classes];
+      sharedBuffers = new ConcurrentLinkedQueue[classes];
+      sharedCounts = new AtomicInteger[classes];
+
+      int cached = 0;
+
+      for (int i = 0; i < classes; i++)
+      {
+         classSizes[i] = SMALLEST_CLASS << i;
+         sharedBuffers[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+         sharedCounts[i] = new AtomicInteger(0);
+
+         if (classSizes[i] <= LARGEST_CACHED_CLASS)
+         {
+            cached++;
+         }
+      }
+
+      cachedClasses = cached;
+
+      allocationSites = ActiveMQJournalLogger.LOGGER.isDebugEnabled() ? new IdentityHashMap<ByteBuffer, Exception>() : null;
+   }
+
+   /**
+    * @return the size of the largest class, bigger buffers are not pooled
+    */
+   public int getLargestClassSize()
+   {
+      return classSizes[classSizes.length - 1];
+   }
+
+   /**
+    * @return if buffers with this capacity are kept by the pool
+    */
+   public boolean isPooledCapacity(final int capacity)
+   {
+      int sizeClass = classOf(capacity);
+      return sizeClass >= 0 && classSizes[sizeClass] == capacity;
+   }
+
+   /**
+    * Takes a direct buffer with at least {@code size} bytes, with its position at 0 and its limit at
+    * {@code size}. It has to be given back through {@link #release(ByteBuffer)}.
+    */
+   public ByteBuffer borrow(final int size)
+   {
+      int sizeClass = classOf(size);
+
+      ByteBuffer buffer = null;
+
+      if (sizeClass >= 0)
+      {
+         trimIfIdle();
+
+         buffer = poll(sizeClass);
+      }
+
+      boolean pooled = buffer != null;
+
+      if (pooled)
+      {
+         buffer.clear();
+         allocator.clear(buffer);
+      }
+      else
+      {
+         buffer = allocator.allocate(sizeClass >= 0 ? classSizes[sizeClass] : size);
+      }
+
+      buffer.position(0);
+      buffer.limit(size);
+
+      statistics.bufferBorrowed(pooled, buffer.capacity());
+
+      if (allocationSites != null)
+      {
+         synchronized (allocationSites)
+         {
+            allocationSites.put(buffer, new Exception("trace"));
+         }
+      }
+
+      return buffer;
+   }
+
+   /**
+    * Gives back a buffer taken from {@link #borrow(int)}. Buffers that cannot be kept are freed.
+    */
+   public void release(final ByteBuffer buffer)
+   {
+      statistics.bufferReleased(buffer.capacity());
+
+      if (allocationSites != null)
+      {
+         synchronized (allocationSites)
+         {
+            allocationSites.remove(buffer);
+         }
+      }
+
+      if (stopped || !isPooledCapacity(buffer.capacity()))
+      {
+         allocator.free(buffer);
+         return;
+      }
+
+      if (!offer(classOf(buffer.capacity()), buffer))
+      {
+         allocator.free(buffer);
+      }
+      else if (stopped)
+      {
+         // stop() may have drained the pool before the buffer was added
+         clear();
+      }
+   }
+
+   public void start()
+   {
+      stopped = false;
+   }
+
+   public boolean isStopped()
+   {
+      return stopped;
+   }
+
+   /**
+    * Frees all the buffers kept by the pool, and the ones given back later on until {@link #start()}.
+    */
+   public void stop()
+   {
+      stopped = true;
+
+      clear();
+
+      if (allocationSites != null)
+      {
+         List<Map.Entry<ByteBuffer, Exception>> leaks;
+
+         synchronized (allocationSites)
+         {
+            leaks = new ArrayList<Map.Entry<ByteBuffer, Exception>>(allocationSites.entrySet());
+            allocationSites.clear();
+         }
+
+         for (Map.Entry<ByteBuffer, Exception> leak : leaks)
+         {
+            ActiveMQJournalLogger.LOGGER.bufferNotReleased(leak.getKey().capacity(), leak.getValue());
+         }
+      }
+   }
+
+   /**
+    * Frees all the buffers kept by the pool.
+    */
+   public void clear()
+   {
+      for (AtomicReferenceArray<ByteBuffer> cache : threadCaches)
+      {
+         for (int i = 0; i < cache.length(); i++)
+         {
+            ByteBuffer buffer = cache.getAndSet(i, null);
+            if (buffer != null)
+            {
+               allocator.free(buffer);
+            }
+         }
+      }
+
+      for (int i = 0; i < sharedBuffers.length; i++)
+      {
+         clearShared(i);
+      }
+   }
+
+   private ByteBuffer poll(final int sizeClass)
+   {
+      if (sizeClass < cachedClasses)
+      {
+         AtomicReferenceArray<ByteBuffer> cache = threadCache.get();
+
+         for (int i = sizeClass * THREAD_CACHE_SLOTS; i < (sizeClass + 1) * THREAD_CACHE_SLOTS; i++)
+         {
+            ByteBuffer buffer = cache.get(i);
+
+            if (buffer != null && cache.compareAndSet(i, buffer, null))
+            {
+               return buffer;
+            }
+         }
+      }
+
+      ByteBuffer buffer = sharedBuffers[sizeClass].poll();
+
+      if (buffer != null)
+      {
+         sharedCounts[sizeClass].decrementAndGet();
+      }
+
+      return buffer;
+   }
+
+   private boolean offer(final int sizeClass, final ByteBuffer buffer)
+   {
+      if (sizeClass < cachedClasses)
+      {
+         AtomicReferenceArray<ByteBuffer> cache = threadCache.get();
+
+         for (int i = sizeClass * THREAD_CACHE_SLOTS; i < (sizeClass + 1) * THREAD_CACHE_SLOTS; i++)
+         {
+            if (cache.get(i) == null && cache.compareAndSet(i, null, buffer))
+            {
+               return true;
+            }
+         }
+      }
+
+      if (sharedCounts[sizeClass].incrementAndGet() > MAX_SHARED_BUFFERS)
+      {
+         sharedCounts[sizeClass].decrementAndGet();
+         return false;
+      }
+
+      sharedBuffers[sizeClass].offer(buffer);
+
+      return true;
+   }
+
+   // This is done on the borrow so we don't need another thread just to clean up the pool
+   private void trimIfIdle()
+   {
+      long now = System.currentTimeMillis();
+
+      if (now - lastBorrowTime > IDLE_TIMEOUT)
+      {
+         for (int i = 0; i < sharedBuffers.length; i++)
+         {
+            clearShared(i);
+         }
+      }
+
+      lastBorrowTime = now;
+   }
+
+   private void clearShared(final int sizeClass)
+   {
+      ByteBuffer buffer;
+
+      while ((buffer = sharedBuffers[sizeClass].poll()) != null)
+      {
+         sharedCounts[sizeClass].decrementAndGet();
+         allocator.free(buffer);
+      }
+   }
+
+   /**
+    * @return the smallest class holding {@code size} bytes, or -1 if it is bigger than all the classes
+    */
+   private int classOf(final int size)
+   {
+      for (int i = 0; i < classSizes.length; i++)
+      {
+         if (size <= classSizes[i])
+         {
+            return i;
+         }
+      }
+
+      return -1;
+   }
+}
@@ -28,6 +28,8 @@ import org.apache.activemq.api.core.ActiveMQUnsupportedPacketException;
 import org.apache.activemq.core.journal.EncodingSupport;
 import org.apache.activemq.core.journal.IOCompletion;
 import org.apache.activemq.core.journal.Journal;
+import org.apache.activemq.core.journal.JournalCompactStatistics;
+import org.apache.activemq.core.journal.JournalIOStatistics;
 import org.apache.activemq.core.journal.JournalLoadInformation;
 import org.apache.activemq.core.journal.LoaderCallback;
 import org.apache.activemq.core.journal.PreparedTransactionInfo;
@@ -327,6 +329,19 @@ public final class FileWrapperJournal extends JournalBase
       throw new UnsupportedOperationException();
    }
 
+   @Override
+   public JournalCompactStatistics getCompactStatistics()
+   {
+      // this journal is never compacted
+      return new JournalCompactStatistics();
+   }
+
+   @Override
+   public JournalIOStatistics getIOStatistics()
+   {
+      return journal.getIOStatistics();
+   }
+
    @Override
    public void replicationSyncPreserveOldFiles()
    {
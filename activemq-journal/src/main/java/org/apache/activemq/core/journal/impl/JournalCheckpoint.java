@@ -0,0 +1,1179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.core.journal.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.activemq.core.journal.RecordInfo;
+import org.apache.activemq.core.journal.SequentialFile;
+import org.apache.activemq.core.journal.SequentialFileFactory;
+import org.apache.activemq.utils.ConcurrentLongHashMap;
+
+/**
+ * The state a load of the journal has after reading its data files up to a given file: the
+ * reference counts of those files and where the live records are on them.
+ * <p/>
+ * With a checkpoint, a load restores the counts of the covered files and reads only the live records
+ * from them, instead of replaying every record (and every transaction) the covered files hold. Only the
+ * files after the checkpoint are replayed.
+ * <p/>
+ * A checkpoint stays valid as long as nothing is written to the covered files again, which holds as
+ * data files are only appended to while they are the current file, and file IDs only grow. Compacting
+ * reuses files with older IDs, so it deletes the checkpoint.
+ * <p/>
+ * Checkpoints are built by {@link Builder}, replaying the files written since the previous checkpoint
+ * on top of it.
+ */
+final class JournalCheckpoint
+{
+   static final String EXTENSION = "checkpoint";
+
+   private static final int MAGIC = 0x4A434B50;
+
+   private static final int VERSION = 1;
+
+   // Live records closer than this on a file are read together
+   private static final int MAX_READ_GAP = 64 * 1024;
+
+   private static final int MAX_READ_SIZE = 1024 * 1024;
+
+   private final long lastFileID;
+
+   private final long maxID;
+
+   private final long nextSequence;
+
+   private final Map<Long, CoveredFile> files;
+
+   private final ConcurrentLongHashMap<LiveRecord> records;
+
+   private JournalCheckpoint(final long lastFileID,
+                             final long maxID,
+                             final long nextSequence,
+                             final Map<Long, CoveredFile> files,
+                             final ConcurrentLongHashMap<LiveRecord> records)
+   {
+      this.lastFileID = lastFileID;
+      this.maxID = maxID;
+      this.nextSequence = nextSequence;
+      this.files = files;
+      this.records = records;
+   }
+
+   /**
+    * @return the ID of the last file covered, files with a greater ID are replayed on load
+    */
+   long getLastFileID()
+   {
+      return lastFileID;
+   }
+
+   long getMaxID()
+   {
+      return maxID;
+   }
+
+   int getNumberOfFiles()
+   {
+      return files.size();
+   }
+
+   int getNumberOfRecords()
+   {
+      return records.size();
+   }
+
+   /**
+    * A file with an ID up to {@link #getLastFileID()} which is not covered had no data when the
+    * checkpoint was taken.
+    */
+   boolean covers(final JournalFile file)
+   {
+      return files.containsKey(file.getFileID());
+   }
+
+   int getLastDataPosition(final JournalFile file)
+   {
+      return files.get(file.getFileID()).lastDataPosition;
+   }
+
+   /**
+    * Reads the live records from the covered files.
+    * <p/>
+    * Nothing is changed on the journal, so the caller can still do a full load when this fails.
+    *
+    * @return the live records, in the order a full load would give them
+    * @throws IOException if a record is not where the checkpoint says it is
+    */
+   List<RecordInfo> readRecords(final SequentialFileFactory fileFactory, final List<JournalFile> orderedFiles) throws Exception
+   {
+      final Map<Long, JournalFile> coveredFiles = getCoveredFiles(orderedFiles);
+
+      final Map<Long, List<RecordPosition>> positionsByFile = new HashMap<Long, List<RecordPosition>>();
+
+      final List<RecordPosition> allPositions = new ArrayList<RecordPosition>();
+
+      records.forEach(new ConcurrentLongHashMap.EntryProcessor<LiveRecord>()
+      {
+         public void accept(final long id, final LiveRecord record)
+         {
+            if (!record.isOn(coveredFiles))
+            {
+               return;
+            }
+
+            for (int i = 0; i < record.size; i++)
+            {
+               RecordPosition position = new RecordPosition(id, record.positions[i], record.diskSizes[i], record.sequences[i]);
+
+               List<RecordPosition> filePositions = positionsByFile.get(record.fileIDs[i]);
+
+               if (filePositions == null)
+               {
+                  filePositions = new ArrayList<RecordPosition>();
+                  positionsByFile.put(record.fileIDs[i], filePositions);
+               }
+
+               filePositions.add(position);
+               allPositions.add(position);
+            }
+         }
+      });
+
+      for (Map.Entry<Long, List<RecordPosition>> entry : positionsByFile.entrySet())
+      {
+         readRecords(fileFactory, coveredFiles.get(entry.getKey()), entry.getValue());
+      }
+
+      Collections.sort(allPositions, new Comparator<RecordPosition>()
+      {
+         public int compare(final RecordPosition p1, final RecordPosition p2)
+         {
+            return p1.sequence < p2.sequence ? -1 : p1.sequence == p2.sequence ? 0 : 1;
+         }
+      });
+
+      List<RecordInfo> infos = new ArrayList<RecordInfo>(allPositions.size());
+
+      for (RecordPosition position : allPositions)
+      {
+         infos.add(position.info);
+      }
+
+      return infos;
+   }
+
+   /**
+    * Restores the reference counts of the covered files and the live records, as a full load of
+    * the covered files would have left them.
+    */
+   void restore(final List<JournalFile> orderedFiles, final ConcurrentLongHashMap<JournalRecord> journalRecords)
+   {
+      restore(getCoveredFiles(orderedFiles), journalRecords);
+   }
+
+   private void restore(final Map<Long, JournalFile> coveredFiles, final ConcurrentLongHashMap<JournalRecord> journalRecords)
+   {
+      records.forEach(new ConcurrentLongHashMap.EntryProcessor<LiveRecord>()
+      {
+         public void accept(final long id, final LiveRecord record)
+         {
+            // A record on a file which is gone was deleted after the checkpoint was taken, and a file
+            // after the checkpoint has its delete. It's still restored with the entries on the files
+            // left, so the delete cancels them as it did before the file was reclaimed.
+            JournalRecord journalRecord = null;
+
+            for (int i = record.countStart; i < record.size; i++)
+            {
+               JournalFile file = coveredFiles.get(record.fileIDs[i]);
+
+               if (file == null)
+               {
+                  continue;
+               }
+
+               if (journalRecord == null)
+               {
+                  journalRecord = new JournalRecord(file, record.countSizes[i]);
+               }
+               else
+               {
+                  journalRecord.addUpdateFile(file, record.countSizes[i]);
+               }
+            }
+
+            if (journalRecord != null)
+            {
+               journalRecords.put(id, journalRecord);
+            }
+         }
+      });
+
+      // The live records are counted now, the counts left are from records which are not live anymore
+      for (CoveredFile coveredFile : files.values())
+      {
+         JournalFile file = coveredFiles.get(coveredFile.fileID);
+
+         if (file == null)
+         {
+            continue;
+         }
+
+         while (file.getPosCount() < coveredFile.posCount)
+         {
+            file.incPosCount();
+         }
+
+         while (file.getPosCount() > coveredFile.posCount)
+         {
+            file.decPosCount();
+         }
+
+         file.addSize(coveredFile.liveSize - file.getLiveSize());
+
+         for (int i = 0; i < coveredFile.negFileIDs.length; i++)
+         {
+            JournalFile negFile = coveredFiles.get(coveredFile.negFileIDs[i]);
+
+            if (negFile != null)
+            {
+               for (int j = 0; j < coveredFile.negCounts[i]; j++)
+               {
+                  file.incNegCount(negFile);
+               }
+            }
+         }
+      }
+   }
+
+   private Map<Long, JournalFile> getCoveredFiles(final Collection<JournalFile> journalFiles)
+   {
+      Map<Long, JournalFile> coveredFiles = new HashMap<Long, JournalFile>();
+
+      for (JournalFile file : journalFiles)
+      {
+         if (files.containsKey(file.getFileID()))
+         {
+            coveredFiles.put(file.getFileID(), file);
+         }
+      }
+
+      return coveredFiles;
+   }
+
+   private static void readRecords(final SequentialFileFactory fileFactory,
+                                   final JournalFile file,
+                                   final List<RecordPosition> positions) throws Exception
+   {
+      Collections.sort(positions, new Comparator<RecordPosition>()
+      {
+         public int compare(final RecordPosition p1, final RecordPosition p2)
+         {
+            return p1.position - p2.position;
+         }
+      });
+
+      SequentialFile sequentialFile = file.getFile();
+
+      int alignment = sequentialFile.getAlignment();
+
+      sequentialFile.open(1, false);
+
+      try
+      {
+         int first = 0;
+
+         while (first < positions.size())
+         {
+            int start = positions.get(first).position;
+
+            int end = positions.get(first).position + positions.get(first).diskSize;
+
+            int last = first + 1;
+
+            while (last < positions.size() &&
+               positions.get(last).position - end < MAX_READ_GAP &&
+               positions.get(last).position + positions.get(last).diskSize - start <= MAX_READ_SIZE)
+            {
+               end = Math.max(end, positions.get(last).position + positions.get(last).diskSize);
+               last++;
+            }
+
+            int readStart = start - start % alignment;
+
+            int readSize = end - readStart;
+
+            if (readSize % alignment != 0)
+            {
+               readSize += alignment - readSize % alignment;
+            }
+
+            ByteBuffer buffer = fileFactory.newBuffer(readSize);
+
+            try
+            {
+               buffer.limit(readSize);
+
+               sequentialFile.position(readStart);
+
+               int bytesRead = sequentialFile.read(buffer);
+
+               if (bytesRead < end - readStart)
+               {
+                  throw new IOException("Could only read " + bytesRead + " bytes at position " + readStart + " of " + file);
+               }
+
+               for (int i = first; i < last; i++)
+               {
+                  RecordPosition position = positions.get(i);
+
+                  position.info = decodeRecord(buffer, position.position - readStart, position, file);
+               }
+            }
+            finally
+            {
+               fileFactory.releaseBuffer(buffer);
+            }
+
+            first = last;
+         }
+      }
+      finally
+      {
+         sequentialFile.close();
+      }
+   }
+
+   /**
+    * Decodes an add or update record, checking it is the record the checkpoint expects. The layout
+    * is the one {@link JournalImpl#readJournalFile(SequentialFileFactory, JournalFile, JournalReaderCallback)}
+    * reads.
+    */
+   private static RecordInfo decodeRecord(final ByteBuffer buffer,
+                                          final int offset,
+                                          final RecordPosition position,
+                                          final JournalFile file) throws IOException
+   {
+      ByteBuffer record = buffer.duplicate();
+
+      record.position(offset);
+
+      byte recordType = record.get();
+
+      boolean compressed = JournalImpl.isCompressed(recordType);
+
+      if (compressed)
+      {
+         recordType &= ~JournalImpl.COMPRESSED_RECORD;
+      }
+
+      if (recordType != JournalImpl.ADD_RECORD && recordType != JournalImpl.UPDATE_RECORD &&
+         recordType != JournalImpl.ADD_RECORD_TX &&
+         recordType != JournalImpl.UPDATE_RECORD_TX)
+      {
+         throw new IOException("Invalid record type " + recordType + " at position " + position.position + " of " + file);
+      }
+
+      if (record.getInt() != file.getRecordID())
+      {
+         throw new IOException("Record at position " + position.position + " of " + file + " is from another use of the file");
+      }
+
+      short compactCount = 0;
+
+      if (file.getJournalVersion() >= 2)
+      {
+         compactCount = record.get();
+      }
+
+      if (recordType == JournalImpl.ADD_RECORD_TX || recordType == JournalImpl.UPDATE_RECORD_TX)
+      {
+         // the transaction ID
+         record.getLong();
+      }
+
+      long recordID = record.getLong();
+
+      int variableSize = record.getInt();
+
+      if (recordID != position.recordID ||
+         JournalImpl.getRecordSize(recordType, file.getJournalVersion()) + variableSize != position.diskSize ||
+         buffer.getInt(offset + position.diskSize - 4) != position.diskSize)
+      {
+         throw new IOException("Record " + position.recordID + " is not at position " + position.position + " of " + file);
+      }
+
+      byte userRecordType = record.get();
+
+      byte[] data = new byte[variableSize];
+
+      record.get(data);
+
+      if (compressed)
+      {
+         data = JournalRecordCompressor.decompress(data);
+      }
+
+      boolean isUpdate = recordType == JournalImpl.UPDATE_RECORD || recordType == JournalImpl.UPDATE_RECORD_TX;
+
+      return new RecordInfo(recordID, userRecordType, data, isUpdate, compactCount);
+   }
+
+   // Persistence ---------------------------------------------------
+
+   /**
+    * Writes the checkpoint to a temporary file, syncs it and renames it to file, so a crash never leaves a
+    * partial checkpoint behind.
+    */
+   void write(final File file, final int userVersion) throws IOException
+   {
+      File tmpFile = new File(file.getPath() + ".tmp");
+
+      FileOutputStream fileOutput = new FileOutputStream(tmpFile);
+
+      try
+      {
+         CRC32 crc = new CRC32();
+
+         DataOutputStream output = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(fileOutput), crc));
+
+         output.writeInt(MAGIC);
+         output.writeInt(VERSION);
+         output.writeInt(userVersion);
+         output.writeLong(lastFileID);
+         output.writeLong(maxID);
+         output.writeLong(nextSequence);
+
+         output.writeInt(files.size());
+
+         for (CoveredFile coveredFile : files.values())
+         {
+            output.writeLong(coveredFile.fileID);
+            output.writeInt(coveredFile.posCount);
+            output.writeInt(coveredFile.liveSize);
+            output.writeInt(coveredFile.lastDataPosition);
+            output.writeInt(coveredFile.negFileIDs.length);
+
+            for (int i = 0; i < coveredFile.negFileIDs.length; i++)
+            {
+               output.writeLong(coveredFile.negFileIDs[i]);
+               output.writeInt(coveredFile.negCounts[i]);
+            }
+         }
+
+         output.writeInt(records.size());
+
+         final DataOutputStream recordsOutput = output;
+
+         final IOException[] error = new IOException[1];
+
+         records.forEach(new ConcurrentLongHashMap.EntryProcessor<LiveRecord>()
+         {
+            public void accept(final long id, final LiveRecord record)
+            {
+               if (error[0] != null)
+               {
+                  return;
+               }
+
+               try
+               {
+                  recordsOutput.writeLong(id);
+                  recordsOutput.writeInt(record.countStart);
+                  recordsOutput.writeInt(record.size);
+
+                  for (int i = 0; i < record.size; i++)
+                  {
+                     recordsOutput.writeLong(record.fileIDs[i]);
+                     recordsOutput.writeInt(record.positions[i]);
+                     recordsOutput.writeInt(record.diskSizes[i]);
+                     recordsOutput.writeInt(record.countSizes[i]);
+                     recordsOutput.writeLong(record.sequences[i]);
+                  }
+               }
+               catch (IOException e)
+               {
+                  error[0] = e;
+               }
+            }
+         });
+
+         if (error[0] != null)
+         {
+            throw error[0];
+         }
+
+         output.flush();
+
+         output.writeLong(crc.getValue());
+
+         output.flush();
+
+         fileOutput.getFD().sync();
+      }
+      finally
+      {
+         fileOutput.close();
+      }
+
+      try
+      {
+         Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e)
+      {
+         Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+   }
+
+   /**
+    * @return the checkpoint on file, or null if there is none
+    * @throws IOException if the checkpoint is corrupt or from another journal version
+    */
+   static JournalCheckpoint read(final File file, final int userVersion) throws IOException
+   {
+      if (!file.exists())
+      {
+         return null;
+      }
+
+      CRC32 crc = new CRC32();
+
+      DataInputStream input = new DataInputStream(new CheckedInputStream(new BufferedInputStream(new FileInputStream(file)), crc));
+
+      try
+      {
+         if (input.readInt() != MAGIC)
+         {
+            throw new IOException(file + " is not a journal checkpoint");
+         }
+
+         int version = input.readInt();
+
+         if (version != VERSION)
+         {
+            throw new IOException("Unsupported version " + version + " on " + file);
+         }
+
+         int fileUserVersion = input.readInt();
+
+         if (fileUserVersion != userVersion)
+         {
+            throw new IOException("Journal version " + fileUserVersion + " on " + file + " doesn't match " + userVersion);
+         }
+
+         long lastFileID = input.readLong();
+         long maxID = input.readLong();
+         long nextSequence = input.readLong();
+
+         int numberOfFiles = input.readInt();
+
+         Map<Long, CoveredFile> files = new TreeMap<Long, CoveredFile>();
+
+         for (int i = 0; i < numberOfFiles; i++)
+         {
+            long fileID = input.readLong();
+            int posCount = input.readInt();
+            int liveSize = input.readInt();
+            int lastDataPosition = input.readInt();
+
+            int numberOfNegs = input.readInt();
+
+            long[] negFileIDs = new long[numberOfNegs];
+            int[] negCounts = new int[numberOfNegs];
+
+            for (int j = 0; j < numberOfNegs; j++)
+            {
+               negFileIDs[j] = input.readLong();
+               negCounts[j] = input.readInt();
+            }
+
+            files.put(fileID, new CoveredFile(fileID, posCount, liveSize, lastDataPosition, negFileIDs, negCounts));
+         }
+
+         int numberOfRecords = input.readInt();
+
+         ConcurrentLongHashMap<LiveRecord> records = new ConcurrentLongHashMap<LiveRecord>(Math.max(16, numberOfRecords));
+
+         for (int i = 0; i < numberOfRecords; i++)
+         {
+            long id = input.readLong();
+
+            int countStart = input.readInt();
+
+            int entries = input.readInt();
+
+            LiveRecord record = new LiveRecord(entries);
+
+            record.countStart = countStart;
+
+            for (int j = 0; j < entries; j++)
+            {
+               record.add(input.readLong(), input.readInt(), input.readInt(), input.readInt(), input.readLong());
+            }
+
+            records.put(id, record);
+         }
+
+         long expectedCRC = crc.getValue();
+
+         if (input.readLong() != expectedCRC)
+         {
+            throw new IOException("Invalid checksum on " + file);
+         }
+
+         return new JournalCheckpoint(lastFileID, maxID, nextSequence, files, records);
+      }
+      finally
+      {
+         input.close();
+      }
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private static final class CoveredFile
+   {
+      private final long fileID;
+
+      private final int posCount;
+
+      private final int liveSize;
+
+      private final int lastDataPosition;
+
+      private final long[] negFileIDs;
+
+      private final int[] negCounts;
+
+      private CoveredFile(final long fileID,
+                          final int posCount,
+                          final int liveSize,
+                          final int lastDataPosition,
+                          final long[] negFileIDs,
+                          final int[] negCounts)
+      {
+         this.fileID = fileID;
+         this.posCount = posCount;
+         this.liveSize = liveSize;
+         this.lastDataPosition = lastDataPosition;
+         this.negFileIDs = negFileIDs;
+         this.negCounts = negCounts;
+      }
+   }
+
+   /**
+    * Where the add and the updates of a live record are, on parallel arrays as on {@link JournalRecord}.
+    * The sequence is the order a full load gives the record in.
+    * <p/>
+    * A record added again with the same ID is given twice by a load, but only counts from its last add on.
+    */
+   private static final class LiveRecord
+   {
+      private int countStart;
+
+      private long[] fileIDs;
+
+      private int[] positions;
+
+      // the size of the record on the file
+      private int[] diskSizes;
+
+      // the size the record counts for on JournalRecord
+      private int[] countSizes;
+
+      private long[] sequences;
+
+      private int size;
+
+      private LiveRecord(final int capacity)
+      {
+         fileIDs = new long[capacity];
+         positions = new int[capacity];
+         diskSizes = new int[capacity];
+         countSizes = new int[capacity];
+         sequences = new long[capacity];
+      }
+
+      private void add(final long fileID, final int position, final int diskSize, final int countSize, final long sequence)
+      {
+         if (size == fileIDs.length)
+         {
+            int capacity = Math.max(2, size * 2);
+            fileIDs = Arrays.copyOf(fileIDs, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            diskSizes = Arrays.copyOf(diskSizes, capacity);
+            countSizes = Arrays.copyOf(countSizes, capacity);
+            sequences = Arrays.copyOf(sequences, capacity);
+         }
+
+         fileIDs[size] = fileID;
+         positions[size] = position;
+         diskSizes[size] = diskSize;
+         countSizes[size] = countSize;
+         sequences[size] = sequence;
+         size++;
+      }
+
+      private boolean isOn(final Map<Long, ? extends JournalFile> existingFiles)
+      {
+         for (int i = 0; i < size; i++)
+         {
+            if (!existingFiles.containsKey(fileIDs[i]))
+            {
+               return false;
+            }
+         }
+         return true;
+      }
+   }
+
+   private static final class RecordPosition
+   {
+      private final long recordID;
+
+      private final int position;
+
+      private final int diskSize;
+
+      private final long sequence;
+
+      private RecordInfo info;
+
+      private RecordPosition(final long recordID, final int position, final int diskSize, final long sequence)
+      {
+         this.recordID = recordID;
+         this.position = position;
+         this.diskSize = diskSize;
+         this.sequence = sequence;
+      }
+   }
+
+   /**
+    * A transactional add or update, waiting for its commit.
+    */
+   private static final class PendingRecord
+   {
+      private final long recordID;
+
+      private final long fileID;
+
+      private final int position;
+
+      private final int diskSize;
+
+      private final int countSize;
+
+      private PendingRecord(final long recordID, final long fileID, final int position, final int diskSize, final int countSize)
+      {
+         this.recordID = recordID;
+         this.fileID = fileID;
+         this.position = position;
+         this.diskSize = diskSize;
+         this.countSize = countSize;
+      }
+   }
+
+   /**
+    * Builds a checkpoint replaying data files on top of the previous checkpoint, the same way
+    * {@link JournalImpl} loads them.
+    * <p/>
+    * The files given to {@link #replay(SequentialFileFactory, JournalFile)} must be complete data files,
+    * in order. No record bodies are kept, only where the records are.
+    */
+   static final class Builder implements JournalRecordProvider, JournalRecordPositionListener
+   {
+      private final ConcurrentLongHashMap<JournalRecord> journalRecords = new ConcurrentLongHashMap<JournalRecord>();
+
+      private final ConcurrentLongHashMap<LiveRecord> liveRecords;
+
+      private final Map<Long, JournalFile> files = new TreeMap<Long, JournalFile>();
+
+      private final Map<Long, Integer> lastDataPositions = new HashMap<Long, Integer>();
+
+      private final Map<Long, JournalTransaction> transactions = new HashMap<Long, JournalTransaction>();
+
+      private final Map<Long, List<PendingRecord>> pendingRecords = new LinkedHashMap<Long, List<PendingRecord>>();
+
+      private long lastFileID;
+
+      private long maxID;
+
+      private long nextSequence;
+
+      private int lastPosition;
+
+      private int lastSize;
+
+      Builder(final JournalCheckpoint previous)
+      {
+         if (previous == null)
+         {
+            lastFileID = -1;
+            maxID = -1;
+            nextSequence = 0;
+            liveRecords = new ConcurrentLongHashMap<LiveRecord>();
+         }
+         else
+         {
+            lastFileID = previous.lastFileID;
+            maxID = previous.maxID;
+            nextSequence = previous.nextSequence;
+            liveRecords = previous.records;
+
+            for (CoveredFile coveredFile : previous.files.values())
+            {
+               files.put(coveredFile.fileID, new JournalFileImpl(null, coveredFile.fileID, JournalImpl.FORMAT_VERSION));
+               lastDataPositions.put(coveredFile.fileID, coveredFile.lastDataPosition);
+            }
+
+            previous.restore(files, journalRecords);
+         }
+      }
+
+      long getLastFileID()
+      {
+         return lastFileID;
+      }
+
+      public JournalCompactor getCompactor()
+      {
+         return null;
+      }
+
+      public ConcurrentLongHashMap<JournalRecord> getRecords()
+      {
+         return journalRecords;
+      }
+
+      public void onRecordPosition(final int position, final int size)
+      {
+         lastPosition = position;
+         lastSize = size;
+      }
+
+      void replay(final SequentialFileFactory fileFactory, final JournalFile dataFile) throws Exception
+      {
+         if (dataFile.getFileID() <= lastFileID)
+         {
+            throw new IllegalArgumentException(dataFile + " is already on the checkpoint");
+         }
+
+         // The journal may be using the file, we read it on our own
+         final JournalFile file = new JournalFileImpl(dataFile.getFile().cloneFile(),
+                                                      dataFile.getFileID(),
+                                                      dataFile.getJournalVersion());
+
+         files.put(file.getFileID(), file);
+
+         lastFileID = file.getFileID();
+
+         int lastDataPosition = JournalImpl.readJournalFile(fileFactory, file, new JournalReaderCallback()
+         {
+            private void checkID(final long id)
+            {
+               if (id > maxID)
+               {
+                  maxID = id;
+               }
+            }
+
+            public void onReadAddRecord(final RecordInfo info) throws Exception
+            {
+               checkID(info.id);
+
+               int countSize = info.data.length + JournalImpl.SIZE_ADD_RECORD + 1;
+
+               journalRecords.put(info.id, new JournalRecord(file, countSize));
+
+               LiveRecord record = liveRecords.get(info.id);
+
+               if (record == null)
+               {
+                  record = new LiveRecord(1);
+                  liveRecords.put(info.id, record);
+               }
+
+               record.countStart = record.size;
+
+               record.add(file.getFileID(), lastPosition, lastSize, countSize, nextSequence++);
+            }
+
+            public void onReadUpdateRecord(final RecordInfo info) throws Exception
+            {
+               checkID(info.id);
+
+               int countSize = info.data.length + JournalImpl.SIZE_ADD_RECORD + 1;
+
+               long sequence = nextSequence++;
+
+               JournalRecord journalRecord = journalRecords.get(info.id);
+
+               if (journalRecord != null)
+               {
+                  journalRecord.addUpdateFile(file, countSize);
+
+                  liveRecords.get(info.id).add(file.getFileID(), lastPosition, lastSize, countSize, sequence);
+               }
+            }
+
+            public void onReadDeleteRecord(final long recordID) throws Exception
+            {
+               JournalRecord journalRecord = journalRecords.remove(recordID);
+
+               if (journalRecord != null)
+               {
+                  journalRecord.delete(file);
+               }
+
+               liveRecords.remove(recordID);
+            }
+
+            public void onReadAddRecordTX(final long transactionID, final RecordInfo info) throws Exception
+            {
+               checkID(info.id);
+
+               int countSize = info.data.length + JournalImpl.SIZE_ADD_RECORD_TX + 1;
+
+               getTransaction(transactionID).addPositive(file, info.id, countSize);
+
+               getPendingRecords(transactionID).add(new PendingRecord(info.id, file.getFileID(), lastPosition, lastSize, countSize));
+            }
+
+            public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info) throws Exception
+            {
+               onReadAddRecordTX(transactionID, info);
+            }
+
+            public void onReadDeleteRecordTX(final long transactionID, final RecordInfo info) throws Exception
+            {
+               getTransaction(transactionID).addNegative(file, info.id);
+
+               // a negative size tells the delete apart
+               getPendingRecords(transactionID).add(new PendingRecord(info.id, file.getFileID(), lastPosition, -1, 0));
+            }
+
+            public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords) throws Exception
+            {
+               JournalTransaction transaction = getTransaction(transactionID);
+
+               getPendingRecords(transactionID);
+
+               if (transaction.getCounter(file) == numberOfRecords)
+               {
+                  transaction.prepare(file);
+               }
+            }
+
+            public void onReadCommitRecord(final long transactionID, final int numberOfRecords) throws Exception
+            {
+               List<PendingRecord> pending = pendingRecords.remove(transactionID);
+
+               if (pending == null)
+               {
+                  // the transaction was reclaimed, as on load
+                  return;
+               }
+
+               JournalTransaction transaction = transactions.remove(transactionID);
+
+               if (transaction.getCounter(file) != numberOfRecords)
+               {
+                  transaction.forget();
+                  return;
+               }
+
+               transaction.commit(file);
+
+               // The same order JournalTransaction#commit changes the records in
+               for (PendingRecord record : pending)
+               {
+                  if (record.diskSize >= 0)
+                  {
+                     long sequence = nextSequence++;
+
+                     LiveRecord liveRecord = liveRecords.get(record.recordID);
+
+                     if (liveRecord == null)
+                     {
+                        liveRecord = new LiveRecord(1);
+                        liveRecords.put(record.recordID, liveRecord);
+                     }
+
+                     liveRecord.add(record.fileID, record.position, record.diskSize, record.countSize, sequence);
+                  }
+               }
+
+               for (PendingRecord record : pending)
+               {
+                  if (record.diskSize < 0)
+                  {
+                     liveRecords.remove(record.recordID);
+                  }
+               }
+            }
+
+            public void onReadRollbackRecord(final long transactionID) throws Exception
+            {
+               if (pendingRecords.remove(transactionID) != null)
+               {
+                  transactions.remove(transactionID).rollback(file);
+               }
+            }
+
+            public void markAsDataFile(final JournalFile file)
+            {
+            }
+         }, this);
+
+         lastDataPositions.put(file.getFileID(), lastDataPosition);
+      }
+
+      private JournalTransaction getTransaction(final long transactionID)
+      {
+         JournalTransaction transaction = transactions.get(transactionID);
+
+         if (transaction == null)
+         {
+            transaction = new JournalTransaction(transactionID, this);
+            transactions.put(transactionID, transaction);
+         }
+
+         return transaction;
+      }
+
+      private List<PendingRecord> getPendingRecords(final long transactionID)
+      {
+         List<PendingRecord> pending = pendingRecords.get(transactionID);
+
+         if (pending == null)
+         {
+            pending = new ArrayList<PendingRecord>();
+            pendingRecords.put(transactionID, pending);
+         }
+
+         return pending;
+      }
+
+      /**
+       * @param dataFiles the data files of the journal, files of the previous checkpoint which are not
+       *                  among them were reclaimed and are dropped
+       * @return the checkpoint, or null if a transaction is still open on the replayed files
+       */
+      JournalCheckpoint build(final JournalFile[] dataFiles)
+      {
+         if (!pendingRecords.isEmpty())
+         {
+            return null;
+         }
+
+         final Set<Long> existingFiles = new HashSet<Long>();
+
+         for (JournalFile dataFile : dataFiles)
+         {
+            if (files.containsKey(dataFile.getFileID()))
+            {
+               existingFiles.add(dataFile.getFileID());
+            }
+         }
+
+         Map<Long, CoveredFile> coveredFiles = new TreeMap<Long, CoveredFile>();
+
+         for (JournalFile file : files.values())
+         {
+            if (!existingFiles.contains(file.getFileID()))
+            {
+               continue;
+            }
+
+            List<Long> negFileIDs = new ArrayList<Long>();
+
+            for (JournalFile negFile : ((JournalFileImpl) file).getNegCountFiles())
+            {
+               if (existingFiles.contains(negFile.getFileID()))
+               {
+                  negFileIDs.add(negFile.getFileID());
+               }
+            }
+
+            long[] negIDs = new long[negFileIDs.size()];
+            int[] negCounts = new int[negFileIDs.size()];
+
+            for (int i = 0; i < negIDs.length; i++)
+            {
+               negIDs[i] = negFileIDs.get(i);
+               negCounts[i] = file.getNegCount(files.get(negIDs[i]));
+            }
+
+            coveredFiles.put(file.getFileID(), new CoveredFile(file.getFileID(),
+                                                               file.getPosCount(),
+                                                               file.getLiveSize(),
+                                                               lastDataPositions.get(file.getFileID()),
+                                                               negIDs,
+                                                               negCounts));
+         }
+
+         final ConcurrentLongHashMap<LiveRecord> records = new ConcurrentLongHashMap<LiveRecord>(Math.max(16, liveRecords.size()));
+
+         final Map<Long, CoveredFile> existing = coveredFiles;
+
+         liveRecords.forEach(new ConcurrentLongHashMap.EntryProcessor<LiveRecord>()
+         {
+            public void accept(final long id, final LiveRecord record)
+            {
+               for (int i = 0; i < record.size; i++)
+               {
+                  if (!existing.containsKey(record.fileIDs[i]))
+                  {
+                     return;
+                  }
+               }
+
+               records.put(id, record);
+            }
+         });
+
+         return new JournalCheckpoint(lastFileID, maxID, nextSequence, coveredFiles, records);
+      }
+   }
+}
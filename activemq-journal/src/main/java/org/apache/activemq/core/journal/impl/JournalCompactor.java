@@ -21,7 +21,6 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.activemq.api.core.ActiveMQBuffer;
@@ -39,6 +38,7 @@ import org.apache.activemq.core.journal.impl.dataformat.JournalDeleteRecordTX;
 import org.apache.activemq.core.journal.impl.dataformat.JournalInternalRecord;
 import org.apache.activemq.core.journal.impl.dataformat.JournalRollbackRecordTX;
 import org.apache.activemq.journal.ActiveMQJournalLogger;
+import org.apache.activemq.utils.ConcurrentLongHashMap;
 
 /**
  * A JournalCompactor
@@ -57,7 +57,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    // Snapshot of transactions that were pending when the compactor started
    private final Map<Long, PendingTransaction> pendingTransactions = new ConcurrentHashMap<Long, PendingTransaction>();
 
-   private final Map<Long, JournalRecord> newRecords = new HashMap<Long, JournalRecord>();
+   private final ConcurrentLongHashMap<JournalRecord> newRecords = new ConcurrentLongHashMap<JournalRecord>();
 
    private final Map<Long, JournalTransaction> newTransactions = new HashMap<Long, JournalTransaction>();
 
@@ -133,7 +133,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
       return newDataFiles;
    }
 
-   public Map<Long, JournalRecord> getNewRecords()
+   public ConcurrentLongHashMap<JournalRecord> getNewRecords()
    {
       return newRecords;
    }
@@ -146,7 +146,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    public JournalCompactor(final SequentialFileFactory fileFactory,
                            final JournalImpl journal,
                            final JournalFilesRepository filesRepository,
-                           final Set<Long> recordsSnapshot,
+                           final ConcurrentLongHashMap<?> recordsSnapshot,
                            final long firstFileID)
    {
       super(fileFactory, journal, filesRepository, recordsSnapshot, firstFileID);
@@ -297,14 +297,27 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
 
    // JournalReaderCallback implementation -------------------------------------------
 
+   /**
+    * Records written uncompressed are compressed if the journal compresses its records now
+    */
+   private RecordInfo compress(final RecordInfo info)
+   {
+      JournalRecordCompressor compressor = journal.getRecordCompressor();
+
+      return compressor == null ? info : compressor.compress(info);
+   }
+
    public void onReadAddRecord(final RecordInfo info) throws Exception
    {
       if (lookupRecord(info.id))
       {
+         RecordInfo body = compress(info);
+
          JournalInternalRecord addRecord = new JournalAddRecord(true,
                                                                 info.id,
                                                                 info.getUserRecordType(),
-                                                                new ByteArrayEncoding(info.data));
+                                                                new ByteArrayEncoding(body.data),
+                                                                body.compressed);
          addRecord.setCompactCount((short)(info.compactCount + 1));
 
          checkSize(addRecord.getEncodeSize(), info.compactCount);
@@ -321,11 +334,14 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
       {
          JournalTransaction newTransaction = getNewJournalTransaction(transactionID);
 
+         RecordInfo body = compress(info);
+
          JournalInternalRecord record = new JournalAddRecordTX(true,
                                                                transactionID,
                                                                info.id,
                                                                info.getUserRecordType(),
-                                                               new ByteArrayEncoding(info.data));
+                                                               new ByteArrayEncoding(body.data),
+                                                               body.compressed);
 
          record.setCompactCount((short)(info.compactCount + 1));
 
@@ -445,10 +461,13 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    {
       if (lookupRecord(info.id))
       {
+         RecordInfo body = compress(info);
+
          JournalInternalRecord updateRecord = new JournalAddRecord(false,
                                                                    info.id,
                                                                    info.userRecordType,
-                                                                   new ByteArrayEncoding(info.data));
+                                                                   new ByteArrayEncoding(body.data),
+                                                                   body.compressed);
 
          updateRecord.setCompactCount((short)(info.compactCount + 1));
 
@@ -475,11 +494,14 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
       {
          JournalTransaction newTransaction = getNewJournalTransaction(transactionID);
 
+         RecordInfo body = compress(info);
+
          JournalInternalRecord updateRecordTX = new JournalAddRecordTX(false,
                                                                        transactionID,
                                                                        info.id,
                                                                        info.userRecordType,
-                                                                       new ByteArrayEncoding(info.data));
+                                                                       new ByteArrayEncoding(body.data),
+                                                                       body.compressed);
 
          updateRecordTX.setCompactCount((short)(info.compactCount + 1));
 
@@ -635,7 +657,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    }
 
    @Override
-   public Map<Long, JournalRecord> getRecords()
+   public ConcurrentLongHashMap<JournalRecord> getRecords()
    {
       return newRecords;
    }
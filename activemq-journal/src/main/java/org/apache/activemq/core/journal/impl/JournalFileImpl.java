@@ -17,6 +17,7 @@
 package org.apache.activemq.core.journal.impl;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -104,6 +105,14 @@ public class JournalFileImpl implements JournalFile
       }
    }
 
+   /**
+    * @return the files this file holds negative counts to
+    */
+   Set<JournalFile> getNegCountFiles()
+   {
+      return negCounts.keySet();
+   }
+
    public int getJournalVersion()
    {
       return version;
@@ -0,0 +1,331 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.core.journal.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.activemq.core.journal.RecordInfo;
+import org.apache.activemq.core.journal.SequentialFileFactory;
+
+/**
+ * Reads and decodes journal files on a pool of threads ahead of the loading thread.
+ * <p/>
+ * The records of each file are kept in memory until {@link #replay(JournalFile, JournalReaderCallback)}
+ * is called for that file, so the loading thread still applies them in the same order as
+ * {@link JournalImpl#readJournalFile(SequentialFileFactory, JournalFile, JournalReaderCallback)} would.
+ * At most one file per thread is decoded ahead, which bounds the memory used by the read-ahead.
+ */
+final class JournalFilesReadAhead
+{
+   private final SequentialFileFactory fileFactory;
+
+   private final Iterator<JournalFile> filesToRead;
+
+   private final LinkedList<Future<RecordedFile>> pendingReads = new LinkedList<Future<RecordedFile>>();
+
+   private final ExecutorService executor;
+
+   private final AtomicLong readNanos = new AtomicLong(0);
+
+   private long waitNanos;
+
+   JournalFilesReadAhead(final SequentialFileFactory fileFactory, final List<JournalFile> files, final int threads)
+   {
+      this.fileFactory = fileFactory;
+
+      this.filesToRead = files.iterator();
+
+      final AtomicInteger threadCount = new AtomicInteger(0);
+
+      executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+      {
+         public Thread newThread(final Runnable r)
+         {
+            Thread thread = new Thread(r, "JournalImpl::LoadExecutor-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+
+      for (int i = 0; i < threads; i++)
+      {
+         if (!readNext())
+         {
+            break;
+         }
+      }
+   }
+
+   /**
+    * Waits for the file to be decoded and sends its records to the callback.
+    * Files must be replayed in the same order they were given to the constructor.
+    *
+    * @return the last valid position on the file, as returned by
+    * {@link JournalImpl#readJournalFile(SequentialFileFactory, JournalFile, JournalReaderCallback)}
+    */
+   int replay(final JournalFile file, final JournalReaderCallback callback) throws Exception
+   {
+      Future<RecordedFile> future = pendingReads.poll();
+
+      if (future == null)
+      {
+         throw new IllegalStateException("There are no pending reads for " + file);
+      }
+
+      RecordedFile recorded;
+
+      long start = System.nanoTime();
+      try
+      {
+         recorded = future.get();
+      }
+      catch (ExecutionException e)
+      {
+         if (e.getCause() instanceof Exception)
+         {
+            throw (Exception) e.getCause();
+         }
+         throw new Exception(e.getCause().getMessage(), e.getCause());
+      }
+      finally
+      {
+         waitNanos += System.nanoTime() - start;
+      }
+
+      if (recorded.file != file)
+      {
+         throw new IllegalStateException("Journal file " + file + " is being loaded out of order, expected " + recorded.file);
+      }
+
+      // the next file can only be read after this one is released, or the read-ahead wouldn't be bounded
+      readNext();
+
+      recorded.replay(callback);
+
+      return recorded.lastDataPos;
+   }
+
+   /**
+    * @return the time spent reading and decoding files, summed across all the load threads
+    */
+   long getReadNanos()
+   {
+      return readNanos.get();
+   }
+
+   /**
+    * @return the time the loading thread spent waiting for files that were not decoded yet
+    */
+   long getWaitNanos()
+   {
+      return waitNanos;
+   }
+
+   void shutdown()
+   {
+      for (Future<RecordedFile> future : pendingReads)
+      {
+         future.cancel(false);
+      }
+      pendingReads.clear();
+      executor.shutdown();
+   }
+
+   private boolean readNext()
+   {
+      if (!filesToRead.hasNext())
+      {
+         return false;
+      }
+
+      final JournalFile file = filesToRead.next();
+
+      pendingReads.add(executor.submit(new Callable<RecordedFile>()
+      {
+         public RecordedFile call() throws Exception
+         {
+            long start = System.nanoTime();
+            try
+            {
+               RecordedFile recorded = new RecordedFile(file);
+               recorded.lastDataPos = JournalImpl.readJournalFile(fileFactory, file, recorded, null);
+               return recorded;
+            }
+            finally
+            {
+               readNanos.addAndGet(System.nanoTime() - start);
+            }
+         }
+      }));
+
+      return true;
+   }
+
+   /**
+    * Keeps every callback received while reading a file, in the order they were received.
+    */
+   private static final class RecordedFile implements JournalReaderCallback
+   {
+      private static final byte MARK_AS_DATA_FILE = 0;
+
+      private final JournalFile file;
+
+      private final List<ReadRecord> records = new ArrayList<ReadRecord>();
+
+      private int lastDataPos;
+
+      private RecordedFile(final JournalFile file)
+      {
+         this.file = file;
+      }
+
+      private void replay(final JournalReaderCallback callback) throws Exception
+      {
+         for (ReadRecord record : records)
+         {
+            switch (record.recordType)
+            {
+               case JournalImpl.ADD_RECORD:
+                  callback.onReadAddRecord(record.info);
+                  break;
+               case JournalImpl.UPDATE_RECORD:
+                  callback.onReadUpdateRecord(record.info);
+                  break;
+               case JournalImpl.DELETE_RECORD:
+                  callback.onReadDeleteRecord(record.id);
+                  break;
+               case JournalImpl.ADD_RECORD_TX:
+                  callback.onReadAddRecordTX(record.id, record.info);
+                  break;
+               case JournalImpl.UPDATE_RECORD_TX:
+                  callback.onReadUpdateRecordTX(record.id, record.info);
+                  break;
+               case JournalImpl.DELETE_RECORD_TX:
+                  callback.onReadDeleteRecordTX(record.id, record.info);
+                  break;
+               case JournalImpl.PREPARE_RECORD:
+                  callback.onReadPrepareRecord(record.id, record.extraData, record.numberOfRecords);
+                  break;
+               case JournalImpl.COMMIT_RECORD:
+                  callback.onReadCommitRecord(record.id, record.numberOfRecords);
+                  break;
+               case JournalImpl.ROLLBACK_RECORD:
+                  callback.onReadRollbackRecord(record.id);
+                  break;
+               case MARK_AS_DATA_FILE:
+                  callback.markAsDataFile(file);
+                  break;
+               default:
+                  throw new IllegalStateException("Invalid record type " + record.recordType);
+            }
+         }
+      }
+
+      private void add(final byte recordType, final long id, final RecordInfo info)
+      {
+         records.add(new ReadRecord(recordType, id, info, null, 0));
+      }
+
+      public void onReadAddRecord(final RecordInfo info) throws Exception
+      {
+         add(JournalImpl.ADD_RECORD, info.id, info);
+      }
+
+      public void onReadUpdateRecord(final RecordInfo info) throws Exception
+      {
+         add(JournalImpl.UPDATE_RECORD, info.id, info);
+      }
+
+      public void onReadDeleteRecord(final long recordID) throws Exception
+      {
+         add(JournalImpl.DELETE_RECORD, recordID, null);
+      }
+
+      public void onReadAddRecordTX(final long transactionID, final RecordInfo info) throws Exception
+      {
+         add(JournalImpl.ADD_RECORD_TX, transactionID, info);
+      }
+
+      public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info) throws Exception
+      {
+         add(JournalImpl.UPDATE_RECORD_TX, transactionID, info);
+      }
+
+      public void onReadDeleteRecordTX(final long transactionID, final RecordInfo info) throws Exception
+      {
+         add(JournalImpl.DELETE_RECORD_TX, transactionID, info);
+      }
+
+      public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords) throws Exception
+      {
+         records.add(new ReadRecord(JournalImpl.PREPARE_RECORD, transactionID, null, extraData, numberOfRecords));
+      }
+
+      public void onReadCommitRecord(final long transactionID, final int numberOfRecords) throws Exception
+      {
+         records.add(new ReadRecord(JournalImpl.COMMIT_RECORD, transactionID, null, null, numberOfRecords));
+      }
+
+      public void onReadRollbackRecord(final long transactionID) throws Exception
+      {
+         add(JournalImpl.ROLLBACK_RECORD, transactionID, null);
+      }
+
+      public void markAsDataFile(final JournalFile file)
+      {
+         add(MARK_AS_DATA_FILE, 0, null);
+      }
+   }
+
+   private static final class ReadRecord
+   {
+      private final byte recordType;
+
+      // the record ID, or the transaction ID for transactional records
+      private final long id;
+
+      private final RecordInfo info;
+
+      private final byte[] extraData;
+
+      private final int numberOfRecords;
+
+      private ReadRecord(final byte recordType,
+                         final long id,
+                         final RecordInfo info,
+                         final byte[] extraData,
+                         final int numberOfRecords)
+      {
+         this.recordType = recordType;
+         this.id = id;
+         this.info = info;
+         this.extraData = extraData;
+         this.numberOfRecords = numberOfRecords;
+      }
+   }
+}
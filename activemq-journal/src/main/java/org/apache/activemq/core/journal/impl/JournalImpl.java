@@ -16,9 +16,12 @@
  */
 package org.apache.activemq.core.journal.impl;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -49,6 +52,8 @@ import org.apache.activemq.api.core.Pair;
 import org.apache.activemq.core.journal.EncodingSupport;
 import org.apache.activemq.core.journal.IOAsyncTask;
 import org.apache.activemq.core.journal.IOCompletion;
+import org.apache.activemq.core.journal.JournalCompactStatistics;
+import org.apache.activemq.core.journal.JournalIOStatistics;
 import org.apache.activemq.core.journal.JournalLoadInformation;
 import org.apache.activemq.core.journal.LoaderCallback;
 import org.apache.activemq.core.journal.PreparedTransactionInfo;
@@ -69,6 +74,7 @@ import org.apache.activemq.core.journal.impl.dataformat.JournalRollbackRecordTX;
 import org.apache.activemq.journal.ActiveMQJournalBundle;
 import org.apache.activemq.journal.ActiveMQJournalLogger;
 import org.apache.activemq.utils.ConcurrentHashSet;
+import org.apache.activemq.utils.ConcurrentLongHashMap;
 import org.apache.activemq.utils.DataConstants;
 
 /**
@@ -161,6 +167,9 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
    public static final byte ROLLBACK_RECORD = 19;
 
+   // Set on the record type of add and update records with a compressed body
+   public static final byte COMPRESSED_RECORD = 0x40;
+
    protected static final byte FILL_CHARACTER = (byte) 'J';
 
    // Attributes ----------------------------------------------------
@@ -179,8 +188,8 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
    private final JournalFilesRepository filesRepository;
 
-   // Compacting may replace this structure
-   private final ConcurrentMap<Long, JournalRecord> records = new ConcurrentHashMap<Long, JournalRecord>();
+   // Compacting replaces this structure, while holding the journal write lock
+   private volatile ConcurrentLongHashMap<JournalRecord> records = new ConcurrentLongHashMap<JournalRecord>();
 
    // Compacting may replace this structure
    private final ConcurrentMap<Long, JournalTransaction> transactions = new ConcurrentHashMap<Long, JournalTransaction>();
@@ -190,6 +199,8 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
    private final AtomicBoolean compactorRunning = new AtomicBoolean();
 
+   private final JournalCompactStatistics compactStatistics = new JournalCompactStatistics();
+
    private ExecutorService filesExecutor = null;
 
    private ExecutorService compactorExecutor = null;
@@ -208,7 +219,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
     * <p/>
     * However we need to lock it while taking and updating snapshots
     */
-   private final ReadWriteLock journalLock = new ReentrantReadWriteLock();
+   private final ReentrantReadWriteLock journalLock = new ReentrantReadWriteLock();
    private final ReadWriteLock compactorLock = new ReentrantReadWriteLock();
 
    private volatile JournalFile currentFile;
@@ -217,6 +228,22 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
    private final Reclaimer reclaimer = new Reclaimer();
 
+   // Number of threads reading journal files ahead during load, 1 means the files are read by the loading thread
+   private volatile int loadThreads = 1;
+
+   // Number of files filled between checkpoints, 0 means checkpoints are not taken
+   private volatile int checkpointFiles = 0;
+
+   private final AtomicInteger filesSinceCheckpoint = new AtomicInteger(0);
+
+   private final AtomicBoolean checkpointRunning = new AtomicBoolean();
+
+   // Checkpoints are taken one at a time, as they replace the same file
+   private final Object checkpointLock = new Object();
+
+   // null means the records are written uncompressed
+   private volatile JournalRecordCompressor recordCompressor;
+
    // Constructors --------------------------------------------------
 
    public JournalImpl(final int fileSize,
@@ -349,11 +376,21 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       latch.await();
    }
 
-   public Map<Long, JournalRecord> getRecords()
+   public ConcurrentLongHashMap<JournalRecord> getRecords()
    {
       return records;
    }
 
+   public JournalCompactStatistics getCompactStatistics()
+   {
+      return compactStatistics;
+   }
+
+   public JournalIOStatistics getIOStatistics()
+   {
+      return fileFactory.getIOStatistics();
+   }
+
    public JournalFile getCurrentFile()
    {
       return currentFile;
@@ -364,6 +401,58 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       return compactor;
    }
 
+   /**
+    * Sets how many threads will read and decode journal files concurrently while loading.
+    * The records are still applied in the order of the files, so this doesn't change the outcome of a load.
+    */
+   public void setLoadThreads(final int loadThreads)
+   {
+      if (loadThreads < 1)
+      {
+         throw new IllegalArgumentException("loadThreads must be at least 1");
+      }
+      this.loadThreads = loadThreads;
+   }
+
+   public int getLoadThreads()
+   {
+      return loadThreads;
+   }
+
+   /**
+    * Sets how many files are filled between checkpoints of the journal, 0 disables them.
+    * A checkpoint lets a load skip the replay of the files it covers.
+    *
+    * @see #checkpoint()
+    */
+   public void setCheckpointFiles(final int checkpointFiles)
+   {
+      if (checkpointFiles < 0)
+      {
+         throw new IllegalArgumentException("checkpointFiles can't be negative");
+      }
+      this.checkpointFiles = checkpointFiles;
+   }
+
+   public int getCheckpointFiles()
+   {
+      return checkpointFiles;
+   }
+
+   /**
+    * Sets the compressor of the bodies of the add and update records appended from now on, null
+    * to write them uncompressed. Records already on the files are read either way.
+    */
+   public void setRecordCompressor(final JournalRecordCompressor recordCompressor)
+   {
+      this.recordCompressor = recordCompressor;
+   }
+
+   public JournalRecordCompressor getRecordCompressor()
+   {
+      return recordCompressor;
+   }
+
    /**
     * this method is used internally only however tools may use it to maintenance.
     * It won't be part of the interface as the tools should be specific to the implementation
@@ -407,6 +496,42 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    public static int readJournalFile(final SequentialFileFactory fileFactory,
                                      final JournalFile file,
                                      final JournalReaderCallback reader) throws Exception
+   {
+      return readJournalFile(fileFactory, file, reader, null, true);
+   }
+
+   /**
+    * Same as {@link #readJournalFile(SequentialFileFactory, JournalFile, JournalReaderCallback)}, giving
+    * compressed bodies as they are on the file when decompress is false, with {@link RecordInfo#compressed} set.
+    */
+   public static int readJournalFile(final SequentialFileFactory fileFactory,
+                                     final JournalFile file,
+                                     final JournalReaderCallback reader,
+                                     final boolean decompress) throws Exception
+   {
+      return readJournalFile(fileFactory, file, reader, null, decompress);
+   }
+
+   /**
+    * Same as {@link #readJournalFile(SequentialFileFactory, JournalFile, JournalReaderCallback)}, giving
+    * compressed bodies as they are on the file, and telling positionListener where each valid record
+    * is before it's given to the reader.
+    * <p>
+    * The journal itself reads the files this way, as the sizes of the records are their sizes on the file.
+    */
+   static int readJournalFile(final SequentialFileFactory fileFactory,
+                              final JournalFile file,
+                              final JournalReaderCallback reader,
+                              final JournalRecordPositionListener positionListener) throws Exception
+   {
+      return readJournalFile(fileFactory, file, reader, positionListener, false);
+   }
+
+   private static int readJournalFile(final SequentialFileFactory fileFactory,
+                                      final JournalFile file,
+                                      final JournalReaderCallback reader,
+                                      final JournalRecordPositionListener positionListener,
+                                      final boolean decompress) throws Exception
    {
       file.getFile().open(1, false);
       ByteBuffer wholeFileBuffer = null;
@@ -434,6 +559,15 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
             byte recordType = wholeFileBuffer.get();
 
+            boolean compressed = false;
+
+            if (JournalImpl.isCompressed(recordType))
+            {
+               compressed = true;
+
+               recordType &= ~JournalImpl.COMPRESSED_RECORD;
+            }
+
             if (recordType < JournalImpl.ADD_RECORD || recordType > JournalImpl.ROLLBACK_RECORD)
             {
                // I - We scan for any valid record on the file. If a hole
@@ -651,17 +785,22 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             // At this point everything is checked. So we relax and just load
             // the data now.
 
+            if (positionListener != null)
+            {
+               positionListener.onRecordPosition(pos, recordSize + variableSize + preparedTransactionExtraDataSize);
+            }
+
             switch (recordType)
             {
                case ADD_RECORD:
                {
-                  reader.onReadAddRecord(new RecordInfo(recordID, userRecordType, record, false, compactCount));
+                  reader.onReadAddRecord(newRecordInfo(recordID, userRecordType, record, false, compactCount, compressed, decompress));
                   break;
                }
 
                case UPDATE_RECORD:
                {
-                  reader.onReadUpdateRecord(new RecordInfo(recordID, userRecordType, record, true, compactCount));
+                  reader.onReadUpdateRecord(newRecordInfo(recordID, userRecordType, record, true, compactCount, compressed, decompress));
                   break;
                }
 
@@ -673,21 +812,25 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
                case ADD_RECORD_TX:
                {
-                  reader.onReadAddRecordTX(transactionID, new RecordInfo(recordID,
-                                                                         userRecordType,
-                                                                         record,
-                                                                         false,
-                                                                         compactCount));
+                  reader.onReadAddRecordTX(transactionID, newRecordInfo(recordID,
+                                                                        userRecordType,
+                                                                        record,
+                                                                        false,
+                                                                        compactCount,
+                                                                        compressed,
+                                                                        decompress));
                   break;
                }
 
                case UPDATE_RECORD_TX:
                {
-                  reader.onReadUpdateRecordTX(transactionID, new RecordInfo(recordID,
-                                                                            userRecordType,
-                                                                            record,
-                                                                            true,
-                                                                            compactCount));
+                  reader.onReadUpdateRecordTX(transactionID, newRecordInfo(recordID,
+                                                                           userRecordType,
+                                                                           record,
+                                                                           true,
+                                                                           compactCount,
+                                                                           compressed,
+                                                                           decompress));
                   break;
                }
 
@@ -783,18 +926,18 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    {
       checkJournalIsLoaded();
 
-      journalLock.readLock().lock();
+      acquireJournalReadLock();
 
       try
       {
-         JournalInternalRecord addRecord = new JournalAddRecord(true, id, recordType, record);
+         JournalInternalRecord addRecord = newAddRecord(true, id, recordType, record);
 
          if (callback != null)
          {
             callback.storeLineUp();
          }
 
-         lockAppend.lock();
+         acquireAppendLock();
          try
          {
             JournalFile usedFile = appendRecord(addRecord, false, sync, null, callback);
@@ -830,7 +973,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    {
       checkJournalIsLoaded();
 
-      journalLock.readLock().lock();
+      acquireJournalReadLock();
 
       try
       {
@@ -844,14 +987,14 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             }
          }
 
-         JournalInternalRecord updateRecord = new JournalAddRecord(false, id, recordType, record);
+         JournalInternalRecord updateRecord = newAddRecord(false, id, recordType, record);
 
          if (callback != null)
          {
             callback.storeLineUp();
          }
 
-         lockAppend.lock();
+         acquireAppendLock();
          try
          {
             JournalFile usedFile = appendRecord(updateRecord, false, sync, null, callback);
@@ -893,7 +1036,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    {
       checkJournalIsLoaded();
 
-      journalLock.readLock().lock();
+      acquireJournalReadLock();
       try
       {
 
@@ -923,7 +1066,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             callback.storeLineUp();
          }
 
-         lockAppend.lock();
+         acquireAppendLock();
          try
          {
             JournalFile usedFile = appendRecord(deleteRecord, false, sync, null, callback);
@@ -964,15 +1107,15 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    {
       checkJournalIsLoaded();
 
-      journalLock.readLock().lock();
+      acquireJournalReadLock();
 
       try
       {
-         JournalInternalRecord addRecord = new JournalAddRecordTX(true, txID, id, recordType, record);
+         JournalInternalRecord addRecord = newAddRecordTX(true, txID, id, recordType, record);
 
          JournalTransaction tx = getTransactionInfo(txID);
 
-         lockAppend.lock();
+         acquireAppendLock();
          try
          {
             JournalFile usedFile = appendRecord(addRecord, false, false, tx, null);
@@ -1001,6 +1144,35 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       }
    }
 
+   /**
+    * Takes the read lock of the journal, timing the wait only when the lock is taken or wanted by a writer,
+    * so the statistics cost nothing while the lock isn't contended.
+    * A tryLock first would be cheaper, but it would let readers overtake a waiting compactor.
+    */
+   private void acquireJournalReadLock()
+   {
+      if (journalLock.isWriteLocked() || journalLock.hasQueuedThreads())
+      {
+         long start = System.nanoTime();
+         journalLock.readLock().lock();
+         fileFactory.getIOStatistics().journalLockWaited(System.nanoTime() - start);
+      }
+      else
+      {
+         journalLock.readLock().lock();
+      }
+   }
+
+   private void acquireAppendLock()
+   {
+      if (!lockAppend.tryLock())
+      {
+         long start = System.nanoTime();
+         lockAppend.lock();
+         fileFactory.getIOStatistics().appendLockWaited(System.nanoTime() - start);
+      }
+   }
+
    private void checkJournalIsLoaded()
    {
       if (state != JournalState.LOADED && state != JournalState.SYNCING)
@@ -1022,15 +1194,15 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    {
       checkJournalIsLoaded();
 
-      journalLock.readLock().lock();
+      acquireJournalReadLock();
 
       try
       {
-         JournalInternalRecord updateRecordTX = new JournalAddRecordTX(false, txID, id, recordType, record);
+         JournalInternalRecord updateRecordTX = newAddRecordTX(false, txID, id, recordType, record);
 
          JournalTransaction tx = getTransactionInfo(txID);
 
-         lockAppend.lock();
+         acquireAppendLock();
          try
          {
             JournalFile usedFile = appendRecord(updateRecordTX, false, false, tx, null);
@@ -1065,7 +1237,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    {
       checkJournalIsLoaded();
 
-      journalLock.readLock().lock();
+      acquireJournalReadLock();
 
       try
       {
@@ -1073,7 +1245,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
          JournalTransaction tx = getTransactionInfo(txID);
 
-         lockAppend.lock();
+         acquireAppendLock();
          try
          {
             JournalFile usedFile = appendRecord(deleteRecordTX, false, false, tx, null);
@@ -1121,7 +1293,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       checkJournalIsLoaded();
 
-      journalLock.readLock().lock();
+      acquireJournalReadLock();
 
       try
       {
@@ -1135,7 +1307,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             callback.storeLineUp();
          }
 
-         lockAppend.lock();
+         acquireAppendLock();
          try
          {
             JournalFile usedFile = appendRecord(prepareRecord, true, sync, tx, callback);
@@ -1174,7 +1346,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    {
       checkJournalIsLoaded();
 
-      journalLock.readLock().lock();
+      acquireJournalReadLock();
 
       try
       {
@@ -1192,7 +1364,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             callback.storeLineUp();
          }
 
-         lockAppend.lock();
+         acquireAppendLock();
          try
          {
             JournalFile usedFile = appendRecord(commitRecord, true, sync, tx, callback);
@@ -1221,7 +1393,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    {
       checkJournalIsLoaded();
 
-      journalLock.readLock().lock();
+      acquireJournalReadLock();
 
       JournalTransaction tx = null;
 
@@ -1241,7 +1413,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             callback.storeLineUp();
          }
 
-         lockAppend.lock();
+         acquireAppendLock();
          try
          {
             JournalFile usedFile = appendRecord(rollbackRecord, false, sync, tx, callback);
@@ -1469,6 +1641,11 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
          boolean previousReclaimValue = isAutoReclaim();
 
+         long start = System.currentTimeMillis();
+
+         // The time spent holding the journal write lock, when no records can be appended
+         long stallTime = 0;
+
          try
          {
             ActiveMQJournalLogger.LOGGER.debug("Starting compacting operation on journal");
@@ -1477,6 +1654,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
             // We need to guarantee that the journal is frozen for this short time
             // We don't freeze the journal as we compact, only for the short time where we replace records
+            long lockTime = System.nanoTime();
             journalLock.writeLock().lock();
             try
             {
@@ -1489,6 +1667,9 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
                setAutoReclaim(false);
 
+               // Compacting writes the records again on files with any ID, a checkpoint wouldn't be valid anymore
+               deleteCheckpoint();
+
                // We need to move to the next file, as we need a clear start for negatives and positives counts
                moveNextFile(false);
 
@@ -1504,10 +1685,18 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
                   return;
                }
 
+               // The current records are handed to the compactor as its snapshot, and the journal starts on an
+               // empty map. The new records will be calculated during compacting, and will take their position
+               // after compacting. Replacing the map instead of copying and clearing it keeps this lock short
+               // whatever the number of records.
+               ConcurrentLongHashMap<JournalRecord> recordsSnapshot = records;
+
+               records = new ConcurrentLongHashMap<JournalRecord>();
+
                compactor = new JournalCompactor(fileFactory,
                                                 this,
                                                 filesRepository,
-                                                records.keySet(),
+                                                recordsSnapshot,
                                                 dataFilesToProcess.get(0).getFileID());
 
                for (Map.Entry<Long, JournalTransaction> entry : transactions.entrySet())
@@ -1515,14 +1704,11 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
                   compactor.addPendingTransaction(entry.getKey(), entry.getValue().getPositiveArray());
                   entry.getValue().setCompacting();
                }
-
-               // We will calculate the new records during compacting, what will take the position the records will take
-               // after compacting
-               records.clear();
             }
             finally
             {
                journalLock.writeLock().unlock();
+               stallTime += System.nanoTime() - lockTime;
             }
 
             Collections.sort(dataFilesToProcess, new JournalFileComparator());
@@ -1536,7 +1722,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             {
                try
                {
-                  JournalImpl.readJournalFile(fileFactory, file, compactor);
+                  JournalImpl.readJournalFile(fileFactory, file, compactor, null);
                }
                catch (Throwable e)
                {
@@ -1558,6 +1744,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
             SequentialFile controlFile = createControlFile(dataFilesToProcess, compactor.getNewDataFiles(), null);
 
+            lockTime = System.nanoTime();
             journalLock.writeLock().lock();
             try
             {
@@ -1568,11 +1755,20 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
                newDatafiles = localCompactor.getNewDataFiles();
 
-               // Restore newRecords created during compacting
-               for (Map.Entry<Long, JournalRecord> newRecordEntry : localCompactor.getNewRecords().entrySet())
+               // The records created during compacting become the journal records.
+               // Only the records added while the compactor was running are copied over to them,
+               // so this is proportional to the activity during compacting and not to the size of the journal
+               final ConcurrentLongHashMap<JournalRecord> newRecords = localCompactor.getNewRecords();
+
+               records.forEach(new ConcurrentLongHashMap.EntryProcessor<JournalRecord>()
                {
-                  records.put(newRecordEntry.getKey(), newRecordEntry.getValue());
-               }
+                  public void accept(final long id, final JournalRecord record)
+                  {
+                     newRecords.putIfAbsent(id, record);
+                  }
+               });
+
+               records = newRecords;
 
                // Restore compacted dataFiles
                for (int i = newDatafiles.size() - 1; i >= 0; i--)
@@ -1623,13 +1819,18 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
             finally
             {
                journalLock.writeLock().unlock();
+               stallTime += System.nanoTime() - lockTime;
             }
 
             // At this point the journal is unlocked. We keep renaming files while the journal is already operational
             renameFiles(dataFilesToProcess, newDatafiles);
             deleteControlFile(controlFile);
 
-            ActiveMQJournalLogger.LOGGER.debug("Finished compacting on journal");
+            compactStatistics.compactDone(System.currentTimeMillis() - start,
+                                          (long)(dataFilesToProcess.size() - newDatafiles.size()) * fileSize,
+                                          TimeUnit.NANOSECONDS.toMicros(stallTime));
+
+            ActiveMQJournalLogger.LOGGER.debug("Finished compacting on journal, " + compactStatistics);
 
          }
          finally
@@ -1698,6 +1899,16 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       return load(loadManager, true, null);
    }
 
+   /**
+    * @param fixBadTX if {@code false} the files are left as they are, transactions missing their
+    *                 commit or rollback record are only reported to the loader.
+    * @see JournalImpl#load(LoaderCallback)
+    */
+   public JournalLoadInformation load(final LoaderCallback loadManager, final boolean fixBadTX) throws Exception
+   {
+      return load(loadManager, fixBadTX, null);
+   }
+
    /**
     * @param loadManager
     * @param changeData
@@ -1718,6 +1929,8 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          throw new IllegalStateException("Journal cannot be in state " + JournalState.STARTED);
       }
 
+      final long loadStart = System.nanoTime();
+
       checkControlFile();
 
       records.clear();
@@ -1733,279 +1946,352 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       filesRepository.calculateNextfileID(orderedFiles);
 
+      final long filesOrdered = System.nanoTime();
+
       int lastDataPos = JournalImpl.SIZE_HEADER;
 
       // AtomicLong is used only as a reference, not as an Atomic value
       final AtomicLong maxID = new AtomicLong(-1);
 
-      for (final JournalFile file : orderedFiles)
-      {
-         JournalImpl.trace("Loading file " + file.getFile().getFileName());
+      final JournalCheckpoint checkpoint = loadCheckpoint(loadManager, orderedFiles, replicationSync);
 
-         final AtomicBoolean hasData = new AtomicBoolean(false);
+      final List<JournalFile> filesToLoad;
 
-         int resultLastPost = JournalImpl.readJournalFile(fileFactory, file, new JournalReaderCallback()
-         {
+      if (checkpoint == null)
+      {
+         filesToLoad = orderedFiles;
+      }
+      else
+      {
+         filesToLoad = new ArrayList<JournalFile>();
 
-            private void checkID(final long id)
+         for (JournalFile file : orderedFiles)
+         {
+            if (file.getFileID() > checkpoint.getLastFileID())
             {
-               if (id > maxID.longValue())
-               {
-                  maxID.set(id);
-               }
+               filesToLoad.add(file);
             }
-
-            public void onReadAddRecord(final RecordInfo info) throws Exception
+            else if (checkpoint.covers(file))
+            {
+               lastDataPos = checkpoint.getLastDataPosition(file);
+               filesRepository.addDataFileOnBottom(file);
+            }
+            else if (changeData)
             {
-               checkID(info.id);
+               // The file had no data when the checkpoint was taken, and files are never reused with a lower ID
+               filesRepository.addFreeFile(file, false, false);
+            }
+         }
 
-               hasData.set(true);
+         maxID.set(checkpoint.getMaxID());
+      }
 
-               loadManager.addRecord(info);
+      final JournalFilesReadAhead readAhead;
 
-               records.put(info.id, new JournalRecord(file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1));
-            }
+      if (loadThreads > 1 && filesToLoad.size() > 1)
+      {
+         readAhead = new JournalFilesReadAhead(fileFactory, filesToLoad, Math.min(loadThreads, filesToLoad.size()));
+      }
+      else
+      {
+         readAhead = null;
+      }
 
-            public void onReadUpdateRecord(final RecordInfo info) throws Exception
-            {
-               checkID(info.id);
+      // The last data file may only be appended to if it's not covered by the checkpoint
+      boolean loadedData = false;
 
-               hasData.set(true);
+      try
+      {
+         for (final JournalFile file : filesToLoad)
+         {
+            JournalImpl.trace("Loading file " + file.getFile().getFileName());
 
-               loadManager.updateRecord(info);
+            final AtomicBoolean hasData = new AtomicBoolean(false);
 
-               JournalRecord posFiles = records.get(info.id);
+            JournalReaderCallback loadCallback = new JournalReaderCallback()
+            {
 
-               if (posFiles != null)
+               private void checkID(final long id)
                {
-                  // It's legal for this to be null. The file(s) with the may
-                  // have been deleted
-                  // just leaving some updates in this file
-
-                  posFiles.addUpdateFile(file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1); // +1 = compact
-                  // count
+                  if (id > maxID.longValue())
+                  {
+                     maxID.set(id);
+                  }
                }
-            }
 
-            public void onReadDeleteRecord(final long recordID) throws Exception
-            {
-               hasData.set(true);
+               public void onReadAddRecord(final RecordInfo info) throws Exception
+               {
+                  checkID(info.id);
 
-               loadManager.deleteRecord(recordID);
+                  hasData.set(true);
 
-               JournalRecord posFiles = records.remove(recordID);
+                  loadManager.addRecord(JournalRecordCompressor.decompress(info));
 
-               if (posFiles != null)
-               {
-                  posFiles.delete(file);
+                  records.put(info.id, new JournalRecord(file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1));
                }
-            }
 
-            public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info) throws Exception
-            {
-               onReadAddRecordTX(transactionID, info);
-            }
+               public void onReadUpdateRecord(final RecordInfo info) throws Exception
+               {
+                  checkID(info.id);
 
-            public void onReadAddRecordTX(final long transactionID, final RecordInfo info) throws Exception
-            {
+                  hasData.set(true);
 
-               checkID(info.id);
+                  loadManager.updateRecord(JournalRecordCompressor.decompress(info));
 
-               hasData.set(true);
+                  JournalRecord posFiles = records.get(info.id);
 
-               TransactionHolder tx = loadTransactions.get(transactionID);
+                  if (posFiles != null)
+                  {
+                     // It's legal for this to be null. The file(s) with the may
+                     // have been deleted
+                     // just leaving some updates in this file
+
+                     posFiles.addUpdateFile(file, info.data.length + JournalImpl.SIZE_ADD_RECORD + 1); // +1 = compact
+                     // count
+                  }
+               }
 
-               if (tx == null)
+               public void onReadDeleteRecord(final long recordID) throws Exception
                {
-                  tx = new TransactionHolder(transactionID);
+                  hasData.set(true);
 
-                  loadTransactions.put(transactionID, tx);
-               }
+                  loadManager.deleteRecord(recordID);
 
-               tx.recordInfos.add(info);
+                  JournalRecord posFiles = records.remove(recordID);
 
-               JournalTransaction tnp = transactions.get(transactionID);
+                  if (posFiles != null)
+                  {
+                     posFiles.delete(file);
+                  }
+               }
 
-               if (tnp == null)
+               public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info) throws Exception
                {
-                  tnp = new JournalTransaction(transactionID, JournalImpl.this);
-
-                  transactions.put(transactionID, tnp);
+                  onReadAddRecordTX(transactionID, info);
                }
 
-               tnp.addPositive(file, info.id, info.data.length + JournalImpl.SIZE_ADD_RECORD_TX + 1); // +1 = compact
-               // count
-            }
+               public void onReadAddRecordTX(final long transactionID, final RecordInfo info) throws Exception
+               {
 
-            public void onReadDeleteRecordTX(final long transactionID, final RecordInfo info) throws Exception
-            {
-               hasData.set(true);
+                  checkID(info.id);
 
-               TransactionHolder tx = loadTransactions.get(transactionID);
+                  hasData.set(true);
 
-               if (tx == null)
-               {
-                  tx = new TransactionHolder(transactionID);
+                  TransactionHolder tx = loadTransactions.get(transactionID);
 
-                  loadTransactions.put(transactionID, tx);
-               }
+                  if (tx == null)
+                  {
+                     tx = new TransactionHolder(transactionID);
 
-               tx.recordsToDelete.add(info);
+                     loadTransactions.put(transactionID, tx);
+                  }
 
-               JournalTransaction tnp = transactions.get(transactionID);
+                  tx.recordInfos.add(JournalRecordCompressor.decompress(info));
 
-               if (tnp == null)
-               {
-                  tnp = new JournalTransaction(transactionID, JournalImpl.this);
+                  JournalTransaction tnp = transactions.get(transactionID);
 
-                  transactions.put(transactionID, tnp);
+                  if (tnp == null)
+                  {
+                     tnp = new JournalTransaction(transactionID, JournalImpl.this);
+
+                     transactions.put(transactionID, tnp);
+                  }
+
+                  tnp.addPositive(file, info.id, info.data.length + JournalImpl.SIZE_ADD_RECORD_TX + 1); // +1 = compact
+                  // count
                }
 
-               tnp.addNegative(file, info.id);
+               public void onReadDeleteRecordTX(final long transactionID, final RecordInfo info) throws Exception
+               {
+                  hasData.set(true);
 
-            }
+                  TransactionHolder tx = loadTransactions.get(transactionID);
 
-            public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords) throws Exception
-            {
-               hasData.set(true);
+                  if (tx == null)
+                  {
+                     tx = new TransactionHolder(transactionID);
 
-               TransactionHolder tx = loadTransactions.get(transactionID);
+                     loadTransactions.put(transactionID, tx);
+                  }
 
-               if (tx == null)
-               {
-                  // The user could choose to prepare empty transactions
-                  tx = new TransactionHolder(transactionID);
+                  tx.recordsToDelete.add(info);
 
-                  loadTransactions.put(transactionID, tx);
-               }
+                  JournalTransaction tnp = transactions.get(transactionID);
 
-               tx.prepared = true;
+                  if (tnp == null)
+                  {
+                     tnp = new JournalTransaction(transactionID, JournalImpl.this);
 
-               tx.extraData = extraData;
+                     transactions.put(transactionID, tnp);
+                  }
 
-               JournalTransaction journalTransaction = transactions.get(transactionID);
+                  tnp.addNegative(file, info.id);
 
-               if (journalTransaction == null)
+               }
+
+               public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords) throws Exception
                {
-                  journalTransaction = new JournalTransaction(transactionID, JournalImpl.this);
+                  hasData.set(true);
 
-                  transactions.put(transactionID, journalTransaction);
-               }
+                  TransactionHolder tx = loadTransactions.get(transactionID);
 
-               boolean healthy = checkTransactionHealth(file, journalTransaction, orderedFiles, numberOfRecords);
+                  if (tx == null)
+                  {
+                     // The user could choose to prepare empty transactions
+                     tx = new TransactionHolder(transactionID);
 
-               if (healthy)
-               {
-                  journalTransaction.prepare(file);
-               }
-               else
-               {
-                  ActiveMQJournalLogger.LOGGER.preparedTXIncomplete(transactionID);
-                  tx.invalid = true;
-               }
-            }
+                     loadTransactions.put(transactionID, tx);
+                  }
 
-            public void onReadCommitRecord(final long transactionID, final int numberOfRecords) throws Exception
-            {
-               TransactionHolder tx = loadTransactions.remove(transactionID);
+                  tx.prepared = true;
 
-               // The commit could be alone on its own journal-file and the
-               // whole transaction body was reclaimed but not the
-               // commit-record
-               // So it is completely legal to not find a transaction at this
-               // point
-               // If we can't find it, we assume the TX was reclaimed and we
-               // ignore this
-               if (tx != null)
-               {
-                  JournalTransaction journalTransaction = transactions.remove(transactionID);
+                  tx.extraData = extraData;
+
+                  JournalTransaction journalTransaction = transactions.get(transactionID);
 
                   if (journalTransaction == null)
                   {
-                     throw new IllegalStateException("Cannot find tx " + transactionID);
+                     journalTransaction = new JournalTransaction(transactionID, JournalImpl.this);
+
+                     transactions.put(transactionID, journalTransaction);
                   }
 
                   boolean healthy = checkTransactionHealth(file, journalTransaction, orderedFiles, numberOfRecords);
 
                   if (healthy)
                   {
-                     for (RecordInfo txRecord : tx.recordInfos)
+                     journalTransaction.prepare(file);
+                  }
+                  else
+                  {
+                     ActiveMQJournalLogger.LOGGER.preparedTXIncomplete(transactionID);
+                     tx.invalid = true;
+                  }
+               }
+
+               public void onReadCommitRecord(final long transactionID, final int numberOfRecords) throws Exception
+               {
+                  TransactionHolder tx = loadTransactions.remove(transactionID);
+
+                  // The commit could be alone on its own journal-file and the
+                  // whole transaction body was reclaimed but not the
+                  // commit-record
+                  // So it is completely legal to not find a transaction at this
+                  // point
+                  // If we can't find it, we assume the TX was reclaimed and we
+                  // ignore this
+                  if (tx != null)
+                  {
+                     JournalTransaction journalTransaction = transactions.remove(transactionID);
+
+                     if (journalTransaction == null)
+                     {
+                        throw new IllegalStateException("Cannot find tx " + transactionID);
+                     }
+
+                     boolean healthy = checkTransactionHealth(file, journalTransaction, orderedFiles, numberOfRecords);
+
+                     if (healthy)
                      {
-                        if (txRecord.isUpdate)
+                        for (RecordInfo txRecord : tx.recordInfos)
                         {
-                           loadManager.updateRecord(txRecord);
+                           if (txRecord.isUpdate)
+                           {
+                              loadManager.updateRecord(txRecord);
+                           }
+                           else
+                           {
+                              loadManager.addRecord(txRecord);
+                           }
                         }
-                        else
+
+                        for (RecordInfo deleteValue : tx.recordsToDelete)
                         {
-                           loadManager.addRecord(txRecord);
+                           loadManager.deleteRecord(deleteValue.id);
                         }
-                     }
 
-                     for (RecordInfo deleteValue : tx.recordsToDelete)
-                     {
-                        loadManager.deleteRecord(deleteValue.id);
+                        journalTransaction.commit(file);
                      }
+                     else
+                     {
+                        ActiveMQJournalLogger.LOGGER.txMissingElements(transactionID);
 
-                     journalTransaction.commit(file);
-                  }
-                  else
-                  {
-                     ActiveMQJournalLogger.LOGGER.txMissingElements(transactionID);
+                        journalTransaction.forget();
+                     }
 
-                     journalTransaction.forget();
+                     hasData.set(true);
                   }
 
-                  hasData.set(true);
                }
 
-            }
-
-            public void onReadRollbackRecord(final long transactionID) throws Exception
-            {
-               TransactionHolder tx = loadTransactions.remove(transactionID);
-
-               // The rollback could be alone on its own journal-file and the
-               // whole transaction body was reclaimed but the commit-record
-               // So it is completely legal to not find a transaction at this
-               // point
-               if (tx != null)
+               public void onReadRollbackRecord(final long transactionID) throws Exception
                {
-                  JournalTransaction tnp = transactions.remove(transactionID);
+                  TransactionHolder tx = loadTransactions.remove(transactionID);
 
-                  if (tnp == null)
+                  // The rollback could be alone on its own journal-file and the
+                  // whole transaction body was reclaimed but the commit-record
+                  // So it is completely legal to not find a transaction at this
+                  // point
+                  if (tx != null)
                   {
-                     throw new IllegalStateException("Cannot find tx " + transactionID);
-                  }
+                     JournalTransaction tnp = transactions.remove(transactionID);
 
-                  // There is no need to validate summaries/holes on
-                  // Rollbacks.. We will ignore the data anyway.
-                  tnp.rollback(file);
+                     if (tnp == null)
+                     {
+                        throw new IllegalStateException("Cannot find tx " + transactionID);
+                     }
+
+                     // There is no need to validate summaries/holes on
+                     // Rollbacks.. We will ignore the data anyway.
+                     tnp.rollback(file);
+
+                     hasData.set(true);
+                  }
+               }
 
+               public void markAsDataFile(final JournalFile file)
+               {
                   hasData.set(true);
                }
-            }
 
-            public void markAsDataFile(final JournalFile file)
+            };
+
+            int resultLastPost;
+
+            if (readAhead != null)
             {
-               hasData.set(true);
+               resultLastPost = readAhead.replay(file, loadCallback);
+            }
+            else
+            {
+               resultLastPost = JournalImpl.readJournalFile(fileFactory, file, loadCallback, null);
             }
 
-         });
-
-         if (hasData.get())
-         {
-            lastDataPos = resultLastPost;
-            filesRepository.addDataFileOnBottom(file);
-         }
-         else
-         {
-            if (changeData)
+            if (hasData.get())
             {
-               // Empty dataFiles with no data
-               filesRepository.addFreeFile(file, false, false);
+               lastDataPos = resultLastPost;
+               filesRepository.addDataFileOnBottom(file);
+               loadedData = true;
+            }
+            else
+            {
+               if (changeData)
+               {
+                  // Empty dataFiles with no data
+                  filesRepository.addFreeFile(file, false, false);
+               }
             }
          }
       }
+      finally
+      {
+         if (readAhead != null)
+         {
+            readAhead.shutdown();
+         }
+      }
+
+      final long filesLoaded = System.nanoTime();
 
       if (replicationSync == JournalState.SYNCING)
       {
@@ -2014,7 +2300,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          return new JournalLoadInformation(0, -1);
       }
 
-      setUpCurrentFile(lastDataPos);
+      setUpCurrentFile(lastDataPos, checkpoint == null || loadedData);
 
       setJournalState(JournalState.LOADED);
 
@@ -2056,9 +2342,247 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       checkReclaimStatus();
 
+      final long loadEnd = System.nanoTime();
+
+      if (ActiveMQJournalLogger.LOGGER.isDebugEnabled())
+      {
+         long readMillis = readAhead == null ? -1 : TimeUnit.NANOSECONDS.toMillis(readAhead.getReadNanos());
+         long waitMillis = readAhead == null ? -1 : TimeUnit.NANOSECONDS.toMillis(readAhead.getWaitNanos());
+
+         ActiveMQJournalLogger.LOGGER.journalLoadTimes(filesRepository.getFilePrefix(),
+                                                       orderedFiles.size(),
+                                                       TimeUnit.NANOSECONDS.toMillis(loadEnd - loadStart),
+                                                       TimeUnit.NANOSECONDS.toMillis(filesOrdered - loadStart),
+                                                       TimeUnit.NANOSECONDS.toMillis(filesLoaded - filesOrdered),
+                                                       readMillis,
+                                                       waitMillis,
+                                                       TimeUnit.NANOSECONDS.toMillis(loadEnd - filesLoaded),
+                                                       readAhead == null ? 1 : loadThreads);
+      }
+
+      if (checkpoint != null)
+      {
+         ActiveMQJournalLogger.LOGGER.journalLoadedFromCheckpoint(filesRepository.getFilePrefix(),
+                                                                  checkpoint.getLastFileID(),
+                                                                  checkpoint.getNumberOfRecords(),
+                                                                  checkpoint.getNumberOfFiles(),
+                                                                  filesToLoad.size(),
+                                                                  TimeUnit.NANOSECONDS.toMillis(loadEnd - loadStart));
+      }
+
       return new JournalLoadInformation(records.size(), maxID.longValue());
    }
 
+   /**
+    * Reads the checkpoint and restores the covered files and the live records from it, before the
+    * files after it are loaded.
+    *
+    * @return null if there is no checkpoint or it can't be used, and all the files need to be loaded
+    */
+   private JournalCheckpoint loadCheckpoint(final LoaderCallback loadManager,
+                                            final List<JournalFile> orderedFiles,
+                                            final JournalState replicationSync) throws Exception
+   {
+      File checkpointFile = getCheckpointFile();
+
+      if (checkpointFile == null || !checkpointFile.exists())
+      {
+         return null;
+      }
+
+      if (replicationSync != null || checkpointFiles == 0)
+      {
+         // The files are being replaced by the ones from the live server, or checkpoints are disabled
+         checkpointFile.delete();
+         return null;
+      }
+
+      JournalCheckpoint checkpoint;
+
+      List<RecordInfo> checkpointRecords;
+
+      try
+      {
+         checkpoint = JournalCheckpoint.read(checkpointFile, userVersion);
+
+         checkpointRecords = checkpoint.readRecords(fileFactory, orderedFiles);
+      }
+      catch (Exception e)
+      {
+         ActiveMQJournalLogger.LOGGER.ignoringCheckpoint(checkpointFile.getPath(), e);
+         checkpointFile.delete();
+         return null;
+      }
+
+      checkpoint.restore(orderedFiles, records);
+
+      // The same as the records would have been given on a full load, before any of the files after the checkpoint
+      for (RecordInfo info : checkpointRecords)
+      {
+         if (info.isUpdate)
+         {
+            loadManager.updateRecord(info);
+         }
+         else
+         {
+            loadManager.addRecord(info);
+         }
+      }
+
+      return checkpoint;
+   }
+
+   /**
+    * @return null if the files of the journal are not on a directory
+    */
+   private File getCheckpointFile()
+   {
+      String directory = fileFactory.getDirectory();
+
+      if (directory == null)
+      {
+         return null;
+      }
+
+      return new File(directory, filesRepository.getFilePrefix() + "." + JournalCheckpoint.EXTENSION);
+   }
+
+   private void deleteCheckpoint()
+   {
+      File checkpointFile = getCheckpointFile();
+
+      if (checkpointFile != null && checkpointFile.exists())
+      {
+         checkpointFile.delete();
+      }
+   }
+
+   /**
+    * Takes a checkpoint of the journal up to the last data file, so a load only replays the files
+    * after it. The files since the previous checkpoint are replayed on top of it, reading them on
+    * their own without holding the journal locks.
+    * <p/>
+    * No checkpoint is taken if a transaction is still open on the data files.
+    *
+    * @return true if there is a checkpoint up to the last data file
+    */
+   public boolean checkpoint() throws Exception
+   {
+      File checkpointFile = getCheckpointFile();
+
+      if (checkpointFile == null)
+      {
+         return false;
+      }
+
+      // compacting replaces the data files, it can't happen while the files are replayed
+      compactorLock.readLock().lock();
+
+      try
+      {
+         synchronized (checkpointLock)
+         {
+            return checkpoint(checkpointFile);
+         }
+      }
+      finally
+      {
+         compactorLock.readLock().unlock();
+      }
+   }
+
+   private boolean checkpoint(final File checkpointFile) throws Exception
+   {
+      if (state != JournalState.LOADED)
+      {
+         return false;
+      }
+
+      JournalFile[] dataFiles = getDataFiles();
+
+      Arrays.sort(dataFiles, new JournalFileComparator());
+
+      JournalCheckpoint previous;
+
+      try
+      {
+         previous = JournalCheckpoint.read(checkpointFile, userVersion);
+      }
+      catch (IOException e)
+      {
+         ActiveMQJournalLogger.LOGGER.ignoringCheckpoint(checkpointFile.getPath(), e);
+         previous = null;
+      }
+
+      JournalCheckpoint.Builder builder = new JournalCheckpoint.Builder(previous);
+
+      boolean newFiles = false;
+
+      for (JournalFile file : dataFiles)
+      {
+         if (file.getFileID() > builder.getLastFileID())
+         {
+            if (state != JournalState.LOADED)
+            {
+               return false;
+            }
+
+            builder.replay(fileFactory, file);
+
+            newFiles = true;
+         }
+      }
+
+      if (!newFiles)
+      {
+         return previous != null;
+      }
+
+      JournalCheckpoint checkpoint = builder.build(dataFiles);
+
+      if (checkpoint == null)
+      {
+         if (ActiveMQJournalLogger.LOGGER.isDebugEnabled())
+         {
+            ActiveMQJournalLogger.LOGGER.debug("No checkpoint taken on " + this + ", as there are open transactions");
+         }
+         return false;
+      }
+
+      checkpoint.write(checkpointFile, userVersion);
+
+      filesSinceCheckpoint.set(0);
+
+      return true;
+   }
+
+   private void scheduleCheckpoint()
+   {
+      if (state != JournalState.LOADED || !checkpointRunning.compareAndSet(false, true))
+      {
+         return;
+      }
+
+      compactorExecutor.execute(new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               checkpoint();
+            }
+            catch (Throwable e)
+            {
+               ActiveMQJournalLogger.LOGGER.errorTakingCheckpoint(e);
+            }
+            finally
+            {
+               checkpointRunning.set(false);
+            }
+         }
+      });
+   }
+
    /**
     * @return true if cleanup was called
     */
@@ -2082,21 +2606,25 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       }
       try
       {
-         reclaimer.scan(getDataFiles());
-
-         for (JournalFile file : filesRepository.getDataFiles())
+         // A checkpoint being taken reads the data files on their own, they can't be reused meanwhile
+         synchronized (checkpointLock)
          {
-            if (file.isCanReclaim())
+            reclaimer.scan(getDataFiles());
+
+            for (JournalFile file : filesRepository.getDataFiles())
             {
-               // File can be reclaimed or deleted
-               if (JournalImpl.trace)
+               if (file.isCanReclaim())
                {
-                  JournalImpl.trace("Reclaiming file " + file);
-               }
+                  // File can be reclaimed or deleted
+                  if (JournalImpl.trace)
+                  {
+                     JournalImpl.trace("Reclaiming file " + file);
+                  }
 
-               filesRepository.removeDataFile(file);
+                  filesRepository.removeDataFile(file);
 
-               filesRepository.addFreeFile(file, false);
+                  filesRepository.addFreeFile(file, false);
+               }
             }
          }
       }
@@ -2578,6 +3106,44 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    // Private
    // -----------------------------------------------------------------------------
 
+   /**
+    * The body is compressed here, before the append lock is taken
+    */
+   private JournalInternalRecord newAddRecord(final boolean add,
+                                              final long id,
+                                              final byte recordType,
+                                              final EncodingSupport record)
+   {
+      JournalRecordCompressor compressor = recordCompressor;
+
+      EncodingSupport compressed = compressor == null ? null : compressor.compress(record);
+
+      if (compressed != null)
+      {
+         return new JournalAddRecord(add, id, recordType, compressed, true);
+      }
+
+      return new JournalAddRecord(add, id, recordType, record);
+   }
+
+   private JournalInternalRecord newAddRecordTX(final boolean add,
+                                                final long txID,
+                                                final long id,
+                                                final byte recordType,
+                                                final EncodingSupport record)
+   {
+      JournalRecordCompressor compressor = recordCompressor;
+
+      EncodingSupport compressed = compressor == null ? null : compressor.compress(record);
+
+      if (compressed != null)
+      {
+         return new JournalAddRecordTX(add, txID, id, recordType, compressed, true);
+      }
+
+      return new JournalAddRecordTX(add, txID, id, recordType, record);
+   }
+
    /**
     * <p/>
     * Checks for holes on the transaction (a commit written but with an incomplete transaction).
@@ -2613,12 +3179,45 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          recordType == JournalImpl.ROLLBACK_RECORD;
    }
 
+   /**
+    * Only add and update records are compressed, any other type with the flag is not a record
+    */
+   static boolean isCompressed(final byte recordType)
+   {
+      if ((recordType & JournalImpl.COMPRESSED_RECORD) == 0)
+      {
+         return false;
+      }
+
+      byte type = (byte) (recordType & ~JournalImpl.COMPRESSED_RECORD);
+
+      return type == JournalImpl.ADD_RECORD || type == JournalImpl.UPDATE_RECORD ||
+         type == JournalImpl.ADD_RECORD_TX ||
+         type == JournalImpl.UPDATE_RECORD_TX;
+   }
+
+   private static RecordInfo newRecordInfo(final long recordID,
+                                           final byte userRecordType,
+                                           final byte[] record,
+                                           final boolean isUpdate,
+                                           final short compactCount,
+                                           final boolean compressed,
+                                           final boolean decompress) throws IOException
+   {
+      if (compressed && decompress)
+      {
+         return new RecordInfo(recordID, userRecordType, JournalRecordCompressor.decompress(record), isUpdate, compactCount);
+      }
+
+      return new RecordInfo(recordID, userRecordType, record, isUpdate, compactCount, compressed);
+   }
+
    private static boolean isContainsBody(final byte recordType)
    {
       return recordType >= JournalImpl.ADD_RECORD && recordType <= JournalImpl.DELETE_RECORD_TX;
    }
 
-   private static int getRecordSize(final byte recordType, final int journalVersion)
+   static int getRecordSize(final byte recordType, final int journalVersion)
    {
       // The record size (without the variable portion)
       int recordSize = 0;
@@ -3090,6 +3689,9 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       synchronizationLock();
       try
       {
+         // the files from the live server may have any ID
+         deleteCheckpoint();
+
          Map<Long, JournalFile> map = new HashMap<Long, JournalFile>();
          long maxID = -1;
          for (long id : fileIds)
@@ -3118,6 +3720,14 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
     * @throws Exception
     */
    protected JournalFile setUpCurrentFile(int lastDataPos) throws Exception
+   {
+      return setUpCurrentFile(lastDataPos, true);
+   }
+
+   /**
+    * @param appendToLastDataFile false to start a new file even if the last data file has space left
+    */
+   private JournalFile setUpCurrentFile(int lastDataPos, boolean appendToLastDataFile) throws Exception
    {
       // Create any more files we need
 
@@ -3125,7 +3735,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
       // The current file is the last one that has data
 
-      currentFile = filesRepository.pollLastDataFile();
+      currentFile = appendToLastDataFile ? filesRepository.pollLastDataFile() : null;
       if (currentFile != null)
       {
          if (!currentFile.getFile().isOpen())
@@ -3221,6 +3831,11 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          scheduleReclaim();
       }
 
+      if (checkpointFiles > 0 && filesSinceCheckpoint.incrementAndGet() >= checkpointFiles)
+      {
+         scheduleCheckpoint();
+      }
+
       if (trace)
       {
          ActiveMQJournalLogger.LOGGER.trace("Moving next file " + currentFile);
@@ -16,10 +16,7 @@
  */
 package org.apache.activemq.core.journal.impl;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import org.apache.activemq.api.core.Pair;
+import java.util.Arrays;
 
 /**
  * This holds the relationship a record has with other files in regard to reference counting.
@@ -35,7 +32,13 @@ public class JournalRecord
 
    private final int size;
 
-   private List<Pair<JournalFile, Integer>> updateFiles;
+   // The files and sizes of the updates are kept on parallel arrays, instead of a list of pairs,
+   // as there is one JournalRecord for every live record on the journal
+   private JournalFile[] updateFiles;
+
+   private int[] updateSizes;
+
+   private int numberOfUpdates;
 
    public JournalRecord(final JournalFile addFile, final int size)
    {
@@ -52,10 +55,18 @@ public class JournalRecord
    {
       if (updateFiles == null)
       {
-         updateFiles = new ArrayList<Pair<JournalFile, Integer>>();
+         updateFiles = new JournalFile[2];
+         updateSizes = new int[2];
+      }
+      else if (numberOfUpdates == updateFiles.length)
+      {
+         updateFiles = Arrays.copyOf(updateFiles, numberOfUpdates * 2);
+         updateSizes = Arrays.copyOf(updateSizes, numberOfUpdates * 2);
       }
 
-      updateFiles.add(new Pair<JournalFile, Integer>(updateFile, size));
+      updateFiles[numberOfUpdates] = updateFile;
+      updateSizes[numberOfUpdates] = size;
+      numberOfUpdates++;
 
       updateFile.incPosCount();
 
@@ -67,13 +78,10 @@ public class JournalRecord
       file.incNegCount(addFile);
       addFile.decSize(size);
 
-      if (updateFiles != null)
+      for (int i = 0; i < numberOfUpdates; i++)
       {
-         for (Pair<JournalFile, Integer> updFile : updateFiles)
-         {
-            file.incNegCount(updFile.getA());
-            updFile.getA().decSize(updFile.getB());
-         }
+         file.incNegCount(updateFiles[i]);
+         updateFiles[i].decSize(updateSizes[i]);
       }
    }
 
@@ -83,14 +91,9 @@ public class JournalRecord
       StringBuilder buffer = new StringBuilder();
       buffer.append("JournalRecord(add=" + addFile.getFile().getFileName());
 
-      if (updateFiles != null)
+      for (int i = 0; i < numberOfUpdates; i++)
       {
-
-         for (Pair<JournalFile, Integer> update : updateFiles)
-         {
-            buffer.append(", update=" + update.getA().getFile().getFileName());
-         }
-
+         buffer.append(", update=" + updateFiles[i].getFile().getFileName());
       }
 
       buffer.append(")");
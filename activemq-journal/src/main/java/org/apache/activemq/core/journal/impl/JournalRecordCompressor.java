@@ -0,0 +1,311 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.core.journal.impl;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.activemq.api.core.ActiveMQBuffer;
+import org.apache.activemq.api.core.ActiveMQBuffers;
+import org.apache.activemq.core.journal.EncodingSupport;
+import org.apache.activemq.core.journal.RecordInfo;
+import org.apache.activemq.core.journal.impl.dataformat.ByteArrayEncoding;
+
+/**
+ * Compresses the bodies of add and update records written to a {@link JournalImpl}.
+ * <p>
+ * A compressed body is the size of the uncompressed body followed by its deflated bytes, and the
+ * record is written with {@link JournalImpl#COMPRESSED_RECORD} set on its record type, so files can
+ * have compressed and uncompressed records mixed. Records smaller than the minimum size, or which
+ * don't get smaller, are written as they are.
+ * <p>
+ * Deflate at its fastest level is used, as it comes with the JDK and is already what large messages
+ * are compressed with.
+ * <p>
+ * The paging stores use it as well, to compress the messages written to page files.
+ */
+public final class JournalRecordCompressor
+{
+   public static final int DEFAULT_MIN_SIZE = 1024;
+
+   // Deflaters and inflaters hold native memory, they are kept per thread instead of created per record
+   private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>()
+   {
+      @Override
+      protected Deflater initialValue()
+      {
+         return new Deflater(Deflater.BEST_SPEED);
+      }
+   };
+
+   private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>()
+   {
+      @Override
+      protected Inflater initialValue()
+      {
+         return new Inflater();
+      }
+   };
+
+   private final int minSize;
+
+   private final AtomicLong compressedRecords = new AtomicLong(0);
+
+   private final AtomicLong uncompressedBytes = new AtomicLong(0);
+
+   private final AtomicLong compressedBytes = new AtomicLong(0);
+
+   private final AtomicLong compressTime = new AtomicLong(0);
+
+   private final AtomicLong decompressTime = new AtomicLong(0);
+
+   public JournalRecordCompressor()
+   {
+      this(DEFAULT_MIN_SIZE);
+   }
+
+   /**
+    * @param minSize the size a record body needs to have to be compressed
+    */
+   public JournalRecordCompressor(final int minSize)
+   {
+      if (minSize < 0)
+      {
+         throw new IllegalArgumentException("minSize can't be negative");
+      }
+      this.minSize = minSize;
+   }
+
+   public int getMinSize()
+   {
+      return minSize;
+   }
+
+   /**
+    * @return null if the record is not worth compressing, the compressed body otherwise
+    */
+   public EncodingSupport compress(final EncodingSupport record)
+   {
+      byte[] compressed = compressBody(record);
+
+      return compressed == null ? null : new ByteArrayEncoding(compressed);
+   }
+
+   /**
+    * Compresses a record read uncompressed from a file, when compacting.
+    *
+    * @return the same record if it's not worth compressing or it's already compressed
+    */
+   RecordInfo compress(final RecordInfo info)
+   {
+      if (info.compressed)
+      {
+         return info;
+      }
+
+      byte[] compressed = compressBody(new ByteArrayEncoding(info.data));
+
+      if (compressed == null)
+      {
+         return info;
+      }
+
+      return new RecordInfo(info.id, info.userRecordType, compressed, info.isUpdate, info.compactCount, true);
+   }
+
+   private byte[] compressBody(final EncodingSupport record)
+   {
+      int size = record.getEncodeSize();
+
+      if (size < minSize || size == 0)
+      {
+         return null;
+      }
+
+      long start = System.nanoTime();
+
+      byte[] uncompressed = new byte[size];
+
+      ActiveMQBuffer buffer = ActiveMQBuffers.wrappedBuffer(uncompressed);
+
+      buffer.clear();
+
+      record.encode(buffer);
+
+      Deflater deflater = deflaters.get();
+
+      // The size first, and only keep the result if it saves something
+      byte[] output = new byte[size];
+
+      int length;
+
+      try
+      {
+         deflater.setInput(uncompressed);
+
+         deflater.finish();
+
+         length = deflater.deflate(output, 4, output.length - 4);
+
+         if (!deflater.finished())
+         {
+            return null;
+         }
+      }
+      finally
+      {
+         deflater.reset();
+
+         compressTime.addAndGet(System.nanoTime() - start);
+      }
+
+      output[0] = (byte) (size >>> 24);
+      output[1] = (byte) (size >>> 16);
+      output[2] = (byte) (size >>> 8);
+      output[3] = (byte) size;
+
+      byte[] compressed = new byte[length + 4];
+
+      System.arraycopy(output, 0, compressed, 0, compressed.length);
+
+      compressedRecords.incrementAndGet();
+
+      uncompressedBytes.addAndGet(size);
+
+      compressedBytes.addAndGet(compressed.length);
+
+      return compressed;
+   }
+
+   /**
+    * @return the record with its body uncompressed, or the same record if it wasn't compressed
+    */
+   public static RecordInfo decompress(final RecordInfo info) throws IOException
+   {
+      if (!info.compressed)
+      {
+         return info;
+      }
+
+      return new RecordInfo(info.id, info.userRecordType, decompress(info.data), info.isUpdate, info.compactCount);
+   }
+
+   public static byte[] decompress(final byte[] compressed) throws IOException
+   {
+      if (compressed.length < 4)
+      {
+         throw new IOException("Invalid compressed record of " + compressed.length + " bytes");
+      }
+
+      int size = (compressed[0] & 0xFF) << 24 | (compressed[1] & 0xFF) << 16 | (compressed[2] & 0xFF) << 8 | compressed[3] & 0xFF;
+
+      byte[] data = new byte[size];
+
+      Inflater inflater = inflaters.get();
+
+      try
+      {
+         inflater.setInput(compressed, 4, compressed.length - 4);
+
+         int length = inflater.inflate(data);
+
+         if (length != size || !inflater.finished())
+         {
+            throw new IOException("Compressed record has " + length + " bytes instead of " + size);
+         }
+      }
+      catch (DataFormatException e)
+      {
+         throw new IOException(e.getMessage(), e);
+      }
+      finally
+      {
+         inflater.reset();
+      }
+
+      return data;
+   }
+
+   /**
+    * Same as {@link #decompress(byte[])}, counting the time it takes on {@link #getDecompressTime()}.
+    */
+   public byte[] decompressBody(final byte[] compressed) throws IOException
+   {
+      long start = System.nanoTime();
+      try
+      {
+         return decompress(compressed);
+      }
+      finally
+      {
+         decompressTime.addAndGet(System.nanoTime() - start);
+      }
+   }
+
+   /**
+    * @return how many records were written compressed
+    */
+   public long getCompressedRecords()
+   {
+      return compressedRecords.get();
+   }
+
+   /**
+    * @return the size of the compressed records before compressing them
+    */
+   public long getUncompressedBytes()
+   {
+      return uncompressedBytes.get();
+   }
+
+   /**
+    * @return the size of the compressed records as written
+    */
+   public long getCompressedBytes()
+   {
+      return compressedBytes.get();
+   }
+
+   /**
+    * @return the time spent compressing records, including the ones that were not worth it, in nanoseconds
+    */
+   public long getCompressTime()
+   {
+      return compressTime.get();
+   }
+
+   /**
+    * @return the time spent in {@link #decompressBody(byte[])}, in nanoseconds
+    */
+   public long getDecompressTime()
+   {
+      return decompressTime.get();
+   }
+
+   @Override
+   public String toString()
+   {
+      return "JournalRecordCompressor [minSize=" + minSize +
+         ", compressedRecords=" + compressedRecords +
+         ", uncompressedBytes=" + uncompressedBytes +
+         ", compressedBytes=" + compressedBytes +
+         "]";
+   }
+}
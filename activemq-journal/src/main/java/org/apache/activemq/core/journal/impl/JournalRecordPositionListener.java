@@ -0,0 +1,32 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.core.journal.impl;
+
+/**
+ * Told where each valid record of a journal file is, just before the record is given to the
+ * {@link JournalReaderCallback}.
+ *
+ * @see JournalImpl#readJournalFile(org.apache.activemq.core.journal.SequentialFileFactory, JournalFile, JournalReaderCallback, JournalRecordPositionListener)
+ */
+interface JournalRecordPositionListener
+{
+   /**
+    * @param position the position of the record on the file
+    * @param size     the size of the record on the file, headers included
+    */
+   void onRecordPosition(int position, int size);
+}
@@ -16,7 +16,7 @@
  */
 package org.apache.activemq.core.journal.impl;
 
-import java.util.Map;
+import org.apache.activemq.utils.ConcurrentLongHashMap;
 
 /**
  * This is an interface used only internally.
@@ -33,5 +33,5 @@ public interface JournalRecordProvider
 {
    JournalCompactor getCompactor();
 
-   Map<Long, JournalRecord> getRecords();
+   ConcurrentLongHashMap<JournalRecord> getRecords();
 }
@@ -0,0 +1,490 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.core.journal.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+
+import org.apache.activemq.api.core.ActiveMQException;
+import org.apache.activemq.api.core.ActiveMQExceptionType;
+import org.apache.activemq.api.core.ActiveMQIOErrorException;
+import org.apache.activemq.api.core.ActiveMQIllegalStateException;
+import org.apache.activemq.core.journal.IOAsyncTask;
+import org.apache.activemq.core.journal.SequentialFile;
+import org.apache.activemq.core.journal.SequentialFileFactory;
+import org.apache.activemq.journal.ActiveMQJournalBundle;
+import org.apache.activemq.journal.ActiveMQJournalLogger;
+
+/**
+ * A SequentialFile writing and reading through a {@link MappedByteBuffer} covering the whole file.
+ * <p>
+ * Writes are a memory copy into the page cache done on the caller's thread, so they are never
+ * reordered. Syncs are an msync of the mapping ({@link MappedByteBuffer#force()}), done on the
+ * writer executor together with the callbacks when there is one, the same way
+ * {@link NIOSequentialFile} does its writes.
+ * <p>
+ * Journal files are filled up-front so they are mapped once when opened. A file written past its
+ * current size is remapped to the new size, which is fine for files written once (e.g. on compacting)
+ * but would be slow for files growing on every write.
+ */
+public final class MappedSequentialFile extends AbstractSequentialFile
+{
+   private RandomAccessFile rfile;
+
+   private FileChannel channel;
+
+   private volatile MappedByteBuffer mappedBuffer;
+
+   /**
+    * Where the next read or write on the file happens, as the channel position does on NIO
+    */
+   private long filePosition;
+
+   public MappedSequentialFile(final SequentialFileFactory factory,
+                               final String directory,
+                               final String fileName,
+                               final Executor writerExecutor)
+   {
+      super(directory, new File(directory + "/" + fileName), factory, writerExecutor);
+   }
+
+   public MappedSequentialFile(final SequentialFileFactory factory, final File file, final Executor writerExecutor)
+   {
+      super(file.getParent(), new File(file.getPath()), factory, writerExecutor);
+   }
+
+   public int getAlignment()
+   {
+      return 1;
+   }
+
+   public int calculateBlockStart(final int position)
+   {
+      return position;
+   }
+
+   public synchronized boolean isOpen()
+   {
+      return channel != null;
+   }
+
+   public synchronized void open() throws IOException
+   {
+      open(1, true);
+   }
+
+   /**
+    * maxIO is ignored: writes are copies into the mapping and don't need flow control.
+    */
+   public synchronized void open(final int maxIO, final boolean useExecutor) throws IOException
+   {
+      try
+      {
+         rfile = new RandomAccessFile(getFile(), "rw");
+
+         channel = rfile.getChannel();
+
+         fileSize = channel.size();
+
+         filePosition = 0;
+
+         if (fileSize > 0)
+         {
+            map(fileSize);
+         }
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new ActiveMQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+   }
+
+   public synchronized void fill(final int position, final int size, final byte fillCharacter) throws IOException
+   {
+      try
+      {
+         ensureMapped((long)position + size);
+
+         byte[] fill = new byte[Math.min(size, 64 * 1024)];
+
+         if (fillCharacter != 0)
+         {
+            for (int i = 0; i < fill.length; i++)
+            {
+               fill[i] = fillCharacter;
+            }
+         }
+
+         ByteBuffer target = mappedBuffer.duplicate();
+         target.position(position);
+
+         int remaining = size;
+         while (remaining > 0)
+         {
+            int chunk = Math.min(remaining, fill.length);
+            target.put(fill, 0, chunk);
+            remaining -= chunk;
+         }
+
+         mappedBuffer.force();
+
+         fileSize = channel.size();
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new ActiveMQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+   }
+
+   public synchronized void waitForClose() throws InterruptedException
+   {
+      while (isOpen())
+      {
+         wait();
+      }
+   }
+
+   @Override
+   public synchronized void close() throws IOException, InterruptedException, ActiveMQException
+   {
+      super.close();
+
+      unmap();
+
+      try
+      {
+         if (channel != null)
+         {
+            channel.close();
+         }
+
+         if (rfile != null)
+         {
+            rfile.close();
+         }
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new ActiveMQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+
+      channel = null;
+
+      rfile = null;
+
+      notifyAll();
+   }
+
+   public int read(final ByteBuffer bytes) throws Exception
+   {
+      return read(bytes, null);
+   }
+
+   public synchronized int read(final ByteBuffer bytes, final IOAsyncTask callback) throws IOException,
+      ActiveMQIllegalStateException
+   {
+      if (channel == null)
+      {
+         throw new ActiveMQIllegalStateException("File " + this.getFileName() + " has a null channel");
+      }
+
+      int bytesRead;
+
+      if (mappedBuffer == null || filePosition >= mappedBuffer.capacity())
+      {
+         bytesRead = -1;
+      }
+      else
+      {
+         bytesRead = (int)Math.min(bytes.remaining(), mappedBuffer.capacity() - filePosition);
+
+         ByteBuffer source = mappedBuffer.duplicate();
+         source.position((int)filePosition);
+         source.limit((int)filePosition + bytesRead);
+         bytes.put(source);
+
+         filePosition += bytesRead;
+      }
+
+      if (callback != null)
+      {
+         callback.done();
+      }
+
+      bytes.flip();
+
+      return bytesRead;
+   }
+
+   public void sync() throws IOException
+   {
+      MappedByteBuffer buffer = mappedBuffer;
+
+      if (buffer != null)
+      {
+         // this is the msync
+         buffer.force();
+      }
+   }
+
+   public long size() throws IOException
+   {
+      if (channel == null)
+      {
+         return getFile().length();
+      }
+
+      try
+      {
+         return channel.size();
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new ActiveMQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+   }
+
+   @Override
+   public synchronized void position(final long pos) throws IOException
+   {
+      super.position(pos);
+      filePosition = pos;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "MappedSequentialFile " + getFile();
+   }
+
+   public SequentialFile cloneFile()
+   {
+      return new MappedSequentialFile(factory, getFile(), writerExecutor);
+   }
+
+   public void writeDirect(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback)
+   {
+      if (callback == null)
+      {
+         throw new NullPointerException("callback parameter need to be set");
+      }
+
+      try
+      {
+         internalWrite(bytes, sync, callback, true);
+      }
+      catch (Exception e)
+      {
+         callback.onError(ActiveMQExceptionType.GENERIC_EXCEPTION.getCode(), e.getMessage());
+      }
+   }
+
+   public void writeDirect(final ByteBuffer bytes, final boolean sync) throws Exception
+   {
+      internalWrite(bytes, sync, null, true);
+   }
+
+   public void writeInternal(final ByteBuffer bytes) throws Exception
+   {
+      // the caller keeps using its buffer after a writeInternal
+      internalWrite(bytes, true, null, false);
+   }
+
+   @Override
+   protected ByteBuffer newBuffer(int size, final int limit)
+   {
+      // As on NIO, the buffer is copied on the flush so it only needs to be as big as the data
+      size = limit;
+
+      if (factory instanceof NIOSequentialFileFactory)
+      {
+         return ((NIOSequentialFileFactory)factory).newWriteBuffer(limit);
+      }
+
+      return super.newBuffer(size, limit);
+   }
+
+   /**
+    * @param releaseBuffer if the buffer goes back to the factory once it is copied to the mapping
+    */
+   private void internalWrite(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback, final boolean releaseBuffer) throws IOException, ActiveMQIOErrorException
+   {
+      if (!isOpen())
+      {
+         if (callback != null)
+         {
+            callback.onError(ActiveMQExceptionType.IO_ERROR.getCode(), "File not opened");
+         }
+         else
+         {
+            throw ActiveMQJournalBundle.BUNDLE.fileNotOpened();
+         }
+         return;
+      }
+
+      position.addAndGet(bytes.limit());
+
+      try
+      {
+         copyToMapping(bytes);
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new ActiveMQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         if (callback != null)
+         {
+            callback.onError(ActiveMQExceptionType.IO_ERROR.getCode(), e.getMessage());
+         }
+         return;
+      }
+      finally
+      {
+         if (releaseBuffer)
+         {
+            factory.releaseBuffer(bytes);
+         }
+      }
+
+      if (writerExecutor == null || callback == null)
+      {
+         try
+         {
+            completeWrite(sync, callback);
+         }
+         catch (IOException e)
+         {
+            factory.onIOError(new ActiveMQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         }
+      }
+      else
+      {
+         // the data is already on the mapping, only the msync and the callbacks are left to the executor
+         writerExecutor.execute(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  completeWrite(sync, callback);
+               }
+               catch (IOException e)
+               {
+                  ActiveMQJournalLogger.LOGGER.errorSubmittingWrite(e);
+                  factory.onIOError(new ActiveMQIOErrorException(e.getMessage(), e), e.getMessage(), MappedSequentialFile.this);
+                  callback.onError(ActiveMQExceptionType.IO_ERROR.getCode(), e.getMessage());
+               }
+               catch (Throwable e)
+               {
+                  ActiveMQJournalLogger.LOGGER.errorSubmittingWrite(e);
+                  callback.onError(ActiveMQExceptionType.IO_ERROR.getCode(), e.getMessage());
+               }
+            }
+         });
+      }
+   }
+
+   private void completeWrite(final boolean sync, final IOAsyncTask callback) throws IOException
+   {
+      if (sync)
+      {
+         sync();
+      }
+
+      if (callback != null)
+      {
+         callback.done();
+      }
+   }
+
+   private synchronized void copyToMapping(final ByteBuffer bytes) throws IOException
+   {
+      ensureMapped(filePosition + bytes.remaining());
+
+      ByteBuffer target = mappedBuffer.duplicate();
+      target.position((int)filePosition);
+
+      filePosition += bytes.remaining();
+
+      target.put(bytes);
+   }
+
+   private void ensureMapped(final long size) throws IOException
+   {
+      if (mappedBuffer == null || mappedBuffer.capacity() < size)
+      {
+         if (size > Integer.MAX_VALUE)
+         {
+            throw new IOException("File " + getFileName() + " can't be mapped beyond " + Integer.MAX_VALUE + " bytes");
+         }
+
+         // the previous mapping is left to the GC, as a sync may still be using it on the writer executor
+         map(size);
+      }
+   }
+
+   /**
+    * Maps the file from its start, growing the file if it is smaller than size
+    */
+   private void map(final long size) throws IOException
+   {
+      mappedBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+   }
+
+   /**
+    * The JDK only releases a mapping when the buffer is collected, which would keep deleted
+    * journal files on disk (and can't be renamed or deleted at all on Windows).
+    * We release it straight away when the JDK lets us, otherwise we leave it to the GC.
+    */
+   private void unmap()
+   {
+      MappedByteBuffer buffer = mappedBuffer;
+
+      mappedBuffer = null;
+
+      if (buffer == null)
+      {
+         return;
+      }
+
+      try
+      {
+         Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+         cleanerMethod.setAccessible(true);
+         Object cleaner = cleanerMethod.invoke(buffer);
+         if (cleaner != null)
+         {
+            Method cleanMethod = cleaner.getClass().getMethod("clean");
+            cleanMethod.setAccessible(true);
+            cleanMethod.invoke(cleaner);
+         }
+      }
+      catch (Throwable e)
+      {
+         ActiveMQJournalLogger.LOGGER.debug("Could not unmap " + getFileName() + ", leaving it to the GC", e);
+      }
+   }
+}
@@ -302,7 +302,7 @@ public final class NIOSequentialFile extends AbstractSequentialFile
 
       try
       {
-         internalWrite(bytes, sync, callback);
+         internalWrite(bytes, sync, callback, true);
       }
       catch (Exception e)
       {
@@ -312,12 +312,13 @@ public final class NIOSequentialFile extends AbstractSequentialFile
 
    public void writeDirect(final ByteBuffer bytes, final boolean sync) throws Exception
    {
-      internalWrite(bytes, sync, null);
+      internalWrite(bytes, sync, null, true);
    }
 
    public void writeInternal(final ByteBuffer bytes) throws Exception
    {
-      internalWrite(bytes, true, null);
+      // the caller keeps using its buffer after a writeInternal
+      internalWrite(bytes, true, null, false);
    }
 
    @Override
@@ -327,10 +328,18 @@ public final class NIOSequentialFile extends AbstractSequentialFile
 
       size = limit;
 
+      if (factory instanceof NIOSequentialFileFactory)
+      {
+         return ((NIOSequentialFileFactory)factory).newWriteBuffer(limit);
+      }
+
       return super.newBuffer(size, limit);
    }
 
-   private void internalWrite(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback) throws IOException, ActiveMQIOErrorException, InterruptedException
+   /**
+    * @param releaseBuffer if the buffer goes back to the factory once it is written
+    */
+   private void internalWrite(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback, final boolean releaseBuffer) throws IOException, ActiveMQIOErrorException, InterruptedException
    {
       if (!isOpen())
       {
@@ -352,7 +361,7 @@ public final class NIOSequentialFile extends AbstractSequentialFile
          // if maxIOSemaphore == null, that means we are not using executors and the writes are synchronous
          try
          {
-            doInternalWrite(bytes, sync, callback);
+            doInternalWrite(bytes, sync, callback, releaseBuffer);
          }
          catch (IOException e)
          {
@@ -372,7 +381,7 @@ public final class NIOSequentialFile extends AbstractSequentialFile
                {
                   try
                   {
-                     doInternalWrite(bytes, sync, callback);
+                     doInternalWrite(bytes, sync, callback, releaseBuffer);
                   }
                   catch (IOException e)
                   {
@@ -399,12 +408,23 @@ public final class NIOSequentialFile extends AbstractSequentialFile
     * @param bytes
     * @param sync
     * @param callback
+    * @param releaseBuffer
     * @throws IOException
     * @throws Exception
     */
-   private void doInternalWrite(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback) throws IOException
+   private void doInternalWrite(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback, final boolean releaseBuffer) throws IOException
    {
-      channel.write(bytes);
+      try
+      {
+         channel.write(bytes);
+      }
+      finally
+      {
+         if (releaseBuffer)
+         {
+            factory.releaseBuffer(bytes);
+         }
+      }
 
       if (sync)
       {
@@ -32,6 +32,8 @@ import org.apache.activemq.core.journal.SequentialFile;
  */
 public class NIOSequentialFileFactory extends AbstractSequentialFileFactory
 {
+   private final DirectBufferPool bufferPool;
+
    public NIOSequentialFileFactory(final String journalDir)
    {
       this(journalDir, null);
@@ -81,6 +83,24 @@ public class NIOSequentialFileFactory extends AbstractSequentialFileFactory
                                    final IOCriticalErrorListener listener)
    {
       super(journalDir, buffered, bufferSize, bufferTimeout, logRates, listener);
+
+      bufferPool = new DirectBufferPool(bufferSize, new DirectBufferPool.Allocator()
+      {
+         public ByteBuffer allocate(final int size)
+         {
+            return allocateDirectBuffer(size);
+         }
+
+         public void free(final ByteBuffer buffer)
+         {
+            // left to GC, as any other direct buffer on NIO
+         }
+
+         public void clear(final ByteBuffer buffer)
+         {
+            // only the bytes up to the limit are written on NIO, there is no need to clear anything
+         }
+      }, ioStatistics);
    }
 
    public SequentialFile createSequentialFile(final String fileName, int maxIO)
@@ -134,6 +154,48 @@ public class NIOSequentialFileFactory extends AbstractSequentialFileFactory
       return buffer2;
    }
 
+   /**
+    * A buffer for the writes of the timed buffer, taken from the buffer pool when it fits on it, so
+    * the channel doesn't copy it into a temporary direct buffer. The file gives it back once it is written.
+    */
+   ByteBuffer newWriteBuffer(final int size)
+   {
+      if (size <= bufferPool.getLargestClassSize())
+      {
+         return bufferPool.borrow(size);
+      }
+      else
+      {
+         return newBuffer(size);
+      }
+   }
+
+   @Override
+   public void releaseBuffer(final ByteBuffer buffer)
+   {
+      // any other buffer is on the heap, or was not created by this factory
+      if (buffer.isDirect() && bufferPool.isPooledCapacity(buffer.capacity()))
+      {
+         bufferPool.release(buffer);
+      }
+   }
+
+   @Override
+   public void start()
+   {
+      super.start();
+
+      bufferPool.start();
+   }
+
+   @Override
+   public void stop()
+   {
+      super.stop();
+
+      bufferPool.stop();
+   }
+
    public void releaseDirectBuffer(ByteBuffer buffer)
    {
       // nothing we can do on this case. we can just have good faith on GC
@@ -0,0 +1,1115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.core.journal.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.activemq.api.core.ActiveMQBuffer;
+import org.apache.activemq.core.journal.EncodingSupport;
+import org.apache.activemq.core.journal.IOCompletion;
+import org.apache.activemq.core.journal.JournalCompactStatistics;
+import org.apache.activemq.core.journal.JournalIOStatistics;
+import org.apache.activemq.core.journal.JournalLoadInformation;
+import org.apache.activemq.core.journal.LoaderCallback;
+import org.apache.activemq.core.journal.PreparedTransactionInfo;
+import org.apache.activemq.core.journal.RecordInfo;
+import org.apache.activemq.core.journal.SequentialFileFactory;
+import org.apache.activemq.core.journal.TransactionFailureCallback;
+import org.apache.activemq.core.journal.impl.dataformat.ByteArrayEncoding;
+import org.apache.activemq.journal.ActiveMQJournalLogger;
+import org.apache.activemq.utils.ConcurrentLongHashMap;
+
+/**
+ * A Journal spreading its records over several {@link JournalImpl}s (the shards), each one with its
+ * own directory, files and buffer, so the syncs of every shard are done on its own disk.
+ * <p>
+ * A record lives on one shard for its whole life: records added outside of a transaction go to the
+ * shard given by their ID, and records added in a transaction go to the shard given by the
+ * transaction ID, so that the records of a transaction are usually on a single shard. The records
+ * not living on the shard given by their ID are kept on a map, which is rebuilt on load. Record IDs
+ * must not be negative, as negative IDs are used for the commit markers described below.
+ * <p>
+ * A transaction using a single shard is committed on that shard. A transaction using more than
+ * one shard is committed in two phases, so it's either committed on all of them or on none:
+ * <ol>
+ * <li>it is prepared on all its shards, and the prepares are synced, even when the commit isn't;</li>
+ * <li>a commit marker record is added to the transaction on each shard, and each shard is
+ * committed. Once one of these commits is on disk the transaction is committed.</li>
+ * </ol>
+ * On load, a transaction prepared by this class on a shard is committed if any shard has its commit
+ * marker, and rolled back otherwise. The markers are deleted once all the commits are done.
+ * <p>
+ * Shards can be added to an existing journal, but not removed, as the records they hold would be
+ * lost. Replication is not supported.
+ */
+public final class ShardedJournal extends JournalBase
+{
+   /**
+    * The user record type of the commit markers.
+    */
+   public static final byte COMMIT_MARKER_RECORD = -1;
+
+   /**
+    * Starts the prepare data written by this class, followed by the kind of the prepare.
+    */
+   private static final int PREPARE_MAGIC = 0x53485244;
+
+   private static final byte INTERNAL_PREPARE = 0;
+
+   private static final byte USER_PREPARE = 1;
+
+   private static final int PREPARE_HEADER_SIZE = 5;
+
+   private static final Comparator<RecordInfo> RECORD_ID_COMPARATOR = new Comparator<RecordInfo>()
+   {
+      public int compare(final RecordInfo record1, final RecordInfo record2)
+      {
+         return record1.id < record2.id ? -1 : record1.id == record2.id ? 0 : 1;
+      }
+   };
+
+   private final JournalImpl[] shards;
+
+   private final boolean supportsCallbacks;
+
+   /**
+    * The shard of the records not living on the shard given by their ID.
+    */
+   private final ConcurrentLongHashMap<Integer> relocatedRecords = new ConcurrentLongHashMap<Integer>();
+
+   private final ConcurrentHashMap<Long, ShardTransaction> transactions = new ConcurrentHashMap<Long, ShardTransaction>();
+
+   /**
+    * Commit markers of transactions committed on all their shards, to be deleted.
+    */
+   private final ConcurrentLinkedQueue<CommitMarkers> committedMarkers = new ConcurrentLinkedQueue<CommitMarkers>();
+
+   public ShardedJournal(final JournalImpl... shards)
+   {
+      super(shards[0].getFileFactory().isSupportsCallbacks(), shards[0].getFileSize());
+
+      boolean callbacks = true;
+
+      for (JournalImpl shard : shards)
+      {
+         callbacks &= shard.getFileFactory().isSupportsCallbacks();
+      }
+
+      this.shards = shards;
+      this.supportsCallbacks = callbacks;
+   }
+
+   public int getShardCount()
+   {
+      return shards.length;
+   }
+
+   public JournalImpl getShard(final int shard)
+   {
+      return shards[shard];
+   }
+
+   // Non transactional operations
+
+   @Override
+   public void appendAddRecord(final long id,
+                               final byte recordType,
+                               final EncodingSupport record,
+                               final boolean sync,
+                               final IOCompletion callback) throws Exception
+   {
+      shards[homeShard(id)].appendAddRecord(id, recordType, record, sync, callback);
+   }
+
+   @Override
+   public void appendUpdateRecord(final long id,
+                                  final byte recordType,
+                                  final EncodingSupport record,
+                                  final boolean sync,
+                                  final IOCompletion callback) throws Exception
+   {
+      shards[recordShard(id)].appendUpdateRecord(id, recordType, record, sync, callback);
+   }
+
+   @Override
+   public void appendDeleteRecord(final long id, final boolean sync, final IOCompletion callback) throws Exception
+   {
+      shards[recordShard(id)].appendDeleteRecord(id, sync, callback);
+
+      relocatedRecords.remove(id);
+   }
+
+   // Transactional operations
+
+   @Override
+   public void appendAddRecordTransactional(final long txID,
+                                            final long id,
+                                            final byte recordType,
+                                            final EncodingSupport record) throws Exception
+   {
+      int shard = homeShard(txID);
+
+      shards[shard].appendAddRecordTransactional(txID, id, recordType, record);
+
+      ShardTransaction tx = getTransaction(txID);
+
+      tx.use(shard);
+
+      if (shard != homeShard(id))
+      {
+         relocatedRecords.put(id, shard);
+         tx.addRelocated(id);
+      }
+   }
+
+   @Override
+   public void appendUpdateRecordTransactional(final long txID,
+                                               final long id,
+                                               final byte recordType,
+                                               final EncodingSupport record) throws Exception
+   {
+      int shard = recordShard(id);
+
+      shards[shard].appendUpdateRecordTransactional(txID, id, recordType, record);
+
+      getTransaction(txID).use(shard);
+   }
+
+   @Override
+   public void appendDeleteRecordTransactional(final long txID, final long id, final EncodingSupport record) throws Exception
+   {
+      int shard = recordShard(id);
+
+      shards[shard].appendDeleteRecordTransactional(txID, id, record);
+
+      ShardTransaction tx = getTransaction(txID);
+
+      tx.use(shard);
+
+      if (shard != homeShard(id))
+      {
+         tx.deleteRelocated(id);
+      }
+   }
+
+   @Override
+   public void appendPrepareRecord(final long txID,
+                                   final EncodingSupport transactionData,
+                                   final boolean sync,
+                                   final IOCompletion callback) throws Exception
+   {
+      ShardTransaction tx = transactions.get(txID);
+
+      int[] usedShards = tx == null ? null : tx.getUsedShards();
+
+      if (usedShards == null || usedShards.length == 1)
+      {
+         int shard = usedShards == null ? homeShard(txID) : usedShards[0];
+
+         shards[shard].appendPrepareRecord(txID, transactionData, sync, callback);
+
+         getTransaction(txID).prepared(shard);
+
+         return;
+      }
+
+      if (callback != null)
+      {
+         callback.storeLineUp();
+      }
+
+      ShardsCompletion completion = callback == null ? null : new ShardsCompletion(callback, usedShards.length, null);
+
+      EncodingSupport prepareData = new PrepareEncoding(USER_PREPARE, transactionData);
+
+      for (int shard : usedShards)
+      {
+         shards[shard].appendPrepareRecord(txID, prepareData, sync, completion);
+
+         tx.prepared(shard);
+      }
+   }
+
+   @Override
+   public void lineUpContext(final IOCompletion callback)
+   {
+      callback.storeLineUp();
+   }
+
+   @Override
+   public void appendCommitRecord(final long txID,
+                                  final boolean sync,
+                                  final IOCompletion callback,
+                                  final boolean lineUpContext) throws Exception
+   {
+      deleteCommittedMarkers();
+
+      ShardTransaction tx = transactions.remove(txID);
+
+      int[] usedShards = tx == null ? null : tx.getUsedShards();
+
+      if (usedShards == null || usedShards.length == 1)
+      {
+         int shard = usedShards == null ? homeShard(txID) : usedShards[0];
+
+         shards[shard].appendCommitRecord(txID, sync, callback, lineUpContext);
+
+         if (tx != null)
+         {
+            forget(tx.getRelocatedDeletes());
+         }
+
+         return;
+      }
+
+      if (callback != null && lineUpContext)
+      {
+         callback.storeLineUp();
+      }
+
+      prepareShards(txID, tx, usedShards);
+
+      CommitMarkers markers = new CommitMarkers(txID, usedShards);
+
+      ShardsCompletion completion = supportsCallbacks ? new ShardsCompletion(callback, usedShards.length, markers) : null;
+
+      for (int shard : usedShards)
+      {
+         shards[shard].appendAddRecordTransactional(txID, markers.markerID, COMMIT_MARKER_RECORD, new ByteArrayEncoding(new byte[0]));
+         shards[shard].appendCommitRecord(txID, sync, completion, false);
+      }
+
+      forget(tx.getRelocatedDeletes());
+
+      if (completion == null)
+      {
+         // the writes were done (and synced) by the calls above
+         committedMarkers.add(markers);
+      }
+   }
+
+   @Override
+   public void appendRollbackRecord(final long txID, final boolean sync, final IOCompletion callback) throws Exception
+   {
+      ShardTransaction tx = transactions.remove(txID);
+
+      int[] usedShards = tx == null ? null : tx.getUsedShards();
+
+      if (usedShards == null || usedShards.length == 1)
+      {
+         int shard = usedShards == null ? homeShard(txID) : usedShards[0];
+
+         shards[shard].appendRollbackRecord(txID, sync, callback);
+      }
+      else
+      {
+         if (callback != null)
+         {
+            callback.storeLineUp();
+         }
+
+         ShardsCompletion completion = callback == null ? null : new ShardsCompletion(callback, usedShards.length, null);
+
+         for (int shard : usedShards)
+         {
+            shards[shard].appendRollbackRecord(txID, sync, completion);
+         }
+      }
+
+      if (tx != null)
+      {
+         forget(tx.getRelocatedAdds());
+      }
+   }
+
+   // Load
+
+   public JournalLoadInformation load(final LoaderCallback loadManager) throws Exception
+   {
+      List<RecordInfo> committedRecords = new ArrayList<RecordInfo>();
+      List<PreparedTransactionInfo> preparedTransactions = new ArrayList<PreparedTransactionInfo>();
+
+      JournalLoadInformation info = load(committedRecords, preparedTransactions, loadManager);
+
+      for (RecordInfo record : committedRecords)
+      {
+         if (record.isUpdate)
+         {
+            loadManager.updateRecord(record);
+         }
+         else
+         {
+            loadManager.addRecord(record);
+         }
+      }
+
+      for (PreparedTransactionInfo preparedTransaction : preparedTransactions)
+      {
+         loadManager.addPreparedTransaction(preparedTransaction);
+      }
+
+      return info;
+   }
+
+   /**
+    * Loads every shard, then finishes the transactions that were being committed on several
+    * shards: they are committed where they were only prepared if any shard has their commit
+    * marker, and rolled back otherwise.
+    */
+   public synchronized JournalLoadInformation load(final List<RecordInfo> committedRecords,
+                                                   final List<PreparedTransactionInfo> preparedTransactions,
+                                                   final TransactionFailureCallback failureCallback) throws Exception
+   {
+      JournalLoadInformation info = new JournalLoadInformation();
+
+      List<List<RecordInfo>> shardRecords = new ArrayList<List<RecordInfo>>(shards.length);
+      List<List<PreparedTransactionInfo>> shardPrepared = new ArrayList<List<PreparedTransactionInfo>>(shards.length);
+      List<List<Long>> shardMarkers = new ArrayList<List<Long>>(shards.length);
+
+      Set<Long> committedTransactions = new HashSet<Long>();
+
+      for (int shard = 0; shard < shards.length; shard++)
+      {
+         List<RecordInfo> records = new ArrayList<RecordInfo>();
+         List<PreparedTransactionInfo> prepared = new ArrayList<PreparedTransactionInfo>();
+         List<Long> markers = new ArrayList<Long>();
+
+         JournalLoadInformation shardInfo = shards[shard].load(records, prepared, failureCallback);
+
+         info.setNumberOfRecords(info.getNumberOfRecords() + shardInfo.getNumberOfRecords());
+         info.setMaxID(Math.max(info.getMaxID(), shardInfo.getMaxID()));
+
+         Iterator<RecordInfo> iterator = records.iterator();
+         while (iterator.hasNext())
+         {
+            RecordInfo record = iterator.next();
+            if (isCommitMarker(record))
+            {
+               committedTransactions.add(~record.id);
+               markers.add(record.id);
+               iterator.remove();
+            }
+         }
+
+         shardRecords.add(records);
+         shardPrepared.add(prepared);
+         shardMarkers.add(markers);
+      }
+
+      Map<Long, PreparedTransactionInfo> userPrepared = new LinkedHashMap<Long, PreparedTransactionInfo>();
+
+      for (int shard = 0; shard < shards.length; shard++)
+      {
+         for (PreparedTransactionInfo prepared : shardPrepared.get(shard))
+         {
+            boolean marked = removeCommitMarkers(prepared.records);
+
+            byte kind = getPrepareKind(prepared.extraData);
+
+            if (committedTransactions.contains(prepared.id))
+            {
+               ActiveMQJournalLogger.LOGGER.debug("Committing transaction " + prepared.id + " on shard " + shard +
+                                                     ", as it was committed on another shard");
+
+               shards[shard].appendCommitRecord(prepared.id, true);
+
+               commitPrepared(shardRecords.get(shard), prepared);
+
+               if (marked)
+               {
+                  shardMarkers.get(shard).add(~prepared.id);
+               }
+            }
+            else if (kind == INTERNAL_PREPARE)
+            {
+               ActiveMQJournalLogger.LOGGER.debug("Rolling back transaction " + prepared.id + " on shard " + shard +
+                                                     ", as it wasn't committed on any shard");
+
+               shards[shard].appendRollbackRecord(prepared.id, true);
+            }
+            else
+            {
+               ShardTransaction tx = getTransaction(prepared.id);
+
+               tx.use(shard);
+               tx.prepared(shard);
+
+               for (RecordInfo record : prepared.records)
+               {
+                  if (!record.isUpdate && homeShard(record.id) != shard)
+                  {
+                     relocatedRecords.put(record.id, shard);
+                     tx.addRelocated(record.id);
+                  }
+               }
+
+               if (kind == USER_PREPARE)
+               {
+                  PreparedTransactionInfo merged = userPrepared.get(prepared.id);
+
+                  if (merged == null)
+                  {
+                     merged = new PreparedTransactionInfo(prepared.id, getUserData(prepared.extraData));
+                     userPrepared.put(prepared.id, merged);
+                  }
+
+                  merged.records.addAll(prepared.records);
+                  merged.recordsToDelete.addAll(prepared.recordsToDelete);
+               }
+               else
+               {
+                  // prepared before the journal was sharded
+                  preparedTransactions.add(prepared);
+               }
+            }
+         }
+      }
+
+      preparedTransactions.addAll(userPrepared.values());
+
+      for (int shard = 0; shard < shards.length; shard++)
+      {
+         for (Long markerID : shardMarkers.get(shard))
+         {
+            shards[shard].appendDeleteRecord(markerID, false);
+         }
+
+         for (RecordInfo record : shardRecords.get(shard))
+         {
+            if (homeShard(record.id) != shard)
+            {
+               relocatedRecords.put(record.id, shard);
+            }
+         }
+      }
+
+      mergeRecords(shardRecords, committedRecords);
+
+      return info;
+   }
+
+   public JournalLoadInformation loadInternalOnly() throws Exception
+   {
+      JournalLoadInformation info = new JournalLoadInformation();
+
+      for (JournalImpl shard : shards)
+      {
+         JournalLoadInformation shardInfo = shard.loadInternalOnly();
+
+         info.setNumberOfRecords(info.getNumberOfRecords() + shardInfo.getNumberOfRecords());
+         info.setMaxID(Math.max(info.getMaxID(), shardInfo.getMaxID()));
+      }
+
+      return info;
+   }
+
+   public JournalLoadInformation loadSyncOnly(final JournalState state) throws Exception
+   {
+      throw new UnsupportedOperationException("Sharded journals can't be replicated");
+   }
+
+   // ActiveMQComponent implementation
+
+   public synchronized void start() throws Exception
+   {
+      for (JournalImpl shard : shards)
+      {
+         shard.start();
+      }
+   }
+
+   public synchronized void stop() throws Exception
+   {
+      // the markers left are deleted on the next load
+      committedMarkers.clear();
+
+      for (JournalImpl shard : shards)
+      {
+         shard.stop();
+      }
+
+      transactions.clear();
+      relocatedRecords.clear();
+   }
+
+   public synchronized boolean isStarted()
+   {
+      return shards[0].isStarted();
+   }
+
+   // Other methods
+
+   public int getAlignment() throws Exception
+   {
+      return shards[0].getAlignment();
+   }
+
+   public int getNumberOfRecords()
+   {
+      int records = 0;
+
+      for (JournalImpl shard : shards)
+      {
+         records += shard.getNumberOfRecords();
+      }
+
+      return records;
+   }
+
+   public int getUserVersion()
+   {
+      return shards[0].getUserVersion();
+   }
+
+   public void perfBlast(final int pages)
+   {
+      for (JournalImpl shard : shards)
+      {
+         shard.perfBlast(pages);
+      }
+   }
+
+   public void runDirectJournalBlast() throws Exception
+   {
+      for (JournalImpl shard : shards)
+      {
+         shard.runDirectJournalBlast();
+      }
+   }
+
+   public Map<Long, JournalFile> createFilesForBackupSync(final long[] fileIds) throws Exception
+   {
+      throw new UnsupportedOperationException("Sharded journals can't be replicated");
+   }
+
+   public void synchronizationLock()
+   {
+      throw new UnsupportedOperationException("Sharded journals can't be replicated");
+   }
+
+   public void synchronizationUnlock()
+   {
+      throw new UnsupportedOperationException("Sharded journals can't be replicated");
+   }
+
+   public void forceMoveNextFile() throws Exception
+   {
+      for (JournalImpl shard : shards)
+      {
+         shard.forceMoveNextFile();
+      }
+   }
+
+   /**
+    * Returns the data files of all the shards.
+    */
+   public JournalFile[] getDataFiles()
+   {
+      List<JournalFile> files = new ArrayList<JournalFile>();
+
+      for (JournalImpl shard : shards)
+      {
+         files.addAll(Arrays.asList(shard.getDataFiles()));
+      }
+
+      return files.toArray(new JournalFile[files.size()]);
+   }
+
+   /**
+    * Returns the file factory of the first shard, the one on the journal directory.
+    */
+   public SequentialFileFactory getFileFactory()
+   {
+      return shards[0].getFileFactory();
+   }
+
+   public void scheduleCompactAndBlock(final int timeout) throws Exception
+   {
+      for (JournalImpl shard : shards)
+      {
+         shard.scheduleCompactAndBlock(timeout);
+      }
+   }
+
+   /**
+    * Returns the counters of all the shards added up.
+    */
+   public JournalCompactStatistics getCompactStatistics()
+   {
+      JournalCompactStatistics statistics = new JournalCompactStatistics();
+
+      for (JournalImpl shard : shards)
+      {
+         statistics.add(shard.getCompactStatistics());
+      }
+
+      return statistics;
+   }
+
+   /**
+    * Returns the counters of all the shards added up. Resetting them resets the ones of every shard.
+    */
+   public JournalIOStatistics getIOStatistics()
+   {
+      JournalIOStatistics statistics = new JournalIOStatistics()
+      {
+         @Override
+         public void reset()
+         {
+            super.reset();
+
+            for (JournalImpl shard : shards)
+            {
+               shard.getIOStatistics().reset();
+            }
+         }
+      };
+
+      for (JournalImpl shard : shards)
+      {
+         statistics.add(shard.getIOStatistics());
+      }
+
+      return statistics;
+   }
+
+   public void replicationSyncPreserveOldFiles()
+   {
+      throw new UnsupportedOperationException("Sharded journals can't be replicated");
+   }
+
+   public void replicationSyncFinished()
+   {
+      throw new UnsupportedOperationException("Sharded journals can't be replicated");
+   }
+
+   @Override
+   void scheduleReclaim()
+   {
+      for (JournalImpl shard : shards)
+      {
+         shard.scheduleReclaim();
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "ShardedJournal(" + Arrays.toString(shards) + ")";
+   }
+
+   // Private -------------------------------------------------------
+
+   private int homeShard(final long id)
+   {
+      return (int)((id & Long.MAX_VALUE) % shards.length);
+   }
+
+   private int recordShard(final long id)
+   {
+      Integer shard = relocatedRecords.get(id);
+
+      return shard == null ? homeShard(id) : shard;
+   }
+
+   private ShardTransaction getTransaction(final long txID)
+   {
+      ShardTransaction tx = transactions.get(txID);
+
+      if (tx == null)
+      {
+         tx = new ShardTransaction(shards.length);
+
+         ShardTransaction previous = transactions.putIfAbsent(txID, tx);
+
+         if (previous != null)
+         {
+            tx = previous;
+         }
+      }
+
+      return tx;
+   }
+
+   /**
+    * Prepares the transaction on the shards it isn't prepared on yet, and waits for the prepares to
+    * be on disk, even when the commit isn't sync: a shard must not have the commit on disk while
+    * another one has no trace of the transaction.
+    */
+   private void prepareShards(final long txID, final ShardTransaction tx, final int[] usedShards) throws Exception
+   {
+      List<SyncIOCompletion> completions = new ArrayList<SyncIOCompletion>(usedShards.length);
+
+      EncodingSupport prepareData = new PrepareEncoding(INTERNAL_PREPARE, null);
+
+      for (int shard : usedShards)
+      {
+         if (!tx.isPrepared(shard))
+         {
+            SyncIOCompletion completion = getSyncCallback(true);
+
+            shards[shard].appendPrepareRecord(txID, prepareData, true, completion);
+
+            if (completion != null)
+            {
+               completions.add(completion);
+            }
+         }
+      }
+
+      for (SyncIOCompletion completion : completions)
+      {
+         completion.waitCompletion();
+      }
+   }
+
+   private void forget(final List<Long> ids)
+   {
+      if (ids != null)
+      {
+         for (Long id : ids)
+         {
+            relocatedRecords.remove(id);
+         }
+      }
+   }
+
+   private void deleteCommittedMarkers() throws Exception
+   {
+      CommitMarkers markers;
+
+      while ((markers = committedMarkers.poll()) != null)
+      {
+         for (int shard : markers.shards)
+         {
+            shards[shard].appendDeleteRecord(markers.markerID, false);
+         }
+      }
+   }
+
+   private static boolean isCommitMarker(final RecordInfo record)
+   {
+      return record.id < 0 && record.getUserRecordType() == COMMIT_MARKER_RECORD;
+   }
+
+   private static boolean removeCommitMarkers(final List<RecordInfo> records)
+   {
+      boolean removed = false;
+
+      Iterator<RecordInfo> iterator = records.iterator();
+      while (iterator.hasNext())
+      {
+         if (isCommitMarker(iterator.next()))
+         {
+            iterator.remove();
+            removed = true;
+         }
+      }
+
+      return removed;
+   }
+
+   /**
+    * Merges the records of the shards, sorted by ID. The records of a shard aren't sorted by ID, as
+    * the records of a transaction are written on its commit and may live on the transaction's shard,
+    * so they are all sorted. The sort is stable, keeping the order of the updates of a record, which
+    * are all on the same shard.
+    * <p>
+    * This is the order a single journal would load the records in (e.g. the order of the messages
+    * on a queue) only if IDs are increasing in the order the records are created, so the IDs given
+    * to a sharded journal must not be leased in blocks to several threads.
+    */
+   private static void mergeRecords(final List<List<RecordInfo>> shardRecords, final List<RecordInfo> records)
+   {
+      int start = records.size();
+
+      for (List<RecordInfo> recordsOfShard : shardRecords)
+      {
+         records.addAll(recordsOfShard);
+      }
+
+      Collections.sort(records.subList(start, records.size()), RECORD_ID_COMPARATOR);
+   }
+
+   /**
+    * Applies a transaction committed on load to the records loaded from its shard.
+    */
+   private static void commitPrepared(final List<RecordInfo> records, final PreparedTransactionInfo prepared)
+   {
+      if (!prepared.recordsToDelete.isEmpty())
+      {
+         Set<Long> deletes = new HashSet<Long>();
+
+         for (RecordInfo delete : prepared.recordsToDelete)
+         {
+            deletes.add(delete.id);
+         }
+
+         Iterator<RecordInfo> iterator = records.iterator();
+         while (iterator.hasNext())
+         {
+            if (deletes.contains(iterator.next().id))
+            {
+               iterator.remove();
+            }
+         }
+      }
+
+      records.addAll(prepared.records);
+   }
+
+   /**
+    * @return the kind of a prepare written by this class, or -1 for any other prepare
+    */
+   private static byte getPrepareKind(final byte[] extraData)
+   {
+      if (extraData == null || extraData.length < PREPARE_HEADER_SIZE ||
+         ByteBuffer.wrap(extraData).getInt() != PREPARE_MAGIC)
+      {
+         return -1;
+      }
+
+      return extraData[PREPARE_HEADER_SIZE - 1];
+   }
+
+   private static byte[] getUserData(final byte[] extraData)
+   {
+      return Arrays.copyOfRange(extraData, PREPARE_HEADER_SIZE, extraData.length);
+   }
+
+   // Inner classes -------------------------------------------------
+
+   /**
+    * The shards used by a transaction, and the relocated records it adds or deletes.
+    */
+   private static final class ShardTransaction
+   {
+      private final boolean[] used;
+
+      private final boolean[] prepared;
+
+      private List<Long> relocatedAdds;
+
+      private List<Long> relocatedDeletes;
+
+      ShardTransaction(final int shards)
+      {
+         used = new boolean[shards];
+         prepared = new boolean[shards];
+      }
+
+      synchronized void use(final int shard)
+      {
+         used[shard] = true;
+      }
+
+      synchronized int[] getUsedShards()
+      {
+         int count = 0;
+         for (boolean u : used)
+         {
+            if (u)
+            {
+               count++;
+            }
+         }
+
+         int[] shards = new int[count];
+         for (int i = 0, j = 0; i < used.length; i++)
+         {
+            if (used[i])
+            {
+               shards[j++] = i;
+            }
+         }
+
+         return shards;
+      }
+
+      synchronized void prepared(final int shard)
+      {
+         prepared[shard] = true;
+      }
+
+      synchronized boolean isPrepared(final int shard)
+      {
+         return prepared[shard];
+      }
+
+      synchronized void addRelocated(final long id)
+      {
+         if (relocatedAdds == null)
+         {
+            relocatedAdds = new ArrayList<Long>();
+         }
+         relocatedAdds.add(id);
+      }
+
+      synchronized void deleteRelocated(final long id)
+      {
+         if (relocatedDeletes == null)
+         {
+            relocatedDeletes = new ArrayList<Long>();
+         }
+         relocatedDeletes.add(id);
+      }
+
+      synchronized List<Long> getRelocatedAdds()
+      {
+         return relocatedAdds;
+      }
+
+      synchronized List<Long> getRelocatedDeletes()
+      {
+         return relocatedDeletes;
+      }
+   }
+
+   /**
+    * The commit markers of a transaction committed on several shards.
+    */
+   private static final class CommitMarkers
+   {
+      final long markerID;
+
+      final int[] shards;
+
+      CommitMarkers(final long txID, final int[] shards)
+      {
+         this.markerID = ~txID;
+         this.shards = shards;
+      }
+   }
+
+   /**
+    * Completes a callback once the operations on all the shards are done.
+    */
+   private final class ShardsCompletion implements IOCompletion
+   {
+      private final IOCompletion delegate;
+
+      private final AtomicInteger pending;
+
+      private final CommitMarkers markers;
+
+      private volatile int errorCode;
+
+      private volatile String errorMessage;
+
+      ShardsCompletion(final IOCompletion delegate, final int operations, final CommitMarkers markers)
+      {
+         this.delegate = delegate;
+         this.pending = new AtomicInteger(operations);
+         this.markers = markers;
+      }
+
+      public void storeLineUp()
+      {
+         // the delegate was lined up once for all the shards
+      }
+
+      public void done()
+      {
+         if (pending.decrementAndGet() == 0)
+         {
+            complete();
+         }
+      }
+
+      public void onError(final int errorCode, final String errorMessage)
+      {
+         this.errorCode = errorCode;
+         this.errorMessage = errorMessage;
+
+         if (pending.decrementAndGet() == 0)
+         {
+            complete();
+         }
+      }
+
+      private void complete()
+      {
+         if (errorMessage != null)
+         {
+            if (delegate != null)
+            {
+               delegate.onError(errorCode, errorMessage);
+            }
+            return;
+         }
+
+         if (markers != null)
+         {
+            committedMarkers.add(markers);
+         }
+
+         if (delegate != null)
+         {
+            delegate.done();
+         }
+      }
+   }
+
+   /**
+    * The data of the prepares written by this class: a header followed by the data of the user, if any.
+    */
+   private static final class PrepareEncoding implements EncodingSupport
+   {
+      private final byte kind;
+
+      private final EncodingSupport userData;
+
+      PrepareEncoding(final byte kind, final EncodingSupport userData)
+      {
+         this.kind = kind;
+         this.userData = userData;
+      }
+
+      public int getEncodeSize()
+      {
+         return PREPARE_HEADER_SIZE + (userData == null ? 0 : userData.getEncodeSize());
+      }
+
+      public void encode(final ActiveMQBuffer buffer)
+      {
+         buffer.writeInt(PREPARE_MAGIC);
+         buffer.writeByte(kind);
+         if (userData != null)
+         {
+            userData.encode(buffer);
+         }
+      }
+
+      public void decode(final ActiveMQBuffer buffer)
+      {
+         throw new UnsupportedOperationException();
+      }
+   }
+}
@@ -18,23 +18,36 @@ package org.apache.activemq.core.journal.impl;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.activemq.api.core.ActiveMQBuffer;
 import org.apache.activemq.api.core.ActiveMQBuffers;
 import org.apache.activemq.api.core.ActiveMQInterruptedException;
 import org.apache.activemq.core.journal.EncodingSupport;
 import org.apache.activemq.core.journal.IOAsyncTask;
+import org.apache.activemq.core.journal.JournalIOStatistics;
+import org.apache.activemq.core.journal.JournalIOStatistics.FlushReason;
 import org.apache.activemq.core.journal.impl.dataformat.ByteArrayEncoding;
 import org.apache.activemq.journal.ActiveMQJournalLogger;
 
 /**
  * A TimedBuffer
+ * <p>
+ * Records are copied into the buffer holding its monitor. A flush copies the buffer out and resets it
+ * under the monitor too, but hands the copy to the file after releasing it, so appends carry on while the
+ * file is writing or submitting it. Flushes are kept in order by {@link #flushLock}.
+ * <p>
+ * On the adaptive mode the timeout is tuned from the sync latency and the time between sync requests,
+ * with the configured timeout as its maximum: syncs are flushed straight away while they arrive slower
+ * than the file syncs them, and are batched for up to a sync latency as they arrive faster.
+ * <p>
+ * Every flush is counted on the {@link JournalIOStatistics} with the reason it was done for, and synced
+ * flushes are timed until the file completes them.
  *
  * @author <a href="mailto:clebert.suconic@jboss.org">Clebert Suconic</a>
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
@@ -61,12 +74,30 @@ public class TimedBuffer
 
    private final ActiveMQBuffer buffer;
 
+   private final JournalIOStatistics statistics;
+
    private int bufferLimit = 0;
 
    private List<IOAsyncTask> callbacks;
 
    private volatile int timeout;
 
+   /**
+    * Taken before the monitor by every flush, so buffers are handed to the observer in order and nothing
+    * is being handed while the observer changes or while the space left on the file is checked
+    */
+   private final ReentrantLock flushLock = new ReentrantLock();
+
+   private volatile boolean adaptiveTimeout;
+
+   // moving averages in nanoseconds, only updated on the adaptive mode
+   // the latency is written by the file's completion thread, the interval under the monitor
+   private volatile long syncLatency;
+
+   private volatile long syncInterval;
+
+   private long lastSyncRequest;
+
    // used to measure sync requests. When a sync is requested, it shouldn't take more than timeout to happen
    private volatile boolean pendingSync = false;
 
@@ -91,7 +122,7 @@ public class TimedBuffer
 
    private TimerTask logRatesTimerTask;
 
-   private boolean useSleep = true;
+   private volatile boolean useSleep = true;
 
    // no need to be volatile as every access is synchronized
    private boolean spinning = false;
@@ -103,9 +134,16 @@ public class TimedBuffer
    // Public --------------------------------------------------------
 
    public TimedBuffer(final int size, final int timeout, final boolean logRates)
+   {
+      this(size, timeout, logRates, new JournalIOStatistics());
+   }
+
+   public TimedBuffer(final int size, final int timeout, final boolean logRates, final JournalIOStatistics statistics)
    {
       bufferSize = size;
 
+      this.statistics = statistics;
+
       this.logRates = logRates;
 
       if (logRates)
@@ -126,16 +164,53 @@ public class TimedBuffer
    }
 
    // for Debug purposes
-   public synchronized boolean isUseSleep()
+   public boolean isUseSleep()
    {
       return useSleep;
    }
 
-   public synchronized void setUseSleep(boolean useSleep)
+   public void setUseSleep(boolean useSleep)
    {
       this.useSleep = useSleep;
    }
 
+   public JournalIOStatistics getStatistics()
+   {
+      return statistics;
+   }
+
+   public boolean isAdaptiveTimeout()
+   {
+      return adaptiveTimeout;
+   }
+
+   public void setAdaptiveTimeout(final boolean adaptiveTimeout)
+   {
+      this.adaptiveTimeout = adaptiveTimeout;
+   }
+
+   /**
+    * @return the timeout in nanoseconds the timer is using now. The configured timeout unless on the adaptive mode.
+    */
+   public int getCurrentTimeout()
+   {
+      if (!adaptiveTimeout)
+      {
+         return timeout;
+      }
+
+      long latency = syncLatency;
+      long interval = syncInterval;
+
+      if (interval >= latency)
+      {
+         // syncs are not coming faster than the file can do them, there's nothing to batch
+         return 0;
+      }
+
+      return (int)Math.min(timeout, latency - interval);
+   }
+
    public synchronized void start()
    {
       if (started)
@@ -204,14 +279,28 @@ public class TimedBuffer
       started = false;
    }
 
-   public synchronized void setObserver(final TimedBufferObserver observer)
+   public void setObserver(final TimedBufferObserver observer)
    {
-      if (bufferObserver != null)
+      flushLock.lock();
+      try
       {
-         flush();
-      }
+         if (bufferObserver != null)
+         {
+            flush();
+         }
 
-      bufferObserver = observer;
+         synchronized (this)
+         {
+            bufferObserver = observer;
+
+            // the space left was calculated for the previous file
+            bufferLimit = 0;
+         }
+      }
+      finally
+      {
+         flushLock.unlock();
+      }
    }
 
    /**
@@ -219,7 +308,7 @@ public class TimedBuffer
     *
     * @param sizeChecked
     */
-   public synchronized boolean checkSize(final int sizeChecked)
+   public boolean checkSize(final int sizeChecked)
    {
       if (!started)
       {
@@ -232,13 +321,24 @@ public class TimedBuffer
                                             ") on the journal");
       }
 
-      if (bufferLimit == 0 || buffer.writerIndex() + sizeChecked > bufferLimit)
+      synchronized (this)
       {
-         // Either there is not enough space left in the buffer for the sized record
-         // Or a flush has just been performed and we need to re-calcualate bufferLimit
+         if (bufferLimit != 0 && buffer.writerIndex() + sizeChecked <= bufferLimit)
+         {
+            delayFlush = true;
 
-         flush();
+            return true;
+         }
+      }
 
+      // Either there is not enough space left in the buffer for the sized record
+      // Or a flush has just been performed and we need to re-calcualate bufferLimit
+      // The flush has to be done without holding the monitor, as it takes the flushLock first
+
+      flush(false, FlushReason.SIZE);
+
+      synchronized (this)
+      {
          delayFlush = true;
 
          final int remainingInFile = bufferObserver.getRemainingBytes();
@@ -258,15 +358,9 @@ public class TimedBuffer
             return true;
          }
       }
-      else
-      {
-         delayFlush = true;
-
-         return true;
-      }
    }
 
-   public synchronized void addBytes(final ActiveMQBuffer bytes, final boolean sync, final IOAsyncTask callback)
+   public void addBytes(final ActiveMQBuffer bytes, final boolean sync, final IOAsyncTask callback)
    {
       addBytes(new ByteArrayEncoding(bytes.toByteBuffer().array()), sync, callback);
    }
@@ -286,6 +380,16 @@ public class TimedBuffer
 
       if (sync)
       {
+         if (adaptiveTimeout)
+         {
+            long now = System.nanoTime();
+            if (lastSyncRequest != 0)
+            {
+               syncInterval = average(syncInterval, now - lastSyncRequest);
+            }
+            lastSyncRequest = now;
+         }
+
          pendingSync = true;
 
          startSpin();
@@ -304,45 +408,87 @@ public class TimedBuffer
     */
    public void flush(final boolean force)
    {
-      synchronized (this)
+      flush(force, FlushReason.FORCED);
+   }
+
+   private void flush(final boolean force, final FlushReason reason)
+   {
+      flushLock.lock();
+      try
       {
-         if (!started)
-         {
-            throw new IllegalStateException("TimedBuffer is not started");
-         }
+         final TimedBufferObserver observer;
+         final ByteBuffer bufferToFlush;
+         final boolean syncToFlush;
+         final List<IOAsyncTask> callbacksToFlush;
 
-         if ((force || !delayFlush) && buffer.writerIndex() > 0)
+         synchronized (this)
          {
-            int pos = buffer.writerIndex();
-
-            if (logRates)
+            if (!started)
             {
-               bytesFlushed.addAndGet(pos);
+               throw new IllegalStateException("TimedBuffer is not started");
             }
 
-            ByteBuffer bufferToFlush = bufferObserver.newBuffer(bufferSize, pos);
+            if ((force || !delayFlush) && buffer.writerIndex() > 0)
+            {
+               int pos = buffer.writerIndex();
 
-            // Putting a byteArray on a native buffer is much faster, since it will do in a single native call.
-            // Using bufferToFlush.put(buffer) would make several append calls for each byte
-            // We also transfer the content of this buffer to the native file's buffer
+               if (logRates)
+               {
+                  bytesFlushed.addAndGet(pos);
+               }
 
-            bufferToFlush.put(buffer.toByteBuffer().array(), 0, pos);
+               observer = bufferObserver;
 
-            bufferObserver.flushBuffer(bufferToFlush, pendingSync, callbacks);
+               bufferToFlush = observer.newBuffer(bufferSize, pos);
 
-            stopSpin();
+               // the file will take the whole limit, which may be bigger than pos because of the alignment
+               final int sizeToFlush = bufferToFlush.limit();
 
-            pendingSync = false;
+               // Putting a byteArray on a native buffer is much faster, since it will do in a single native call.
+               // Using bufferToFlush.put(buffer) would make several append calls for each byte
+               // We also transfer the content of this buffer to the native file's buffer
 
-            // swap the instance as the previous callback list is being used asynchronously
-            callbacks = new LinkedList<IOAsyncTask>();
+               bufferToFlush.put(buffer.toByteBuffer().array(), 0, pos);
 
-            buffer.clear();
+               syncToFlush = pendingSync;
 
-            bufferLimit = 0;
+               callbacksToFlush = callbacks;
 
-            flushesDone.incrementAndGet();
+               stopSpin();
+
+               pendingSync = false;
+
+               // swap the instance as the previous callback list is being used asynchronously
+               callbacks = new ArrayList<IOAsyncTask>();
+
+               buffer.clear();
+
+               // the file doesn't know about sizeToFlush until it gets the buffer, so it's taken off here
+               // to let the appends carry on meanwhile
+               final int remainingInFile = observer.getRemainingBytes() - sizeToFlush;
+
+               bufferLimit = remainingInFile > 0 ? Math.min(remainingInFile, bufferSize) : 0;
+
+               flushesDone.incrementAndGet();
+
+               statistics.flushDone(reason, pos, callbacksToFlush.size());
+            }
+            else
+            {
+               return;
+            }
          }
+
+         if (syncToFlush)
+         {
+            callbacksToFlush.add(new SyncLatencyTask());
+         }
+
+         observer.flushBuffer(bufferToFlush, syncToFlush, callbacksToFlush);
+      }
+      finally
+      {
+         flushLock.unlock();
       }
    }
 
@@ -352,8 +498,42 @@ public class TimedBuffer
 
    // Private -------------------------------------------------------
 
+   private static long average(final long average, final long sample)
+   {
+      if (average == 0)
+      {
+         return sample;
+      }
+      return average - (average >> 3) + (sample >> 3);
+   }
+
    // Inner classes -------------------------------------------------
 
+   /**
+    * Added last to the callbacks of a synced flush, to measure how long the file takes to write and sync it.
+    * This is the sync latency on the statistics, and what the adaptive timeout is tuned from.
+    */
+   private final class SyncLatencyTask implements IOAsyncTask
+   {
+      private final long flushTime = System.nanoTime();
+
+      public void done()
+      {
+         long latency = System.nanoTime() - flushTime;
+
+         statistics.syncDone(latency);
+
+         if (adaptiveTimeout)
+         {
+            syncLatency = average(syncLatency, latency);
+         }
+      }
+
+      public void onError(final int errorCode, final String errorMessage)
+      {
+      }
+   }
+
    private class LogRatesTimerTask extends TimerTask
    {
       private boolean closed;
@@ -380,6 +560,10 @@ public class TimedBuffer
                ActiveMQJournalLogger.LOGGER.writeRate(rate, (long) (rate / (1024 * 1024)));
                double flushRate = 1000 * (double) (flushesD - lastFlushesDone) / (now - lastExecution);
                ActiveMQJournalLogger.LOGGER.flushRate(flushRate);
+               if (adaptiveTimeout)
+               {
+                  ActiveMQJournalLogger.LOGGER.adaptiveTimeout(getCurrentTimeout(), syncLatency, syncInterval);
+               }
             }
 
             lastExecution = now;
@@ -407,9 +591,6 @@ public class TimedBuffer
       int failedChecks = 0;
       long timeBefore = 0;
 
-      final int sleepMillis = timeout / 1000000; // truncates
-      final int sleepNanos = timeout % 1000000;
-
 
       public void run()
       {
@@ -422,24 +603,30 @@ public class TimedBuffer
             // Effectively flushing "resets" the timer
             // On the timeout verification, notice that we ignore the timeout check if we are using sleep
 
+            // read on every loop as it changes on the adaptive mode
+            final int currentTimeout = getCurrentTimeout();
+
             if (pendingSync)
             {
                if (isUseSleep())
                {
                   // if using sleep, we will always flush
-                  flush();
+                  flush(false, FlushReason.TIMEOUT);
                   lastFlushTime = System.nanoTime();
                }
-               else if (bufferObserver != null && System.nanoTime() > lastFlushTime + timeout)
+               else if (bufferObserver != null && System.nanoTime() > lastFlushTime + currentTimeout)
                {
                   // if not using flush we will spin and do the time checks manually
-                  flush();
+                  flush(false, FlushReason.TIMEOUT);
                   lastFlushTime = System.nanoTime();
                }
 
             }
 
-            sleepIfPossible();
+            if (currentTimeout > 0)
+            {
+               sleepIfPossible(currentTimeout);
+            }
 
             try
             {
@@ -460,19 +647,24 @@ public class TimedBuffer
        * We will attempt to use sleep only if the system supports nano-sleep
        * we will on that case verify up to MAX_CHECKS if nano sleep is behaving well.
        * if more than 50% of the checks have failed we will cancel the sleep and just use regular spin
+       * <p>
+       * Only sleeps of the configured timeout are checked, as the timeouts tuned on the adaptive mode
+       * can be shorter than the usual jitter of a sleep.
        */
-      private void sleepIfPossible()
+      private void sleepIfPossible(final int currentTimeout)
       {
          if (isUseSleep())
          {
-            if (checks < MAX_CHECKS_ON_SLEEP)
+            final boolean check = checks < MAX_CHECKS_ON_SLEEP && currentTimeout == timeout;
+
+            if (check)
             {
                timeBefore = System.nanoTime();
             }
 
             try
             {
-               sleep(sleepMillis, sleepNanos);
+               sleep(currentTimeout / 1000000, currentTimeout % 1000000);
             }
             catch (InterruptedException e)
             {
@@ -484,12 +676,12 @@ public class TimedBuffer
                ActiveMQJournalLogger.LOGGER.warn(e.getMessage() + ", disabling sleep on TimedBuffer, using spin now", e);
             }
 
-            if (checks < MAX_CHECKS_ON_SLEEP)
+            if (check)
             {
                long realTimeSleep = System.nanoTime() - timeBefore;
 
                // I'm letting the real time to be up to 50% than the requested sleep.
-               if (realTimeSleep > timeout * 1.5)
+               if (realTimeSleep > currentTimeout * 1.5)
                {
                   failedChecks++;
                }
@@ -38,12 +38,26 @@ public class JournalAddRecord extends JournalInternalRecord
 
    private final boolean add;
 
+   private final boolean compressed;
+
    /**
     * @param id
     * @param recordType
     * @param record
     */
    public JournalAddRecord(final boolean add, final long id, final byte recordType, final EncodingSupport record)
+   {
+      this(add, id, recordType, record, false);
+   }
+
+   /**
+    * @param compressed if record is a body compressed by {@link org.apache.activemq.core.journal.impl.JournalRecordCompressor}
+    */
+   public JournalAddRecord(final boolean add,
+                           final long id,
+                           final byte recordType,
+                           final EncodingSupport record,
+                           final boolean compressed)
    {
       this.id = id;
 
@@ -52,20 +66,22 @@ public class JournalAddRecord extends JournalInternalRecord
       this.recordType = recordType;
 
       this.add = add;
+
+      this.compressed = compressed;
    }
 
    @Override
    public void encode(final ActiveMQBuffer buffer)
    {
-      if (add)
-      {
-         buffer.writeByte(JournalImpl.ADD_RECORD);
-      }
-      else
+      byte journalRecordType = add ? JournalImpl.ADD_RECORD : JournalImpl.UPDATE_RECORD;
+
+      if (compressed)
       {
-         buffer.writeByte(JournalImpl.UPDATE_RECORD);
+         journalRecordType |= JournalImpl.COMPRESSED_RECORD;
       }
 
+      buffer.writeByte(journalRecordType);
+
       buffer.writeInt(fileID);
 
       buffer.writeByte(compactCount);
@@ -40,6 +40,8 @@ public class JournalAddRecordTX extends JournalInternalRecord
 
    private final boolean add;
 
+   private final boolean compressed;
+
    /**
     * @param id
     * @param recordType
@@ -51,6 +53,19 @@ public class JournalAddRecordTX extends JournalInternalRecord
                              final byte recordType,
                              final EncodingSupport record)
    {
+      this(add, txID, id, recordType, record, false);
+   }
+
+   /**
+    * @param compressed if record is a body compressed by {@link org.apache.activemq.core.journal.impl.JournalRecordCompressor}
+    */
+   public JournalAddRecordTX(final boolean add,
+                             final long txID,
+                             final long id,
+                             final byte recordType,
+                             final EncodingSupport record,
+                             final boolean compressed)
+   {
 
       this.txID = txID;
 
@@ -61,20 +76,22 @@ public class JournalAddRecordTX extends JournalInternalRecord
       this.recordType = recordType;
 
       this.add = add;
+
+      this.compressed = compressed;
    }
 
    @Override
    public void encode(final ActiveMQBuffer buffer)
    {
-      if (add)
-      {
-         buffer.writeByte(JournalImpl.ADD_RECORD_TX);
-      }
-      else
+      byte journalRecordType = add ? JournalImpl.ADD_RECORD_TX : JournalImpl.UPDATE_RECORD_TX;
+
+      if (compressed)
       {
-         buffer.writeByte(JournalImpl.UPDATE_RECORD_TX);
+         journalRecordType |= JournalImpl.COMPRESSED_RECORD;
       }
 
+      buffer.writeByte(journalRecordType);
+
       buffer.writeInt(fileID);
 
       buffer.writeByte(compactCount);
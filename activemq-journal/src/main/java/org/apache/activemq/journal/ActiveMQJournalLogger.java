@@ -88,6 +88,15 @@ public interface ActiveMQJournalLogger extends BasicLogger
    @Message(id = 141009, value = "A Free File is less than the maximum data", format = Message.Format.MESSAGE_FORMAT)
    void fileTooSmall();
 
+   @LogMessage(level = Logger.Level.INFO)
+   @Message(id = 141010, value = "Adaptive buffer timeout = {0} ns (sync latency = {1} ns, time between syncs = {2} ns)", format = Message.Format.MESSAGE_FORMAT)
+   void adaptiveTimeout(Integer timeout, Long syncLatency, Long syncInterval);
+
+   @LogMessage(level = Logger.Level.INFO)
+   @Message(id = 141011, value = "Journal {0} loaded from its checkpoint up to file {1}: {2} live records on {3} files restored, {4} files replayed, in {5} ms",
+            format = Message.Format.MESSAGE_FORMAT)
+   void journalLoadedFromCheckpoint(String journal, Long lastFileID, Integer records, Integer coveredFiles, Integer replayedFiles, Long time);
+
    @LogMessage(level = Logger.Level.WARN)
    @Message(id = 142000, value = "You have a native library with a different version than expected", format = Message.Format.MESSAGE_FORMAT)
    void incompatibleNativeLibrary();
@@ -244,6 +253,33 @@ public interface ActiveMQJournalLogger extends BasicLogger
    @Message(id = 142034, value = "Exception on submitting write", format = Message.Format.MESSAGE_FORMAT)
    void errorSubmittingWrite(@Cause Throwable e);
 
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 142035, value = "Ignoring the journal checkpoint {0}, all the journal files will be loaded", format = Message.Format.MESSAGE_FORMAT)
+   void ignoringCheckpoint(String checkpoint, @Cause Throwable e);
+
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 142036, value = "Error taking a checkpoint of the journal", format = Message.Format.MESSAGE_FORMAT)
+   void errorTakingCheckpoint(@Cause Throwable e);
+
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 142037, value = "io_uring is not available on this system, the journal is using libaio instead", format = Message.Format.MESSAGE_FORMAT)
+   void uringNotAvailable();
+
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 142038, value = "A journal buffer of {0} bytes was never given back to the buffer pool, it was taken at", format = Message.Format.MESSAGE_FORMAT)
+   void bufferNotReleased(int capacity, @Cause Throwable allocationSite);
+
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 142039, value = "The native library was built without io_uring and has to be rebuilt to use it, the journal is using libaio instead", format = Message.Format.MESSAGE_FORMAT)
+   void uringNotBuilt();
+
+   @LogMessage(level = Logger.Level.DEBUG)
+   @Message(id = 143000, value = "Journal {0} loaded {1} files in {2} ms: ordering files = {3} ms, reading and applying records = {4} ms " +
+                                 "(read-ahead threads busy = {5} ms, waiting on read-ahead = {6} ms), pending transactions and reclaim = {7} ms, load threads = {8}",
+            format = Message.Format.MESSAGE_FORMAT)
+   void journalLoadTimes(String journal, Integer files, Long total, Long ordering, Long reading, Long readAhead,
+                         Long waitingReadAhead, Long transactions, Integer loadThreads);
+
    @LogMessage(level = Logger.Level.ERROR)
    @Message(id = 144000, value = "Failed to delete file {0}", format = Message.Format.MESSAGE_FORMAT)
    void errorDeletingFile(Object e);
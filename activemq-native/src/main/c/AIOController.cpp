@@ -18,11 +18,21 @@
 
 #include <string>
 #include "AIOController.h"
+#include "AsyncFile.h"
+#include "URingFile.h"
 #include "JavaUtilities.h"
 #include "JAIODatatypes.h"
 
-AIOController::AIOController(std::string fileName, int maxIO) : logger(0), fileOutput(fileName, this, maxIO) 
+AIOController::AIOController(std::string fileName, int maxIO, bool useURing) : logger(0), fileOutput(0)
 {
+	if (useURing)
+	{
+		fileOutput = new URingFile(fileName, this, maxIO);
+	}
+	else
+	{
+		fileOutput = new AsyncFile(fileName, this, maxIO);
+	}
 }
 
 void AIOController::log(THREAD_CONTEXT threadContext, short level, const char * message)
@@ -60,4 +70,5 @@ void AIOController::destroy(THREAD_CONTEXT context)
 
 AIOController::~AIOController()
 {
+	delete fileOutput;
 }
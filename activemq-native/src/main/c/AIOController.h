@@ -21,7 +21,7 @@
 #include <jni.h>
 #include <string>
 #include "JAIODatatypes.h"
-#include "AsyncFile.h"
+#include "NativeFile.h"
 
 class AIOController
 {
@@ -41,11 +41,12 @@ public:
 	 */
 	void log(THREAD_CONTEXT threadContext, short level, const char * message);
 	
-	AsyncFile fileOutput;
+	// AsyncFile on libaio, or URingFile on io_uring
+	NativeFile * fileOutput;
 	
 	void destroy(THREAD_CONTEXT context);
 	
-	AIOController(std::string fileName, int maxIO);
+	AIOController(std::string fileName, int maxIO, bool useURing);
 	virtual ~AIOController();
 };
 #endif /*AIOCONTROLLER_H_*/
@@ -45,42 +45,16 @@
 #define TRIES_BEFORE_ERROR 500
 
 
-std::string io_error(int rc)
-{
-	std::stringstream buffer;
-
-	if (rc == -ENOSYS)
-		buffer << "AIO not in this kernel";
-	else
-		buffer << "Error:= " << strerror((int)-rc);
-
-	return buffer.str();
-}
-
-
-AsyncFile::AsyncFile(std::string & _fileName, AIOController * _controller, int _maxIO) : aioContext(0), events(0), fileHandle(0), controller(_controller), pollerRunning(0)
+AsyncFile::AsyncFile(std::string & _fileName, AIOController * _controller, int _maxIO) : NativeFile(_fileName, _controller, _maxIO), aioContext(0), events(0), pollerRunning(0)
 {
 	::pthread_mutex_init(&fileMutex,0);
 	::pthread_mutex_init(&pollerMutex,0);
 
-	maxIO = _maxIO;
-	fileName = _fileName;
 	if (io_queue_init(maxIO, &aioContext))
 	{
 		throw AIOException(NATIVE_ERROR_CANT_INITIALIZE_AIO, "Can't initialize aio, out of AIO Handlers");
 	}
 
-	fileHandle = ::open(fileName.data(),  O_RDWR | O_CREAT | O_DIRECT, 0666);
-	if (fileHandle < 0)
-	{
-		io_queue_release(aioContext);
-		throw AIOException(NATIVE_ERROR_CANT_OPEN_CLOSE_FILE, "Can't open file");
-	}
-
-#ifdef DEBUG
-	fprintf (stderr,"File Handle %d", fileHandle);
-#endif
-
 	events = (struct io_event *)malloc (maxIO * sizeof (struct io_event));
 
 	if (events == 0)
@@ -96,20 +70,11 @@ AsyncFile::~AsyncFile()
 	{
 		throw AIOException(NATIVE_ERROR_CANT_RELEASE_AIO,"Can't release aio");
 	}
-	if (::close(fileHandle))
-	{
-		throw AIOException(NATIVE_ERROR_CANT_OPEN_CLOSE_FILE,"Can't close file");
-	}
 	free(events);
 	::pthread_mutex_destroy(&fileMutex);
 	::pthread_mutex_destroy(&pollerMutex);
 }
 
-int isException (THREAD_CONTEXT threadContext)
-{
-	return JNI_ENV(threadContext)->ExceptionOccurred() != 0;
-}
-
 void AsyncFile::pollEvents(THREAD_CONTEXT threadContext)
 {
 
@@ -176,58 +141,6 @@ void AsyncFile::pollEvents(THREAD_CONTEXT threadContext)
 }
 
 
-void AsyncFile::preAllocate(THREAD_CONTEXT , off_t position, int blocks, size_t size, int fillChar)
-{
-
-	if (size % ALIGNMENT != 0)
-	{
-		throw AIOException (NATIVE_ERROR_PREALLOCATE_FILE, "You can only pre allocate files in multiples of 512");
-	}
-
-	void * preAllocBuffer = 0;
-	if (posix_memalign(&preAllocBuffer, 512, size))
-	{
-		throw AIOException(NATIVE_ERROR_ALLOCATE_MEMORY, "Error on posix_memalign");
-	}
-
-	memset(preAllocBuffer, fillChar, size);
-
-
-	if (::lseek (fileHandle, position, SEEK_SET) < 0) throw AIOException (11, "Error positioning the file");
-
-	for (int i=0; i<blocks; i++)
-	{
-		if (::write(fileHandle, preAllocBuffer, size)<0)
-		{
-			throw AIOException (NATIVE_ERROR_PREALLOCATE_FILE, "Error pre allocating the file");
-		}
-	}
-
-	if (::lseek (fileHandle, position, SEEK_SET) < 0) throw AIOException (NATIVE_ERROR_IO, "Error positioning the file");
-
-	free (preAllocBuffer);
-}
-
-
-/** Write directly to the file without using libaio queue */
-void AsyncFile::writeInternal(THREAD_CONTEXT, long position, size_t size, void *& buffer)
-{
-	if (::lseek (fileHandle, position, SEEK_SET) < 0) throw AIOException (11, "Error positioning the file");
-
-	if (::write(fileHandle, buffer, size)<0)
-	{
-		throw AIOException (NATIVE_ERROR_IO, "Error writing file");
-	}
-	
-	if (::fsync(fileHandle) < 0)
-	{
-		throw AIOException (NATIVE_ERROR_IO, "Error on synchronizing file");
-	}
-	
-
-}
-
-
 void AsyncFile::write(THREAD_CONTEXT threadContext, long position, size_t size, void *& buffer, CallbackAdapter *& adapter)
 {
 
@@ -270,6 +183,82 @@ void AsyncFile::write(THREAD_CONTEXT threadContext, long position, size_t size,
 	}
 }
 
+void AsyncFile::writeBatch(THREAD_CONTEXT threadContext, int count, long * positions, size_t * sizes, void ** buffers, CallbackAdapter ** adapters)
+{
+	struct iocb ** iocbs = new struct iocb * [count];
+
+	for (int i = 0; i < count; i++)
+	{
+		iocbs[i] = new struct iocb();
+		::io_prep_pwrite(iocbs[i], fileHandle, buffers[i], sizes[i], positions[i]);
+		iocbs[i]->data = (void *) adapters[i];
+	}
+
+	int tries = 0;
+	int submitted = 0;
+	int result = 0;
+
+	// io_submit may take only part of the iocbs, the remaining ones are submitted again
+	while (submitted < count)
+	{
+		result = ::io_submit(aioContext, count - submitted, iocbs + submitted);
+
+		if (result > 0)
+		{
+			// only the retries without any progress count towards the limit
+			submitted += result;
+			tries = 0;
+			continue;
+		}
+
+		if (result != -EAGAIN && result != 0)
+		{
+			break;
+		}
+
+#ifdef DEBUG
+		fprintf (stderr, "Retrying batch as iocb was full (retry=%d)\n", tries);
+#endif
+		tries ++;
+		if (tries > TRIES_BEFORE_WARN)
+		{
+			controller->log(threadContext, 1, "You should consider expanding AIOLimit if this message appears too many times");
+		}
+
+		if (tries > TRIES_BEFORE_ERROR)
+		{
+			break;
+		}
+		::usleep(WAIT_FOR_SPOT);
+	}
+
+	if (submitted < count)
+	{
+		int errorCode;
+		std::stringstream str;
+
+		if (tries > TRIES_BEFORE_ERROR)
+		{
+			errorCode = NATIVE_ERROR_AIO_FULL;
+			str << "Too many retries (500) waiting for a valid iocb block, please increase MAX_IO limit";
+		}
+		else
+		{
+			errorCode = NATIVE_ERROR_IO;
+			str << "Problem on submit block, errorCode=" << result;
+		}
+
+		// the poller will never see these ones, so they are failed here
+		for (int i = submitted; i < count; i++)
+		{
+			adapters[i]->onError(threadContext, errorCode, str.str());
+			delete iocbs[i];
+		}
+	}
+
+	delete [] iocbs;
+}
+
 void AsyncFile::read(THREAD_CONTEXT threadContext, long position, size_t size, void *& buffer, CallbackAdapter *& adapter)
 {
 
@@ -312,17 +301,6 @@ void AsyncFile::read(THREAD_CONTEXT threadContext, long position, size_t size, v
 	}
 }
 
-long AsyncFile::getSize()
-{
-	struct stat statBuffer;
-
-	if (fstat(fileHandle, &statBuffer) < 0)
-	{
-		return -1l;
-	}
-	return statBuffer.st_size;
-}
-
 
 void AsyncFile::stopPoller(THREAD_CONTEXT threadContext)
 {
@@ -24,67 +24,37 @@
 #include <pthread.h>
 #include "JAIODatatypes.h"
 #include "AIOException.h"
+#include "NativeFile.h"
 
 class AIOController;
 
 class CallbackAdapter;
 
 /** Author: Clebert Suconic at Redhat dot com*/
-class AsyncFile
+class AsyncFile : public NativeFile
 {
 private:
 	io_context_t aioContext;
 	struct io_event *events; 
-	int fileHandle;
-	std::string fileName;
 	
 	pthread_mutex_t fileMutex;
 	pthread_mutex_t pollerMutex;
 	
-	AIOController * controller;
-	
 	bool pollerRunning;
 	
-	int maxIO;
-	
 public:
 	AsyncFile(std::string & _fileName, AIOController * controller, int maxIO);
 	virtual ~AsyncFile();
 	
 	void write(THREAD_CONTEXT threadContext, long position, size_t size, void *& buffer, CallbackAdapter *& adapter);
 	
-	/** Write directly to the file without using libaio queue */
-	void writeInternal(THREAD_CONTEXT threadContext, long position, size_t size, void *& buffer);
-	
 	void read(THREAD_CONTEXT threadContext, long position, size_t size, void *& buffer, CallbackAdapter *& adapter);
-	
-	int getHandle()
-	{
-		return fileHandle;
-	}
-
-	long getSize();
-
-	inline void * newBuffer(int size)
-	{
-		void * buffer = 0;
-		if (::posix_memalign(&buffer, 512, size))
-		{
-			throw AIOException(NATIVE_ERROR_ALLOCATE_MEMORY, "Error on posix_memalign");
-		}
-		return buffer;
-		
-	}
-
-	inline void destroyBuffer(void * buffer)
-	{
-		::free(buffer);
-	}
 
+	// All the writes go on a single io_submit, as long as the kernel takes them
+	void writeBatch(THREAD_CONTEXT threadContext, int count, long * positions, size_t * sizes, void ** buffers, CallbackAdapter ** adapters);
 	
 	// Finishes the polling thread (if any) and return
 	void stopPoller(THREAD_CONTEXT threadContext);
-	void preAllocate(THREAD_CONTEXT threadContext, off_t position, int blocks, size_t size, int fillChar);
 	
 	void pollEvents(THREAD_CONTEXT threadContext);
 	
@@ -17,6 +17,7 @@
 
 #include <jni.h>
 #include <stdlib.h>
+#include <string.h>
 #include <iostream>
 #include <stdio.h>
 #include <fcntl.h>
@@ -30,6 +31,7 @@
 
 #include "JavaUtilities.h"
 #include "AIOController.h"
+#include "URingFile.h"
 #include "JNICallbackAdapter.h"
 #include "AIOException.h"
 #include "Version.h"
@@ -84,20 +86,14 @@ JNIEXPORT jboolean JNICALL Java_org_apache_activemq_core_libaio_Native_flock
 
 
 
-/*
- * Class:     org_jboss_jaio_libaioimpl_LibAIOController
- * Method:    init
- * Signature: (Ljava/lang/String;Ljava/lang/Class;)J
- */
-JNIEXPORT jobject JNICALL Java_org_apache_activemq_core_libaio_Native_init
-  (JNIEnv * env, jclass, jclass controllerClazz, jstring jstrFileName, jint maxIO, jobject logger)
+static jobject newController(JNIEnv * env, jclass controllerClazz, jstring jstrFileName, jint maxIO, jobject logger, bool useURing)
 {
 	AIOController * controller = 0;
 	try
 	{
 		std::string fileName = convertJavaString(env, jstrFileName);
 
-		controller = new AIOController(fileName, (int) maxIO);
+		controller = new AIOController(fileName, (int) maxIO, useURing);
 		controller->done = env->GetMethodID(controllerClazz,"callbackDone","(Lorg/apache/activemq/core/asyncio/AIOCallback;JLjava/nio/ByteBuffer;)V");
 		if (!controller->done)
 		{
@@ -133,6 +129,40 @@ JNIEXPORT jobject JNICALL Java_org_apache_activemq_core_libaio_Native_init
 	}
 }
 
+
+/*
+ * Class:     org_jboss_jaio_libaioimpl_LibAIOController
+ * Method:    init
+ * Signature: (Ljava/lang/String;Ljava/lang/Class;)J
+ */
+JNIEXPORT jobject JNICALL Java_org_apache_activemq_core_libaio_Native_init
+  (JNIEnv * env, jclass, jclass controllerClazz, jstring jstrFileName, jint maxIO, jobject logger)
+{
+	return newController(env, controllerClazz, jstrFileName, maxIO, logger, false);
+}
+
+/*
+ * Class:     org_apache_activemq_core_libaio_Native
+ * Method:    initURing
+ * Signature: (Ljava/lang/Class;Ljava/lang/String;ILjava/lang/Object;)Ljava/nio/ByteBuffer;
+ */
+JNIEXPORT jobject JNICALL Java_org_apache_activemq_core_libaio_Native_initURing
+  (JNIEnv * env, jclass, jclass controllerClazz, jstring jstrFileName, jint maxIO, jobject logger)
+{
+	return newController(env, controllerClazz, jstrFileName, maxIO, logger, true);
+}
+
+/*
+ * Class:     org_apache_activemq_core_libaio_Native
+ * Method:    isURingSupported
+ * Signature: ()Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_apache_activemq_core_libaio_Native_isURingSupported
+  (JNIEnv *, jclass)
+{
+	return URingFile::isSupported();
+}
+
 /**
 * objThis here is passed as a parameter at the java layer. It used to be a JNI this and now it's a java static method
   where the intended reference is now passed as an argument
@@ -159,7 +189,7 @@ JNIEXPORT void JNICALL Java_org_apache_activemq_core_libaio_Native_read
 
 		CallbackAdapter * adapter = new JNICallbackAdapter(controller, -1, env->NewGlobalRef(callback), env->NewGlobalRef(objThis), env->NewGlobalRef(jbuffer), true);
 
-		controller->fileOutput.read(env, position, (size_t)size, buffer, adapter);
+		controller->fileOutput->read(env, position, (size_t)size, buffer, adapter);
 	}
 	catch (AIOException& e)
 	{
@@ -251,7 +281,72 @@ JNIEXPORT void JNICALL Java_org_apache_activemq_core_libaio_Native_write
 
 		CallbackAdapter * adapter = new JNICallbackAdapter(controller, sequence, env->NewGlobalRef(callback), env->NewGlobalRef(objThis), env->NewGlobalRef(jbuffer), false);
 
-		controller->fileOutput.write(env, position, (size_t)size, buffer, adapter);
+		controller->fileOutput->write(env, position, (size_t)size, buffer, adapter);
+	}
+	catch (AIOException& e)
+	{
+		throwException(env, e.getErrorCode(), e.what());
+	}
+}
+
+/*
+ * Class:     org_apache_activemq_core_libaio_Native
+ * Method:    writeBatch
+ * Signature: (Ljava/lang/Object;Ljava/nio/ByteBuffer;JI[J[J[Ljava/nio/ByteBuffer;[Ljava/lang/Object;)V
+ */
+JNIEXPORT void JNICALL Java_org_apache_activemq_core_libaio_Native_writeBatch
+  (JNIEnv *env, jclass, jobject objThis, jobject controllerAddress, jlong firstSequence, jint count, jlongArray jpositions, jlongArray jsizes, jobjectArray jbuffers, jobjectArray jcallbacks)
+{
+	try
+	{
+		AIOController * controller = getController(env, controllerAddress);
+
+		jlong * javaPositions = env->GetLongArrayElements(jpositions, 0);
+		jlong * javaSizes = env->GetLongArrayElements(jsizes, 0);
+
+		long * positions = new long[count];
+		size_t * sizes = new size_t[count];
+		void ** buffers = new void * [count];
+		CallbackAdapter ** adapters = new CallbackAdapter * [count];
+
+		int valid = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			jobject jbuffer = env->GetObjectArrayElement(jbuffers, i);
+			jobject callback = env->GetObjectArrayElement(jcallbacks, i);
+
+			CallbackAdapter * adapter = new JNICallbackAdapter(controller, firstSequence + i, env->NewGlobalRef(callback), env->NewGlobalRef(objThis), env->NewGlobalRef(jbuffer), false);
+
+			void * buffer = env->GetDirectBufferAddress(jbuffer);
+
+			if (buffer == 0)
+			{
+				// the other writes are still submitted, this one is failed on its own sequence
+				adapter->onError(env, NATIVE_ERROR_INVALID_BUFFER, "Invalid Buffer used, libaio requires NativeBuffer instead of Java ByteBuffer");
+			}
+			else
+			{
+				positions[valid] = (long) javaPositions[i];
+				sizes[valid] = (size_t) javaSizes[i];
+				buffers[valid] = buffer;
+				adapters[valid] = adapter;
+				valid++;
+			}
+
+			env->DeleteLocalRef(jbuffer);
+			env->DeleteLocalRef(callback);
+		}
+
+		env->ReleaseLongArrayElements(jpositions, javaPositions, JNI_ABORT);
+		env->ReleaseLongArrayElements(jsizes, javaSizes, JNI_ABORT);
+
+		controller->fileOutput->writeBatch(env, valid, positions, sizes, buffers, adapters);
+
+		delete [] positions;
+		delete [] sizes;
+		delete [] buffers;
+		delete [] adapters;
 	}
 	catch (AIOException& e)
 	{
@@ -273,7 +368,7 @@ JNIEXPORT void JNICALL Java_org_apache_activemq_core_libaio_Native_writeInternal
 			return;
 		}
 
-		controller->fileOutput.writeInternal(env, positionToWrite, (size_t)size, buffer);
+		controller->fileOutput->writeInternal(env, positionToWrite, (size_t)size, buffer);
 	}
 	catch (AIOException& e)
 	{
@@ -288,7 +383,7 @@ JNIEXPORT void Java_org_apache_activemq_core_libaio_Native_internalPollEvents
 	try
 	{
 		AIOController * controller = getController(env, controllerAddress);
-		controller->fileOutput.pollEvents(env);
+		controller->fileOutput->pollEvents(env);
 	}
 	catch (AIOException& e)
 	{
@@ -302,7 +397,7 @@ JNIEXPORT void JNICALL Java_org_apache_activemq_core_libaio_Native_stopPoller
 	try
 	{
 		AIOController * controller = getController(env, controllerAddress);
-		controller->fileOutput.stopPoller(env);
+		controller->fileOutput->stopPoller(env);
 	}
 	catch (AIOException& e)
 	{
@@ -333,7 +428,7 @@ JNIEXPORT void JNICALL Java_org_apache_activemq_core_libaio_Native_fill
 	{
 		AIOController * controller = getController(env, controllerAddress);
 
-		controller->fileOutput.preAllocate(env, position, blocks, size, fillChar);
+		controller->fileOutput->preAllocate(env, position, blocks, size, fillChar);
 
 	}
 	catch (AIOException& e)
@@ -360,7 +455,7 @@ JNIEXPORT jlong JNICALL Java_org_apache_activemq_core_libaio_Native_size0
 	{
 		AIOController * controller = getController(env, controllerAddress);
 
-		long size = controller->fileOutput.getSize();
+		long size = controller->fileOutput->getSize();
 		if (size < 0)
 		{
 			throwException(env, NATIVE_ERROR_INTERNAL, "InternalError on Native Layer: method size failed");
@@ -0,0 +1,151 @@
+/*
+  * Licensed to the Apache Software Foundation (ASF) under one or more
+  * contributor license agreements. See the NOTICE file distributed with
+  * this work for additional information regarding copyright ownership.
+  * The ASF licenses this file to You under the Apache License, Version 2.0
+  * (the "License"); you may not use this file except in compliance with
+  * the License. You may obtain a copy of the License at
+  *
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+
+#ifndef _GNU_SOURCE
+#define _GNU_SOURCE
+#endif
+
+#include <stdlib.h>
+#include <sstream>
+#include <memory.h>
+#include <errno.h>
+#include <fcntl.h>
+#include <unistd.h>
+#include <sys/stat.h>
+#include "NativeFile.h"
+#include "AIOException.h"
+#include "CallbackAdapter.h"
+
+
+std::string io_error(int rc)
+{
+	std::stringstream buffer;
+
+	if (rc == -ENOSYS)
+		buffer << "AIO not in this kernel";
+	else
+		buffer << "Error:= " << strerror((int)-rc);
+
+	return buffer.str();
+}
+
+int isException (THREAD_CONTEXT threadContext)
+{
+	return JNI_ENV(threadContext)->ExceptionOccurred() != 0;
+}
+
+NativeFile::NativeFile(std::string & _fileName, AIOController * _controller, int _maxIO) : fileHandle(0), controller(_controller)
+{
+	maxIO = _maxIO;
+	fileName = _fileName;
+
+	fileHandle = ::open(fileName.data(),  O_RDWR | O_CREAT | O_DIRECT, 0666);
+	if (fileHandle < 0)
+	{
+		throw AIOException(NATIVE_ERROR_CANT_OPEN_CLOSE_FILE, "Can't open file");
+	}
+
+#ifdef DEBUG
+	fprintf (stderr,"File Handle %d", fileHandle);
+#endif
+}
+
+NativeFile::~NativeFile()
+{
+	if (::close(fileHandle))
+	{
+		throw AIOException(NATIVE_ERROR_CANT_OPEN_CLOSE_FILE,"Can't close file");
+	}
+}
+
+void NativeFile::preAllocate(THREAD_CONTEXT , off_t position, int blocks, size_t size, int fillChar)
+{
+
+	if (size % ALIGNMENT != 0)
+	{
+		throw AIOException (NATIVE_ERROR_PREALLOCATE_FILE, "You can only pre allocate files in multiples of 512");
+	}
+
+	void * preAllocBuffer = 0;
+	if (posix_memalign(&preAllocBuffer, 512, size))
+	{
+		throw AIOException(NATIVE_ERROR_ALLOCATE_MEMORY, "Error on posix_memalign");
+	}
+
+	memset(preAllocBuffer, fillChar, size);
+
+
+	if (::lseek (fileHandle, position, SEEK_SET) < 0) throw AIOException (11, "Error positioning the file");
+
+	for (int i=0; i<blocks; i++)
+	{
+		if (::write(fileHandle, preAllocBuffer, size)<0)
+		{
+			throw AIOException (NATIVE_ERROR_PREALLOCATE_FILE, "Error pre allocating the file");
+		}
+	}
+
+	if (::lseek (fileHandle, position, SEEK_SET) < 0) throw AIOException (NATIVE_ERROR_IO, "Error positioning the file");
+
+	free (preAllocBuffer);
+}
+
+
+/** Write each buffer of the batch on its own, reporting the failures to their callbacks */
+void NativeFile::writeBatch(THREAD_CONTEXT threadContext, int count, long * positions, size_t * sizes, void ** buffers, CallbackAdapter ** adapters)
+{
+	for (int i = 0; i < count; i++)
+	{
+		try
+		{
+			write(threadContext, positions[i], sizes[i], buffers[i], adapters[i]);
+		}
+		catch (AIOException& e)
+		{
+			adapters[i]->onError(threadContext, e.getErrorCode(), e.what());
+		}
+	}
+}
+
+/** Write directly to the file without using the asynchronous queue */
+void NativeFile::writeInternal(THREAD_CONTEXT, long position, size_t size, void *& buffer)
+{
+	if (::lseek (fileHandle, position, SEEK_SET) < 0) throw AIOException (11, "Error positioning the file");
+
+	if (::write(fileHandle, buffer, size)<0)
+	{
+		throw AIOException (NATIVE_ERROR_IO, "Error writing file");
+	}
+	
+	if (::fsync(fileHandle) < 0)
+	{
+		throw AIOException (NATIVE_ERROR_IO, "Error on synchronizing file");
+	}
+	
+
+}
+
+long NativeFile::getSize()
+{
+	struct stat statBuffer;
+
+	if (fstat(fileHandle, &statBuffer) < 0)
+	{
+		return -1l;
+	}
+	return statBuffer.st_size;
+}
@@ -0,0 +1,98 @@
+/*
+  * Licensed to the Apache Software Foundation (ASF) under one or more
+  * contributor license agreements. See the NOTICE file distributed with
+  * this work for additional information regarding copyright ownership.
+  * The ASF licenses this file to You under the Apache License, Version 2.0
+  * (the "License"); you may not use this file except in compliance with
+  * the License. You may obtain a copy of the License at
+  *
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+
+#ifndef NATIVEFILE_H_
+#define NATIVEFILE_H_
+
+#include <string>
+#include <stdlib.h>
+#include <sys/types.h>
+#include "JAIODatatypes.h"
+#include "AIOException.h"
+
+class AIOController;
+class CallbackAdapter;
+
+/**
+ * A file opened with O_DIRECT, written and read asynchronously by one of the kernel interfaces:
+ * libaio on AsyncFile and io_uring on URingFile.
+ *
+ * The synchronous operations (pre allocation, direct writes and size) are the same for both.
+ */
+class NativeFile
+{
+protected:
+	int fileHandle;
+
+	std::string fileName;
+
+	AIOController * controller;
+
+	int maxIO;
+
+public:
+	NativeFile(std::string & _fileName, AIOController * controller, int maxIO);
+	virtual ~NativeFile();
+
+	virtual void write(THREAD_CONTEXT threadContext, long position, size_t size, void *& buffer, CallbackAdapter *& adapter) = 0;
+
+	virtual void read(THREAD_CONTEXT threadContext, long position, size_t size, void *& buffer, CallbackAdapter *& adapter) = 0;
+
+	/**
+	 * Submits several writes at once. Each adapter is either submitted or failed through its onError,
+	 * so this never throws. By default the writes are submitted one by one.
+	 */
+	virtual void writeBatch(THREAD_CONTEXT threadContext, int count, long * positions, size_t * sizes, void ** buffers, CallbackAdapter ** adapters);
+
+	// Finishes the polling thread (if any) and return
+	virtual void stopPoller(THREAD_CONTEXT threadContext) = 0;
+
+	virtual void pollEvents(THREAD_CONTEXT threadContext) = 0;
+
+	/** Write directly to the file without using the asynchronous queue */
+	void writeInternal(THREAD_CONTEXT threadContext, long position, size_t size, void *& buffer);
+
+	int getHandle()
+	{
+		return fileHandle;
+	}
+
+	long getSize();
+
+	inline void * newBuffer(int size)
+	{
+		void * buffer = 0;
+		if (::posix_memalign(&buffer, 512, size))
+		{
+			throw AIOException(NATIVE_ERROR_ALLOCATE_MEMORY, "Error on posix_memalign");
+		}
+		return buffer;
+	}
+
+	inline void destroyBuffer(void * buffer)
+	{
+		::free(buffer);
+	}
+
+	void preAllocate(THREAD_CONTEXT threadContext, off_t position, int blocks, size_t size, int fillChar);
+};
+
+std::string io_error(int rc);
+
+int isException (THREAD_CONTEXT threadContext);
+
+#endif /*NATIVEFILE_H_*/
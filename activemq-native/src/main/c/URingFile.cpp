@@ -0,0 +1,467 @@
+/*
+  * Licensed to the Apache Software Foundation (ASF) under one or more
+  * contributor license agreements. See the NOTICE file distributed with
+  * this work for additional information regarding copyright ownership.
+  * The ASF licenses this file to You under the Apache License, Version 2.0
+  * (the "License"); you may not use this file except in compliance with
+  * the License. You may obtain a copy of the License at
+  *
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+
+#ifndef _GNU_SOURCE
+#define _GNU_SOURCE
+#endif
+
+#include <stdlib.h>
+#include <sstream>
+#include <memory.h>
+#include <errno.h>
+#include <unistd.h>
+#include <sys/mman.h>
+#include <sys/syscall.h>
+#include <sys/uio.h>
+#include "URingFile.h"
+#include "AIOController.h"
+#include "AIOException.h"
+#include "CallbackAdapter.h"
+#include "LockClass.h"
+
+//#define DEBUG
+
+#define WAIT_FOR_SPOT 10000
+#define TRIES_BEFORE_WARN 0
+#define TRIES_BEFORE_ERROR 500
+
+// user_data of the request that stops the poller
+#define STOP_POLLER ((__u64) -1)
+
+// The iovec needs to live until the kernel is done with it, so it goes with the callback
+struct URingRequest
+{
+	struct iovec iov;
+	CallbackAdapter * adapter;
+};
+
+static inline int io_uring_setup(unsigned entries, struct io_uring_params * params)
+{
+	return (int) ::syscall(__NR_io_uring_setup, entries, params);
+}
+
+static inline int io_uring_enter(int ringHandle, unsigned toSubmit, unsigned minComplete, unsigned flags)
+{
+	return (int) ::syscall(__NR_io_uring_enter, ringHandle, toSubmit, minComplete, flags, NULL, 0);
+}
+
+static inline int io_uring_register(int ringHandle, unsigned opcode, void * arg, unsigned nrArgs)
+{
+	return (int) ::syscall(__NR_io_uring_register, ringHandle, opcode, arg, nrArgs);
+}
+
+bool URingFile::isSupported()
+{
+	struct io_uring_params params;
+	memset(&params, 0, sizeof(params));
+
+	int ringHandle = io_uring_setup(1, &params);
+	if (ringHandle < 0)
+	{
+		return false;
+	}
+
+	::close(ringHandle);
+	return true;
+}
+
+URingFile::URingFile(std::string & _fileName, AIOController * _controller, int _maxIO) : NativeFile(_fileName, _controller, _maxIO), ringHandle(-1),
+		sqRing(MAP_FAILED), sqRingSize(0), sqes((struct io_uring_sqe *) MAP_FAILED), sqesSize(0), cqRing(MAP_FAILED), cqRingSize(0), fixedFile(false), pollerRunning(0)
+{
+	::pthread_mutex_init(&submitMutex,0);
+	::pthread_mutex_init(&pollerMutex,0);
+
+	struct io_uring_params params;
+	memset(&params, 0, sizeof(params));
+
+	// one more entry for the request stopping the poller
+	ringHandle = io_uring_setup(maxIO + 1, &params);
+	if (ringHandle < 0)
+	{
+		std::stringstream str;
+		str << "Can't initialize io_uring, " << io_error(-errno);
+		releaseRing();
+		throw AIOException(NATIVE_ERROR_CANT_INITIALIZE_AIO, str.str());
+	}
+
+	sqRingSize = params.sq_off.array + params.sq_entries * sizeof(unsigned);
+	cqRingSize = params.cq_off.cqes + params.cq_entries * sizeof(struct io_uring_cqe);
+
+	if (params.features & IORING_FEAT_SINGLE_MMAP)
+	{
+		if (cqRingSize > sqRingSize)
+		{
+			sqRingSize = cqRingSize;
+		}
+		cqRingSize = 0;
+	}
+
+	sqRing = ::mmap(0, sqRingSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringHandle, IORING_OFF_SQ_RING);
+
+	if (sqRing != MAP_FAILED && cqRingSize == 0)
+	{
+		cqRing = sqRing;
+	}
+	else if (sqRing != MAP_FAILED)
+	{
+		cqRing = ::mmap(0, cqRingSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringHandle, IORING_OFF_CQ_RING);
+	}
+
+	sqesSize = params.sq_entries * sizeof(struct io_uring_sqe);
+	sqes = (struct io_uring_sqe *) ::mmap(0, sqesSize, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, ringHandle, IORING_OFF_SQES);
+
+	if (sqRing == MAP_FAILED || cqRing == MAP_FAILED || sqes == MAP_FAILED)
+	{
+		releaseRing();
+		throw AIOException(NATIVE_ERROR_CANT_ALLOCATE_QUEUE, "Can't map the io_uring queues");
+	}
+
+	sqHead = (unsigned *) ((char *) sqRing + params.sq_off.head);
+	sqTail = (unsigned *) ((char *) sqRing + params.sq_off.tail);
+	sqRingMask = (unsigned *) ((char *) sqRing + params.sq_off.ring_mask);
+	sqArray = (unsigned *) ((char *) sqRing + params.sq_off.array);
+	sqEntries = params.sq_entries;
+
+	cqHead = (unsigned *) ((char *) cqRing + params.cq_off.head);
+	cqTail = (unsigned *) ((char *) cqRing + params.cq_off.tail);
+	cqRingMask = (unsigned *) ((char *) cqRing + params.cq_off.ring_mask);
+	cqes = (struct io_uring_cqe *) ((char *) cqRing + params.cq_off.cqes);
+
+	// Saves the kernel from looking up the file on every request. Not fatal if this kernel doesn't allow it.
+	fixedFile = io_uring_register(ringHandle, IORING_REGISTER_FILES, &fileHandle, 1) == 0;
+
+#ifdef DEBUG
+	fprintf (stderr, "io_uring %d with %d entries, fixedFile=%d\n", ringHandle, sqEntries, fixedFile);
+#endif
+}
+
+void URingFile::releaseRing()
+{
+	if (sqes != MAP_FAILED)
+	{
+		::munmap(sqes, sqesSize);
+	}
+	if (cqRing != MAP_FAILED && cqRing != sqRing)
+	{
+		::munmap(cqRing, cqRingSize);
+	}
+	if (sqRing != MAP_FAILED)
+	{
+		::munmap(sqRing, sqRingSize);
+	}
+	if (ringHandle >= 0)
+	{
+		::close(ringHandle);
+	}
+	::pthread_mutex_destroy(&submitMutex);
+	::pthread_mutex_destroy(&pollerMutex);
+}
+
+URingFile::~URingFile()
+{
+	releaseRing();
+}
+
+void URingFile::pollEvents(THREAD_CONTEXT threadContext)
+{
+	LockClass lock(&pollerMutex);
+	pollerRunning=1;
+
+	while (pollerRunning)
+	{
+		if (isException(threadContext))
+		{
+			return;
+		}
+
+		unsigned head = *cqHead;
+		unsigned tail = __atomic_load_n(cqTail, __ATOMIC_ACQUIRE);
+
+		if (head == tail)
+		{
+			// nothing completed yet, wait for at least one completion
+			if (io_uring_enter(ringHandle, 0, 1, IORING_ENTER_GETEVENTS) < 0 && errno != EINTR && errno != EAGAIN && errno != EBUSY)
+			{
+				std::string error = "io_uring_enter failed on poller, " + io_error(-errno);
+				controller->log(threadContext, 0, error.data());
+				::usleep(WAIT_FOR_SPOT);
+			}
+			continue;
+		}
+
+#ifdef DEBUG
+		fprintf (stdout, "Received %d events\n", tail - head);
+		fflush(stdout);
+#endif
+
+		while (head != tail)
+		{
+			struct io_uring_cqe * cqe = &cqes[head & *cqRingMask];
+			__u64 userData = cqe->user_data;
+			int result = cqe->res;
+
+			head++;
+			// the slot can be reused by the kernel as soon as it was read
+			__atomic_store_n(cqHead, head, __ATOMIC_RELEASE);
+
+			if (userData == STOP_POLLER)
+			{
+				pollerRunning = 0;
+#ifdef DEBUG
+				controller->log(threadContext, 2, "Received poller request to stop");
+#endif
+			}
+			else
+			{
+				URingRequest * request = (URingRequest *) userData;
+
+				if (result < 0)
+				{
+					std::string strerror = io_error(result);
+					request->adapter->onError(threadContext, result, strerror);
+				}
+				else
+				{
+					request->adapter->done(threadContext);
+				}
+
+				delete request;
+			}
+		}
+	}
+
+#ifdef DEBUG
+	controller->log(threadContext, 2, "Poller finished execution");
+#endif
+}
+
+void URingFile::submit(THREAD_CONTEXT threadContext, int opcode, long position, size_t size, void * buffer, CallbackAdapter * adapter)
+{
+	URingRequest * request = 0;
+
+	if (opcode != IORING_OP_NOP)
+	{
+		request = new URingRequest();
+		request->iov.iov_base = buffer;
+		request->iov.iov_len = size;
+		request->adapter = adapter;
+	}
+
+	LockClass lock(&submitMutex);
+
+	int tries = 0;
+	unsigned tail = *sqTail;
+
+	// The kernel takes the entries when they are submitted, so this only waits when a previous submit failed
+	while (tail - __atomic_load_n(sqHead, __ATOMIC_ACQUIRE) >= sqEntries)
+	{
+		if (++tries > TRIES_BEFORE_ERROR)
+		{
+			delete request;
+			throw AIOException(NATIVE_ERROR_AIO_FULL, "Too many retries (500) waiting for a free io_uring entry, please increase MAX_IO limit");
+		}
+		io_uring_enter(ringHandle, tail - *sqHead, 0, 0);
+		::usleep(WAIT_FOR_SPOT);
+	}
+
+	prepareEntry(tail, opcode, position, request);
+	__atomic_store_n(sqTail, tail + 1, __ATOMIC_RELEASE);
+
+	int result;
+	int error = 0;
+	while ((result = io_uring_enter(ringHandle, 1, 0, 0)) < 0 && ((error = errno) == EAGAIN || error == EBUSY || error == EINTR))
+	{
+#ifdef DEBUG
+		fprintf (stderr, "Retrying submit as the completion queue was full (retry=%d)\n", tries);
+#endif
+		tries ++;
+
+		if (tries > TRIES_BEFORE_WARN)
+		{
+			controller->log(threadContext, 1, "You should consider expanding AIOLimit if this message appears too many times");
+		}
+
+		if (tries > TRIES_BEFORE_ERROR)
+		{
+			break;
+		}
+
+		::usleep(WAIT_FOR_SPOT);
+	}
+
+	if (result < 0)
+	{
+		// the kernel didn't take the entry, so it's taken back
+		__atomic_store_n(sqTail, tail, __ATOMIC_RELEASE);
+		delete request;
+
+		std::stringstream str;
+		str<< "Problem on submit block, " << io_error(-error);
+		throw AIOException (tries > TRIES_BEFORE_ERROR ? NATIVE_ERROR_AIO_FULL : NATIVE_ERROR_IO, str.str());
+	}
+}
+
+/** Fills the submission queue entry at tail, the request being null for the one stopping the poller */
+void URingFile::prepareEntry(unsigned tail, int opcode, long position, void * request)
+{
+	unsigned index = tail & *sqRingMask;
+	struct io_uring_sqe * sqe = &sqes[index];
+	memset(sqe, 0, sizeof(struct io_uring_sqe));
+	sqe->opcode = opcode;
+
+	if (request == 0)
+	{
+		sqe->user_data = STOP_POLLER;
+	}
+	else
+	{
+		if (fixedFile)
+		{
+			sqe->fd = 0;
+			sqe->flags = IOSQE_FIXED_FILE;
+		}
+		else
+		{
+			sqe->fd = fileHandle;
+		}
+		sqe->off = position;
+		sqe->addr = (__u64) (unsigned long) &((URingRequest *) request)->iov;
+		sqe->len = 1;
+		sqe->user_data = (__u64) (unsigned long) request;
+	}
+
+	sqArray[index] = index;
+}
+
+void URingFile::writeBatch(THREAD_CONTEXT threadContext, int count, long * positions, size_t * sizes, void ** buffers, CallbackAdapter ** adapters)
+{
+	URingRequest ** requests = new URingRequest * [count];
+
+	for (int i = 0; i < count; i++)
+	{
+		requests[i] = new URingRequest();
+		requests[i]->iov.iov_base = buffers[i];
+		requests[i]->iov.iov_len = sizes[i];
+		requests[i]->adapter = adapters[i];
+	}
+
+	LockClass lock(&submitMutex);
+
+	int tries = 0;
+	int queued = 0;
+	int error = 0;
+
+	// the kernel may take only part of the entries, the remaining ones are submitted again
+	while (true)
+	{
+		unsigned tail = *sqTail;
+		unsigned head = __atomic_load_n(sqHead, __ATOMIC_ACQUIRE);
+
+		unsigned toQueue = count - queued;
+		if (toQueue > sqEntries - (tail - head))
+		{
+			toQueue = sqEntries - (tail - head);
+		}
+
+		for (unsigned i = 0; i < toQueue; i++)
+		{
+			prepareEntry(tail + i, IORING_OP_WRITEV, positions[queued + i], requests[queued + i]);
+		}
+
+		tail += toQueue;
+		queued += toQueue;
+		__atomic_store_n(sqTail, tail, __ATOMIC_RELEASE);
+
+		if (tail == head)
+		{
+			break;
+		}
+
+		int result = io_uring_enter(ringHandle, tail - head, 0, 0);
+
+		if (result > 0)
+		{
+			// only the retries without any progress count towards the limit
+			tries = 0;
+			continue;
+		}
+
+		error = result < 0 ? errno : EAGAIN;
+		if (error != EAGAIN && error != EBUSY && error != EINTR)
+		{
+			break;
+		}
+
+#ifdef DEBUG
+		fprintf (stderr, "Retrying batch as the completion queue was full (retry=%d)\n", tries);
+#endif
+		tries ++;
+
+		if (tries > TRIES_BEFORE_WARN)
+		{
+			controller->log(threadContext, 1, "You should consider expanding AIOLimit if this message appears too many times");
+		}
+
+		if (tries > TRIES_BEFORE_ERROR)
+		{
+			break;
+		}
+
+		::usleep(WAIT_FOR_SPOT);
+	}
+
+	// the entries the kernel didn't take are the last ones queued
+	unsigned head = __atomic_load_n(sqHead, __ATOMIC_ACQUIRE);
+	int failed = (count - queued) + (*sqTail - head);
+
+	if (failed > 0)
+	{
+		__atomic_store_n(sqTail, head, __ATOMIC_RELEASE);
+
+		std::stringstream str;
+		str << "Problem on submit block, " << io_error(-error);
+
+		// the poller will never see these ones, so they are failed here
+		for (int i = count - failed; i < count; i++)
+		{
+			requests[i]->adapter->onError(threadContext, tries > TRIES_BEFORE_ERROR ? NATIVE_ERROR_AIO_FULL : NATIVE_ERROR_IO, str.str());
+			delete requests[i];
+		}
+	}
+
+	delete [] requests;
+}
+
+void URingFile::write(THREAD_CONTEXT threadContext, long position, size_t size, void *& buffer, CallbackAdapter *& adapter)
+{
+	submit(threadContext, IORING_OP_WRITEV, position, size, buffer, adapter);
+}
+
+void URingFile::read(THREAD_CONTEXT threadContext, long position, size_t size, void *& buffer, CallbackAdapter *& adapter)
+{
+	submit(threadContext, IORING_OP_READV, position, size, buffer, adapter);
+}
+
+void URingFile::stopPoller(THREAD_CONTEXT threadContext)
+{
+	pollerRunning = 0;
+
+	submit(threadContext, IORING_OP_NOP, 0, 0, 0, 0);
+
+	// Waiting the Poller to finish (by giving up the lock)
+	LockClass lock(&pollerMutex);
+}
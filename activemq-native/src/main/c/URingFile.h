@@ -0,0 +1,97 @@
+/*
+  * Licensed to the Apache Software Foundation (ASF) under one or more
+  * contributor license agreements. See the NOTICE file distributed with
+  * this work for additional information regarding copyright ownership.
+  * The ASF licenses this file to You under the Apache License, Version 2.0
+  * (the "License"); you may not use this file except in compliance with
+  * the License. You may obtain a copy of the License at
+  *
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  *
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+  */
+
+#ifndef URINGFILE_H_
+#define URINGFILE_H_
+
+#include <string>
+#include <stdlib.h>
+#include <pthread.h>
+#include <linux/io_uring.h>
+#include "JAIODatatypes.h"
+#include "AIOException.h"
+#include "NativeFile.h"
+
+class AIOController;
+
+class CallbackAdapter;
+
+/**
+ * A NativeFile on io_uring.
+ *
+ * The rings are used through the system calls directly, so this doesn't need liburing. The file is registered on the
+ * ring when the kernel allows it, and the completions already posted are reaped without a system call.
+ */
+class URingFile : public NativeFile
+{
+private:
+	int ringHandle;
+
+	// submission queue, shared with the kernel
+	void * sqRing;
+	size_t sqRingSize;
+	unsigned * sqHead;
+	unsigned * sqTail;
+	unsigned * sqRingMask;
+	unsigned * sqArray;
+	unsigned sqEntries;
+	struct io_uring_sqe * sqes;
+	size_t sqesSize;
+
+	// completion queue, shared with the kernel
+	void * cqRing;
+	size_t cqRingSize;
+	unsigned * cqHead;
+	unsigned * cqTail;
+	unsigned * cqRingMask;
+	struct io_uring_cqe * cqes;
+
+	bool fixedFile;
+
+	pthread_mutex_t submitMutex;
+	pthread_mutex_t pollerMutex;
+
+	bool pollerRunning;
+
+	void submit(THREAD_CONTEXT threadContext, int opcode, long position, size_t size, void * buffer, CallbackAdapter * adapter);
+
+	void prepareEntry(unsigned tail, int opcode, long position, void * request);
+
+	void releaseRing();
+
+public:
+	/** Tells if this kernel has io_uring and allows it to this process */
+	static bool isSupported();
+
+	URingFile(std::string & _fileName, AIOController * controller, int maxIO);
+	virtual ~URingFile();
+
+	void write(THREAD_CONTEXT threadContext, long position, size_t size, void *& buffer, CallbackAdapter *& adapter);
+
+	void read(THREAD_CONTEXT threadContext, long position, size_t size, void *& buffer, CallbackAdapter *& adapter);
+
+	/** Queues all the writes on the submission queue, submitted by a single system call when there's room for all of them */
+	void writeBatch(THREAD_CONTEXT threadContext, int count, long * positions, size_t * sizes, void ** buffers, CallbackAdapter ** adapters);
+
+	// Finishes the polling thread (if any) and return
+	void stopPoller(THREAD_CONTEXT threadContext);
+
+	void pollEvents(THREAD_CONTEXT threadContext);
+
+};
+
+#endif /*URINGFILE_H_*/
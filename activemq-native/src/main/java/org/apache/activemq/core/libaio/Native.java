@@ -44,6 +44,12 @@ public class Native
 
    public static native ByteBuffer init(Class controllerClass, String fileName, int maxIO, Object logger) throws ActiveMQException;
 
+   /** Same as {@link #init(Class, String, int, Object)}, but the file is written and read through io_uring instead of libaio */
+   public static native ByteBuffer initURing(Class controllerClass, String fileName, int maxIO, Object logger) throws ActiveMQException;
+
+   /** If the kernel has io_uring and allows it to this process */
+   public static native boolean isURingSupported();
+
    public static native long size0(ByteBuffer handle);
 
    public static native void write(Object thisObject, ByteBuffer handle,
@@ -53,6 +59,18 @@ public class Native
                              ByteBuffer buffer,
                              Object aioPackageCallback) throws ActiveMQException;
 
+   /**
+    * Submits {@code count} writes at once, with the sequences {@code firstSequence} to {@code firstSequence + count - 1}.
+    * A write that could not be submitted is failed through its callback, so this only throws if none of them were handled.
+    */
+   public static native void writeBatch(Object thisObject, ByteBuffer handle,
+                                        long firstSequence,
+                                        int count,
+                                        long[] positions,
+                                        long[] sizes,
+                                        ByteBuffer[] buffers,
+                                        Object[] aioPackageCallbacks) throws ActiveMQException;
+
    /** a direct write to the file without the use of libaio's submit. */
    public static native void writeInternal(ByteBuffer handle, long positionToWrite, long size, ByteBuffer bytes) throws ActiveMQException;
 
@@ -36,6 +36,7 @@ import org.apache.activemq.core.server.ServerMessage;
 import org.apache.activemq.core.server.ServerSession;
 import org.apache.activemq.spi.core.protocol.SessionCallback;
 import org.apache.activemq.spi.core.remoting.ReadyListener;
+import org.apache.activemq.spi.core.remoting.SharedFileChannel;
 import org.apache.activemq.utils.ByteUtil;
 import org.apache.activemq.utils.IDGenerator;
 import org.apache.activemq.utils.SimpleIDGenerator;
@@ -317,6 +318,12 @@ public class ProtonSessionIntegrationCallback implements AMQPSessionCallback, Se
       return 0;
    }
 
+   @Override
+   public int sendLargeMessageContinuation(ServerConsumer consumer, SharedFileChannel file, long position, int length, boolean continues)
+   {
+      return -1;
+   }
+
    @Override
    public void closed()
    {
@@ -62,6 +62,7 @@ import org.apache.activemq.core.server.impl.ServerMessageImpl;
 import org.apache.activemq.core.transaction.impl.XidImpl;
 import org.apache.activemq.spi.core.protocol.SessionCallback;
 import org.apache.activemq.spi.core.remoting.ReadyListener;
+import org.apache.activemq.spi.core.remoting.SharedFileChannel;
 
 public class AMQSession implements SessionCallback
 {
@@ -178,6 +179,12 @@ public class AMQSession implements SessionCallback
       return 0;
    }
 
+   @Override
+   public int sendLargeMessageContinuation(ServerConsumer consumerID, SharedFileChannel file, long position, int length, boolean continues)
+   {
+      return -1;
+   }
+
    @Override
    public int sendLargeMessageContinuation(ServerConsumer consumerID, byte[] body,
          boolean continues, boolean requiresResponse)
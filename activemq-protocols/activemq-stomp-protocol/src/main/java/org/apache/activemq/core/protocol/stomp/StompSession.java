@@ -42,6 +42,7 @@ import org.apache.activemq.core.server.impl.ServerSessionImpl;
 import org.apache.activemq.spi.core.protocol.RemotingConnection;
 import org.apache.activemq.spi.core.protocol.SessionCallback;
 import org.apache.activemq.spi.core.remoting.ReadyListener;
+import org.apache.activemq.spi.core.remoting.SharedFileChannel;
 import org.apache.activemq.utils.ConfigurationHelper;
 import org.apache.activemq.utils.UUIDGenerator;
 
@@ -190,6 +191,11 @@ public class StompSession implements SessionCallback
       return 0;
    }
 
+   public int sendLargeMessageContinuation(ServerConsumer consumer, SharedFileChannel file, long position, int length, boolean continues)
+   {
+      return -1;
+   }
+
    public int sendLargeMessage(ServerMessage msg, ServerConsumer consumer, long bodySize, int deliveryCount)
    {
       return 0;
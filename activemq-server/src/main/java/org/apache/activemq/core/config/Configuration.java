@@ -435,6 +435,39 @@ public interface Configuration
     */
    Configuration setPageMaxConcurrentIO(int maxIO);
 
+   /**
+    * Returns how many pages a paged queue reads ahead of its consumers, 0 disables the read-ahead. <br>
+    * Default value is {@value org.apache.activemq.api.config.ActiveMQDefaultConfiguration#DEFAULT_PAGE_READ_AHEAD}.
+    */
+   int getPageReadAhead();
+
+   /**
+    * Sets how many pages a paged queue reads ahead of its consumers, 0 disables the read-ahead.
+    */
+   Configuration setPageReadAhead(int pageReadAhead);
+
+   /**
+    * Returns the maximum number of bytes used by the page caches of all the addresses, -1 means a tenth of the maximum heap size. <br>
+    * Default value is {@value org.apache.activemq.api.config.ActiveMQDefaultConfiguration#DEFAULT_GLOBAL_PAGE_CACHE_MAX_SIZE}.
+    */
+   long getGlobalPageCacheMaxSize();
+
+   /**
+    * Sets the maximum number of bytes used by the page caches of all the addresses, -1 means a tenth of the maximum heap size.
+    */
+   Configuration setGlobalPageCacheMaxSize(long globalPageCacheMaxSize);
+
+   /**
+    * Returns the maximum number of bytes of messages held in memory by all the addresses together before the largest ones start paging, -1 means no global limit. <br>
+    * Default value is {@value org.apache.activemq.api.config.ActiveMQDefaultConfiguration#DEFAULT_GLOBAL_MAX_SIZE}.
+    */
+   long getGlobalMaxSize();
+
+   /**
+    * Sets the maximum number of bytes of messages held in memory by all the addresses together before the largest ones start paging, -1 means no global limit.
+    */
+   Configuration setGlobalMaxSize(long globalMaxSize);
+
    /**
     * Returns the file system directory used to store journal log. <br>
     * Default value is {@value org.apache.activemq.api.config.ActiveMQDefaultConfiguration#DEFAULT_JOURNAL_DIR}.
@@ -446,6 +479,19 @@ public interface Configuration
     */
    Configuration setJournalDirectory(String dir);
 
+   /**
+    * Returns the directories of the message journal shards other than the journal directory. <br>
+    * Default is an empty list, meaning the message journal has a single shard.
+    */
+   List<String> getJournalShardDirectories();
+
+   /**
+    * Sets the directories of the message journal shards other than the journal directory.
+    * <br>
+    * Records are spread over the journal directory and these directories, each one synced on its own.
+    */
+   Configuration setJournalShardDirectories(List<String> directories);
+
    /**
     * Returns the type of journal used by this server (either {@code NIO} or {@code ASYNCIO}).
     * <br>
@@ -502,6 +548,72 @@ public interface Configuration
     */
    Configuration setJournalCompactMinFiles(int minFiles);
 
+   /**
+    * Returns whether an ASYNCIO journal writes through io_uring instead of libaio, falling back to libaio where io_uring is not available. <br>
+    * Default value is {@value org.apache.activemq.api.config.ActiveMQDefaultConfiguration#DEFAULT_JOURNAL_USE_I_O_U_RING}.
+    */
+   boolean isJournalUseIOURing();
+
+   /**
+    * Sets whether an ASYNCIO journal writes through io_uring instead of libaio, falling back to libaio where io_uring is not available.
+    */
+   Configuration setJournalUseIOURing(boolean journalUseIOURing);
+
+   /**
+    * Returns number of journal files filled between checkpoints of the message journal, so a restart only replays the files written after the last checkpoint. 0 disables checkpoints. <br>
+    * Default value is {@value org.apache.activemq.api.config.ActiveMQDefaultConfiguration#DEFAULT_JOURNAL_CHECKPOINT_FILES}.
+    */
+   int getJournalCheckpointFiles();
+
+   /**
+    * Sets number of journal files filled between checkpoints of the message journal, so a restart only replays the files written after the last checkpoint. 0 disables checkpoints.
+    */
+   Configuration setJournalCheckpointFiles(int journalCheckpointFiles);
+
+   /**
+    * Returns whether the bodies of the message journal records of at least journal-compress-min-size bytes are compressed. <br>
+    * Default value is {@value org.apache.activemq.api.config.ActiveMQDefaultConfiguration#DEFAULT_JOURNAL_COMPRESS_RECORDS}.
+    */
+   boolean isJournalCompressRecords();
+
+   /**
+    * Sets whether the bodies of the message journal records of at least journal-compress-min-size bytes are compressed.
+    */
+   Configuration setJournalCompressRecords(boolean journalCompressRecords);
+
+   /**
+    * Returns the size a message journal record body needs to have to be compressed, when journal-compress-records is true. <br>
+    * Default value is {@value org.apache.activemq.api.config.ActiveMQDefaultConfiguration#DEFAULT_JOURNAL_COMPRESS_MIN_SIZE}.
+    */
+   int getJournalCompressMinSize();
+
+   /**
+    * Sets the size a message journal record body needs to have to be compressed, when journal-compress-records is true.
+    */
+   Configuration setJournalCompressMinSize(int journalCompressMinSize);
+
+   /**
+    * Returns whether the journal buffer timeout is tuned from the observed sync latency, using journal-buffer-timeout as its maximum. <br>
+    * Default value is {@value org.apache.activemq.api.config.ActiveMQDefaultConfiguration#DEFAULT_JOURNAL_BUFFER_TIMEOUT_ADAPTIVE}.
+    */
+   boolean isJournalBufferTimeoutAdaptive();
+
+   /**
+    * Sets whether the journal buffer timeout is tuned from the observed sync latency, using journal-buffer-timeout as its maximum.
+    */
+   Configuration setJournalBufferTimeoutAdaptive(boolean journalBufferTimeoutAdaptive);
+
+   /**
+    * Returns how many threads read and decode journal files concurrently when the journal is loaded. <br>
+    * Default value is {@value org.apache.activemq.api.config.ActiveMQDefaultConfiguration#DEFAULT_JOURNAL_LOAD_THREADS}.
+    */
+   int getJournalLoadThreads();
+
+   /**
+    * Sets how many threads read and decode journal files concurrently when the journal is loaded.
+    */
+   Configuration setJournalLoadThreads(int journalLoadThreads);
+
    /**
     * Returns the percentage of live data before compacting the journal. <br>
     * Default value is {@value org.apache.activemq.api.config.ActiveMQDefaultConfiguration#DEFAULT_JOURNAL_COMPACT_PERCENTAGE}.
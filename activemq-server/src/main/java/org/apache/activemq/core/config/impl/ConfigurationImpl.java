@@ -127,6 +127,12 @@ public class ConfigurationImpl implements Configuration, Serializable
 
    private int maxConcurrentPageIO = ActiveMQDefaultConfiguration.getDefaultMaxConcurrentPageIo();
 
+   private int pageReadAhead = ActiveMQDefaultConfiguration.getDefaultPageReadAhead();
+
+   private long globalPageCacheMaxSize = ActiveMQDefaultConfiguration.getDefaultGlobalPageCacheMaxSize();
+
+   private long globalMaxSize = ActiveMQDefaultConfiguration.getDefaultGlobalMaxSize();
+
    protected String largeMessagesDirectory = ActiveMQDefaultConfiguration.getDefaultLargeMessagesDir();
 
    protected String bindingsDirectory = ActiveMQDefaultConfiguration.getDefaultBindingsDirectory();
@@ -135,6 +141,8 @@ public class ConfigurationImpl implements Configuration, Serializable
 
    protected String journalDirectory = ActiveMQDefaultConfiguration.getDefaultJournalDir();
 
+   protected List<String> journalShardDirectories = new ArrayList<String>();
+
    protected boolean createJournalDir = ActiveMQDefaultConfiguration.isDefaultCreateJournalDir();
 
    public JournalType journalType = ConfigurationImpl.DEFAULT_JOURNAL_TYPE;
@@ -145,6 +153,18 @@ public class ConfigurationImpl implements Configuration, Serializable
 
    protected int journalCompactMinFiles = ActiveMQDefaultConfiguration.getDefaultJournalCompactMinFiles();
 
+   protected boolean journalUseIOURing = ActiveMQDefaultConfiguration.isDefaultJournalUseIOURing();
+
+   protected int journalCheckpointFiles = ActiveMQDefaultConfiguration.getDefaultJournalCheckpointFiles();
+
+   protected boolean journalCompressRecords = ActiveMQDefaultConfiguration.isDefaultJournalCompressRecords();
+
+   protected int journalCompressMinSize = ActiveMQDefaultConfiguration.getDefaultJournalCompressMinSize();
+
+   protected boolean journalBufferTimeoutAdaptive = ActiveMQDefaultConfiguration.isDefaultJournalBufferTimeoutAdaptive();
+
+   protected int journalLoadThreads = ActiveMQDefaultConfiguration.getDefaultJournalLoadThreads();
+
    protected int journalCompactPercentage = ActiveMQDefaultConfiguration.getDefaultJournalCompactPercentage();
 
    protected int journalFileSize = ActiveMQDefaultConfiguration.getDefaultJournalFileSize();
@@ -544,6 +564,39 @@ public class ConfigurationImpl implements Configuration, Serializable
       return this;
    }
 
+   public int getPageReadAhead()
+   {
+      return pageReadAhead;
+   }
+
+   public ConfigurationImpl setPageReadAhead(final int pageReadAhead)
+   {
+      this.pageReadAhead = pageReadAhead;
+      return this;
+   }
+
+   public long getGlobalPageCacheMaxSize()
+   {
+      return globalPageCacheMaxSize;
+   }
+
+   public ConfigurationImpl setGlobalPageCacheMaxSize(final long globalPageCacheMaxSize)
+   {
+      this.globalPageCacheMaxSize = globalPageCacheMaxSize;
+      return this;
+   }
+
+   public long getGlobalMaxSize()
+   {
+      return globalMaxSize;
+   }
+
+   public ConfigurationImpl setGlobalMaxSize(final long globalMaxSize)
+   {
+      this.globalMaxSize = globalMaxSize;
+      return this;
+   }
+
 
    public String getJournalDirectory()
    {
@@ -556,6 +609,17 @@ public class ConfigurationImpl implements Configuration, Serializable
       return this;
    }
 
+   public List<String> getJournalShardDirectories()
+   {
+      return journalShardDirectories;
+   }
+
+   public ConfigurationImpl setJournalShardDirectories(final List<String> directories)
+   {
+      journalShardDirectories = directories;
+      return this;
+   }
+
    public JournalType getJournalType()
    {
       return journalType;
@@ -902,6 +966,72 @@ public class ConfigurationImpl implements Configuration, Serializable
       return this;
    }
 
+   public boolean isJournalUseIOURing()
+   {
+      return journalUseIOURing;
+   }
+
+   public ConfigurationImpl setJournalUseIOURing(final boolean journalUseIOURing)
+   {
+      this.journalUseIOURing = journalUseIOURing;
+      return this;
+   }
+
+   public int getJournalCheckpointFiles()
+   {
+      return journalCheckpointFiles;
+   }
+
+   public ConfigurationImpl setJournalCheckpointFiles(final int journalCheckpointFiles)
+   {
+      this.journalCheckpointFiles = journalCheckpointFiles;
+      return this;
+   }
+
+   public boolean isJournalCompressRecords()
+   {
+      return journalCompressRecords;
+   }
+
+   public ConfigurationImpl setJournalCompressRecords(final boolean journalCompressRecords)
+   {
+      this.journalCompressRecords = journalCompressRecords;
+      return this;
+   }
+
+   public int getJournalCompressMinSize()
+   {
+      return journalCompressMinSize;
+   }
+
+   public ConfigurationImpl setJournalCompressMinSize(final int journalCompressMinSize)
+   {
+      this.journalCompressMinSize = journalCompressMinSize;
+      return this;
+   }
+
+   public boolean isJournalBufferTimeoutAdaptive()
+   {
+      return journalBufferTimeoutAdaptive;
+   }
+
+   public ConfigurationImpl setJournalBufferTimeoutAdaptive(final boolean journalBufferTimeoutAdaptive)
+   {
+      this.journalBufferTimeoutAdaptive = journalBufferTimeoutAdaptive;
+      return this;
+   }
+
+   public int getJournalLoadThreads()
+   {
+      return journalLoadThreads;
+   }
+
+   public ConfigurationImpl setJournalLoadThreads(final int journalLoadThreads)
+   {
+      this.journalLoadThreads = journalLoadThreads;
+      return this;
+   }
+
    public ConfigurationImpl setJournalCompactPercentage(final int percentage)
    {
       journalCompactPercentage = percentage;
@@ -1177,8 +1307,15 @@ public class ConfigurationImpl implements Configuration, Serializable
       result = prime * result + journalBufferTimeout_AIO;
       result = prime * result + journalBufferTimeout_NIO;
       result = prime * result + journalCompactMinFiles;
+      result = prime * result + (journalUseIOURing ? 1231 : 1237);
+      result = prime * result + journalCheckpointFiles;
+      result = prime * result + (journalCompressRecords ? 1231 : 1237);
+      result = prime * result + journalCompressMinSize;
+      result = prime * result + (journalBufferTimeoutAdaptive ? 1231 : 1237);
+      result = prime * result + journalLoadThreads;
       result = prime * result + journalCompactPercentage;
       result = prime * result + ((journalDirectory == null) ? 0 : journalDirectory.hashCode());
+      result = prime * result + ((journalShardDirectories == null) ? 0 : journalShardDirectories.hashCode());
       result = prime * result + journalFileSize;
       result = prime * result + journalMaxIO_AIO;
       result = prime * result + journalMaxIO_NIO;
@@ -1195,6 +1332,9 @@ public class ConfigurationImpl implements Configuration, Serializable
                         ((managementNotificationAddress == null) ? 0 : managementNotificationAddress.hashCode());
       result = prime * result + (maskPassword ? 1231 : 1237);
       result = prime * result + maxConcurrentPageIO;
+      result = prime * result + pageReadAhead;
+      result = prime * result + (int) (globalPageCacheMaxSize ^ (globalPageCacheMaxSize >>> 32));
+      result = prime * result + (int) (globalMaxSize ^ (globalMaxSize >>> 32));
       result = prime * result + (int)(memoryMeasureInterval ^ (memoryMeasureInterval >>> 32));
       result = prime * result + memoryWarningThreshold;
       result = prime * result + (messageCounterEnabled ? 1231 : 1237);
@@ -1368,6 +1508,18 @@ public class ConfigurationImpl implements Configuration, Serializable
          return false;
       if (journalCompactMinFiles != other.journalCompactMinFiles)
          return false;
+      if (journalUseIOURing != other.journalUseIOURing)
+         return false;
+      if (journalCheckpointFiles != other.journalCheckpointFiles)
+         return false;
+      if (journalCompressRecords != other.journalCompressRecords)
+         return false;
+      if (journalCompressMinSize != other.journalCompressMinSize)
+         return false;
+      if (journalBufferTimeoutAdaptive != other.journalBufferTimeoutAdaptive)
+         return false;
+      if (journalLoadThreads != other.journalLoadThreads)
+         return false;
       if (journalCompactPercentage != other.journalCompactPercentage)
          return false;
       if (journalDirectory == null)
@@ -1377,6 +1529,13 @@ public class ConfigurationImpl implements Configuration, Serializable
       }
       else if (!journalDirectory.equals(other.journalDirectory))
          return false;
+      if (journalShardDirectories == null)
+      {
+         if (other.journalShardDirectories != null)
+            return false;
+      }
+      else if (!journalShardDirectories.equals(other.journalShardDirectories))
+         return false;
       if (journalFileSize != other.journalFileSize)
          return false;
       if (journalMaxIO_AIO != other.journalMaxIO_AIO)
@@ -1420,6 +1579,12 @@ public class ConfigurationImpl implements Configuration, Serializable
          return false;
       if (maxConcurrentPageIO != other.maxConcurrentPageIO)
          return false;
+      if (pageReadAhead != other.pageReadAhead)
+         return false;
+      if (globalPageCacheMaxSize != other.globalPageCacheMaxSize)
+         return false;
+      if (globalMaxSize != other.globalMaxSize)
+         return false;
       if (memoryMeasureInterval != other.memoryMeasureInterval)
          return false;
       if (memoryWarningThreshold != other.memoryWarningThreshold)
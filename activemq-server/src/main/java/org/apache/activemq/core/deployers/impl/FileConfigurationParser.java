@@ -133,6 +133,8 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
 
    private static final String PAGE_MAX_CACHE_SIZE_NODE_NAME = "page-max-cache-size";
 
+   private static final String PAGE_COMPRESSION_NODE_NAME = "page-compression";
+
    private static final String MESSAGE_COUNTER_HISTORY_DAY_LIMIT_NODE_NAME = "message-counter-history-day-limit";
 
    private static final String LVQ_NODE_NAME = "last-value-queue";
@@ -478,12 +480,37 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
       config.setJournalDirectory(getString(e, "journal-directory", config.getJournalDirectory(),
                                            Validators.NOT_NULL_OR_EMPTY));
 
+      NodeList shardDirectoryNodes = e.getElementsByTagName("journal-shard-directories");
+
+      ArrayList<String> shardDirectoryList = new ArrayList<String>();
+
+      if (shardDirectoryNodes.getLength() > 0)
+      {
+         NodeList directories = shardDirectoryNodes.item(0).getChildNodes();
+
+         for (int i = 0; i < directories.getLength(); i++)
+         {
+            if ("directory".equalsIgnoreCase(directories.item(i).getNodeName()))
+            {
+               shardDirectoryList.add(getTrimmedTextContent(directories.item(i)));
+            }
+         }
+      }
+
+      config.setJournalShardDirectories(shardDirectoryList);
+
 
       config.setPageMaxConcurrentIO(getInteger(e,
                                                "page-max-concurrent-io",
                                                config.getPageMaxConcurrentIO(),
                                                Validators.MINUS_ONE_OR_GT_ZERO));
 
+      config.setPageReadAhead(getInteger(e, "page-read-ahead", config.getPageReadAhead(), Validators.GE_ZERO));
+
+      config.setGlobalPageCacheMaxSize(getLong(e, "global-page-cache-max-size", config.getGlobalPageCacheMaxSize(), Validators.MINUS_ONE_OR_GT_ZERO));
+
+      config.setGlobalMaxSize(getLong(e, "global-max-size", config.getGlobalMaxSize(), Validators.MINUS_ONE_OR_GT_ZERO));
+
       config.setPagingDirectory(getString(e,
                                           "paging-directory",
                                           config.getPagingDirectory(),
@@ -500,6 +527,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
       {
          config.setJournalType(JournalType.NIO);
       }
+      else if (s.equals(JournalType.MAPPED.toString()))
+      {
+         config.setJournalType(JournalType.MAPPED);
+      }
       else if (s.equals(JournalType.ASYNCIO.toString()))
       {
          // https://jira.jboss.org/jira/browse/HORNETQ-295
@@ -572,6 +603,18 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
       config.setJournalCompactMinFiles(getInteger(e, "journal-compact-min-files", config.getJournalCompactMinFiles(),
                                                   Validators.GE_ZERO));
 
+      config.setJournalUseIOURing(getBoolean(e, "journal-use-io-uring", config.isJournalUseIOURing()));
+
+      config.setJournalCheckpointFiles(getInteger(e, "journal-checkpoint-files", config.getJournalCheckpointFiles(), Validators.GE_ZERO));
+
+      config.setJournalCompressRecords(getBoolean(e, "journal-compress-records", config.isJournalCompressRecords()));
+
+      config.setJournalCompressMinSize(getInteger(e, "journal-compress-min-size", config.getJournalCompressMinSize(), Validators.GE_ZERO));
+
+      config.setJournalBufferTimeoutAdaptive(getBoolean(e, "journal-buffer-timeout-adaptive", config.isJournalBufferTimeoutAdaptive()));
+
+      config.setJournalLoadThreads(getInteger(e, "journal-load-threads", config.getJournalLoadThreads(), Validators.GT_ZERO));
+
       config.setJournalCompactPercentage(getInteger(e,
                                                     "journal-compact-percentage",
                                                     config.getJournalCompactPercentage(),
@@ -845,6 +888,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
          {
             addressSettings.setPageCacheMaxSize(XMLUtil.parseInt(child));
          }
+         else if (PAGE_COMPRESSION_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setPageCompression(XMLUtil.parseBoolean(child));
+         }
          else if (MESSAGE_COUNTER_HISTORY_DAY_LIMIT_NODE_NAME.equalsIgnoreCase(name))
          {
             addressSettings.setMessageCounterHistoryDayLimit(XMLUtil.parseInt(child));
@@ -51,6 +51,10 @@ import org.apache.activemq.api.core.management.QueueControl;
 import org.apache.activemq.core.config.BridgeConfiguration;
 import org.apache.activemq.core.config.Configuration;
 import org.apache.activemq.core.config.DivertConfiguration;
+import org.apache.activemq.core.journal.Journal;
+import org.apache.activemq.core.journal.JournalCompactStatistics;
+import org.apache.activemq.core.journal.JournalIOStatistics;
+import org.apache.activemq.core.journal.JournalIOStatistics.FlushReason;
 import org.apache.activemq.core.messagecounter.MessageCounterManager;
 import org.apache.activemq.core.messagecounter.impl.MessageCounterManagerImpl;
 import org.apache.activemq.core.persistence.StorageManager;
@@ -430,6 +434,396 @@ public class ActiveMQServerControlImpl extends AbstractControl implements Active
       }
    }
 
+   public long getJournalCompactCount()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalCompactStatistics().getCompactCount();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalLastCompactDuration()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalCompactStatistics().getLastDuration();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalTotalCompactDuration()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalCompactStatistics().getTotalDuration();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalLastCompactReclaimedBytes()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalCompactStatistics().getLastReclaimedBytes();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalTotalCompactReclaimedBytes()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalCompactStatistics().getTotalReclaimedBytes();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalLastCompactStallTime()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalCompactStatistics().getLastStallTime();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalMaxCompactStallTime()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalCompactStatistics().getMaxStallTime();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalFlushCount()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getFlushCount();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalSizeFlushCount()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getFlushCount(FlushReason.SIZE);
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalTimeoutFlushCount()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getFlushCount(FlushReason.TIMEOUT);
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalForcedFlushCount()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getFlushCount(FlushReason.FORCED);
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalFlushedBytes()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getFlushedBytes();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalFlushedRecords()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getFlushedRecords();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalSyncCount()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getSyncCount();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalTotalSyncTime()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getTotalSyncTime();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalMaxSyncTime()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getMaxSyncTime();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public double getJournalAverageAIOQueueDepth()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getAverageAIOQueueDepth();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public double getJournalAverageAIOSubmitBatchSize()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getAverageAIOSubmitBatchSize();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalMaxAIOQueueDepth()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getMaxAIOQueueDepth();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalLockWaitCount()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getJournalLockWaitCount();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalLockWaitTime()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getJournalLockWaitTime();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalAppendLockWaitCount()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getAppendLockWaitCount();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalAppendLockWaitTime()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getAppendLockWaitTime();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalBufferPoolHits()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getBufferPoolHits();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalBufferPoolMisses()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getBufferPoolMisses();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getJournalOutstandingBufferBytes()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return getMessageJournalIOStatistics().getOutstandingBufferBytes();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public boolean isPersistenceEnabled()
    {
       checkStarted();
@@ -475,6 +869,36 @@ public class ActiveMQServerControlImpl extends AbstractControl implements Active
       }
    }
 
+   public long getGlobalMaxSize()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return configuration.getGlobalMaxSize();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getGlobalAddressSize()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return server.getPagingManager().getGlobalSize();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public int getScheduledThreadPoolMaxSize()
    {
       checkStarted();
@@ -850,6 +1274,47 @@ public class ActiveMQServerControlImpl extends AbstractControl implements Active
       }
    }
 
+   public String listJournalSyncTimeHistogramAsJSON() throws Exception
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         long[] limits = JournalIOStatistics.getSyncTimeLimits();
+         long[] histogram = getMessageJournalIOStatistics().getSyncTimeHistogram();
+
+         JSONArray array = new JSONArray();
+         for (int i = 0; i < histogram.length; i++)
+         {
+            JSONObject bucket = new JSONObject();
+            bucket.put("maxTime", i < limits.length ? limits[i] : -1);
+            bucket.put("count", histogram[i]);
+            array.put(bucket);
+         }
+         return array.toString();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public void resetJournalIOStatistics()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         getMessageJournalIOStatistics().reset();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public boolean isMessageCounterEnabled()
    {
       checkStarted();
@@ -2053,6 +2518,24 @@ public class ActiveMQServerControlImpl extends AbstractControl implements Active
 
    // Private -------------------------------------------------------
 
+   private JournalCompactStatistics getMessageJournalCompactStatistics()
+   {
+      StorageManager storage = server.getStorageManager();
+
+      Journal journal = storage == null ? null : storage.getMessageJournal();
+
+      return journal == null ? new JournalCompactStatistics() : journal.getCompactStatistics();
+   }
+
+   private JournalIOStatistics getMessageJournalIOStatistics()
+   {
+      StorageManager storage = server.getStorageManager();
+
+      Journal journal = storage == null ? null : storage.getMessageJournal();
+
+      return journal == null ? new JournalIOStatistics() : journal.getIOStatistics();
+   }
+
    private synchronized void setMessageCounterEnabled(final boolean enable)
    {
       if (isStarted())
@@ -20,9 +20,11 @@ import javax.management.MBeanOperationInfo;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.activemq.api.core.SimpleString;
 import org.apache.activemq.api.core.management.AddressControl;
+import org.apache.activemq.core.journal.impl.JournalRecordCompressor;
 import org.apache.activemq.core.paging.PagingManager;
 import org.apache.activemq.core.paging.PagingStore;
 import org.apache.activemq.core.persistence.StorageManager;
@@ -193,6 +195,99 @@ public class AddressControlImpl extends AbstractControl implements AddressContro
       }
    }
 
+   public long getPageCacheHits() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return pagingManager.getPageStore(address).getCursorProvider().getCacheHits();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getPageCacheMisses() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return pagingManager.getPageStore(address).getCursorProvider().getCacheMisses();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getPageCacheEvictions() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return pagingManager.getPageStore(address).getCursorProvider().getCacheEvictions();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getPageCacheSize() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return pagingManager.getPageStore(address).getCursorProvider().getCacheMemorySize();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public double getPageCompressionRatio() throws Exception
+   {
+      clearIO();
+      try
+      {
+         JournalRecordCompressor compressor = pagingManager.getPageStore(address).getPageCompressor();
+         long uncompressedBytes = compressor.getUncompressedBytes();
+         return uncompressedBytes == 0 ? 1 : (double) compressor.getCompressedBytes() / uncompressedBytes;
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getPageCompressTime() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return TimeUnit.NANOSECONDS.toMillis(pagingManager.getPageStore(address).getPageCompressor().getCompressTime());
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getPageDecompressTime() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return TimeUnit.NANOSECONDS.toMillis(pagingManager.getPageStore(address).getPageCompressor().getDecompressTime());
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public long getAddressSize() throws Exception
    {
       clearIO();
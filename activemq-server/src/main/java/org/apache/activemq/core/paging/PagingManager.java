@@ -19,6 +19,7 @@ package org.apache.activemq.core.paging;
 import java.util.Map;
 
 import org.apache.activemq.api.core.SimpleString;
+import org.apache.activemq.core.paging.cursor.PageCacheBudget;
 import org.apache.activemq.core.server.ActiveMQComponent;
 import org.apache.activemq.core.settings.HierarchicalRepositoryChangeListener;
 
@@ -78,6 +79,32 @@ public interface PagingManager extends ActiveMQComponent, HierarchicalRepository
 
    void resumeCleanup();
 
+   /**
+    * @return the memory budget shared by the page caches of all the stores
+    */
+   PageCacheBudget getPageCacheBudget();
+
+   /**
+    * Adds the memory used by the messages of one of the stores to the size of all the stores,
+    * paging the largest stores while it is over the global max size. The stores only call this
+    * when there is a global max size, so their sizes aren't all added on a single counter otherwise.
+    * @return the new size of all the stores
+    */
+   long addSize(long size);
+
+   /**
+    * @return the memory used by the messages of all the stores, added up from the stores when there
+    * is no global max size
+    */
+   long getGlobalSize();
+
+   /**
+    * @return the maximum memory used by the messages of all the stores, -1 if there is no global limit
+    */
+   long getGlobalMaxSize();
+
+   boolean isGlobalFull();
+
    /**
     * Lock the manager. This method should not be called during normal PagingManager usage.
     */
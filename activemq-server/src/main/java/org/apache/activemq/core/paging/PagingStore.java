@@ -17,9 +17,10 @@
 package org.apache.activemq.core.paging;
 
 import java.util.Collection;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
+import java.util.concurrent.locks.Lock;
 
 import org.apache.activemq.api.core.SimpleString;
+import org.apache.activemq.core.journal.impl.JournalRecordCompressor;
 import org.apache.activemq.core.paging.cursor.PageCursorProvider;
 import org.apache.activemq.core.paging.impl.Page;
 import org.apache.activemq.core.replication.ReplicationManager;
@@ -90,7 +91,7 @@ public interface PagingStore extends ActiveMQComponent
     * needs to be sent to the journal
     * @throws NullPointerException if {@code readLock} is null
     */
-   boolean page(ServerMessage message, Transaction tx, RouteContextList listCtx, ReadLock readLock) throws Exception;
+   boolean page(ServerMessage message, Transaction tx, RouteContextList listCtx, Lock readLock) throws Exception;
 
    Page createPage(final int page) throws Exception;
 
@@ -100,6 +101,12 @@ public interface PagingStore extends ActiveMQComponent
 
    PageCursorProvider getCursorProvider();
 
+   /**
+    * Compresses the messages written to the page files, when page-compression is enabled on the address,
+    * and keeps the compression ratio and the time spent on it.
+    */
+   JournalRecordCompressor getPageCompressor();
+
    void processReload() throws Exception;
 
    /**
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.core.paging.cursor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.activemq.utils.ConcurrentHashSet;
+
+/**
+ * The memory budget shared by the page caches of every address.
+ * <p>
+ * Each {@link PageCursorProvider} charges the estimated size of the pages it keeps in memory here.
+ * Once the total goes over the maximum size the page least recently used across all the addresses
+ * is evicted, until the total is back within the budget. Live pages (the page currently being
+ * written) are never evicted.
+ * <p>
+ * The budget also bounds the pages the cursors read ahead: no page is read ahead while the budget is full.
+ */
+public final class PageCacheBudget
+{
+   // Attributes ----------------------------------------------------
+
+   private final AtomicLong size = new AtomicLong(0);
+
+   private final long maxSize;
+
+   private final int readAheadPages;
+
+   private final ConcurrentHashSet<PageCursorProvider> providers = new ConcurrentHashSet<PageCursorProvider>();
+
+   // only one thread evicts at a time, the others just carry on
+   private final ReentrantLock evictionLock = new ReentrantLock();
+
+   // Constructors --------------------------------------------------
+
+   /**
+    * @param maxSize the maximum number of bytes used by all the page caches, -1 to use a tenth of the maximum heap size
+    */
+   public PageCacheBudget(final long maxSize)
+   {
+      this(maxSize, 0);
+   }
+
+   /**
+    * @param maxSize the maximum number of bytes used by all the page caches, -1 to use a tenth of the maximum heap size
+    * @param readAheadPages how many pages a cursor reads ahead of the page it is on, 0 to disable read-ahead
+    */
+   public PageCacheBudget(final long maxSize, final int readAheadPages)
+   {
+      this.maxSize = maxSize < 0 ? Runtime.getRuntime().maxMemory() / 10 : maxSize;
+      this.readAheadPages = readAheadPages;
+   }
+
+   // Public --------------------------------------------------------
+
+   public long getMaxSize()
+   {
+      return maxSize;
+   }
+
+   public long getSize()
+   {
+      return size.get();
+   }
+
+   public int getReadAheadPages()
+   {
+      return readAheadPages;
+   }
+
+   /**
+    * @return whether there is still room for pages that are not needed yet
+    */
+   public boolean canReadAhead()
+   {
+      return readAheadPages > 0 && size.get() < maxSize;
+   }
+
+   public void register(final PageCursorProvider provider)
+   {
+      providers.add(provider);
+   }
+
+   public void unregister(final PageCursorProvider provider)
+   {
+      providers.remove(provider);
+   }
+
+   public void addSize(final long delta)
+   {
+      size.addAndGet(delta);
+   }
+
+   /**
+    * Evicts the least recently used pages of all the registered providers until the budget is respected.
+    */
+   public void checkSize()
+   {
+      if (size.get() <= maxSize || !evictionLock.tryLock())
+      {
+         return;
+      }
+
+      try
+      {
+         while (size.get() > maxSize)
+         {
+            PageCursorProvider oldest = null;
+            long oldestAccess = Long.MAX_VALUE;
+
+            for (PageCursorProvider provider : providers)
+            {
+               long access = provider.getOldestCacheAccess();
+               if (access < oldestAccess)
+               {
+                  oldestAccess = access;
+                  oldest = provider;
+               }
+            }
+
+            if (oldest == null || !oldest.evictOldestCache())
+            {
+               // nothing left to evict
+               return;
+            }
+         }
+      }
+      finally
+      {
+         evictionLock.unlock();
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "PageCacheBudget(size=" + size.get() + ", maxSize=" + maxSize + ")";
+   }
+}
@@ -31,10 +31,26 @@ public interface PageCursorProvider
 
    PageCache getPageCache(long pageNr);
 
+   /**
+    * Loads the pages after {@code pageNr} into the cache in the background,
+    * so a cursor moving to the next page doesn't have to wait for it to be read.
+    */
+   void readAhead(long pageNr);
+
    PagedReference newReference(final PagePosition pos, final PagedMessage msg, PageSubscription sub);
 
    void addPageCache(PageCache cache);
 
+   /**
+    * Summarizes the page that was being written, now that it is complete.
+    */
+   void onPageClosed(long pageNr);
+
+   /**
+    * @return the summary of a complete page, null if the page wasn't summarized yet
+    */
+   PageSummary getPageSummary(long pageNr);
+
    /**
     * @param queueId The cursorID should be the same as the queueId associated for persistence
     * @return
@@ -69,6 +85,29 @@ public interface PageCursorProvider
 
    void setCacheMaxSize(int size);
 
+   /**
+    * @return the last access time ({@link System#nanoTime()}) of the least recently used page that
+    *         could be evicted from the cache, {@link Long#MAX_VALUE} if there is none
+    */
+   long getOldestCacheAccess();
+
+   /**
+    * Evicts the least recently used page from the cache, used by the {@link PageCacheBudget}
+    * @return false if there was no page to evict
+    */
+   boolean evictOldestCache();
+
+   long getCacheHits();
+
+   long getCacheMisses();
+
+   long getCacheEvictions();
+
+   /**
+    * @return the estimated number of bytes used by the pages on the cache
+    */
+   long getCacheMemorySize();
+
    /**
     * @param pageCursorImpl
     */
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.core.paging.cursor;
+
+import org.apache.activemq.core.paging.PagedMessage;
+
+/**
+ * The queues the messages of a complete page were routed to, kept as a bloom filter.
+ * <p>
+ * The filters of the queues are matched when a message is routed, and only the IDs of the matching
+ * queues are paged with it. A {@link PageSubscription} whose ID is not on the summary of a page has
+ * nothing to deliver from it, so it can complete the page without reading it. False positives only
+ * mean the page is read as it would have been without a summary.
+ */
+public final class PageSummary
+{
+   // Constants -----------------------------------------------------
+
+   // 64 bytes per page, a few % of false positives with fifty queues on the same page
+   private static final int BITS = 512;
+
+   // Attributes ----------------------------------------------------
+
+   private final long[] bits = new long[BITS / 64];
+
+   private final int numberOfMessages;
+
+   // Constructors --------------------------------------------------
+
+   public PageSummary(final PagedMessage[] messages)
+   {
+      numberOfMessages = messages.length;
+
+      for (PagedMessage message : messages)
+      {
+         for (long queueID : message.getQueueIDs())
+         {
+            long hash = hash(queueID);
+            set((int) hash);
+            set((int) (hash >>> 32));
+         }
+      }
+   }
+
+   // Public --------------------------------------------------------
+
+   public int getNumberOfMessages()
+   {
+      return numberOfMessages;
+   }
+
+   /**
+    * @return false if no message on the page was routed to the queue, true if one may have been
+    */
+   public boolean mightContain(final long queueID)
+   {
+      long hash = hash(queueID);
+      return isSet((int) hash) && isSet((int) (hash >>> 32));
+   }
+
+   @Override
+   public String toString()
+   {
+      return "PageSummary[numberOfMessages=" + numberOfMessages + "]";
+   }
+
+   // Private -------------------------------------------------------
+
+   private void set(final int hash)
+   {
+      int bit = hash & (BITS - 1);
+      bits[bit >>> 6] |= 1L << bit;
+   }
+
+   private boolean isSet(final int hash)
+   {
+      int bit = hash & (BITS - 1);
+      return (bits[bit >>> 6] & (1L << bit)) != 0;
+   }
+
+   // IDs are sequential, so they are spread over the bits first
+   private static long hash(final long id)
+   {
+      long h = id;
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+      return h;
+   }
+}
@@ -23,14 +23,17 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.activemq.core.filter.Filter;
 import org.apache.activemq.core.paging.PagedMessage;
 import org.apache.activemq.core.paging.PagingStore;
 import org.apache.activemq.core.paging.cursor.PageCache;
+import org.apache.activemq.core.paging.cursor.PageCacheBudget;
 import org.apache.activemq.core.paging.cursor.PageCursorProvider;
 import org.apache.activemq.core.paging.cursor.PagePosition;
 import org.apache.activemq.core.paging.cursor.PageSubscription;
+import org.apache.activemq.core.paging.cursor.PageSummary;
 import org.apache.activemq.core.paging.cursor.PagedReference;
 import org.apache.activemq.core.paging.cursor.PagedReferenceImpl;
 import org.apache.activemq.core.paging.impl.Page;
@@ -38,8 +41,9 @@ import org.apache.activemq.core.persistence.StorageManager;
 import org.apache.activemq.core.server.ActiveMQServerLogger;
 import org.apache.activemq.core.transaction.Transaction;
 import org.apache.activemq.core.transaction.impl.TransactionImpl;
+import org.apache.activemq.utils.ConcurrentHashSet;
 import org.apache.activemq.utils.FutureLatch;
-import org.apache.activemq.utils.SoftValueHashMap;
+
 /**
  * A PageProviderIMpl
  *
@@ -56,6 +60,12 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    boolean isTrace = ActiveMQServerLogger.LOGGER.isTraceEnabled();
 
+   /** The page is still being read, or is live, and it is not charged to the budget yet */
+   private static final long UNACCOUNTED = -1;
+
+   /** The page was removed from the cache, and it can't be charged any more */
+   private static final long RELEASED = -2;
+
    // Attributes ----------------------------------------------------
 
    /**
@@ -72,7 +82,38 @@ public class PageCursorProviderImpl implements PageCursorProvider
    // This is the same executor used at the PageStoreImpl. One Executor per pageStore
    private final Executor executor;
 
-   private final SoftValueHashMap<Long, PageCache> softCache;
+   // Reads the pages ahead of the cursors, null if there's no read-ahead
+   private final Executor readAheadExecutor;
+
+   // Pages scheduled to be read ahead, so they are scheduled only once
+   private final ConcurrentHashSet<Long> readingAhead = new ConcurrentHashSet<Long>();
+
+   private final ConcurrentMap<Long, CacheEntry> cache = new ConcurrentHashMap<Long, CacheEntry>();
+
+   private volatile int maxCacheSize;
+
+   private final PageCacheBudget budget;
+
+   // Evictions are serialized so the same page is not picked twice
+   private final Object evictionLock = new Object();
+
+   private final AtomicLong cacheHits = new AtomicLong(0);
+
+   private final AtomicLong cacheMisses = new AtomicLong(0);
+
+   private final AtomicLong cacheEvictions = new AtomicLong(0);
+
+   private final AtomicLong cacheMemorySize = new AtomicLong(0);
+
+   /**
+    * Message positions of the pages that were read one message at a time, see {@link Page#readIndex()}
+    */
+   private final ConcurrentMap<Long, int[]> pageIndexes = new ConcurrentHashMap<Long, int[]>();
+
+   /**
+    * Queues routed to by the messages of each complete page, kept after the page leaves the cache
+    */
+   private final ConcurrentMap<Long, PageSummary> pageSummaries = new ConcurrentHashMap<Long, PageSummary>();
 
    private final ConcurrentMap<Long, PageSubscription> activeCursors = new ConcurrentHashMap<Long, PageSubscription>();
 
@@ -84,11 +125,32 @@ public class PageCursorProviderImpl implements PageCursorProvider
                                  final StorageManager storageManager,
                                  final Executor executor,
                                  final int maxCacheSize)
+   {
+      this(pagingStore, storageManager, executor, maxCacheSize, new PageCacheBudget(Long.MAX_VALUE));
+   }
+
+   public PageCursorProviderImpl(final PagingStore pagingStore,
+                                 final StorageManager storageManager,
+                                 final Executor executor,
+                                 final int maxCacheSize,
+                                 final PageCacheBudget budget)
+   {
+      this(pagingStore, storageManager, executor, maxCacheSize, budget, null);
+   }
+
+   public PageCursorProviderImpl(final PagingStore pagingStore,
+                                 final StorageManager storageManager,
+                                 final Executor executor,
+                                 final int maxCacheSize,
+                                 final PageCacheBudget budget,
+                                 final Executor readAheadExecutor)
    {
       this.pagingStore = pagingStore;
       this.storageManager = storageManager;
       this.executor = executor;
-      this.softCache = new SoftValueHashMap<Long, PageCache>(maxCacheSize);
+      this.readAheadExecutor = readAheadExecutor;
+      this.maxCacheSize = maxCacheSize;
+      this.budget = budget;
    }
 
    // Public --------------------------------------------------------
@@ -118,6 +180,12 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    public PagedMessage getMessage(final PagePosition pos)
    {
+      if (!cache.containsKey(pos.getPageNr()) && pos.getPageNr() < pagingStore.getCurrentWritingPage())
+      {
+         // redeliveries and expired references only need one message, no need to load the whole page
+         return readMessage(pos);
+      }
+
       PageCache cache = getPageCache(pos.getPageNr());
 
       if (cache == null || pos.getMessageNr() >= cache.getNumberOfMessages())
@@ -140,105 +208,239 @@ public class PageCursorProviderImpl implements PageCursorProvider
    {
       try
       {
-         boolean needToRead = false;
-         PageCache cache = null;
-         synchronized (softCache)
+         if (pageId > pagingStore.getCurrentWritingPage())
+         {
+            return null;
+         }
+
+         CacheEntry entry = cache.get(pageId);
+         if (entry != null)
+         {
+            cacheHits.incrementAndGet();
+            touch(entry);
+            return entry.cache;
+         }
+
+         if (!pagingStore.checkPageFileExists((int)pageId))
+         {
+            return null;
+         }
+
+         PageCache pageCache = createPageCache(pageId);
+         // anyone reading from this cache will have to wait reading to finish first
+         // we also want only one thread reading this cache
+         pageCache.lock();
+         CacheEntry newEntry = new CacheEntry(pageCache);
+         entry = cache.putIfAbsent(pageId, newEntry);
+         if (entry != null)
+         {
+            // another thread is already reading this page
+            pageCache.unlock();
+            cacheHits.incrementAndGet();
+            touch(entry);
+            return entry.cache;
+         }
+
+         cacheMisses.incrementAndGet();
+         budget.register(this);
+         if (isTrace)
          {
-            if (pageId > pagingStore.getCurrentWritingPage())
+            ActiveMQServerLogger.LOGGER.trace("adding " + pageId +  " into cursor = " + this.pagingStore.getAddress());
+         }
+
+         // Reading is done outside of the map, however
+         // the page stays locked until the entire reading is finished
+         Page page = null;
+         try
+         {
+            page = pagingStore.createPage((int)pageId);
+
+            storageManager.beforePageRead();
+            page.open();
+
+            List<PagedMessage> pgdMessages = page.read(storageManager);
+            PagedMessage[] messages = pgdMessages.toArray(new PagedMessage[pgdMessages.size()]);
+            pageCache.setMessages(messages);
+
+            if (!pageSummaries.containsKey(pageId))
             {
-               return null;
+               pageSummaries.putIfAbsent(pageId, new PageSummary(messages));
             }
-
-            cache = softCache.get(pageId);
-            if (cache == null)
+         }
+         finally
+         {
+            try
             {
-               if (!pagingStore.checkPageFileExists((int)pageId))
-               {
-                  return null;
-               }
-
-               cache = createPageCache(pageId);
-               needToRead = true;
-               // anyone reading from this cache will have to wait reading to finish first
-               // we also want only one thread reading this cache
-               cache.lock();
-               if (isTrace)
+               if (page != null)
                {
-                  ActiveMQServerLogger.LOGGER.trace("adding " + pageId +  " into cursor = " + this.pagingStore.getAddress());
+                  page.close();
                }
-               softCache.put(pageId, cache);
             }
+            catch (Throwable ignored)
+            {
+            }
+            storageManager.afterPageRead();
+            pageCache.unlock();
          }
 
-         // Reading is done outside of the synchronized block, however
-         // the page stays locked until the entire reading is finished
-         if (needToRead)
+         newEntry.loaded = true;
+         touch(newEntry);
+         checkCacheSize();
+
+         return pageCache;
+      }
+      catch (Exception e)
+      {
+         throw new RuntimeException("Couldn't complete paging due to an IO Exception on Paging - " + e.getMessage(), e);
+      }
+   }
+
+   public void readAhead(final long pageId)
+   {
+      if (readAheadExecutor == null)
+      {
+         return;
+      }
+
+      // leave room in the cache for the page being read by the cursor
+      final long lastPage = pageId + Math.min(budget.getReadAheadPages(), maxCacheSize - 1);
+
+      for (long nextPage = pageId + 1; nextPage <= lastPage; nextPage++)
+      {
+         // the live page is always on the cache
+         if (nextPage >= pagingStore.getCurrentWritingPage() || !budget.canReadAhead())
          {
-            Page page = null;
-            try
-            {
-               page = pagingStore.createPage((int)pageId);
+            return;
+         }
 
-               storageManager.beforePageRead();
-               page.open();
+         if (cache.containsKey(nextPage) || !readingAhead.add(nextPage))
+         {
+            continue;
+         }
 
-               List<PagedMessage> pgdMessages = page.read(storageManager);
-               cache.setMessages(pgdMessages.toArray(new PagedMessage[pgdMessages.size()]));
-            }
-            finally
+         final long page = nextPage;
+         readAheadExecutor.execute(new Runnable()
+         {
+            public void run()
             {
                try
                {
-                  if (page != null)
+                  // the store may have been stopped since this was scheduled
+                  if (pagingStore.isStarted() && budget.canReadAhead())
                   {
-                     page.close();
+                     getPageCache(page);
                   }
                }
-               catch (Throwable ignored)
+               catch (Throwable e)
                {
+                  // the cursor will read the page itself when it gets there
+                  ActiveMQServerLogger.LOGGER.debug("Couldn't read page " + page + " ahead on address " + pagingStore.getAddress(), e);
+               }
+               finally
+               {
+                  readingAhead.remove(page);
                }
-               storageManager.afterPageRead();
-               cache.unlock();
             }
-         }
-
-         return cache;
+         });
       }
-      catch (Exception e)
+   }
+
+   public void onPageClosed(final long pageId)
+   {
+      CacheEntry entry = cache.get(pageId);
+      if (entry != null && entry.loaded)
       {
-         throw new RuntimeException("Couldn't complete paging due to an IO Exception on Paging - " + e.getMessage(), e);
+         pageSummaries.put(pageId, new PageSummary(entry.cache.getMessages()));
       }
    }
 
-   public void addPageCache(PageCache cache)
+   public PageSummary getPageSummary(final long pageId)
    {
-      synchronized (softCache)
+      return pageSummaries.get(pageId);
+   }
+
+   public void addPageCache(PageCache pageCache)
+   {
+      CacheEntry entry = new CacheEntry(pageCache);
+      entry.loaded = true;
+      entry.lastAccess = System.nanoTime();
+      CacheEntry previous = cache.put(pageCache.getPageId(), entry);
+      if (previous != null)
       {
-         softCache.put(cache.getPageId(), cache);
+         release(previous);
       }
+      budget.register(this);
+      checkCacheSize();
    }
 
    public void setCacheMaxSize(final int size)
    {
-      softCache.setMaxElements(size);
+      this.maxCacheSize = size;
+      checkCacheSize();
    }
 
    public int getCacheSize()
    {
-      synchronized (softCache)
+      return cache.size();
+   }
+
+   public void clearCache()
+   {
+      for (Long pageId : cache.keySet())
       {
-         return softCache.size();
+         removeCache(pageId);
       }
    }
 
-   public void clearCache()
+   public long getOldestCacheAccess()
    {
-      synchronized (softCache)
+      CacheEntry oldest = findOldest();
+      return oldest == null ? Long.MAX_VALUE : oldest.lastAccess;
+   }
+
+   public boolean evictOldestCache()
+   {
+      synchronized (evictionLock)
       {
-         softCache.clear();
+         CacheEntry oldest = findOldest();
+         if (oldest == null)
+         {
+            return false;
+         }
+
+         if (cache.remove(oldest.cache.getPageId(), oldest))
+         {
+            if (isTrace)
+            {
+               ActiveMQServerLogger.LOGGER.trace("evicting page " + oldest.cache.getPageId() + " from cursor = " + this.pagingStore.getAddress());
+            }
+            release(oldest);
+            cacheEvictions.incrementAndGet();
+         }
+         return true;
       }
    }
 
+   public long getCacheHits()
+   {
+      return cacheHits.get();
+   }
+
+   public long getCacheMisses()
+   {
+      return cacheMisses.get();
+   }
+
+   public long getCacheEvictions()
+   {
+      return cacheEvictions.get();
+   }
+
+   public long getCacheMemorySize()
+   {
+      return cacheMemorySize.get();
+   }
+
    public void processReload() throws Exception
    {
       Collection<PageSubscription> cursorList = this.activeCursors.values();
@@ -279,6 +481,12 @@ public class PageCursorProviderImpl implements PageCursorProvider
       }
 
       waitForFuture();
+
+      // the pages are read again if the store is restarted, give their memory back to the other addresses
+      clearCache();
+      pageIndexes.clear();
+      pageSummaries.clear();
+      budget.unregister(this);
    }
 
    private void waitForFuture()
@@ -498,19 +706,15 @@ public class PageCursorProviderImpl implements PageCursorProvider
       {
          for (Page depagedPage : depagedPages)
          {
-            PageCache cache;
+            CacheEntry entry = cache.get((long)depagedPage.getPageId());
             PagedMessage[] pgdMessages;
-            synchronized (softCache)
-            {
-               cache = softCache.get((long)depagedPage.getPageId());
-            }
 
             if (isTrace)
             {
                ActiveMQServerLogger.LOGGER.trace("Removing page " + depagedPage.getPageId() + " from page-cache");
             }
 
-            if (cache == null)
+            if (entry == null)
             {
                // The page is not on cache any more
                // We need to read the page-file before deleting it
@@ -540,16 +744,15 @@ public class PageCursorProviderImpl implements PageCursorProvider
             }
             else
             {
-               pgdMessages = cache.getMessages();
+               pgdMessages = entry.cache.getMessages();
             }
 
             depagedPage.delete(pgdMessages);
             onDeletePage(depagedPage);
 
-            synchronized (softCache)
-            {
-               softCache.remove((long)depagedPage.getPageId());
-            }
+            removeCache(depagedPage.getPageId());
+            pageIndexes.remove((long)depagedPage.getPageId());
+            pageSummaries.remove((long)depagedPage.getPageId());
          }
       }
       catch (Exception ex)
@@ -637,9 +840,9 @@ public class PageCursorProviderImpl implements PageCursorProvider
    public void printDebug()
    {
       System.out.println("Debug information for PageCursorProviderImpl:");
-      for (PageCache cache : softCache.values())
+      for (CacheEntry entry : cache.values())
       {
-         System.out.println("Cache " + cache);
+         System.out.println("Cache " + entry.cache);
       }
    }
 
@@ -655,6 +858,166 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    // Private -------------------------------------------------------
 
+   /**
+    * Reads a single message from the page file, through the page's index.
+    */
+   private PagedMessage readMessage(final PagePosition pos)
+   {
+      try
+      {
+         if (!pagingStore.checkPageFileExists((int)pos.getPageNr()))
+         {
+            throw new IllegalStateException("Invalid messageNumber passed = " + pos + " as the page doesn't exist");
+         }
+
+         Page page = pagingStore.createPage((int)pos.getPageNr());
+         storageManager.beforePageRead();
+         try
+         {
+            page.open();
+
+            int[] index = pageIndexes.get(pos.getPageNr());
+            if (index == null)
+            {
+               index = page.readIndex();
+               pageIndexes.put(pos.getPageNr(), index);
+            }
+
+            if (pos.getMessageNr() >= index.length - 1)
+            {
+               // sanity check, this should never happen unless there's a bug
+               throw new IllegalStateException("Invalid messageNumber passed = " + pos + " on page with " + (index.length - 1) + " messages");
+            }
+
+            return page.read(storageManager, index, pos.getMessageNr(), 1).get(0);
+         }
+         finally
+         {
+            try
+            {
+               page.close();
+            }
+            catch (Throwable ignored)
+            {
+            }
+            storageManager.afterPageRead();
+         }
+      }
+      catch (IllegalStateException e)
+      {
+         throw e;
+      }
+      catch (Exception e)
+      {
+         throw new RuntimeException("Couldn't complete paging due to an IO Exception on Paging - " + e.getMessage(), e);
+      }
+   }
+
+   private void touch(final CacheEntry entry)
+   {
+      entry.lastAccess = System.nanoTime();
+      if (entry.size == UNACCOUNTED && account(entry))
+      {
+         budget.checkSize();
+      }
+   }
+
+   /**
+    * Charges a page to the budget once it is fully read and it is not going to change any more.
+    * @return true if the page was charged now
+    */
+   private boolean account(final CacheEntry entry)
+   {
+      long size = 0;
+      synchronized (entry)
+      {
+         if (entry.size != UNACCOUNTED || !entry.loaded || entry.cache.isLive())
+         {
+            return false;
+         }
+
+         PagedMessage[] messages = entry.cache.getMessages();
+         if (messages != null)
+         {
+            for (PagedMessage message : messages)
+            {
+               size += message.getMessage().getMemoryEstimate();
+            }
+         }
+         entry.size = size;
+      }
+
+      cacheMemorySize.addAndGet(size);
+      budget.addSize(size);
+      return true;
+   }
+
+   private void release(final CacheEntry entry)
+   {
+      long size;
+      synchronized (entry)
+      {
+         size = entry.size;
+         entry.size = RELEASED;
+      }
+
+      if (size > 0)
+      {
+         cacheMemorySize.addAndGet(-size);
+         budget.addSize(-size);
+      }
+   }
+
+   private void removeCache(final long pageId)
+   {
+      CacheEntry entry = cache.remove(pageId);
+      if (entry != null)
+      {
+         release(entry);
+      }
+   }
+
+   /**
+    * Evicts the least recently used pages over the page-max-cache-size of this address. The pages
+    * still being read (e.g. ahead of the cursors) can't be evicted, so the cache can briefly be over
+    * that size.
+    */
+   private void checkCacheSize()
+   {
+      while (cache.size() > maxCacheSize)
+      {
+         if (!evictOldestCache())
+         {
+            break;
+         }
+      }
+   }
+
+   /**
+    * @return the least recently used page that can be evicted: fully read and not live
+    */
+   private CacheEntry findOldest()
+   {
+      CacheEntry oldest = null;
+      for (CacheEntry entry : cache.values())
+      {
+         if (entry.loaded && !entry.cache.isLive())
+         {
+            if (entry.size == UNACCOUNTED)
+            {
+               // a live page that was closed since it was added
+               account(entry);
+            }
+
+            if (oldest == null || entry.lastAccess < oldest.lastAccess)
+            {
+               oldest = entry;
+            }
+         }
+      }
+      return oldest;
+   }
+
    /**
     * This method is synchronized because we want it to be atomic with the cursors being used
     */
@@ -688,4 +1051,21 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    // Inner classes -------------------------------------------------
 
+   private static final class CacheEntry
+   {
+      private final PageCache cache;
+
+      private volatile boolean loaded;
+
+      private volatile long lastAccess;
+
+      // bytes charged to the budget, only changed while holding the entry
+      private volatile long size = UNACCOUNTED;
+
+      CacheEntry(final PageCache cache)
+      {
+         this.cache = cache;
+      }
+   }
+
 }
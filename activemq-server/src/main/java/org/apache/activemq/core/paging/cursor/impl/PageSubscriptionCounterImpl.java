@@ -18,6 +18,7 @@ package org.apache.activemq.core.paging.cursor.impl;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.concurrent.Executor;
@@ -192,9 +193,8 @@ public class PageSubscriptionCounterImpl implements PageSubscriptionCounter
       {
          if (persistent)
          {
-            tx.setContainsPersistent();
-            long id = storage.storePageCounterInc(tx.getID(), this.subscriptionID, add);
-            applyIncrementOnTX(tx, id, add);
+            // the record is only written when the TX is prepared or committed, with all the increments of the TX
+            getCounterOperations(tx).coalesce(this, add);
          }
          else
          {
@@ -210,6 +210,11 @@ public class PageSubscriptionCounterImpl implements PageSubscriptionCounter
     * @param add
     */
    public void applyIncrementOnTX(Transaction tx, long recordID1, int add)
+   {
+      getCounterOperations(tx).add(new ItemOper(this, recordID1, add));
+   }
+
+   private static CounterOperations getCounterOperations(Transaction tx)
    {
       CounterOperations oper = (CounterOperations)tx.getProperty(TransactionPropertyIndexes.PAGE_COUNT_INC);
 
@@ -220,7 +225,7 @@ public class PageSubscriptionCounterImpl implements PageSubscriptionCounter
          tx.addOperation(oper);
       }
 
-      oper.operations.add(new ItemOper(this, recordID1, add));
+      return oper;
    }
 
    public synchronized void loadValue(final long recordID1, final long value1)
@@ -324,6 +329,14 @@ public class PageSubscriptionCounterImpl implements PageSubscriptionCounter
       }
    }
 
+   /**
+    * @return how many increment records were stored since the last time they were replaced by a single counter record
+    */
+   public synchronized int getIncrementRecordCount()
+   {
+      return incrementRecords.size();
+   }
+
    /** used on testing only */
    public void setPersistent(final boolean persistent)
    {
@@ -413,6 +426,57 @@ public class PageSubscriptionCounterImpl implements PageSubscriptionCounter
    {
       LinkedList<ItemOper> operations = new LinkedList<ItemOper>();
 
+      // increments that are not stored yet, added up per counter
+      final Map<PageSubscriptionCounterImpl, ItemOper> pendingStores = new LinkedHashMap<PageSubscriptionCounterImpl, ItemOper>();
+
+      synchronized void add(ItemOper oper)
+      {
+         operations.add(oper);
+      }
+
+      synchronized void coalesce(PageSubscriptionCounterImpl counter, int add)
+      {
+         ItemOper oper = pendingStores.get(counter);
+         if (oper == null)
+         {
+            oper = new ItemOper(counter, -1, add);
+            pendingStores.put(counter, oper);
+            operations.add(oper);
+         }
+         else
+         {
+            oper.ammount += add;
+         }
+      }
+
+      @Override
+      public void beforePrepare(Transaction tx) throws Exception
+      {
+         storePending(tx);
+      }
+
+      @Override
+      public void beforeCommit(Transaction tx) throws Exception
+      {
+         storePending(tx);
+      }
+
+      /**
+       * One increment record per counter, instead of one for each message sent or acknowledged on the TX
+       */
+      private synchronized void storePending(Transaction tx) throws Exception
+      {
+         for (ItemOper oper : pendingStores.values())
+         {
+            if (oper.ammount != 0)
+            {
+               tx.setContainsPersistent();
+               oper.id = oper.counter.storage.storePageCounterInc(tx.getID(), oper.counter.subscriptionID, oper.ammount);
+            }
+         }
+         pendingStores.clear();
+      }
+
       @Override
       public void afterCommit(Transaction tx)
       {
@@ -43,6 +43,7 @@ import org.apache.activemq.core.paging.cursor.PageIterator;
 import org.apache.activemq.core.paging.cursor.PagePosition;
 import org.apache.activemq.core.paging.cursor.PageSubscription;
 import org.apache.activemq.core.paging.cursor.PageSubscriptionCounter;
+import org.apache.activemq.core.paging.cursor.PageSummary;
 import org.apache.activemq.core.paging.cursor.PagedReference;
 import org.apache.activemq.core.paging.impl.Page;
 import org.apache.activemq.core.persistence.StorageManager;
@@ -384,7 +385,12 @@ final class PageSubscriptionImpl implements PageSubscription
    {
       PagePosition retPos = pos.nextMessage();
 
-      PageCache cache = cursorProvider.getPageCache(pos.getPageNr());
+      if (retPos.getMessageNr() == 0 && skipPage(retPos.getPageNr()))
+      {
+         retPos = moveNextPage(retPos);
+      }
+
+      PageCache cache = cursorProvider.getPageCache(retPos.getPageNr());
 
       if (cache != null && !cache.isLive() && retPos.getMessageNr() >= cache.getNumberOfMessages())
       {
@@ -431,12 +437,53 @@ final class PageSubscriptionImpl implements PageSubscription
          {
             PageCursorInfo pageInfo = consumedPages.get(retPos.getPageNr());
             // any deleted or complete page will be ignored on the moveNextPage, we will just keep going
-            if (pageInfo == null || (!pageInfo.isPendingDelete() && pageInfo.getCompleteInfo() == null))
+            if (pageInfo != null && (pageInfo.isPendingDelete() || pageInfo.getCompleteInfo() != null))
             {
-               return retPos;
+               continue;
             }
          }
+
+         if (!skipPage(retPos.getPageNr()))
+         {
+            return retPos;
+         }
+      }
+   }
+
+   /**
+    * Completes the page without reading it when its summary tells that none of its messages were routed here.
+    * @return true if the page was skipped
+    */
+   private boolean skipPage(final long pageNr)
+   {
+      PageSummary summary = cursorProvider.getPageSummary(pageNr);
+
+      if (summary == null || summary.mightContain(getId()))
+      {
+         return false;
+      }
+
+      if (isTrace)
+      {
+         ActiveMQServerLogger.LOGGER.trace("Skipping page " + pageNr + " on queue " + queue.getName() + ", " + summary);
+      }
+
+      // the same as ignoring every message on the page
+      moveLastAckedPosition(new PagePositionImpl(pageNr, summary.getNumberOfMessages() - 1));
+
+      PageCursorInfo info;
+      synchronized (consumedPages)
+      {
+         info = consumedPages.get(pageNr);
+         if (info == null)
+         {
+            info = new PageCursorInfo(pageNr, summary.getNumberOfMessages(), null);
+            consumedPages.put(pageNr, info);
+         }
       }
+      info.skip();
+
+      return true;
    }
 
    private boolean routed(PagedMessage message)
@@ -896,30 +943,50 @@ final class PageSubscriptionImpl implements PageSubscription
 
    // Private -------------------------------------------------------
 
+   /**
+    * Moves {@link #lastAckedPosition} forward to {@code pos}, never back, holding the lock the
+    * cleanup reads it with, as acks and skipped pages may move it concurrently.
+    *
+    * @return whether it was moved to a different page
+    */
+   private boolean moveLastAckedPosition(final PagePosition pos)
+   {
+      synchronized (consumedPages)
+      {
+         PagePosition last = lastAckedPosition;
+
+         if (last != null && pos.compareTo(last) <= 0)
+         {
+            return false;
+         }
+
+         if (isTrace)
+         {
+            ActiveMQServerLogger.LOGGER.trace("a new position is being processed as ACK");
+         }
+
+         lastAckedPosition = pos;
+
+         return last != null && last.getPageNr() != pos.getPageNr();
+      }
+   }
+
    // To be called only after the ACK has been processed and guaranteed to be on storage
    // The only exception is on non storage events such as not matching messages
    private PageCursorInfo processACK(final PagePosition pos)
    {
-      if (lastAckedPosition == null || pos.compareTo(lastAckedPosition) > 0)
+      if (moveLastAckedPosition(pos))
       {
          if (isTrace)
          {
-            ActiveMQServerLogger.LOGGER.trace("a new position is being processed as ACK");
+            ActiveMQServerLogger.LOGGER.trace("Scheduling cleanup on pageSubscription for address = " + pageStore.getAddress() + " queue = " + this.getQueue().getName());
          }
-         if (lastAckedPosition != null && lastAckedPosition.getPageNr() != pos.getPageNr())
-         {
-            if (isTrace)
-            {
-               ActiveMQServerLogger.LOGGER.trace("Scheduling cleanup on pageSubscription for address = " + pageStore.getAddress() + " queue = " + this.getQueue().getName());
-            }
 
-            // there's a different page being acked, we will do the check right away
-            if (autoCleanup)
-            {
-               scheduleCleanupCheck();
-            }
+         // there's a different page being acked, we will do the check right away
+         if (autoCleanup)
+         {
+            scheduleCleanupCheck();
          }
-         lastAckedPosition = pos;
       }
       PageCursorInfo info = getPageInfo(pos);
 
@@ -1023,6 +1090,8 @@ final class PageSubscriptionImpl implements PageSubscription
       // however we can't delete these records again
       private boolean pendingDelete;
 
+      private volatile boolean skipped;
+
       /**
        * This is to be set when all the messages are complete on a given page, and we cleanup the records that are marked on it
        */
@@ -1081,7 +1150,7 @@ final class PageSubscriptionImpl implements PageSubscription
 
       public boolean isDone()
       {
-         return completePage != null || (getNumberOfMessages() == confirmed.get() && pendingTX.get() == 0);
+         return completePage != null || skipped || (getNumberOfMessages() == confirmed.get() && pendingTX.get() == 0);
       }
 
       public boolean isPendingDelete()
@@ -1094,6 +1163,15 @@ final class PageSubscriptionImpl implements PageSubscription
          pendingDelete = true;
       }
 
+      /**
+       * None of the messages on the page were routed to this subscription
+       */
+      public void skip()
+      {
+         skipped = true;
+         checkDone();
+      }
+
       /**
        * @return the pageId
        */
@@ -1260,6 +1338,9 @@ final class PageSubscriptionImpl implements PageSubscription
        */
       private volatile PagedReference cachedNext;
 
+      // the page the next pages were last read ahead from
+      private long readAheadPage = -1;
+
       public CursorIterator()
       {
       }
@@ -1364,6 +1445,13 @@ final class PageSubscriptionImpl implements PageSubscription
 
                tmpPosition = message.getPosition();
 
+               if (tmpPosition.getPageNr() != readAheadPage)
+               {
+                  // moved into another page, start reading the ones after it
+                  readAheadPage = tmpPosition.getPageNr();
+                  cursorProvider.readAhead(readAheadPage);
+               }
+
                boolean valid = true;
                boolean ignored = false;
 
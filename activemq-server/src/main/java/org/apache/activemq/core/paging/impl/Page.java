@@ -18,6 +18,7 @@ package org.apache.activemq.core.paging.impl;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -25,8 +26,10 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.activemq.api.core.ActiveMQBuffer;
 import org.apache.activemq.api.core.ActiveMQBuffers;
 import org.apache.activemq.api.core.SimpleString;
+import org.apache.activemq.core.journal.EncodingSupport;
 import org.apache.activemq.core.journal.SequentialFile;
 import org.apache.activemq.core.journal.SequentialFileFactory;
+import org.apache.activemq.core.journal.impl.JournalRecordCompressor;
 import org.apache.activemq.core.paging.PagedMessage;
 import org.apache.activemq.core.paging.cursor.LivePageCache;
 import org.apache.activemq.core.paging.cursor.PageSubscriptionCounter;
@@ -50,6 +53,9 @@ public final class Page implements Comparable<Page>
 
    private static final byte START_BYTE = (byte) '{';
 
+   // starts a message compressed by a JournalRecordCompressor, pages may have both kinds of records
+   private static final byte COMPRESSED_START_BYTE = (byte) '[';
+
    private static final byte END_BYTE = (byte) '}';
 
    // Attributes ----------------------------------------------------
@@ -75,6 +81,8 @@ public final class Page implements Comparable<Page>
 
    private final SimpleString storeName;
 
+   private volatile JournalRecordCompressor compressor;
+
    /**
     * A list of subscriptions containing pending counters (with non tx adds) on this page
     */
@@ -103,6 +111,15 @@ public final class Page implements Comparable<Page>
       this.pageCache = pageCache;
    }
 
+   /**
+    * @param compressor compresses the messages written from now on, null to write them as they are.
+    *                   Compressed messages are read back either way.
+    */
+   public void setCompressor(final JournalRecordCompressor compressor)
+   {
+      this.compressor = compressor;
+   }
+
    public synchronized List<PagedMessage> read(StorageManager storage) throws Exception
    {
       if (isDebug)
@@ -138,7 +155,7 @@ public final class Page implements Comparable<Page>
 
             byte byteRead = fileBuffer.readByte();
 
-            if (byteRead == Page.START_BYTE)
+            if (byteRead == Page.START_BYTE || byteRead == Page.COMPRESSED_START_BYTE)
             {
                if (fileBuffer.readerIndex() + DataConstants.SIZE_INT < fileBuffer.capacity())
                {
@@ -147,8 +164,7 @@ public final class Page implements Comparable<Page>
                   if (fileBuffer.readerIndex() + messageSize < fileBuffer.capacity() &&
                      fileBuffer.getByte(oldPos + messageSize) == Page.END_BYTE)
                   {
-                     PagedMessage msg = new PagedMessageImpl();
-                     msg.decode(fileBuffer);
+                     PagedMessage msg = decode(fileBuffer, byteRead == Page.COMPRESSED_START_BYTE, messageSize);
                      byte b = fileBuffer.readByte();
                      if (b != Page.END_BYTE)
                      {
@@ -192,23 +208,171 @@ public final class Page implements Comparable<Page>
       return messages;
    }
 
-   public synchronized void write(final PagedMessage message) throws Exception
+   /**
+    * Scans the record headers of this page without reading or decoding the messages.
+    *
+    * @return the file position of every message on this page in order, followed by the position
+    *         right after the last message. The page holds {@code index.length - 1} messages.
+    */
+   public synchronized int[] readIndex() throws Exception
+   {
+      if (!file.isOpen())
+      {
+         throw ActiveMQMessageBundle.BUNDLE.invalidPageIO();
+      }
+
+      final int fileSize = (int) file.size();
+      ByteBuffer header = ByteBuffer.allocate(DataConstants.SIZE_BYTE + DataConstants.SIZE_INT);
+      ByteBuffer trailer = ByteBuffer.allocate(DataConstants.SIZE_BYTE);
+
+      int[] index = new int[64];
+      int numberOfRecords = 0;
+      int position = 0;
+
+      while (position + header.capacity() < fileSize)
+      {
+         header.clear();
+         file.position(position);
+         file.read(header);
+
+         byte startByte = header.get();
+         if (startByte != Page.START_BYTE && startByte != Page.COMPRESSED_START_BYTE)
+         {
+            markFileAsSuspect(file.getFileName(), position, numberOfRecords);
+            break;
+         }
+
+         int endPosition = position + header.capacity() + header.getInt();
+         if (endPosition < position + header.capacity() || endPosition >= fileSize)
+         {
+            markFileAsSuspect(file.getFileName(), position, numberOfRecords);
+            break;
+         }
+
+         trailer.clear();
+         file.position(endPosition);
+         file.read(trailer);
+         if (trailer.get() != Page.END_BYTE)
+         {
+            markFileAsSuspect(file.getFileName(), position, numberOfRecords);
+            break;
+         }
+
+         if (numberOfRecords + 1 == index.length)
+         {
+            index = Arrays.copyOf(index, index.length * 2);
+         }
+         index[numberOfRecords++] = position;
+         position = endPosition + 1;
+      }
+
+      index[numberOfRecords] = position;
+
+      numberOfMessages.set(numberOfRecords);
+
+      return Arrays.copyOf(index, numberOfRecords + 1);
+   }
+
+   /**
+    * Reads some of the messages of this page, touching only the bytes of those messages.
+    *
+    * @param index the positions returned by {@link #readIndex()}
+    * @param first the number of the first message to read
+    * @param count how many messages to read
+    */
+   public synchronized List<PagedMessage> read(final StorageManager storage,
+                                               final int[] index,
+                                               final int first,
+                                               final int count) throws Exception
+   {
+      if (!file.isOpen())
+      {
+         throw ActiveMQMessageBundle.BUNDLE.invalidPageIO();
+      }
+
+      if (first < 0 || count < 0 || first + count >= index.length)
+      {
+         throw new IndexOutOfBoundsException("Messages " + first + " to " + (first + count - 1) +
+                                                " are not on page " + pageId + " with " + (index.length - 1) + " messages");
+      }
+
+      ArrayList<PagedMessage> messages = new ArrayList<PagedMessage>(count);
+
+      if (count == 0)
+      {
+         return messages;
+      }
+
+      final int start = index[first];
+      final int length = index[first + count] - start;
+
+      ByteBuffer directBuffer = storage.allocateDirectBuffer(length);
+      ActiveMQBuffer fileBuffer = null;
+      try
+      {
+         file.position(start);
+         file.read(directBuffer);
+
+         directBuffer.rewind();
+
+         fileBuffer = ActiveMQBuffers.wrappedBuffer(directBuffer);
+         fileBuffer.writerIndex(fileBuffer.capacity());
+
+         for (int i = 0; i < count; i++)
+         {
+            // the records were already checked while building the index
+            byte startByte = fileBuffer.readByte();
+            if (startByte != Page.START_BYTE && startByte != Page.COMPRESSED_START_BYTE)
+            {
+               throw new IllegalStateException("Internal error, index out of sync with page " + pageId + " at message " + (first + i));
+            }
+            int messageSize = fileBuffer.readInt();
+
+            PagedMessage msg = decode(fileBuffer, startByte == Page.COMPRESSED_START_BYTE, messageSize);
+            if (fileBuffer.readByte() != Page.END_BYTE)
+            {
+               throw new IllegalStateException("Internal error, it wasn't possible to locate END_BYTE on page " + pageId + " at message " + (first + i));
+            }
+            msg.initMessage(storage);
+            messages.add(msg);
+         }
+      }
+      finally
+      {
+         if (fileBuffer != null)
+         {
+            fileBuffer.byteBuf().unwrap().release();
+         }
+         storage.freeDirectBuffer(directBuffer);
+      }
+
+      return messages;
+   }
+
+   /**
+    * @return the number of bytes written to the file
+    */
+   public synchronized int write(final PagedMessage message) throws Exception
    {
       if (!file.isOpen())
       {
 
-         return;
+         return 0;
       }
 
-      ByteBuffer buffer = fileFactory.newBuffer(message.getEncodeSize() + Page.SIZE_RECORD);
+      JournalRecordCompressor recordCompressor = compressor;
+      EncodingSupport compressed = recordCompressor == null ? null : recordCompressor.compress(message);
+      EncodingSupport record = compressed == null ? message : compressed;
+
+      ByteBuffer buffer = fileFactory.newBuffer(record.getEncodeSize() + Page.SIZE_RECORD);
 
       ActiveMQBuffer wrap = ActiveMQBuffers.wrappedBuffer(buffer);
       wrap.clear();
 
-      wrap.writeByte(Page.START_BYTE);
+      wrap.writeByte(compressed == null ? Page.START_BYTE : Page.COMPRESSED_START_BYTE);
       wrap.writeInt(0);
       int startIndex = wrap.writerIndex();
-      message.encode(wrap);
+      record.encode(wrap);
       int endIndex = wrap.writerIndex();
       wrap.setInt(1, endIndex - startIndex); // The encoded length
       wrap.writeByte(Page.END_BYTE);
@@ -226,6 +390,8 @@ public final class Page implements Comparable<Page>
       size.addAndGet(buffer.limit());
 
       storageManager.pageWrite(message, pageId);
+
+      return buffer.limit();
    }
 
    public void sync() throws Exception
@@ -383,6 +549,27 @@ public final class Page implements Comparable<Page>
       return true;
    }
 
+   private PagedMessage decode(final ActiveMQBuffer buffer, final boolean compressed, final int size) throws Exception
+   {
+      PagedMessage msg = new PagedMessageImpl();
+
+      if (compressed)
+      {
+         byte[] bytes = new byte[size];
+         buffer.readBytes(bytes);
+
+         JournalRecordCompressor recordCompressor = compressor;
+         byte[] data = recordCompressor == null ? JournalRecordCompressor.decompress(bytes) : recordCompressor.decompressBody(bytes);
+         msg.decode(ActiveMQBuffers.wrappedBuffer(data));
+      }
+      else
+      {
+         msg.decode(buffer);
+      }
+
+      return msg;
+   }
+
    /**
     * @param position
     * @param msgNumber
@@ -21,15 +21,20 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.apache.activemq.api.config.ActiveMQDefaultConfiguration;
 import org.apache.activemq.api.core.SimpleString;
 import org.apache.activemq.core.paging.PageTransactionInfo;
 import org.apache.activemq.core.paging.PagingManager;
 import org.apache.activemq.core.paging.PagingStore;
 import org.apache.activemq.core.paging.PagingStoreFactory;
+import org.apache.activemq.core.paging.cursor.PageCacheBudget;
 import org.apache.activemq.core.server.ActiveMQServerLogger;
 import org.apache.activemq.core.settings.HierarchicalRepository;
+import org.apache.activemq.core.settings.impl.AddressFullMessagePolicy;
 import org.apache.activemq.core.settings.impl.AddressSettings;
 
 /**
@@ -55,6 +60,16 @@ public final class PagingManagerImpl implements PagingManager
 
    private final PagingStoreFactory pagingStoreFactory;
 
+   private final PageCacheBudget pageCacheBudget;
+
+   private final long globalMaxSize;
+
+   // Bytes consumed by the messages of all the stores on the memory, only tracked when there's a global max size
+   private final AtomicLong globalSizeInBytes = new AtomicLong();
+
+   // Only one thread looks for the next store to page at a time
+   private final ReentrantLock globalPagingLock = new ReentrantLock();
+
    private volatile boolean cleanupEnabled = true;
 
    private final ConcurrentMap</*TransactionID*/Long, PageTransactionInfo> transactions =
@@ -70,9 +85,36 @@ public final class PagingManagerImpl implements PagingManager
 
    public PagingManagerImpl(final PagingStoreFactory pagingSPI,
                             final HierarchicalRepository<AddressSettings> addressSettingsRepository)
+   {
+      this(pagingSPI, addressSettingsRepository, ActiveMQDefaultConfiguration.getDefaultGlobalPageCacheMaxSize());
+   }
+
+   public PagingManagerImpl(final PagingStoreFactory pagingSPI,
+                            final HierarchicalRepository<AddressSettings> addressSettingsRepository,
+                            final long globalPageCacheMaxSize)
+   {
+      this(pagingSPI, addressSettingsRepository, globalPageCacheMaxSize, 0);
+   }
+
+   public PagingManagerImpl(final PagingStoreFactory pagingSPI,
+                            final HierarchicalRepository<AddressSettings> addressSettingsRepository,
+                            final long globalPageCacheMaxSize,
+                            final int pageReadAhead)
+   {
+      this(pagingSPI, addressSettingsRepository, globalPageCacheMaxSize, pageReadAhead,
+           ActiveMQDefaultConfiguration.getDefaultGlobalMaxSize());
+   }
+
+   public PagingManagerImpl(final PagingStoreFactory pagingSPI,
+                            final HierarchicalRepository<AddressSettings> addressSettingsRepository,
+                            final long globalPageCacheMaxSize,
+                            final int pageReadAhead,
+                            final long globalMaxSize)
    {
       pagingStoreFactory = pagingSPI;
       this.addressSettingsRepository = addressSettingsRepository;
+      this.pageCacheBudget = new PageCacheBudget(globalPageCacheMaxSize, pageReadAhead);
+      this.globalMaxSize = globalMaxSize;
       addressSettingsRepository.registerListener(this);
    }
 
@@ -135,6 +177,50 @@ public final class PagingManagerImpl implements PagingManager
       }
    }
 
+   public PageCacheBudget getPageCacheBudget()
+   {
+      return pageCacheBudget;
+   }
+
+   public long addSize(final long size)
+   {
+      long newSize = globalSizeInBytes.addAndGet(size);
+
+      if (size > 0 && globalMaxSize > 0 && newSize > globalMaxSize)
+      {
+         pageLargestStore();
+      }
+
+      return newSize;
+   }
+
+   public long getGlobalSize()
+   {
+      if (globalMaxSize > 0)
+      {
+         return globalSizeInBytes.get();
+      }
+
+      long size = 0;
+
+      for (PagingStore store : stores.values())
+      {
+         size += store.getAddressSize();
+      }
+
+      return size;
+   }
+
+   public long getGlobalMaxSize()
+   {
+      return globalMaxSize;
+   }
+
+   public boolean isGlobalFull()
+   {
+      return globalMaxSize > 0 && globalSizeInBytes.get() > globalMaxSize;
+   }
+
    public SimpleString[] getStoreNames()
    {
       Set<SimpleString> names = stores.keySet();
@@ -297,6 +383,56 @@ public final class PagingManagerImpl implements PagingManager
    }
 
 
+   /**
+    * Starts paging the store using the most memory among the ones not paging yet.
+    * <p>
+    * The memory of a store only goes down as its messages are consumed, so a single store is paged
+    * for every message added while over the global max size rather than all of them at once.
+    */
+   private void pageLargestStore()
+   {
+      if (!started || !globalPagingLock.tryLock())
+      {
+         // another thread is already looking for one
+         return;
+      }
+
+      try
+      {
+         PagingStore largest = null;
+         long largestSize = 0;
+
+         for (PagingStore store : stores.values())
+         {
+            if (store.getAddressFullMessagePolicy() != AddressFullMessagePolicy.PAGE)
+            {
+               continue;
+            }
+
+            long size = store.getAddressSize();
+            if (size > largestSize && !store.isPaging())
+            {
+               largest = store;
+               largestSize = size;
+            }
+         }
+
+         if (largest != null && largest.startPaging())
+         {
+            ActiveMQServerLogger.LOGGER.pageStoreStartGlobal(largest.getStoreName(), largestSize,
+                                                              globalSizeInBytes.get(), globalMaxSize);
+         }
+      }
+      catch (Exception e)
+      {
+         ActiveMQServerLogger.LOGGER.pageStoreStartIOError(e);
+      }
+      finally
+      {
+         globalPagingLock.unlock();
+      }
+   }
+
    private PagingStore newStore(final SimpleString address) throws Exception
    {
       syncLock.readLock().lock();
@@ -108,6 +108,7 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
                                  address,
                                  settings,
                                  executorFactory.getExecutor(),
+                                 executorFactory.getExecutor(),
                                  syncNonTransactional);
    }
 
@@ -201,6 +202,7 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
                                                     address,
                                                     settings,
                                                     executorFactory.getExecutor(),
+                                                    executorFactory.getExecutor(),
                                                     syncNonTransactional);
 
             storesReturn.add(store);
@@ -19,6 +19,7 @@ package org.apache.activemq.core.paging.impl;
 import org.apache.activemq.api.core.SimpleString;
 import org.apache.activemq.core.journal.SequentialFile;
 import org.apache.activemq.core.journal.SequentialFileFactory;
+import org.apache.activemq.core.journal.impl.JournalRecordCompressor;
 import org.apache.activemq.core.paging.PageTransactionInfo;
 import org.apache.activemq.core.paging.PagedMessage;
 import org.apache.activemq.core.paging.PagingManager;
@@ -58,9 +59,9 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 
 /**
  * @author <a href="mailto:clebert.suconic@jboss.com">Clebert Suconic</a>
@@ -93,10 +94,17 @@ public class PagingStoreImpl implements PagingStore
 
    private volatile AddressFullMessagePolicy addressFullMessagePolicy;
 
+   private final JournalRecordCompressor pageCompressor = new JournalRecordCompressor();
+
+   private volatile boolean pageCompression;
+
    private boolean printedDropMessagesWarning;
 
    private final PagingManager pagingManager;
 
+   // The size of all the stores is only tracked when there's a global max size
+   private final boolean globalSizeTracked;
+
    private final Executor executor;
 
    // Bytes consumed by the queue on the memory
@@ -135,6 +143,26 @@ public class PagingStoreImpl implements PagingStore
                           final AddressSettings addressSettings,
                           final Executor executor,
                           final boolean syncNonTransactional)
+   {
+      this(address, scheduledExecutor, syncTimeout, pagingManager, storageManager, fileFactory, storeFactory,
+           storeName, addressSettings, executor, null, syncNonTransactional);
+   }
+
+   /**
+    * @param readAheadExecutor where the cursors read the next pages ahead of time, null to read them on demand only
+    */
+   public PagingStoreImpl(final SimpleString address,
+                          final ScheduledExecutorService scheduledExecutor,
+                          final long syncTimeout,
+                          final PagingManager pagingManager,
+                          final StorageManager storageManager,
+                          final SequentialFileFactory fileFactory,
+                          final PagingStoreFactory storeFactory,
+                          final SimpleString storeName,
+                          final AddressSettings addressSettings,
+                          final Executor executor,
+                          final Executor readAheadExecutor,
+                          final boolean syncNonTransactional)
    {
       if (pagingManager == null)
       {
@@ -163,6 +191,8 @@ public class PagingStoreImpl implements PagingStore
 
       this.pagingManager = pagingManager;
 
+      this.globalSizeTracked = pagingManager.getGlobalMaxSize() > 0;
+
       this.fileFactory = fileFactory;
 
       this.storeFactory = storeFactory;
@@ -181,7 +211,9 @@ public class PagingStoreImpl implements PagingStore
       this.cursorProvider = new PageCursorProviderImpl(this,
          this.storageManager,
          executor,
-         addressSettings.getPageCacheMaxSize());
+         addressSettings.getPageCacheMaxSize(),
+         pagingManager.getPageCacheBudget(),
+         readAheadExecutor);
 
    }
 
@@ -196,6 +228,14 @@ public class PagingStoreImpl implements PagingStore
 
       addressFullMessagePolicy = addressSettings.getAddressFullMessagePolicy();
 
+      pageCompression = addressSettings.isPageCompression();
+
+      Page page = currentPage;
+      if (page != null)
+      {
+         page.setCompressor(pageCompression ? pageCompressor : null);
+      }
+
       if (cursorProvider != null)
       {
          cursorProvider.setCacheMaxSize(addressSettings.getPageCacheMaxSize());
@@ -236,6 +276,11 @@ public class PagingStoreImpl implements PagingStore
       return cursorProvider;
    }
 
+   public JournalRecordCompressor getPageCompressor()
+   {
+      return pageCompressor;
+   }
+
    public long getFirstPage()
    {
       return firstPageId;
@@ -594,6 +639,8 @@ public class PagingStoreImpl implements PagingStore
 
       Page page = new Page(storeName, storageManager, fileFactory, file, pageNumber);
 
+      page.setCompressor(pageCompression ? pageCompressor : null);
+
       // To create the file
       file.open();
 
@@ -773,6 +820,11 @@ public class PagingStoreImpl implements PagingStore
 
    public void addSize(final int size)
    {
+      if (globalSizeTracked)
+      {
+         pagingManager.addSize(size);
+      }
+
       if (addressFullMessagePolicy == AddressFullMessagePolicy.BLOCK)
       {
          if (maxSize != -1)
@@ -821,7 +873,7 @@ public class PagingStoreImpl implements PagingStore
 
    @Override
    public boolean
-   page(ServerMessage message, final Transaction tx, RouteContextList listCtx, final ReadLock managerLock) throws Exception
+   page(ServerMessage message, final Transaction tx, RouteContextList listCtx, final Lock managerLock) throws Exception
    {
 
       if (!running)
@@ -928,7 +980,10 @@ public class PagingStoreImpl implements PagingStore
             // doing this will give us a possibility of recovering the page counters
             applyPageCounters(tx, getCurrentPage(), listCtx);
 
-            currentPage.write(pagedMessage);
+            int bytesWritten = currentPage.write(pagedMessage);
+
+            // compressed messages take less of the page
+            currentPageSize.addAndGet(bytesWritten - bytesToWrite);
 
             if (tx == null && syncNonTransactional && message.isDurable())
             {
@@ -1155,6 +1210,7 @@ public class PagingStoreImpl implements PagingStore
          if (currentPage != null)
          {
             currentPage.close();
+            cursorProvider.onPageClosed(currentPage.getPageId());
          }
 
          currentPage = createPage(tmpCurrentPageId);
@@ -31,6 +31,13 @@ import org.apache.activemq.utils.IDGenerator;
 /**
  * An ID generator that allocates a batch of IDs of size {@link #checkpointSize} and records the ID
  * in the journal only when starting a new batch.
+ * <p>
+ * Each thread leases a block of {@link #blockSize} IDs from the shared counter and hands them out
+ * locally, so the counter is only touched once per block. The checkpoint always covers the end of
+ * every leased block, so the IDs a thread still holds when the server crashes are never reused
+ * after the reload. IDs stay increasing per thread, but not across threads, and the IDs left in a
+ * block at shutdown are skipped. A block size of 1 must be used when the IDs have to be increasing
+ * in the order they're generated, e.g. for a {@code ShardedJournal}, which loads records by ID.
  * @author <mailto:clebert.suconic@jboss.org">Clebert Suconic</a>
  * @author <mailto:tim.fox@jboss.org">Tim Fox</a>
  * @see IDGenerator
@@ -41,14 +48,43 @@ public final class BatchingIDGenerator implements IDGenerator
 
    private final long checkpointSize;
 
+   private final int blockSize;
+
    private volatile long nextID;
 
+   /**
+    * Incremented by {@link #loadState}, invalidating the blocks leased before the reload
+    */
+   private volatile int generation;
+
+   private final ThreadLocal<IDBlock> blocks = new ThreadLocal<IDBlock>()
+   {
+      @Override
+      protected IDBlock initialValue()
+      {
+         return new IDBlock();
+      }
+   };
+
    private final StorageManager storageManager;
 
    private List<Long> cleanupRecords = null;
 
    public BatchingIDGenerator(final long start, final long checkpointSize, final StorageManager storageManager)
    {
+      this(start, checkpointSize, 1, storageManager);
+   }
+
+   public BatchingIDGenerator(final long start,
+                              final long checkpointSize,
+                              final int blockSize,
+                              final StorageManager storageManager)
+   {
+      if (blockSize < 1)
+      {
+         throw new IllegalArgumentException("blockSize must be at least 1");
+      }
+
       counter = new AtomicLong(start);
 
       // as soon as you generate the first ID, the nextID should be updated
@@ -56,6 +92,8 @@ public final class BatchingIDGenerator implements IDGenerator
 
       this.checkpointSize = checkpointSize;
 
+      this.blockSize = blockSize;
+
       this.storageManager = storageManager;
    }
 
@@ -98,17 +136,38 @@ public final class BatchingIDGenerator implements IDGenerator
       nextID = encoding.id;
 
       counter.set(nextID);
+
+      generation++;
    }
 
    public long generateID()
    {
-      long id = counter.getAndIncrement();
+      if (blockSize == 1)
+      {
+         long id = counter.getAndIncrement();
 
-      if (id >= nextID)
+         if (id >= nextID)
+         {
+            saveCheckPoint(id);
+         }
+         return id;
+      }
+
+      IDBlock block = blocks.get();
+
+      if (block.next == block.end || block.generation != generation)
       {
-         saveCheckPoint(id);
+         block.generation = generation;
+         block.next = counter.getAndAdd(blockSize);
+         block.end = block.next + blockSize;
+
+         if (block.end > nextID)
+         {
+            saveCheckPoint(block.end - 1);
+         }
       }
-      return id;
+
+      return block.next++;
    }
 
    public long getCurrentID()
@@ -116,11 +175,23 @@ public final class BatchingIDGenerator implements IDGenerator
       return counter.get();
    }
 
+   /**
+    * @return the number of IDs leased at once by each thread
+    */
+   public int getBlockSize()
+   {
+      return blockSize;
+   }
+
    private synchronized void saveCheckPoint(final long id)
    {
       if (id >= nextID)
       {
-         nextID += checkpointSize;
+         do
+         {
+            nextID += checkpointSize;
+         }
+         while (id >= nextID);
 
          if (!storageManager.isStarted())
          {
@@ -179,6 +250,18 @@ public final class BatchingIDGenerator implements IDGenerator
 
    // Inner classes -------------------------------------------------
 
+   /**
+    * The IDs leased by one thread, {@code next} inclusive to {@code end} exclusive
+    */
+   private static final class IDBlock
+   {
+      long next;
+
+      long end;
+
+      int generation;
+   }
+
    protected static final class IDCounterEncoding implements EncodingSupport
    {
       private long id;
@@ -17,24 +17,29 @@
 package org.apache.activemq.core.persistence.impl.journal;
 
 import javax.transaction.xa.Xid;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.activemq.api.core.ActiveMQBuffer;
 import org.apache.activemq.api.core.ActiveMQBuffers;
 import org.apache.activemq.api.core.Message;
 import org.apache.activemq.core.config.impl.ConfigurationImpl;
 import org.apache.activemq.core.journal.EncodingSupport;
+import org.apache.activemq.core.journal.LoaderCallback;
 import org.apache.activemq.core.journal.PreparedTransactionInfo;
 import org.apache.activemq.core.journal.RecordInfo;
 import org.apache.activemq.core.journal.SequentialFileFactory;
-import org.apache.activemq.core.journal.TransactionFailureCallback;
 import org.apache.activemq.core.journal.impl.JournalFile;
 import org.apache.activemq.core.journal.impl.JournalImpl;
 import org.apache.activemq.core.journal.impl.JournalReaderCallback;
+import org.apache.activemq.core.journal.impl.JournalRecord;
+import org.apache.activemq.core.journal.impl.JournalRecordCompressor;
 import org.apache.activemq.core.journal.impl.NIOSequentialFileFactory;
 import org.apache.activemq.core.paging.cursor.impl.PageSubscriptionCounterImpl;
 import org.apache.activemq.core.paging.impl.PageTransactionInfoImpl;
@@ -56,6 +61,7 @@ import org.apache.activemq.core.server.LargeServerMessage;
 import org.apache.activemq.core.server.ServerMessage;
 import org.apache.activemq.core.server.impl.ServerMessageImpl;
 import org.apache.activemq.utils.Base64;
+import org.apache.activemq.utils.ConcurrentLongHashMap;
 import org.apache.activemq.utils.XidCodecSupport;
 
 import static org.apache.activemq.core.persistence.impl.journal.JournalRecordIds.ACKNOWLEDGE_CURSOR;
@@ -90,8 +96,7 @@ public final class DescribeJournal
 
       SequentialFileFactory bindingsFF = new NIOSequentialFileFactory(bindingsDir, null);
 
-      JournalImpl bindings = new JournalImpl(1024 * 1024, 2, -1, 0, bindingsFF, "activemq-bindings", "bindings", 1);
-      describeJournal(bindingsFF, bindings, bindingsDir);
+      describeJournal(bindingsFF, newBindingsJournal(bindingsFF), bindingsDir);
    }
 
    public static void describeMessagesJournal(final String messagesDir) throws Exception
@@ -99,19 +104,27 @@ public final class DescribeJournal
 
       SequentialFileFactory messagesFF = new NIOSequentialFileFactory(messagesDir, null);
 
+      describeJournal(messagesFF, newMessagesJournal(messagesFF), messagesDir);
+   }
+
+   static JournalImpl newBindingsJournal(final SequentialFileFactory bindingsFF)
+   {
+      return new JournalImpl(1024 * 1024, 2, -1, 0, bindingsFF, "activemq-bindings", "bindings", 1);
+   }
+
+   static JournalImpl newMessagesJournal(final SequentialFileFactory messagesFF)
+   {
       // Will use only default values. The load function should adapt to anything different
       ConfigurationImpl defaultValues = new ConfigurationImpl();
 
-      JournalImpl messagesJournal = new JournalImpl(defaultValues.getJournalFileSize(),
-                                                    defaultValues.getJournalMinFiles(),
-                                                    0,
-                                                    0,
-                                                    messagesFF,
-                                                    "activemq-data",
-                                                    "amq",
-                                                    1);
-
-      describeJournal(messagesFF, messagesJournal, messagesDir);
+      return new JournalImpl(defaultValues.getJournalFileSize(),
+                             defaultValues.getJournalMinFiles(),
+                             0,
+                             0,
+                             messagesFF,
+                             "activemq-data",
+                             "amq",
+                             1);
    }
 
    /**
@@ -127,30 +140,35 @@ public final class DescribeJournal
 
       final Map<Long, PageSubscriptionCounterImpl> counters = new HashMap<Long, PageSubscriptionCounterImpl>();
 
+      // transactions whose records are not part of the surviving records
+      final Set<Long> uncommittedTransactions = new HashSet<Long>();
+
       out.println("Journal path: " + path);
 
       for (JournalFile file : files)
       {
          out.println("#" + file + " (size=" + file.getFile().size() + ")");
 
+         // compressed records are read as they are, to show their size on the file
          JournalImpl.readJournalFile(fileFactory, file, new JournalReaderCallback()
          {
 
             public void onReadUpdateRecordTX(final long transactionID, final RecordInfo recordInfo) throws Exception
             {
                out.println("operation@UpdateTX;txID=" + transactionID + "," + describeRecord(recordInfo));
-               checkRecordCounter(recordInfo);
+               checkRecordCounter(JournalRecordCompressor.decompress(recordInfo));
             }
 
             public void onReadUpdateRecord(final RecordInfo recordInfo) throws Exception
             {
                out.println("operation@Update;" + describeRecord(recordInfo));
-               checkRecordCounter(recordInfo);
+               checkRecordCounter(JournalRecordCompressor.decompress(recordInfo));
             }
 
             public void onReadRollbackRecord(final long transactionID) throws Exception
             {
                out.println("operation@Rollback;txID=" + transactionID);
+               uncommittedTransactions.add(transactionID);
             }
 
             public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords) throws Exception
@@ -236,7 +254,7 @@ public final class DescribeJournal
                   out.println();
                }
             }
-         });
+         }, false);
       }
 
       out.println();
@@ -249,22 +267,40 @@ public final class DescribeJournal
 
       out.println("### Surviving Records Summary ###");
 
-      List<RecordInfo> records = new LinkedList<RecordInfo>();
-      List<PreparedTransactionInfo> preparedTransactions = new LinkedList<PreparedTransactionInfo>();
+      final List<PreparedTransactionInfo> preparedTransactions = new LinkedList<PreparedTransactionInfo>();
 
       journal.start();
 
       final StringBuffer bufferFailingTransactions = new StringBuffer();
 
-      int messageCount = 0;
-      Map<Long, Integer> messageRefCounts = new HashMap<Long, Integer>();
       int preparedMessageCount = 0;
       Map<Long, Integer> preparedMessageRefCount = new HashMap<Long, Integer>();
-      journal.load(records, preparedTransactions, new TransactionFailureCallback()
+
+      // the load only keeps the IDs of the live records, their data is read again from the files below
+      journal.load(new LoaderCallback()
       {
+         public void addPreparedTransaction(final PreparedTransactionInfo preparedTransaction)
+         {
+            preparedTransactions.add(preparedTransaction);
+            uncommittedTransactions.add(preparedTransaction.id);
+         }
+
+         public void addRecord(final RecordInfo info)
+         {
+         }
+
+         public void deleteRecord(final long id)
+         {
+         }
+
+         public void updateRecord(final RecordInfo info)
+         {
+         }
 
          public void failedTransaction(long transactionID, List<RecordInfo> records1, List<RecordInfo> recordsToDelete)
          {
+            uncommittedTransactions.add(transactionID);
+
             bufferFailingTransactions.append("Transaction " + transactionID + " failed with these records:\n");
             for (RecordInfo info : records1)
             {
@@ -281,73 +317,16 @@ public final class DescribeJournal
 
       counters.clear();
 
-      for (RecordInfo info : records)
-      {
-         PageSubscriptionCounterImpl subsCounter = null;
-         long queueIDForCounter = 0;
-
-         Object o = newObjectEncoding(info);
-         if (info.getUserRecordType() == JournalRecordIds.ADD_MESSAGE)
-         {
-            messageCount++;
-         }
-         else if (info.getUserRecordType() == JournalRecordIds.ADD_REF)
-         {
-            ReferenceDescribe ref = (ReferenceDescribe)o;
-            Integer count = messageRefCounts.get(ref.refEncoding.queueID);
-            if (count == null)
-            {
-               count = 1;
-               messageRefCounts.put(ref.refEncoding.queueID, count);
-            }
-            else
-            {
-               messageRefCounts.put(ref.refEncoding.queueID, count + 1);
-            }
-         }
-         else if (info.getUserRecordType() == JournalRecordIds.ACKNOWLEDGE_REF)
-         {
-            AckDescribe ref = (AckDescribe)o;
-            Integer count = messageRefCounts.get(ref.refEncoding.queueID);
-            if (count == null)
-            {
-               messageRefCounts.put(ref.refEncoding.queueID, 0);
-            }
-            else
-            {
-               messageRefCounts.put(ref.refEncoding.queueID, count - 1);
-            }
-         }
-         else if (info.getUserRecordType() == JournalRecordIds.PAGE_CURSOR_COUNTER_VALUE)
-         {
-            PageCountRecord encoding = (PageCountRecord)o;
-            queueIDForCounter = encoding.queueID;
-
-            subsCounter = lookupCounter(counters, queueIDForCounter);
-
-            subsCounter.loadValue(info.id, encoding.value);
-            subsCounter.processReload();
-         }
-         else if (info.getUserRecordType() == JournalRecordIds.PAGE_CURSOR_COUNTER_INC)
-         {
-            PageCountRecordInc encoding = (PageCountRecordInc)o;
-            queueIDForCounter = encoding.queueID;
-
-            subsCounter = lookupCounter(counters, queueIDForCounter);
-
-            subsCounter.loadInc(info.id, encoding.value);
-            subsCounter.processReload();
-         }
-
-         out.println(describeRecord(info, o));
+      SurvivingRecords survivingRecords = new SurvivingRecords(out, journal.getRecords(), uncommittedTransactions, counters);
 
-         if (subsCounter != null)
-         {
-            out.println("##SubsCounter for queue=" + queueIDForCounter + ", value=" + subsCounter.getValue());
-            out.println();
-         }
+      for (JournalFile file : journal.orderFiles())
+      {
+         JournalImpl.readJournalFile(fileFactory, file, survivingRecords);
       }
 
+      int messageCount = survivingRecords.messageCount;
+      Map<Long, Integer> messageRefCounts = survivingRecords.messageRefCounts;
+
       if (counters.size() > 0)
       {
          out.println("### Page Counters");
@@ -442,6 +421,18 @@ public final class DescribeJournal
 
    private static String describeRecord(RecordInfo info)
    {
+      if (info.compressed)
+      {
+         try
+         {
+            return describeRecord(JournalRecordCompressor.decompress(info)) + ";compressedSize=" + info.data.length;
+         }
+         catch (IOException e)
+         {
+            return "recordID=" + info.id + ";userRecordType=" + info.userRecordType + ";invalid compressed body: " + e.getMessage();
+         }
+      }
+
       return "recordID=" + info.id + ";userRecordType=" + info.userRecordType + ";isUpdate=" + info.isUpdate + ";compactCount=" + info.compactCount + ";" + newObjectEncoding(info);
    }
 
@@ -639,6 +630,157 @@ public final class DescribeJournal
       }
    }
 
+   /**
+    * Prints the records of the files that are still live after a load, as the load would have returned them.
+    */
+   private static final class SurvivingRecords implements JournalReaderCallback
+   {
+      private final PrintStream out;
+
+      private final ConcurrentLongHashMap<JournalRecord> liveRecords;
+
+      private final Set<Long> uncommittedTransactions;
+
+      private final Map<Long, PageSubscriptionCounterImpl> counters;
+
+      int messageCount = 0;
+
+      final Map<Long, Integer> messageRefCounts = new HashMap<Long, Integer>();
+
+      SurvivingRecords(final PrintStream out,
+                       final ConcurrentLongHashMap<JournalRecord> liveRecords,
+                       final Set<Long> uncommittedTransactions,
+                       final Map<Long, PageSubscriptionCounterImpl> counters)
+      {
+         this.out = out;
+         this.liveRecords = liveRecords;
+         this.uncommittedTransactions = uncommittedTransactions;
+         this.counters = counters;
+      }
+
+      public void onReadAddRecord(final RecordInfo info) throws Exception
+      {
+         onReadRecord(info);
+      }
+
+      public void onReadUpdateRecord(final RecordInfo info) throws Exception
+      {
+         onReadRecord(info);
+      }
+
+      public void onReadAddRecordTX(final long transactionID, final RecordInfo info) throws Exception
+      {
+         if (!uncommittedTransactions.contains(transactionID))
+         {
+            onReadRecord(info);
+         }
+      }
+
+      public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info) throws Exception
+      {
+         if (!uncommittedTransactions.contains(transactionID))
+         {
+            onReadRecord(info);
+         }
+      }
+
+      public void onReadDeleteRecord(final long recordID) throws Exception
+      {
+      }
+
+      public void onReadDeleteRecordTX(final long transactionID, final RecordInfo recordInfo) throws Exception
+      {
+      }
+
+      public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords) throws Exception
+      {
+      }
+
+      public void onReadCommitRecord(final long transactionID, final int numberOfRecords) throws Exception
+      {
+      }
+
+      public void onReadRollbackRecord(final long transactionID) throws Exception
+      {
+      }
+
+      public void markAsDataFile(final JournalFile file)
+      {
+      }
+
+      private void onReadRecord(final RecordInfo info)
+      {
+         if (!liveRecords.containsKey(info.id))
+         {
+            return;
+         }
+
+         PageSubscriptionCounterImpl subsCounter = null;
+         long queueIDForCounter = 0;
+
+         Object o = newObjectEncoding(info);
+         if (info.getUserRecordType() == JournalRecordIds.ADD_MESSAGE)
+         {
+            messageCount++;
+         }
+         else if (info.getUserRecordType() == JournalRecordIds.ADD_REF)
+         {
+            ReferenceDescribe ref = (ReferenceDescribe)o;
+            Integer count = messageRefCounts.get(ref.refEncoding.queueID);
+            if (count == null)
+            {
+               count = 1;
+               messageRefCounts.put(ref.refEncoding.queueID, count);
+            }
+            else
+            {
+               messageRefCounts.put(ref.refEncoding.queueID, count + 1);
+            }
+         }
+         else if (info.getUserRecordType() == JournalRecordIds.ACKNOWLEDGE_REF)
+         {
+            AckDescribe ref = (AckDescribe)o;
+            Integer count = messageRefCounts.get(ref.refEncoding.queueID);
+            if (count == null)
+            {
+               messageRefCounts.put(ref.refEncoding.queueID, 0);
+            }
+            else
+            {
+               messageRefCounts.put(ref.refEncoding.queueID, count - 1);
+            }
+         }
+         else if (info.getUserRecordType() == JournalRecordIds.PAGE_CURSOR_COUNTER_VALUE)
+         {
+            PageCountRecord encoding = (PageCountRecord)o;
+            queueIDForCounter = encoding.queueID;
+
+            subsCounter = lookupCounter(counters, queueIDForCounter);
+
+            subsCounter.loadValue(info.id, encoding.value);
+            subsCounter.processReload();
+         }
+         else if (info.getUserRecordType() == JournalRecordIds.PAGE_CURSOR_COUNTER_INC)
+         {
+            PageCountRecordInc encoding = (PageCountRecordInc)o;
+            queueIDForCounter = encoding.queueID;
+
+            subsCounter = lookupCounter(counters, queueIDForCounter);
+
+            subsCounter.loadInc(info.id, encoding.value);
+            subsCounter.processReload();
+         }
+
+         out.println(describeRecord(info, o));
+
+         if (subsCounter != null)
+         {
+            out.println("##SubsCounter for queue=" + queueIDForCounter + ", value=" + subsCounter.getValue());
+            out.println();
+         }
+      }
+   }
+
    private static final class PageCompleteCursorAckRecordEncoding extends CursorAckRecordEncoding
    {
 
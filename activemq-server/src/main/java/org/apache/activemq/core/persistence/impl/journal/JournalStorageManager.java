@@ -43,7 +43,6 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.activemq.api.core.ActiveMQBuffer;
 import org.apache.activemq.api.core.ActiveMQBuffers;
@@ -68,7 +67,10 @@ import org.apache.activemq.core.journal.TransactionFailureCallback;
 import org.apache.activemq.core.journal.impl.AIOSequentialFileFactory;
 import org.apache.activemq.core.journal.impl.JournalFile;
 import org.apache.activemq.core.journal.impl.JournalImpl;
+import org.apache.activemq.core.journal.impl.JournalRecordCompressor;
+import org.apache.activemq.core.journal.impl.MappedSequentialFileFactory;
 import org.apache.activemq.core.journal.impl.NIOSequentialFileFactory;
+import org.apache.activemq.core.journal.impl.ShardedJournal;
 import org.apache.activemq.core.message.impl.MessageInternal;
 import org.apache.activemq.core.paging.PageTransactionInfo;
 import org.apache.activemq.core.paging.PagedMessage;
@@ -115,6 +117,7 @@ import org.apache.activemq.utils.ByteUtil;
 import org.apache.activemq.utils.DataConstants;
 import org.apache.activemq.utils.ExecutorFactory;
 import org.apache.activemq.utils.ActiveMQThreadFactory;
+import org.apache.activemq.utils.StripedReadWriteLock;
 import org.apache.activemq.utils.XidCodecSupport;
 
 import static org.apache.activemq.core.persistence.impl.journal.JournalRecordIds.ACKNOWLEDGE_CURSOR;
@@ -146,11 +149,19 @@ public class JournalStorageManager implements StorageManager
 {
    private static final long CHECKPOINT_BATCH_SIZE = Integer.MAX_VALUE;
 
+   /**
+    * IDs leased at once by each thread generating IDs, when the message journal is not sharded.
+    */
+   private static final int ID_BLOCK_SIZE = 64;
+
    private final Semaphore pageMaxConcurrentIO;
 
    private final BatchingIDGenerator idGenerator;
 
-   private final ReentrantReadWriteLock storageManagerLock = new ReentrantReadWriteLock(true);
+   /**
+    * Read locked by every store operation, write locked only to start and stop replication.
+    */
+   private final StripedReadWriteLock storageManagerLock = new StripedReadWriteLock();
 
    private ReplicationManager replicator;
 
@@ -212,6 +223,8 @@ public class JournalStorageManager implements StorageManager
 
    private final String journalDir;
 
+   private final List<String> journalShardDirs;
+
    private final String largeMessagesDirectory;
 
    private boolean journalLoaded = false;
@@ -237,7 +250,8 @@ public class JournalStorageManager implements StorageManager
 
       executor = executorFactory.getExecutor();
 
-      if (config.getJournalType() != JournalType.NIO && config.getJournalType() != JournalType.ASYNCIO)
+      if (config.getJournalType() != JournalType.NIO && config.getJournalType() != JournalType.ASYNCIO &&
+         config.getJournalType() != JournalType.MAPPED)
       {
          throw ActiveMQMessageBundle.BUNDLE.invalidJournal();
       }
@@ -280,42 +294,47 @@ public class JournalStorageManager implements StorageManager
       if (config.getJournalType() == JournalType.ASYNCIO)
       {
          ActiveMQServerLogger.LOGGER.journalUseAIO();
-
-         journalFF = new AIOSequentialFileFactory(journalDir,
-                                                  config.getJournalBufferSize_AIO(),
-                                                  config.getJournalBufferTimeout_AIO(),
-                                                  config.isLogJournalWriteRate(),
-                                                  criticalErrorListener);
       }
       else if (config.getJournalType() == JournalType.NIO)
       {
          ActiveMQServerLogger.LOGGER.journalUseNIO();
-         journalFF = new NIOSequentialFileFactory(journalDir,
-                                                  true,
-                                                  config.getJournalBufferSize_NIO(),
-                                                  config.getJournalBufferTimeout_NIO(),
-                                                  config.isLogJournalWriteRate(),
-                                                  criticalErrorListener);
       }
       else
       {
-         throw ActiveMQMessageBundle.BUNDLE.invalidJournalType2(config.getJournalType());
+         ActiveMQServerLogger.LOGGER.journalUseMapped();
       }
 
-      idGenerator = new BatchingIDGenerator(0, JournalStorageManager.CHECKPOINT_BATCH_SIZE, this);
+      journalFF = createJournalFactory(config, journalDir, criticalErrorListener);
+
+      journalShardDirs = config.getJournalShardDirectories();
 
-      Journal localMessage = new JournalImpl(config.getJournalFileSize(),
-                                             config.getJournalMinFiles(),
-                                             config.getJournalCompactMinFiles(),
-                                             config.getJournalCompactPercentage(),
-                                             journalFF,
-                                             "activemq-data",
-                                             "amq",
-                                             config.getJournalType() == JournalType.ASYNCIO ? config.getJournalMaxIO_AIO()
-                                                : config.getJournalMaxIO_NIO());
+      // a sharded journal loads its records by ID, so the IDs must follow the order they're used in
+      idGenerator = new BatchingIDGenerator(0,
+                                            JournalStorageManager.CHECKPOINT_BATCH_SIZE,
+                                            journalShardDirs.isEmpty() ? JournalStorageManager.ID_BLOCK_SIZE : 1,
+                                            this);
 
-      messageJournal = localMessage;
-      originalMessageJournal = localMessage;
+      JournalImpl localMessage = createMessageJournal(config, journalFF);
+
+      if (journalShardDirs.isEmpty())
+      {
+         messageJournal = localMessage;
+      }
+      else
+      {
+         JournalImpl[] shards = new JournalImpl[journalShardDirs.size() + 1];
+
+         shards[0] = localMessage;
+
+         for (int i = 0; i < journalShardDirs.size(); i++)
+         {
+            shards[i + 1] = createMessageJournal(config, createJournalFactory(config, journalShardDirs.get(i), criticalErrorListener));
+         }
+
+         messageJournal = new ShardedJournal(shards);
+      }
+
+      originalMessageJournal = messageJournal;
 
       largeMessagesDirectory = config.getLargeMessagesDirectory();
 
@@ -372,6 +391,11 @@ public class JournalStorageManager implements StorageManager
       }
       assert replicationManager != null;
 
+      if (messageJournal instanceof ShardedJournal)
+      {
+         throw ActiveMQMessageBundle.BUNDLE.shardedJournalReplication(((ShardedJournal) messageJournal).getShardCount());
+      }
+
       if (!(messageJournal instanceof JournalImpl) || !(bindingsJournal instanceof JournalImpl))
       {
          throw ActiveMQMessageBundle.BUNDLE.notJournalImpl();
@@ -785,6 +809,15 @@ public class JournalStorageManager implements StorageManager
       return idGenerator.getCurrentID();
    }
 
+   /**
+    * @return the number of IDs leased at once by each thread generating IDs, 1 when the message
+    * journal is sharded
+    */
+   public int getIDBlockSize()
+   {
+      return idGenerator.getBlockSize();
+   }
+
    public LargeServerMessage createLargeMessage()
    {
       return new LargeServerMessageImpl(this);
@@ -2248,6 +2281,11 @@ public class JournalStorageManager implements StorageManager
 
       checkAndCreateDir(journalDir, createJournalDir);
 
+      for (String journalShardDir : journalShardDirs)
+      {
+         checkAndCreateDir(journalShardDir, createJournalDir);
+      }
+
       checkAndCreateDir(largeMessagesDirectory, createJournalDir);
 
       cleanupIncompleteFiles();
@@ -2526,6 +2564,73 @@ public class JournalStorageManager implements StorageManager
 
    // Private ----------------------------------------------------------------------------------
 
+   private static SequentialFileFactory createJournalFactory(final Configuration config,
+                                                             final String directory,
+                                                             final IOCriticalErrorListener criticalErrorListener)
+   {
+      if (config.getJournalType() == JournalType.ASYNCIO)
+      {
+         AIOSequentialFileFactory aioFF = new AIOSequentialFileFactory(directory,
+                                                                       config.getJournalBufferSize_AIO(),
+                                                                       config.getJournalBufferTimeout_AIO(),
+                                                                       config.isLogJournalWriteRate(),
+                                                                       criticalErrorListener);
+         aioFF.setAdaptiveBufferTimeout(config.isJournalBufferTimeoutAdaptive());
+         aioFF.setUseURing(config.isJournalUseIOURing());
+         return aioFF;
+      }
+      else if (config.getJournalType() == JournalType.NIO)
+      {
+         NIOSequentialFileFactory nioFF = new NIOSequentialFileFactory(directory,
+                                                                       true,
+                                                                       config.getJournalBufferSize_NIO(),
+                                                                       config.getJournalBufferTimeout_NIO(),
+                                                                       config.isLogJournalWriteRate(),
+                                                                       criticalErrorListener);
+         nioFF.setAdaptiveBufferTimeout(config.isJournalBufferTimeoutAdaptive());
+         return nioFF;
+      }
+      else if (config.getJournalType() == JournalType.MAPPED)
+      {
+         MappedSequentialFileFactory mappedFF = new MappedSequentialFileFactory(directory,
+                                                                                true,
+                                                                                config.getJournalBufferSize_NIO(),
+                                                                                config.getJournalBufferTimeout_NIO(),
+                                                                                config.isLogJournalWriteRate(),
+                                                                                criticalErrorListener);
+         mappedFF.setAdaptiveBufferTimeout(config.isJournalBufferTimeoutAdaptive());
+         return mappedFF;
+      }
+      else
+      {
+         throw ActiveMQMessageBundle.BUNDLE.invalidJournalType2(config.getJournalType());
+      }
+   }
+
+   private static JournalImpl createMessageJournal(final Configuration config, final SequentialFileFactory factory)
+   {
+      JournalImpl journal = new JournalImpl(config.getJournalFileSize(),
+                                            config.getJournalMinFiles(),
+                                            config.getJournalCompactMinFiles(),
+                                            config.getJournalCompactPercentage(),
+                                            factory,
+                                            "activemq-data",
+                                            "amq",
+                                            config.getJournalType() == JournalType.ASYNCIO ? config.getJournalMaxIO_AIO()
+                                               : config.getJournalMaxIO_NIO());
+
+      journal.setLoadThreads(config.getJournalLoadThreads());
+
+      journal.setCheckpointFiles(config.getJournalCheckpointFiles());
+
+      if (config.isJournalCompressRecords())
+      {
+         journal.setRecordCompressor(new JournalRecordCompressor(config.getJournalCompressMinSize()));
+      }
+
+      return journal;
+   }
+
    private void checkAndCreateDir(final String dir, final boolean create)
    {
       File f = new File(dir);
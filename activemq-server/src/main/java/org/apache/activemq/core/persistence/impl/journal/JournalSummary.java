@@ -0,0 +1,640 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.core.persistence.impl.journal;
+
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.activemq.core.journal.LoaderCallback;
+import org.apache.activemq.core.journal.PreparedTransactionInfo;
+import org.apache.activemq.core.journal.RecordInfo;
+import org.apache.activemq.core.journal.SequentialFileFactory;
+import org.apache.activemq.core.journal.impl.JournalFile;
+import org.apache.activemq.core.journal.impl.JournalImpl;
+import org.apache.activemq.core.journal.impl.JournalReaderCallback;
+import org.apache.activemq.core.journal.impl.JournalRecordCompressor;
+import org.apache.activemq.core.journal.impl.NIOSequentialFileFactory;
+import org.apache.activemq.core.persistence.impl.journal.DescribeJournal.ReferenceDescribe;
+import org.apache.activemq.core.persistence.impl.journal.JournalStorageManager.AckDescribe;
+import org.apache.activemq.core.persistence.impl.journal.JournalStorageManager.CursorAckRecordEncoding;
+import org.apache.activemq.core.persistence.impl.journal.JournalStorageManager.DeliveryCountUpdateEncoding;
+import org.apache.activemq.core.persistence.impl.journal.JournalStorageManager.PageCountPendingImpl;
+import org.apache.activemq.core.persistence.impl.journal.JournalStorageManager.PageCountRecord;
+import org.apache.activemq.core.persistence.impl.journal.JournalStorageManager.PageCountRecordInc;
+import org.apache.activemq.core.persistence.impl.journal.JournalStorageManager.QueueEncoding;
+
+/**
+ * Record counts and bytes of a journal per record type, per queue and per file.
+ * <p/>
+ * Unlike {@link DescribeJournal} no record is kept in memory: the files are read on several threads,
+ * each one holding a single file at a time, and the live bytes of each file come from a load that
+ * only keeps the IDs of the live records. A summary costs about two reads of the journal.
+ * <p/>
+ * The journal must not be in use by a server while it is summarized.
+ */
+public final class JournalSummary
+{
+   private static final Map<Byte, String> RECORD_TYPE_NAMES = recordTypeNames();
+
+   private final String path;
+
+   private final List<FileSummary> files = new ArrayList<FileSummary>();
+
+   private final Map<Byte, Totals> recordTypes = new TreeMap<Byte, Totals>();
+
+   private final Map<Long, QueueTotals> queues = new TreeMap<Long, QueueTotals>();
+
+   private final Totals deletes = new Totals();
+
+   private final Totals transactionRecords = new Totals();
+
+   private JournalSummary(final String path)
+   {
+      this.path = path;
+   }
+
+   public static JournalSummary summarizeBindingsJournal(final String bindingsDir, final int threads) throws Exception
+   {
+      SequentialFileFactory bindingsFF = new NIOSequentialFileFactory(bindingsDir, null);
+
+      return summarizeJournal(bindingsFF, DescribeJournal.newBindingsJournal(bindingsFF), bindingsDir, threads);
+   }
+
+   public static JournalSummary summarizeMessagesJournal(final String messagesDir, final int threads) throws Exception
+   {
+      SequentialFileFactory messagesFF = new NIOSequentialFileFactory(messagesDir, null);
+
+      return summarizeJournal(messagesFF, DescribeJournal.newMessagesJournal(messagesFF), messagesDir, threads);
+   }
+
+   public static JournalSummary summarizeJournal(final SequentialFileFactory fileFactory,
+                                                 final JournalImpl journal,
+                                                 final String path,
+                                                 final int threads) throws Exception
+   {
+      if (threads < 1)
+      {
+         throw new IllegalArgumentException("threads must be at least 1");
+      }
+
+      JournalSummary summary = new JournalSummary(path);
+
+      final AtomicInteger threadCount = new AtomicInteger(0);
+
+      ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+      {
+         public Thread newThread(final Runnable r)
+         {
+            Thread thread = new Thread(r, "JournalSummary-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+
+      try
+      {
+         List<Future<FileScan>> scans = new ArrayList<Future<FileScan>>();
+
+         for (JournalFile file : journal.orderFiles())
+         {
+            scans.add(executor.submit(new FileScan(fileFactory, file)));
+         }
+
+         // merged in the order of the files, whichever finishes first
+         for (Future<FileScan> scan : scans)
+         {
+            summary.add(scan.get());
+         }
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+
+      Map<Long, Integer> liveBytes = new HashMap<Long, Integer>();
+
+      journal.setLoadThreads(threads);
+      journal.start();
+      try
+      {
+         journal.load(new LoaderCallback()
+         {
+            public void addPreparedTransaction(final PreparedTransactionInfo preparedTransaction)
+            {
+            }
+
+            public void addRecord(final RecordInfo info)
+            {
+            }
+
+            public void deleteRecord(final long id)
+            {
+            }
+
+            public void updateRecord(final RecordInfo info)
+            {
+            }
+
+            public void failedTransaction(final long transactionID,
+                                          final List<RecordInfo> records,
+                                          final List<RecordInfo> recordsToDelete)
+            {
+            }
+         }, false);
+
+         for (JournalFile file : journal.getDataFiles())
+         {
+            liveBytes.put(file.getFileID(), file.getLiveSize());
+         }
+
+         JournalFile currentFile = journal.getCurrentFile();
+         if (currentFile != null)
+         {
+            liveBytes.put(currentFile.getFileID(), currentFile.getLiveSize());
+         }
+      }
+      finally
+      {
+         journal.stop();
+      }
+
+      for (FileSummary file : summary.files)
+      {
+         Integer live = liveBytes.get(file.fileID);
+         file.liveBytes = live == null ? 0 : live;
+      }
+
+      return summary;
+   }
+
+   public String getPath()
+   {
+      return path;
+   }
+
+   public List<FileSummary> getFiles()
+   {
+      return Collections.unmodifiableList(files);
+   }
+
+   /**
+    * @return the add and update records, by user record type
+    */
+   public Map<Byte, Totals> getRecordTypes()
+   {
+      return Collections.unmodifiableMap(recordTypes);
+   }
+
+   /**
+    * @return the records that belong to a queue, by queue ID
+    */
+   public Map<Long, QueueTotals> getQueues()
+   {
+      return Collections.unmodifiableMap(queues);
+   }
+
+   public Totals getDeletes()
+   {
+      return deletes;
+   }
+
+   /**
+    * @return the prepare, commit and rollback records
+    */
+   public Totals getTransactionRecords()
+   {
+      return transactionRecords;
+   }
+
+   public void print(final PrintStream out)
+   {
+      out.println("Journal path: " + path);
+
+      out.println("### Files ###");
+      for (FileSummary file : files)
+      {
+         out.println(file);
+      }
+
+      out.println();
+      out.println("### Record Types ###");
+      for (Map.Entry<Byte, Totals> entry : recordTypes.entrySet())
+      {
+         out.println(recordTypeName(entry.getKey()) + ";" + entry.getValue());
+      }
+      out.println("DELETE;" + deletes);
+      out.println("PREPARE/COMMIT/ROLLBACK;" + transactionRecords);
+
+      out.println();
+      out.println("### Queues ###");
+      for (Map.Entry<Long, QueueTotals> entry : queues.entrySet())
+      {
+         out.println("queue id " + entry.getKey() + ";" + entry.getValue());
+      }
+   }
+
+   private void add(final FileScan scan)
+   {
+      files.add(scan.file);
+
+      for (Map.Entry<Byte, Totals> entry : scan.recordTypes.entrySet())
+      {
+         Totals totals = recordTypes.get(entry.getKey());
+         if (totals == null)
+         {
+            totals = new Totals();
+            recordTypes.put(entry.getKey(), totals);
+         }
+         totals.add(entry.getValue());
+      }
+
+      for (Map.Entry<Long, QueueTotals> entry : scan.queues.entrySet())
+      {
+         QueueTotals totals = queues.get(entry.getKey());
+         if (totals == null)
+         {
+            totals = new QueueTotals();
+            queues.put(entry.getKey(), totals);
+         }
+         totals.add(entry.getValue());
+      }
+
+      deletes.add(scan.deletes);
+      transactionRecords.add(scan.transactionRecords);
+   }
+
+   private static String recordTypeName(final byte recordType)
+   {
+      String name = RECORD_TYPE_NAMES.get(recordType);
+      return name == null ? "userRecordType=" + recordType : name + "(" + recordType + ")";
+   }
+
+   private static Map<Byte, String> recordTypeNames()
+   {
+      Map<Byte, String> names = new HashMap<Byte, String>();
+
+      for (Field field : JournalRecordIds.class.getDeclaredFields())
+      {
+         if (Modifier.isStatic(field.getModifiers()) && field.getType() == byte.class)
+         {
+            try
+            {
+               field.setAccessible(true);
+               names.put(field.getByte(null), field.getName());
+            }
+            catch (IllegalAccessException e)
+            {
+               // the number is printed instead
+            }
+         }
+      }
+
+      return names;
+   }
+
+   /**
+    * @return the queue of a record, or {@code null} if the record doesn't belong to a queue
+    */
+   private static Long queueOf(final RecordInfo info) throws Exception
+   {
+      switch (info.getUserRecordType())
+      {
+         case JournalRecordIds.ADD_REF:
+         case JournalRecordIds.ACKNOWLEDGE_REF:
+         case JournalRecordIds.UPDATE_DELIVERY_COUNT:
+         case JournalRecordIds.SET_SCHEDULED_DELIVERY_TIME:
+         case JournalRecordIds.ACKNOWLEDGE_CURSOR:
+         case JournalRecordIds.PAGE_CURSOR_COMPLETE:
+         case JournalRecordIds.PAGE_CURSOR_COUNTER_VALUE:
+         case JournalRecordIds.PAGE_CURSOR_COUNTER_INC:
+         case JournalRecordIds.PAGE_CURSOR_PENDING_COUNTER:
+            break;
+         default:
+            return null;
+      }
+
+      Object encoding = DescribeJournal.newObjectEncoding(JournalRecordCompressor.decompress(info));
+
+      if (encoding instanceof ReferenceDescribe)
+      {
+         return ((ReferenceDescribe) encoding).refEncoding.queueID;
+      }
+      else if (encoding instanceof AckDescribe)
+      {
+         return ((AckDescribe) encoding).refEncoding.queueID;
+      }
+      else if (encoding instanceof QueueEncoding)
+      {
+         return ((QueueEncoding) encoding).queueID;
+      }
+      else if (encoding instanceof DeliveryCountUpdateEncoding)
+      {
+         return ((DeliveryCountUpdateEncoding) encoding).queueID;
+      }
+      else if (encoding instanceof CursorAckRecordEncoding)
+      {
+         return ((CursorAckRecordEncoding) encoding).queueID;
+      }
+      else if (encoding instanceof PageCountRecord)
+      {
+         return ((PageCountRecord) encoding).queueID;
+      }
+      else if (encoding instanceof PageCountRecordInc)
+      {
+         return ((PageCountRecordInc) encoding).queueID;
+      }
+      else if (encoding instanceof PageCountPendingImpl)
+      {
+         return ((PageCountPendingImpl) encoding).queueID;
+      }
+
+      return null;
+   }
+
+   public static class Totals
+   {
+      long count;
+
+      long bytes;
+
+      void add(final int recordBytes)
+      {
+         count++;
+         bytes += recordBytes;
+      }
+
+      void add(final Totals other)
+      {
+         count += other.count;
+         bytes += other.bytes;
+      }
+
+      public long getCount()
+      {
+         return count;
+      }
+
+      /**
+       * @return the bytes taken on the files, record headers included
+       */
+      public long getBytes()
+      {
+         return bytes;
+      }
+
+      @Override
+      public String toString()
+      {
+         return "count=" + count + ", bytes=" + bytes;
+      }
+   }
+
+   public static final class QueueTotals extends Totals
+   {
+      long references;
+
+      long acknowledgements;
+
+      void add(final QueueTotals other)
+      {
+         super.add(other);
+         references += other.references;
+         acknowledgements += other.acknowledgements;
+      }
+
+      public long getReferences()
+      {
+         return references;
+      }
+
+      public long getAcknowledgements()
+      {
+         return acknowledgements;
+      }
+
+      @Override
+      public String toString()
+      {
+         return super.toString() + ", references=" + references + ", acknowledgements=" + acknowledgements;
+      }
+   }
+
+   public static final class FileSummary
+   {
+      private final String fileName;
+
+      private final long fileID;
+
+      private final long fileSize;
+
+      private final Totals records = new Totals();
+
+      private int liveBytes;
+
+      private FileSummary(final JournalFile file) throws Exception
+      {
+         this.fileName = file.getFile().getFileName();
+         this.fileID = file.getFileID();
+         this.fileSize = file.getFile().size();
+      }
+
+      public String getFileName()
+      {
+         return fileName;
+      }
+
+      public long getFileID()
+      {
+         return fileID;
+      }
+
+      public long getFileSize()
+      {
+         return fileSize;
+      }
+
+      public long getRecords()
+      {
+         return records.count;
+      }
+
+      public long getRecordBytes()
+      {
+         return records.bytes;
+      }
+
+      /**
+       * @return the bytes of the add and update records of this file that haven't been deleted
+       */
+      public int getLiveBytes()
+      {
+         return liveBytes;
+      }
+
+      /**
+       * @return the share of the record bytes of this file that are still live, from 0 to 1
+       */
+      public double getLiveRatio()
+      {
+         return records.bytes == 0 ? 0 : (double) liveBytes / records.bytes;
+      }
+
+      @Override
+      public String toString()
+      {
+         return fileName + " (id=" + fileID + ", size=" + fileSize + ");records=" + records.count +
+            ", recordBytes=" + records.bytes + ", liveBytes=" + liveBytes +
+            String.format(", live=%.1f%%", getLiveRatio() * 100);
+      }
+   }
+
+   /**
+    * Totals of a single file, added to the summary once the file was read.
+    */
+   private static final class FileScan implements Callable<FileScan>, JournalReaderCallback
+   {
+      private final SequentialFileFactory fileFactory;
+
+      private final JournalFile journalFile;
+
+      private FileSummary file;
+
+      private final Map<Byte, Totals> recordTypes = new HashMap<Byte, Totals>();
+
+      private final Map<Long, QueueTotals> queues = new HashMap<Long, QueueTotals>();
+
+      private final Totals deletes = new Totals();
+
+      private final Totals transactionRecords = new Totals();
+
+      FileScan(final SequentialFileFactory fileFactory, final JournalFile journalFile)
+      {
+         this.fileFactory = fileFactory;
+         this.journalFile = journalFile;
+      }
+
+      public FileScan call() throws Exception
+      {
+         file = new FileSummary(journalFile);
+
+         // compressed records are counted as they are, with their size on the file
+         JournalImpl.readJournalFile(fileFactory, journalFile, this, false);
+
+         return this;
+      }
+
+      public void onReadAddRecord(final RecordInfo info) throws Exception
+      {
+         onReadRecord(info, JournalImpl.SIZE_ADD_RECORD + 1 + info.data.length);
+      }
+
+      public void onReadUpdateRecord(final RecordInfo info) throws Exception
+      {
+         onReadRecord(info, JournalImpl.SIZE_ADD_RECORD + 1 + info.data.length);
+      }
+
+      public void onReadAddRecordTX(final long transactionID, final RecordInfo info) throws Exception
+      {
+         onReadRecord(info, JournalImpl.SIZE_ADD_RECORD_TX + 1 + info.data.length);
+      }
+
+      public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info) throws Exception
+      {
+         onReadRecord(info, JournalImpl.SIZE_ADD_RECORD_TX + 1 + info.data.length);
+      }
+
+      public void onReadDeleteRecord(final long recordID) throws Exception
+      {
+         onReadOther(deletes, JournalImpl.SIZE_DELETE_RECORD);
+      }
+
+      public void onReadDeleteRecordTX(final long transactionID, final RecordInfo info) throws Exception
+      {
+         onReadOther(deletes, JournalImpl.SIZE_DELETE_RECORD_TX + info.data.length);
+      }
+
+      public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords) throws Exception
+      {
+         onReadOther(transactionRecords, JournalImpl.SIZE_PREPARE_RECORD + extraData.length);
+      }
+
+      public void onReadCommitRecord(final long transactionID, final int numberOfRecords) throws Exception
+      {
+         onReadOther(transactionRecords, JournalImpl.SIZE_COMMIT_RECORD);
+      }
+
+      public void onReadRollbackRecord(final long transactionID) throws Exception
+      {
+         onReadOther(transactionRecords, JournalImpl.SIZE_ROLLBACK_RECORD);
+      }
+
+      public void markAsDataFile(final JournalFile file)
+      {
+      }
+
+      private void onReadOther(final Totals totals, final int recordBytes)
+      {
+         totals.add(recordBytes);
+         file.records.add(recordBytes);
+      }
+
+      private void onReadRecord(final RecordInfo info, final int recordBytes) throws Exception
+      {
+         Totals totals = recordTypes.get(info.userRecordType);
+         if (totals == null)
+         {
+            totals = new Totals();
+            recordTypes.put(info.userRecordType, totals);
+         }
+         onReadOther(totals, recordBytes);
+
+         Long queueID = queueOf(info);
+         if (queueID != null)
+         {
+            QueueTotals queue = queues.get(queueID);
+            if (queue == null)
+            {
+               queue = new QueueTotals();
+               queues.put(queueID, queue);
+            }
+            queue.add(recordBytes);
+
+            if (info.userRecordType == JournalRecordIds.ADD_REF)
+            {
+               queue.references++;
+            }
+            else if (info.userRecordType == JournalRecordIds.ACKNOWLEDGE_REF)
+            {
+               queue.acknowledgements++;
+            }
+         }
+      }
+   }
+}
@@ -16,9 +16,10 @@
  */
 package org.apache.activemq.core.persistence.impl.journal;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -42,6 +43,9 @@ import org.apache.activemq.utils.ExecutorFactory;
  *
  * So, if you are doing operations that are not dependent on IO (e.g NonPersistentMessages) you wouldn't have any context switch.
  *
+ * No lock is taken: the operations are counted with atomic counters, the tasks wait on a concurrent queue, and the
+ * tasks completed together, by one or several concurrent completions, are given to the executor as a single execution.
+ *
  * @author <mailto:clebert.suconic@jboss.org">Clebert Suconic</a>
  */
 public class OperationContextImpl implements OperationContext
@@ -81,23 +85,28 @@ public class OperationContextImpl implements OperationContext
       OperationContextImpl.threadLocalContext.set(context);
    }
 
-   private List<TaskHolder> tasks;
+   /**
+    * The tasks waiting for their operations, in the order they were added.
+    */
+   private final Queue<TaskHolder> tasks = new ConcurrentLinkedQueue<TaskHolder>();
 
-   private long minimalStore = Long.MAX_VALUE;
-   private long minimalReplicated = Long.MAX_VALUE;
-   private long minimalPage = Long.MAX_VALUE;
+   /**
+    * How many times the tasks were asked to be checked. Only the thread that moves it from zero checks them,
+    * and checks again for everything that asked meanwhile, so concurrent completions are coalesced.
+    */
+   private final AtomicInteger checksPending = new AtomicInteger(0);
 
    private final AtomicLong storeLineUp = new AtomicLong(0);
    private final AtomicLong replicationLineUp = new AtomicLong(0);
    private final AtomicLong pageLineUp = new AtomicLong(0);
 
-   private long stored = 0;
-   private long replicated = 0;
-   private long paged = 0;
+   private final AtomicLong stored = new AtomicLong(0);
+   private final AtomicLong replicated = new AtomicLong(0);
+   private final AtomicLong paged = new AtomicLong(0);
 
-   private int errorCode = -1;
+   private volatile int errorCode = -1;
 
-   private String errorMessage = null;
+   private volatile String errorMessage = null;
 
    private final Executor executor;
 
@@ -114,9 +123,9 @@ public class OperationContextImpl implements OperationContext
       pageLineUp.incrementAndGet();
    }
 
-   public synchronized void pageSyncDone()
+   public void pageSyncDone()
    {
-      paged++;
+      paged.incrementAndGet();
       checkTasks();
    }
 
@@ -130,9 +139,9 @@ public class OperationContextImpl implements OperationContext
       replicationLineUp.incrementAndGet();
    }
 
-   public synchronized void replicationDone()
+   public void replicationDone()
    {
-      replicated++;
+      replicated.incrementAndGet();
       checkTasks();
    }
 
@@ -144,86 +153,103 @@ public class OperationContextImpl implements OperationContext
          return;
       }
 
-      boolean executeNow = false;
-
-      synchronized (this)
-      {
-         if (tasks == null)
-         {
-            tasks = new LinkedList<TaskHolder>();
-            minimalReplicated = replicationLineUp.intValue();
-            minimalStore = storeLineUp.intValue();
-            minimalPage = pageLineUp.intValue();
-         }
-
-         // On this case, we can just execute the context directly
-         if (replicationLineUp.intValue() == replicated && storeLineUp.intValue() == stored &&
-                  pageLineUp.intValue() == paged)
-         {
-            // We want to avoid the executor if everything is complete...
-            // However, we can't execute the context if there are executions pending
-            // We need to use the executor on this case
-            if (executorsPending.get() == 0)
-            {
-               // No need to use an executor here or a context switch
-               // there are no actions pending.. hence we can just execute the task directly on the same thread
-               executeNow = true;
-            }
-            else
-            {
-               execute(completion);
-            }
-         }
-         else
-         {
-            tasks.add(new TaskHolder(completion));
-         }
-      }
+      TaskHolder holder = new TaskHolder(completion);
 
-      if (executeNow)
+      // We want to avoid the executor if everything is complete...
+      // However, we can't execute the task if there are tasks waiting or executions pending
+      if (tasks.isEmpty() && executorsPending.get() == 0 && isComplete(holder))
       {
-         // Executing outside of any locks
+         // No need to use an executor here or a context switch
+         // there are no actions pending.. hence we can just execute the task directly on the same thread
          completion.done();
+         return;
       }
 
+      tasks.add(holder);
+
+      // the operations may have completed before the task was added, with nobody left to check it
+      checkTasks();
    }
 
-   public synchronized void done()
+   public void done()
    {
-      stored++;
+      stored.incrementAndGet();
       checkTasks();
    }
 
+   private boolean isComplete(final TaskHolder holder)
+   {
+      return stored.get() >= holder.storeLined && replicated.get() >= holder.replicationLined &&
+         paged.get() >= holder.pageLined;
+   }
+
    private void checkTasks()
    {
-      if (stored >= minimalStore && replicated >= minimalReplicated && paged >= minimalPage)
+      if (checksPending.getAndIncrement() != 0)
+      {
+         return;
+      }
+
+      int checks = 1;
+      do
+      {
+         executeCompletedTasks();
+         checks = checksPending.addAndGet(-checks);
+      }
+      while (checks != 0);
+   }
+
+   /**
+    * Only called by one thread at a time, from {@link #checkTasks()}.
+    */
+   private void executeCompletedTasks()
+   {
+      if (errorCode != -1)
       {
-         Iterator<TaskHolder> iter = tasks.iterator();
-         while (iter.hasNext())
+         TaskHolder holder;
+         while ((holder = tasks.poll()) != null)
          {
-            TaskHolder holder = iter.next();
-            if (stored >= holder.storeLined && replicated >= holder.replicationLined && paged >= holder.pageLined)
-            {
-               // If set, we use an executor to avoid the server being single threaded
-               execute(holder.task);
+            holder.task.onError(errorCode, errorMessage);
+         }
+         return;
+      }
 
-               iter.remove();
-            }
-            else
-            {
-               // End of list here. No other task will be completed after this
-               break;
-            }
+      // counted before taking any task, so executeOnCompletion can't run a task on its own thread
+      // while the tasks before it are on their way to the executor
+      executorsPending.incrementAndGet();
+
+      List<IOAsyncTask> completed = null;
+
+      TaskHolder holder;
+      while ((holder = tasks.peek()) != null && isComplete(holder))
+      {
+         tasks.poll();
+
+         if (completed == null)
+         {
+            completed = new ArrayList<IOAsyncTask>();
          }
+         completed.add(holder.task);
+      }
+      // End of list here. No other task will be completed after the first one still waiting
+
+      if (completed == null)
+      {
+         executorsPending.decrementAndGet();
+      }
+      else
+      {
+         // If set, we use an executor to avoid the server being single threaded
+         execute(completed);
       }
    }
 
    /**
-    * @param task
+    * Executes the tasks in order, as a single execution of the executor. The execution must have been
+    * counted on {@link #executorsPending} already.
     */
-   private void execute(final IOAsyncTask task)
+   private void execute(final List<IOAsyncTask> completed)
    {
-      executorsPending.incrementAndGet();
       try
       {
          executor.execute(new Runnable()
@@ -232,9 +258,19 @@ public class OperationContextImpl implements OperationContext
             {
                try
                {
-                  // If any IO is done inside the callback, it needs to be done on a new context
-                  OperationContextImpl.clearContext();
-                  task.done();
+                  for (IOAsyncTask task : completed)
+                  {
+                     try
+                     {
+                        // If any IO is done inside the callback, it needs to be done on a new context
+                        OperationContextImpl.clearContext();
+                        task.done();
+                     }
+                     catch (Throwable e)
+                     {
+                        ActiveMQServerLogger.LOGGER.errorExecutingIOAsyncTask(e);
+                     }
+                  }
                }
                finally
                {
@@ -247,8 +283,11 @@ public class OperationContextImpl implements OperationContext
       {
          ActiveMQServerLogger.LOGGER.errorExecutingIOAsyncTask(e);
          executorsPending.decrementAndGet();
-         task.onError(ActiveMQExceptionType.INTERNAL_ERROR.getCode(),
-                      "It wasn't possible to complete IO operation - " + e.getMessage());
+         for (IOAsyncTask task : completed)
+         {
+            task.onError(ActiveMQExceptionType.INTERNAL_ERROR.getCode(),
+                         "It wasn't possible to complete IO operation - " + e.getMessage());
+         }
       }
    }
 
@@ -261,21 +300,12 @@ public class OperationContextImpl implements OperationContext
    }
 
    @Override
-   public synchronized void onError(final int errorCode, final String errorMessage)
+   public void onError(final int errorCode, final String errorMessage)
    {
-      this.errorCode = errorCode;
       this.errorMessage = errorMessage;
+      this.errorCode = errorCode;
 
-      if (tasks != null)
-      {
-         Iterator<TaskHolder> iter = tasks.iterator();
-         while (iter.hasNext())
-         {
-            TaskHolder holder = iter.next();
-            holder.task.onError(errorCode, errorMessage);
-            iter.remove();
-         }
-      }
+      checkTasks();
    }
 
    final class TaskHolder
@@ -294,17 +324,17 @@ public class OperationContextImpl implements OperationContext
                 "]";
       }
 
-      final int storeLined;
-      final int replicationLined;
-      final int pageLined;
+      final long storeLined;
+      final long replicationLined;
+      final long pageLined;
 
       final IOAsyncTask task;
 
       TaskHolder(final IOAsyncTask task)
       {
-         storeLined = storeLineUp.intValue();
-         replicationLined = replicationLineUp.intValue();
-         pageLined = pageLineUp.intValue();
+         storeLined = storeLineUp.get();
+         replicationLined = replicationLineUp.get();
+         pageLined = pageLineUp.get();
          this.task = task;
       }
    }
@@ -336,29 +366,21 @@ public class OperationContextImpl implements OperationContext
    public String toString()
    {
       StringBuffer buffer = new StringBuffer();
-      if (tasks != null)
+      for (TaskHolder hold : tasks)
       {
-         for (TaskHolder hold : tasks)
-         {
-            buffer.append("Task = " + hold + "\n");
-         }
+         buffer.append("Task = " + hold + "\n");
       }
 
-      return "OperationContextImpl [" + hashCode() + "] [minimalStore=" + minimalStore +
-             ", storeLineUp=" +
+      return "OperationContextImpl [" + hashCode() + "] [storeLineUp=" +
              storeLineUp +
              ", stored=" +
              stored +
-             ", minimalReplicated=" +
-             minimalReplicated +
              ", replicationLineUp=" +
              replicationLineUp +
              ", replicated=" +
              replicated +
              ", paged=" +
              paged +
-             ", minimalPage=" +
-             minimalPage +
              ", pageLineUp=" +
              pageLineUp +
              ", errorCode=" +
@@ -31,6 +31,7 @@ import org.apache.activemq.core.server.ServerMessage;
 import org.apache.activemq.spi.core.protocol.ProtocolManager;
 import org.apache.activemq.spi.core.protocol.SessionCallback;
 import org.apache.activemq.spi.core.remoting.ReadyListener;
+import org.apache.activemq.spi.core.remoting.SharedFileChannel;
 
 /**
  * A CoreSessionCallback
@@ -72,6 +73,18 @@ public final class CoreSessionCallback implements SessionCallback
       return packet.getPacketSize();
    }
 
+   public int sendLargeMessageContinuation(ServerConsumer consumer, SharedFileChannel file, long position, int length, boolean continues)
+   {
+      SessionReceiveContinuationMessage packet = new SessionReceiveContinuationMessage(consumer.getID(), continues);
+
+      if (channel.sendFileRegion(packet, file.newRegion(position, length)))
+      {
+         return packet.getPacketSize();
+      }
+
+      return -1;
+   }
+
    public int sendMessage(ServerMessage message, ServerConsumer consumer, int deliveryCount)
    {
       Packet packet = new SessionReceiveMessage(consumer.getID(), message, deliveryCount);
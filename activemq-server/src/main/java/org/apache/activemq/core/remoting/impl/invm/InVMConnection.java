@@ -16,6 +16,9 @@
  */
 package org.apache.activemq.core.remoting.impl.invm;
 
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
@@ -23,7 +26,9 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.FileRegion;
 import org.apache.activemq.api.core.ActiveMQBuffer;
 import org.apache.activemq.api.core.ActiveMQBuffers;
 import org.apache.activemq.api.core.ActiveMQInterruptedException;
@@ -161,6 +166,45 @@ public class InVMConnection implements Connection
       write(buffer, false, false, null);
    }
 
+   public boolean isFileRegionSupported()
+   {
+      // the buffers are handed to the other side as they are
+      return false;
+   }
+
+   public void write(final ActiveMQBuffer header, final FileRegion region, final ActiveMQBuffer trailer)
+   {
+      final ActiveMQBuffer buffer;
+
+      try
+      {
+         buffer = ActiveMQBuffers.fixedBuffer(header.readableBytes() + (int) region.count() + trailer.readableBytes());
+
+         buffer.writeBytes(header, header.readerIndex(), header.readableBytes());
+
+         WritableByteChannel target = Channels.newChannel(new ByteBufOutputStream(buffer.byteBuf()));
+
+         long transferred = 0;
+
+         while (transferred < region.count())
+         {
+            transferred += region.transferTo(target, transferred);
+         }
+
+         buffer.writeBytes(trailer, trailer.readerIndex(), trailer.readableBytes());
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException("Failed to read the file region for " + this, e);
+      }
+      finally
+      {
+         region.release();
+      }
+
+      write(buffer);
+   }
+
    public void write(final ActiveMQBuffer buffer, final boolean flush, final boolean batch)
    {
       write(buffer, flush, batch, null);
@@ -22,6 +22,8 @@ import java.util.Map;
 import org.apache.activemq.core.journal.EncodingSupport;
 import org.apache.activemq.core.journal.IOCompletion;
 import org.apache.activemq.core.journal.Journal;
+import org.apache.activemq.core.journal.JournalCompactStatistics;
+import org.apache.activemq.core.journal.JournalIOStatistics;
 import org.apache.activemq.core.journal.JournalLoadInformation;
 import org.apache.activemq.core.journal.LoaderCallback;
 import org.apache.activemq.core.journal.PreparedTransactionInfo;
@@ -549,6 +551,18 @@ public class ReplicatedJournal implements Journal
       localJournal.scheduleCompactAndBlock(timeout);
    }
 
+   @Override
+   public JournalCompactStatistics getCompactStatistics()
+   {
+      return localJournal.getCompactStatistics();
+   }
+
+   @Override
+   public JournalIOStatistics getIOStatistics()
+   {
+      return localJournal.getIOStatistics();
+   }
+
    @Override
    public void replicationSyncPreserveOldFiles()
    {
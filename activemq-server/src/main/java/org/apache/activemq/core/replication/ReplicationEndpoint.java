@@ -301,7 +301,8 @@ public final class ReplicationEndpoint implements ChannelHandler, ActiveMQCompon
                                                             server.getScheduledPool(),
                                                             server.getExecutorFactory(),
                                                             config.isJournalSyncNonTransactional(), criticalErrorListener),
-                                  server.getAddressSettingsRepository());
+                                  server.getAddressSettingsRepository(),
+                                  config.getGlobalPageCacheMaxSize());
 
          pageManager.start();
 
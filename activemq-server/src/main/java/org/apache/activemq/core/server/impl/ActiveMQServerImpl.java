@@ -1486,7 +1486,10 @@ public class ActiveMQServerImpl implements ActiveMQServer
                                                              executorFactory,
                                                              configuration.isJournalSyncNonTransactional(),
                                                              shutdownOnCriticalIO),
-                                   addressSettingsRepository);
+                                   addressSettingsRepository,
+                                   configuration.getGlobalPageCacheMaxSize(),
+                                   configuration.getPageReadAhead(),
+                                   configuration.getGlobalMaxSize());
    }
 
    /**
@@ -48,6 +48,7 @@ import org.apache.activemq.api.core.management.ManagementHelper;
 import org.apache.activemq.core.filter.Filter;
 import org.apache.activemq.core.journal.IOAsyncTask;
 import org.apache.activemq.core.message.impl.MessageImpl;
+import org.apache.activemq.core.paging.PagingStore;
 import org.apache.activemq.core.paging.cursor.PageSubscription;
 import org.apache.activemq.core.paging.cursor.PagedReference;
 import org.apache.activemq.core.persistence.StorageManager;
@@ -2231,7 +2232,14 @@ public class QueueImpl implements Queue
     */
    private boolean needsDepage()
    {
-      return queueMemorySize.get() < pageSubscription.getPagingStore().getMaxSize();
+      PagingStore store = pageSubscription.getPagingStore();
+      long maxSize = store.getMaxSize();
+      if (maxSize <= 0)
+      {
+         // the address was paged by global-max-size alone, so we depage a couple of pages at a time
+         maxSize = 2 * store.getPageSizeBytes();
+      }
+      return queueMemorySize.get() < maxSize;
    }
 
 
@@ -17,6 +17,8 @@
 package org.apache.activemq.core.server.impl;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -36,6 +38,7 @@ import org.apache.activemq.api.core.management.CoreNotificationType;
 import org.apache.activemq.api.core.management.ManagementHelper;
 import org.apache.activemq.core.client.impl.ClientConsumerImpl;
 import org.apache.activemq.core.filter.Filter;
+import org.apache.activemq.core.journal.SequentialFile;
 import org.apache.activemq.core.message.BodyEncoder;
 import org.apache.activemq.core.persistence.StorageManager;
 import org.apache.activemq.core.postoffice.Binding;
@@ -55,6 +58,7 @@ import org.apache.activemq.core.transaction.Transaction;
 import org.apache.activemq.core.transaction.impl.TransactionImpl;
 import org.apache.activemq.spi.core.protocol.SessionCallback;
 import org.apache.activemq.spi.core.remoting.ReadyListener;
+import org.apache.activemq.spi.core.remoting.SharedFileChannel;
 import org.apache.activemq.utils.FutureLatch;
 import org.apache.activemq.utils.LinkedListIterator;
 import org.apache.activemq.utils.TypedProperties;
@@ -1043,6 +1047,11 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
       private BodyEncoder context;
 
+      /**
+       * The body file, shared with the transport writing the continuations straight from it
+       */
+      private SharedFileChannel bodyFile;
+
       public LargeMessageDeliverer(final LargeServerMessage message, final MessageReference ref) throws Exception
       {
          largeMessage = message;
@@ -1081,6 +1090,8 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
                context.open();
 
+               bodyFile = openBodyFile();
+
                sentInitialPacket = true;
 
                int packetSize = callback.sendLargeMessage(largeMessage,
@@ -1126,18 +1137,30 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
                localChunkLen = (int) Math.min(sizePendingLargeMessage - positionPendingLargeMessage, minLargeMessageSize);
 
-               ActiveMQBuffer bodyBuffer = ActiveMQBuffers.fixedBuffer(localChunkLen);
+               boolean continues = positionPendingLargeMessage + localChunkLen < sizePendingLargeMessage;
+
+               int packetSize = -1;
 
-               context.encode(bodyBuffer, localChunkLen);
+               int chunkLen = localChunkLen;
 
-               byte[] body = bodyBuffer.toByteBuffer().array();
+               if (bodyFile != null)
+               {
+                  packetSize = callback.sendLargeMessageContinuation(ServerConsumerImpl.this,
+                                                                     bodyFile,
+                                                                     positionPendingLargeMessage,
+                                                                     localChunkLen,
+                                                                     continues);
+               }
 
-               int packetSize = callback.sendLargeMessageContinuation(ServerConsumerImpl.this,
-                                                                      body,
-                                                                      positionPendingLargeMessage + localChunkLen < sizePendingLargeMessage,
-                                                                      false);
+               if (packetSize < 0)
+               {
+                  // the body has to go through the heap (interceptors, SSL, in-vm...)
+                  byte[] body = readChunk(localChunkLen);
 
-               int chunkLen = body.length;
+                  packetSize = callback.sendLargeMessageContinuation(ServerConsumerImpl.this, body, continues, false);
+
+                  chunkLen = body.length;
+               }
 
                if (availableCredits != null)
                {
@@ -1193,6 +1216,13 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
                context.close();
             }
 
+            if (bodyFile != null)
+            {
+               // closed once the transport is done with it
+               bodyFile.release();
+               bodyFile = null;
+            }
+
             largeMessage.releaseResources();
 
             largeMessage.decrementDelayDeletionCount();
@@ -1208,6 +1238,49 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
             largeMessage = null;
          }
       }
+
+      private SharedFileChannel openBodyFile()
+      {
+         try
+         {
+            SequentialFile file = largeMessage.getFile();
+
+            return file == null ? null : new SharedFileChannel(file.getJavaFile());
+         }
+         catch (Exception e)
+         {
+            // the continuations will be read through the body encoder
+            ActiveMQServerLogger.LOGGER.debug("Could not open " + largeMessage + " for direct delivery", e);
+            return null;
+         }
+      }
+
+      private byte[] readChunk(final int chunkLen) throws Exception
+      {
+         if (bodyFile == null)
+         {
+            ActiveMQBuffer bodyBuffer = ActiveMQBuffers.fixedBuffer(chunkLen);
+
+            context.encode(bodyBuffer, chunkLen);
+
+            return bodyBuffer.toByteBuffer().array();
+         }
+
+         // the encoder is not where this chunk starts if earlier ones were sent from the file
+         ByteBuffer buffer = ByteBuffer.allocate(chunkLen);
+
+         FileChannel channel = bodyFile.getChannel();
+
+         while (buffer.hasRemaining())
+         {
+            if (channel.read(buffer, positionPendingLargeMessage + buffer.position()) < 0)
+            {
+               break;
+            }
+         }
+
+         return buffer.array();
+      }
    }
 
    protected class BrowserDeliverer implements Runnable
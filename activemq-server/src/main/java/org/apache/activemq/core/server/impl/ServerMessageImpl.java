@@ -160,10 +160,11 @@ public class ServerMessageImpl extends MessageImpl implements ServerMessage
                buffer.byteBuf().release();
             }
          }
-         else
+         else if (count > 0)
          {
             pagingStore.addSize(-MessageReferenceImpl.getMemoryEstimate());
          }
+         // a negative count is a paged message read back from its page, which was never added to the size
       }
 
       return count;
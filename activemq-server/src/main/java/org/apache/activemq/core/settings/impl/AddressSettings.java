@@ -48,6 +48,8 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
 
    public static final int DEFAULT_PAGE_MAX_CACHE = 5;
 
+   public static final boolean DEFAULT_PAGE_COMPRESSION = false;
+
    public static final int DEFAULT_MESSAGE_COUNTER_HISTORY_DAY_LIMIT = 0;
 
    public static final long DEFAULT_REDELIVER_DELAY = 0L;
@@ -80,6 +82,8 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
 
    private Integer pageMaxCache = null;
 
+   private Boolean pageCompression = null;
+
    private Boolean dropMessagesWhenFull = null;
 
    private Integer maxDeliveryAttempts = null;
@@ -120,6 +124,7 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       this.maxSizeBytes = other.maxSizeBytes;
       this.pageSizeBytes = other.pageSizeBytes;
       this.pageMaxCache = other.pageMaxCache;
+      this.pageCompression = other.pageCompression;
       this.dropMessagesWhenFull = other.dropMessagesWhenFull;
       this.maxDeliveryAttempts = other.maxDeliveryAttempts;
       this.messageCounterHistoryDayLimit = other.messageCounterHistoryDayLimit;
@@ -205,6 +210,16 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       this.pageMaxCache = pageMaxCache;
    }
 
+   public boolean isPageCompression()
+   {
+      return pageCompression != null ? pageCompression : AddressSettings.DEFAULT_PAGE_COMPRESSION;
+   }
+
+   public void setPageCompression(final boolean pageCompression)
+   {
+      this.pageCompression = pageCompression;
+   }
+
    public long getMaxSizeBytes()
    {
       return maxSizeBytes != null ? maxSizeBytes : AddressSettings.DEFAULT_MAX_SIZE_BYTES;
@@ -376,6 +391,10 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       {
          pageSizeBytes = merged.getPageSizeBytes();
       }
+      if (pageCompression == null)
+      {
+         pageCompression = merged.pageCompression;
+      }
       if (messageCounterHistoryDayLimit == null)
       {
          messageCounterHistoryDayLimit = merged.messageCounterHistoryDayLimit;
@@ -500,6 +519,12 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       autoCreateJmsQueues = BufferHelper.readNullableBoolean(buffer);
 
       autoDeleteJmsQueues = BufferHelper.readNullableBoolean(buffer);
+
+      // settings stored before page-compression existed end here
+      if (buffer.readable())
+      {
+         pageCompression = BufferHelper.readNullableBoolean(buffer);
+      }
    }
 
    @Override
@@ -526,7 +551,8 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
          BufferHelper.sizeOfNullableLong(slowConsumerThreshold) +
          BufferHelper.sizeOfNullableSimpleString(slowConsumerPolicy != null ? slowConsumerPolicy.toString() : null) +
          BufferHelper.sizeOfNullableBoolean(autoCreateJmsQueues) +
-         BufferHelper.sizeOfNullableBoolean(autoDeleteJmsQueues);
+         BufferHelper.sizeOfNullableBoolean(autoDeleteJmsQueues) +
+         BufferHelper.sizeOfNullableBoolean(pageCompression);
    }
 
    @Override
@@ -574,6 +600,8 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       BufferHelper.writeNullableBoolean(buffer, autoCreateJmsQueues);
 
       BufferHelper.writeNullableBoolean(buffer, autoDeleteJmsQueues);
+
+      BufferHelper.writeNullableBoolean(buffer, pageCompression);
    }
 
    /* (non-Javadoc)
@@ -596,6 +624,7 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
          ((messageCounterHistoryDayLimit == null) ? 0 : messageCounterHistoryDayLimit.hashCode());
       result = prime * result + ((pageSizeBytes == null) ? 0 : pageSizeBytes.hashCode());
       result = prime * result + ((pageMaxCache == null) ? 0 : pageMaxCache.hashCode());
+      result = prime * result + ((pageCompression == null) ? 0 : pageCompression.hashCode());
       result = prime * result + ((redeliveryDelay == null) ? 0 : redeliveryDelay.hashCode());
       result = prime * result + ((redeliveryMultiplier == null) ? 0 : redeliveryMultiplier.hashCode());
       result = prime * result + ((maxRedeliveryDelay == null) ? 0 : maxRedeliveryDelay.hashCode());
@@ -699,6 +728,13 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       }
       else if (!pageMaxCache.equals(other.pageMaxCache))
          return false;
+      if (pageCompression == null)
+      {
+         if (other.pageCompression != null)
+            return false;
+      }
+      else if (!pageCompression.equals(other.pageCompression))
+         return false;
       if (redeliveryDelay == null)
       {
          if (other.redeliveryDelay != null)
@@ -799,6 +835,8 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
          pageSizeBytes +
          ", pageMaxCache=" +
          pageMaxCache +
+         ", pageCompression=" +
+         pageCompression +
          ", redeliveryDelay=" +
          redeliveryDelay +
          ", redeliveryMultiplier=" +
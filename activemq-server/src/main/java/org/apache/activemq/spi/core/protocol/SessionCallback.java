@@ -20,6 +20,7 @@ import org.apache.activemq.api.core.SimpleString;
 import org.apache.activemq.core.server.ServerConsumer;
 import org.apache.activemq.core.server.ServerMessage;
 import org.apache.activemq.spi.core.remoting.ReadyListener;
+import org.apache.activemq.spi.core.remoting.SharedFileChannel;
 
 /**
  * A SessionCallback
@@ -43,6 +44,15 @@ public interface SessionCallback
 
    int sendLargeMessageContinuation(ServerConsumer consumerID, byte[] body, boolean continues, boolean requiresResponse);
 
+   /**
+    * Sends a continuation whose body, {@code length} bytes of {@code file} from {@code position}, is
+    * written by the transport straight from the file.
+    *
+    * @return the packet size, or -1 if nothing was sent and the body has to be sent with
+    * {@link #sendLargeMessageContinuation(ServerConsumer, byte[], boolean, boolean)}
+    */
+   int sendLargeMessageContinuation(ServerConsumer consumerID, SharedFileChannel file, long position, int length, boolean continues);
+
    void closed();
 
    void addReadyListener(ReadyListener listener);
@@ -90,10 +90,18 @@ public class DefaultsFileConfigurationTest extends ConfigurationImplTest
 
       Assert.assertEquals(ActiveMQDefaultConfiguration.isDefaultPersistIdCache(), conf.isPersistIDCache());
 
+      Assert.assertEquals(ActiveMQDefaultConfiguration.getDefaultGlobalPageCacheMaxSize(), conf.getGlobalPageCacheMaxSize());
+
+      Assert.assertEquals(ActiveMQDefaultConfiguration.getDefaultGlobalMaxSize(), conf.getGlobalMaxSize());
+
+      Assert.assertEquals(ActiveMQDefaultConfiguration.getDefaultPageReadAhead(), conf.getPageReadAhead());
+
       Assert.assertEquals(ActiveMQDefaultConfiguration.getDefaultBindingsDirectory(), conf.getBindingsDirectory());
 
       Assert.assertEquals(ActiveMQDefaultConfiguration.getDefaultJournalDir(), conf.getJournalDirectory());
 
+      Assert.assertEquals(0, conf.getJournalShardDirectories().size());
+
       Assert.assertEquals(getDefaultJournalType(), conf.getJournalType());
 
       Assert.assertEquals(ActiveMQDefaultConfiguration.isDefaultJournalSyncTransactional(), conf.isJournalSyncTransactional());
@@ -105,6 +113,16 @@ public class DefaultsFileConfigurationTest extends ConfigurationImplTest
 
       Assert.assertEquals(ActiveMQDefaultConfiguration.getDefaultJournalCompactMinFiles(), conf.getJournalCompactMinFiles());
 
+      Assert.assertEquals(ActiveMQDefaultConfiguration.isDefaultJournalBufferTimeoutAdaptive(), conf.isJournalBufferTimeoutAdaptive());
+
+      Assert.assertEquals(ActiveMQDefaultConfiguration.isDefaultJournalUseIOURing(), conf.isJournalUseIOURing());
+      Assert.assertEquals(ActiveMQDefaultConfiguration.getDefaultJournalLoadThreads(), conf.getJournalLoadThreads());
+      Assert.assertEquals(ActiveMQDefaultConfiguration.getDefaultJournalCheckpointFiles(), conf.getJournalCheckpointFiles());
+
+      Assert.assertEquals(ActiveMQDefaultConfiguration.isDefaultJournalCompressRecords(), conf.isJournalCompressRecords());
+
+      Assert.assertEquals(ActiveMQDefaultConfiguration.getDefaultJournalCompressMinSize(), conf.getJournalCompressMinSize());
+
       Assert.assertEquals(ActiveMQDefaultConfiguration.getDefaultJournalCompactPercentage(), conf.getJournalCompactPercentage());
 
       Assert.assertEquals(ActiveMQDefaultConfiguration.getDefaultJournalMinFiles(), conf.getJournalMinFiles());
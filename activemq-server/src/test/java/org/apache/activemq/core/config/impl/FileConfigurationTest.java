@@ -77,7 +77,13 @@ public class FileConfigurationTest extends ConfigurationImplTest
       Assert.assertEquals(false, conf.isCreateBindingsDir());
 
       Assert.assertEquals("max concurrent io", 17, conf.getPageMaxConcurrentIO());
+      Assert.assertEquals(20971520L, conf.getGlobalPageCacheMaxSize());
+      Assert.assertEquals(104857600L, conf.getGlobalMaxSize());
+      Assert.assertEquals(3, conf.getPageReadAhead());
       Assert.assertEquals("somedir2", conf.getJournalDirectory());
+      Assert.assertEquals(2, conf.getJournalShardDirectories().size());
+      Assert.assertEquals("somedir2-shard1", conf.getJournalShardDirectories().get(0));
+      Assert.assertEquals("somedir2-shard2", conf.getJournalShardDirectories().get(1));
       Assert.assertEquals(false, conf.isCreateJournalDir());
       Assert.assertEquals(JournalType.NIO, conf.getJournalType());
       Assert.assertEquals(10000, conf.getJournalBufferSize_NIO());
@@ -89,6 +95,12 @@ public class FileConfigurationTest extends ConfigurationImplTest
       Assert.assertEquals(12345678, conf.getJournalFileSize());
       Assert.assertEquals(100, conf.getJournalMinFiles());
       Assert.assertEquals(123, conf.getJournalCompactMinFiles());
+      Assert.assertEquals(7, conf.getJournalCheckpointFiles());
+      Assert.assertEquals(true, conf.isJournalCompressRecords());
+      Assert.assertEquals(512, conf.getJournalCompressMinSize());
+      Assert.assertEquals(true, conf.isJournalBufferTimeoutAdaptive());
+      Assert.assertEquals(true, conf.isJournalUseIOURing());
+      Assert.assertEquals(4, conf.getJournalLoadThreads());
       Assert.assertEquals(33, conf.getJournalCompactPercentage());
       Assert.assertEquals(true, conf.isGracefulShutdownEnabled());
       Assert.assertEquals(12345, conf.getGracefulShutdownTimeout());
@@ -290,6 +302,7 @@ public class FileConfigurationTest extends ConfigurationImplTest
       assertEquals(81781728121878L, conf.getAddressesSettings().get("a1").getMaxSizeBytes());
       assertEquals(81738173872337L, conf.getAddressesSettings().get("a1").getPageSizeBytes());
       assertEquals(10, conf.getAddressesSettings().get("a1").getPageCacheMaxSize());
+      assertEquals(true, conf.getAddressesSettings().get("a1").isPageCompression());
       assertEquals(4, conf.getAddressesSettings().get("a1").getMessageCounterHistoryDayLimit());
       assertEquals(10, conf.getAddressesSettings().get("a1").getSlowConsumerThreshold());
       assertEquals(5, conf.getAddressesSettings().get("a1").getSlowConsumerCheckPeriod());
@@ -303,6 +316,7 @@ public class FileConfigurationTest extends ConfigurationImplTest
       assertEquals(932489234928324L, conf.getAddressesSettings().get("a2").getMaxSizeBytes());
       assertEquals(7126716262626L, conf.getAddressesSettings().get("a2").getPageSizeBytes());
       assertEquals(20, conf.getAddressesSettings().get("a2").getPageCacheMaxSize());
+      assertEquals(false, conf.getAddressesSettings().get("a2").isPageCompression());
       assertEquals(8, conf.getAddressesSettings().get("a2").getMessageCounterHistoryDayLimit());
       assertEquals(20, conf.getAddressesSettings().get("a2").getSlowConsumerThreshold());
       assertEquals(15, conf.getAddressesSettings().get("a2").getSlowConsumerCheckPeriod());
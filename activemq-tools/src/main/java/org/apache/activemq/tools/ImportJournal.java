@@ -32,6 +32,7 @@ import org.apache.activemq.core.journal.impl.JournalImpl;
 import org.apache.activemq.core.journal.impl.JournalRecord;
 import org.apache.activemq.core.journal.impl.NIOSequentialFileFactory;
 import org.apache.activemq.utils.Base64;
+import org.apache.activemq.utils.ConcurrentLongHashMap;
 
 /**
  * Use this class to import the journal data from a listed file. You can use it as a main class or
@@ -153,7 +154,7 @@ public class ImportJournal
 
       long lineNumber = 0;
 
-      Map<Long, JournalRecord> journalRecords = journal.getRecords();
+      ConcurrentLongHashMap<JournalRecord> journalRecords = journal.getRecords();
 
       while ((line = buffReader.readLine()) != null)
       {
@@ -22,12 +22,13 @@ public class Main
    private static final String IMPORT = "import";
    private static final String EXPORT = "export";
    private static final String PRINT_DATA = "print-data";
+   private static final String PRINT_SUMMARY = "print-summary";
    private static final String PRINT_PAGES = "print-pages";
    private static final String DATA_TOOL = "data-tool";
    private static final String TRANSFER = "transfer-queue";
    private static final String EXPORT_JOURNAL = "export-journal";
    private static final String IMPORT_JOURNAL = "import-journal";
-   private static final String OPTIONS = " [" + IMPORT + "|" + EXPORT + "|" + PRINT_DATA + "|" + PRINT_PAGES + "|" + DATA_TOOL + "|" + TRANSFER + "|" + EXPORT_JOURNAL + "|" + IMPORT_JOURNAL + "]";
+   private static final String OPTIONS = " [" + IMPORT + "|" + EXPORT + "|" + PRINT_DATA + "|" + PRINT_SUMMARY + "|" + PRINT_PAGES + "|" + DATA_TOOL + "|" + TRANSFER + "|" + EXPORT_JOURNAL + "|" + IMPORT_JOURNAL + "]";
 
    public static void main(String[] arg) throws Exception
    {
@@ -94,6 +95,16 @@ public class Main
 
          PrintData.printData(arg[1], arg[2]);
       }
+      else if (PRINT_SUMMARY.equals(arg[0]))
+      {
+         if (arg.length != 3)
+         {
+            System.err.println(USAGE + " " + PRINT_SUMMARY + " <bindings-directory> <journal-directory>");
+            System.exit(-1);
+         }
+
+         PrintData.printSummary(arg[1], arg[2]);
+      }
       else if (PRINT_PAGES.equals(arg[0]))
       {
          if (arg.length != 3)
@@ -19,6 +19,7 @@ package org.apache.activemq.tools;
 import java.io.File;
 
 import org.apache.activemq.core.persistence.impl.journal.DescribeJournal;
+import org.apache.activemq.core.persistence.impl.journal.JournalSummary;
 import org.apache.activemq.core.server.impl.FileLockNodeManager;
 
 /**
@@ -82,4 +83,38 @@ public class PrintData // NO_UCD (unused code)
          e.printStackTrace();
       }
    }
+
+   /**
+    * Prints the record counts and bytes of the journals instead of every record, see {@link JournalSummary}.
+    */
+   protected static void printSummary(String bindingsDirectory, String messagesDirectory)
+   {
+      int threads = Runtime.getRuntime().availableProcessors();
+
+      System.out.println("********************************************");
+      System.out.println("B I N D I N G S  J O U R N A L");
+      System.out.println("********************************************");
+
+      try
+      {
+         JournalSummary.summarizeBindingsJournal(bindingsDirectory, threads).print(System.out);
+      }
+      catch (Exception e)
+      {
+         e.printStackTrace();
+      }
+
+      System.out.println("********************************************");
+      System.out.println("M E S S A G E S   J O U R N A L");
+      System.out.println("********************************************");
+
+      try
+      {
+         JournalSummary.summarizeMessagesJournal(messagesDirectory, threads).print(System.out);
+      }
+      catch (Exception e)
+      {
+         e.printStackTrace();
+      }
+   }
 }
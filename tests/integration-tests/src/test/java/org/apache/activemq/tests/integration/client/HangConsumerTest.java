@@ -67,6 +67,7 @@ import org.apache.activemq.core.settings.impl.AddressSettings;
 import org.apache.activemq.spi.core.protocol.RemotingConnection;
 import org.apache.activemq.spi.core.protocol.SessionCallback;
 import org.apache.activemq.spi.core.remoting.ReadyListener;
+import org.apache.activemq.spi.core.remoting.SharedFileChannel;
 import org.apache.activemq.spi.core.security.ActiveMQSecurityManager;
 import org.apache.activemq.spi.core.security.ActiveMQSecurityManagerImpl;
 import org.apache.activemq.tests.util.ServiceTestBase;
@@ -614,6 +615,12 @@ public class HangConsumerTest extends ServiceTestBase
          return targetCallback.sendLargeMessageContinuation(consumer, body, continues, requiresResponse);
       }
 
+      @Override
+      public int sendLargeMessageContinuation(ServerConsumer consumer, SharedFileChannel file, long position, int length, boolean continues)
+      {
+         return targetCallback.sendLargeMessageContinuation(consumer, file, position, length, continues);
+      }
+
       /* (non-Javadoc)
        * @see org.apache.activemq.spi.core.protocol.SessionCallback#closed()
        */
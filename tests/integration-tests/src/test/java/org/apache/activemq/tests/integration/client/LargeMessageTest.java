@@ -3039,7 +3039,7 @@ public class LargeMessageTest extends LargeMessageTestBase
    @Test
    public void testSendServerMessage() throws Exception
    {
-      ActiveMQServer server = createServer(true);
+      ActiveMQServer server = createServer(true, isNetty());
 
       server.start();
 
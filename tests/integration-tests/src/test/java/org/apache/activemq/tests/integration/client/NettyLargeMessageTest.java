@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.tests.integration.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.activemq.api.core.ActiveMQException;
+import org.apache.activemq.api.core.Interceptor;
+import org.apache.activemq.api.core.client.ActiveMQClient;
+import org.apache.activemq.api.core.client.ClientConsumer;
+import org.apache.activemq.api.core.client.ClientMessage;
+import org.apache.activemq.api.core.client.ClientProducer;
+import org.apache.activemq.api.core.client.ClientSession;
+import org.apache.activemq.api.core.client.ClientSessionFactory;
+import org.apache.activemq.core.protocol.core.Packet;
+import org.apache.activemq.core.protocol.core.impl.PacketImpl;
+import org.apache.activemq.core.server.ActiveMQServer;
+import org.apache.activemq.spi.core.protocol.RemotingConnection;
+import org.apache.activemq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The LargeMessageTest over Netty, where the continuations are written straight from the message
+ * file unless something needs to see them.
+ */
+public class NettyLargeMessageTest extends LargeMessageTest
+{
+   @Override
+   protected boolean isNetty()
+   {
+      return true;
+   }
+
+   @Test
+   public void testReceiveFromFile() throws Exception
+   {
+      ActiveMQServer server = createServer(true, isNetty());
+      server.start();
+
+      sendAndReceive(server);
+   }
+
+   @Test
+   public void testReceiveThroughOutgoingInterceptor() throws Exception
+   {
+      ActiveMQServer server = createServer(true, isNetty());
+      server.start();
+
+      final AtomicInteger continuations = new AtomicInteger(0);
+
+      server.getRemotingService().addOutgoingInterceptor(new Interceptor()
+      {
+         public boolean intercept(final Packet packet, final RemotingConnection connection) throws ActiveMQException
+         {
+            if (packet.getType() == PacketImpl.SESS_RECEIVE_CONTINUATION)
+            {
+               continuations.incrementAndGet();
+            }
+            return true;
+         }
+      });
+
+      sendAndReceive(server);
+
+      Assert.assertTrue(continuations.get() > 0);
+   }
+
+   private void sendAndReceive(final ActiveMQServer server) throws Exception
+   {
+      final int messageSize = 10 * ActiveMQClient.DEFAULT_MIN_LARGE_MESSAGE_SIZE + 123;
+
+      ClientSessionFactory sf = addSessionFactory(createSessionFactory(locator));
+
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+
+      session.createQueue(ADDRESS, ADDRESS, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+
+      for (int i = 0; i < 2; i++)
+      {
+         producer.send(createLargeClientMessageStreaming(session, messageSize, true));
+      }
+
+      session.start();
+
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+
+      for (int i = 0; i < 2; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+
+         Assert.assertNotNull(message);
+         Assert.assertEquals(messageSize, message.getBodySize());
+
+         for (int b = 0; b < messageSize; b++)
+         {
+            Assert.assertEquals(UnitTestCase.getSamplebyte(b), message.getBodyBuffer().readByte());
+         }
+
+         message.acknowledge();
+      }
+
+      Assert.assertNull(consumer.receiveImmediate());
+
+      session.close();
+
+      validateNoFilesOnLargeDir();
+   }
+}
@@ -18,6 +18,7 @@ package org.apache.activemq.tests.integration.cluster.util;
 
 import java.util.concurrent.locks.Lock;
 
+import io.netty.channel.FileRegion;
 import org.apache.activemq.api.core.ActiveMQException;
 import org.apache.activemq.api.core.Interceptor;
 import org.apache.activemq.core.protocol.core.Channel;
@@ -28,6 +29,7 @@ import org.apache.activemq.core.protocol.core.Packet;
 import org.apache.activemq.core.protocol.core.impl.PacketImpl;
 import org.apache.activemq.core.protocol.core.impl.wireformat.ReplicationResponseMessage;
 import org.apache.activemq.core.protocol.core.impl.wireformat.ReplicationStartSyncMessage;
+import org.apache.activemq.core.protocol.core.impl.wireformat.SessionReceiveContinuationMessage;
 import org.apache.activemq.core.replication.ReplicationEndpoint;
 import org.apache.activemq.core.server.ActiveMQServer;
 import org.apache.activemq.core.server.impl.SharedNothingBackupActivation;
@@ -246,6 +248,12 @@ public class BackupSyncDelay implements Interceptor
 
       }
 
+      @Override
+      public boolean sendFileRegion(SessionReceiveContinuationMessage packet, FileRegion region)
+      {
+         throw new UnsupportedOperationException();
+      }
+
       @Override
       public boolean sendAndFlush(Packet packet)
       {
@@ -33,6 +33,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.apache.activemq.api.core.Pair;
 import org.apache.activemq.core.config.Configuration;
 import org.apache.activemq.core.journal.IOAsyncTask;
+import org.apache.activemq.core.journal.JournalCompactStatistics;
 import org.apache.activemq.core.journal.PreparedTransactionInfo;
 import org.apache.activemq.core.journal.RecordInfo;
 import org.apache.activemq.core.journal.SequentialFile;
@@ -272,6 +273,59 @@ public class NIOJournalCompactTest extends JournalImplTestBase
 
    }
 
+   @Test
+   public void testCompactStatistics() throws Exception
+   {
+      setup(2, 60 * 1024, false);
+
+      createJournal();
+
+      startJournal();
+
+      load();
+
+      assertEquals(0, journal.getCompactStatistics().getCompactCount());
+
+      add(1);
+
+      for (int i = 10; i < 20; i++)
+      {
+         add(i);
+         journal.forceMoveNextFile();
+         delete(i);
+      }
+
+      // compacting starts moving the current file to the data files
+      int filesBefore = journal.getDataFilesCount() + 1;
+
+      journal.testCompact();
+
+      JournalCompactStatistics statistics = journal.getCompactStatistics();
+
+      assertEquals(1, statistics.getCompactCount());
+      assertTrue(statistics.getLastDuration() >= 0);
+      assertEquals(statistics.getLastDuration(), statistics.getTotalDuration());
+      assertEquals((long) (filesBefore - journal.getDataFilesCount()) * fileSize, statistics.getLastReclaimedBytes());
+      assertTrue(statistics.getLastReclaimedBytes() > 0);
+      assertEquals(statistics.getLastStallTime(), statistics.getMaxStallTime());
+
+      // the journal keeps working on the records it got back from the compactor
+      update(1);
+
+      add(2);
+
+      journal.testCompact();
+
+      assertEquals(2, statistics.getCompactCount());
+      assertTrue(statistics.getTotalReclaimedBytes() >= statistics.getLastReclaimedBytes());
+      assertEquals(2, journal.getNumberOfRecords());
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadAndCheck();
+   }
+
    @Test
    public void testCompactPrepareRestart() throws Exception
    {
@@ -0,0 +1,304 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.tests.integration.journal;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.activemq.api.core.ActiveMQBuffer;
+import org.apache.activemq.api.core.ActiveMQBuffers;
+import org.apache.activemq.core.journal.EncodingSupport;
+import org.apache.activemq.core.journal.RecordInfo;
+import org.apache.activemq.core.journal.SequentialFileFactory;
+import org.apache.activemq.core.journal.impl.JournalFile;
+import org.apache.activemq.core.journal.impl.JournalImpl;
+import org.apache.activemq.core.journal.impl.JournalReaderCallbackAbstract;
+import org.apache.activemq.core.journal.impl.JournalRecordCompressor;
+import org.apache.activemq.core.journal.impl.NIOSequentialFileFactory;
+import org.apache.activemq.core.journal.impl.dataformat.ByteArrayEncoding;
+import org.apache.activemq.tests.unit.core.journal.impl.JournalImplTestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Records compressed by {@link JournalRecordCompressor}, mixed with uncompressed ones on the same files.
+ */
+public class NIOJournalCompressionTest extends JournalImplTestBase
+{
+   private JournalRecordCompressor compressor;
+
+   @Override
+   protected SequentialFileFactory getFileFactory() throws Exception
+   {
+      File file = new File(getTestDir());
+
+      deleteDirectory(file);
+
+      file.mkdir();
+
+      return new NIOSequentialFileFactory(getTestDir(), true);
+   }
+
+   @Override
+   public void createJournal() throws Exception
+   {
+      super.createJournal();
+
+      ((JournalImpl) journal).setRecordCompressor(compressor);
+   }
+
+   @Test
+   public void testCompressor() throws Exception
+   {
+      JournalRecordCompressor recordCompressor = new JournalRecordCompressor(100);
+
+      byte[] data = generateRecord(1000);
+
+      EncodingSupport compressed = recordCompressor.compress(new ByteArrayEncoding(data));
+
+      Assert.assertNotNull(compressed);
+      Assert.assertTrue(compressed.getEncodeSize() < data.length);
+
+      byte[] bytes = new byte[compressed.getEncodeSize()];
+      ActiveMQBuffer buffer = ActiveMQBuffers.wrappedBuffer(bytes);
+      buffer.clear();
+      compressed.encode(buffer);
+
+      Assert.assertArrayEquals(data, JournalRecordCompressor.decompress(bytes));
+
+      // smaller than the minimum size
+      Assert.assertNull(recordCompressor.compress(new ByteArrayEncoding(generateRecord(99))));
+
+      // nothing to save
+      byte[] random = new byte[1000];
+      new Random(1).nextBytes(random);
+      Assert.assertNull(recordCompressor.compress(new ByteArrayEncoding(random)));
+
+      Assert.assertEquals(1, recordCompressor.getCompressedRecords());
+      Assert.assertEquals(1000, recordCompressor.getUncompressedBytes());
+      Assert.assertEquals(bytes.length, recordCompressor.getCompressedBytes());
+   }
+
+   @Test
+   public void testLoadCompressedRecords() throws Exception
+   {
+      compressor = new JournalRecordCompressor(100);
+
+      setup(10, 10 * 1024, true);
+      createJournal();
+      startJournal();
+      load();
+
+      add(1, 2, 3, 4, 5);
+      update(1, 2);
+      delete(3);
+      addTx(10, 6, 7);
+      updateTx(10, 4);
+      commit(10);
+      addTx(11, 8);
+      rollback(11);
+      addWithSize(50, 9);
+
+      Assert.assertEquals(11, compressor.getCompressedRecords());
+      Assert.assertTrue(compressor.getCompressedBytes() < compressor.getUncompressedBytes() / 2);
+
+      stopJournal();
+
+      Assert.assertEquals(11, countRecords(true));
+      Assert.assertTrue(countRecords(false) > 0);
+
+      // compressed records are read back with or without a compressor
+      compressor = null;
+      createJournal();
+      startJournal();
+      loadAndCheck();
+      stopJournal();
+   }
+
+   @Test
+   public void testMixedRecords() throws Exception
+   {
+      setup(10, 10 * 1024, true);
+      createJournal();
+      startJournal();
+      load();
+
+      add(1, 2, 3);
+      update(1);
+
+      stopJournal();
+
+      Assert.assertEquals(0, countRecords(true));
+
+      compressor = new JournalRecordCompressor(100);
+      createJournal();
+      startJournal();
+      loadAndCheck();
+
+      update(2, 3);
+      add(4, 5);
+      delete(1);
+
+      stopJournal();
+
+      Assert.assertEquals(4, countRecords(true));
+
+      createJournal();
+      startJournal();
+      loadAndCheck();
+      stopJournal();
+   }
+
+   @Test
+   public void testCompactCompressesRecords() throws Exception
+   {
+      setup(2, 60 * 1024, false);
+      createJournal();
+      startJournal();
+      load();
+
+      for (long i = 0; i < 100; i++)
+      {
+         add(i);
+      }
+
+      for (long i = 0; i < 100; i += 2)
+      {
+         delete(i);
+      }
+
+      stopJournal();
+
+      compressor = new JournalRecordCompressor(100);
+      createJournal();
+      startJournal();
+      loadAndCheck();
+
+      journal.testCompact();
+
+      stopJournal();
+
+      createJournal();
+      startJournal();
+      loadAndCheck();
+      stopJournal();
+
+      Assert.assertEquals(50, countRecords(true));
+      Assert.assertEquals(0, countRecords(false));
+
+      // the compressed records are kept as they are by a journal without a compressor
+      compressor = null;
+      createJournal();
+      startJournal();
+      loadAndCheck();
+
+      journal.testCompact();
+
+      stopJournal();
+
+      createJournal();
+      startJournal();
+      loadAndCheck();
+      stopJournal();
+
+      Assert.assertEquals(50, countRecords(true));
+   }
+
+   @Test
+   public void testExportImport() throws Exception
+   {
+      compressor = new JournalRecordCompressor(100);
+
+      setup(10, 10 * 1024, true);
+      createJournal();
+      startJournal();
+      load();
+
+      add(1, 2, 3);
+      update(2);
+      addTx(10, 4);
+      commit(10);
+
+      stopJournal();
+
+      // the export has the uncompressed bodies
+      exportImportJournal();
+
+      Assert.assertEquals(0, countRecords(true));
+
+      createJournal();
+      startJournal();
+      loadAndCheck();
+      stopJournal();
+   }
+
+   /**
+    * @return the number of add and update records on the journal files, compressed or uncompressed
+    */
+   private int countRecords(final boolean compressed) throws Exception
+   {
+      // the factory of the test is stopped with the journal
+      final SequentialFileFactory readerFactory = new NIOSequentialFileFactory(getTestDir());
+
+      JournalImpl reader = new JournalImpl(fileSize, minFiles, 0, 0, readerFactory, filePrefix, fileExtension, 1);
+
+      List<JournalFile> files = reader.orderFiles();
+
+      final int[] count = new int[1];
+
+      for (JournalFile file : files)
+      {
+         JournalImpl.readJournalFile(readerFactory, file, new JournalReaderCallbackAbstract()
+         {
+            private void count(final RecordInfo info)
+            {
+               if (info.compressed == compressed)
+               {
+                  count[0]++;
+               }
+            }
+
+            @Override
+            public void onReadAddRecord(final RecordInfo info) throws Exception
+            {
+               count(info);
+            }
+
+            @Override
+            public void onReadUpdateRecord(final RecordInfo info) throws Exception
+            {
+               count(info);
+            }
+
+            @Override
+            public void onReadAddRecordTX(final long transactionID, final RecordInfo info) throws Exception
+            {
+               count(info);
+            }
+
+            @Override
+            public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info) throws Exception
+            {
+               count(info);
+            }
+         }, false);
+      }
+
+      return count[0];
+   }
+}
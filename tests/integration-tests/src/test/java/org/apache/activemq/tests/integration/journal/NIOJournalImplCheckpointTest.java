@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.tests.integration.journal;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.apache.activemq.core.journal.impl.JournalImpl;
+import org.junit.Test;
+
+/**
+ * Runs the {@link NIOJournalImplTest} scenarios taking a checkpoint of the journal before it's
+ * stopped, so every reload restores the files covered by the checkpoint instead of replaying them.
+ */
+public class NIOJournalImplCheckpointTest extends NIOJournalImplTest
+{
+   private int checkpointFiles = 1;
+
+   @Override
+   public void createJournal() throws Exception
+   {
+      super.createJournal();
+
+      ((JournalImpl) journal).setCheckpointFiles(checkpointFiles);
+   }
+
+   @Override
+   protected void stopJournal(final boolean reclaim) throws Exception
+   {
+      ((JournalImpl) journal).checkpoint();
+
+      super.stopJournal(reclaim);
+   }
+
+   @Test
+   public void testLoadFromCheckpoint() throws Exception
+   {
+      // only the checkpoints taken by the test
+      checkpointFiles = 1000;
+
+      setup(10, 10 * 1024, true);
+      createJournal();
+      startJournal();
+      load();
+
+      addRecords(1, 100);
+      update(5, 15, 25);
+      delete(10, 20, 30);
+      addTx(1000, 101, 102, 103);
+      updateTx(1000, 1, 2);
+      deleteTx(1000, 3);
+      commit(1000);
+      addTx(1001, 104, 105);
+      rollback(1001);
+
+      assertTrue(((JournalImpl) journal).checkpoint());
+      assertTrue(getCheckpointFile().exists());
+
+      // after the checkpoint, on top of the records it covers
+      update(40, 41);
+      delete(50, 101);
+      addRecords(200, 220);
+      addTx(1002, 221);
+      deleteTx(1002, 60);
+      commit(1002);
+
+      stopJournal(false);
+      createJournal();
+      startJournal();
+      loadAndCheck();
+
+      // The journal keeps working from the restored counts
+      delete(1, 2, 40);
+      checkAndReclaimFiles();
+
+      stopJournal(false);
+      createJournal();
+      startJournal();
+      loadAndCheck();
+   }
+
+   @Test
+   public void testCorruptCheckpointIsIgnored() throws Exception
+   {
+      // only the checkpoints taken by the test
+      checkpointFiles = 1000;
+
+      setup(10, 10 * 1024, true);
+      createJournal();
+      startJournal();
+      load();
+
+      addRecords(1, 100);
+      delete(10, 20, 30);
+
+      assertTrue(((JournalImpl) journal).checkpoint());
+
+      journal.stop();
+
+      File checkpointFile = getCheckpointFile();
+
+      RandomAccessFile file = new RandomAccessFile(checkpointFile, "rw");
+      try
+      {
+         file.seek(file.length() / 2);
+         file.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+      }
+      finally
+      {
+         file.close();
+      }
+
+      createJournal();
+      startJournal();
+      loadAndCheck();
+
+      assertFalse(checkpointFile.exists());
+   }
+
+   @Test
+   public void testNoCheckpointWithOpenTransaction() throws Exception
+   {
+      // only the checkpoints taken by the test
+      checkpointFiles = 1000;
+
+      setup(10, 10 * 1024, true);
+      createJournal();
+      startJournal();
+      load();
+
+      addTx(1000, 1);
+      addRecords(2, 100);
+
+      assertFalse(((JournalImpl) journal).checkpoint());
+      assertFalse(getCheckpointFile().exists());
+
+      commit(1000);
+      journal.forceMoveNextFile();
+
+      assertTrue(((JournalImpl) journal).checkpoint());
+
+      stopJournal(false);
+      createJournal();
+      startJournal();
+      loadAndCheck();
+   }
+
+   @Test
+   public void testCompactDeletesCheckpoint() throws Exception
+   {
+      // only the checkpoints taken by the test
+      checkpointFiles = 1000;
+
+      setup(10, 10 * 1024, true);
+      createJournal();
+      startJournal();
+      load();
+
+      addRecords(1, 100);
+      delete(10, 20, 30);
+
+      assertTrue(((JournalImpl) journal).checkpoint());
+      assertTrue(getCheckpointFile().exists());
+
+      journal.testCompact();
+
+      assertFalse(getCheckpointFile().exists());
+
+      stopJournal(false);
+      createJournal();
+      startJournal();
+      loadAndCheck();
+   }
+
+   private void addRecords(final long first, final long last) throws Exception
+   {
+      for (long id = first; id <= last; id++)
+      {
+         add(id);
+      }
+   }
+
+   private File getCheckpointFile()
+   {
+      return new File(getTestDir(), filePrefix + ".checkpoint");
+   }
+}
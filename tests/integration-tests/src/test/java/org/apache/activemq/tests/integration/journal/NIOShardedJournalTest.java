@@ -0,0 +1,443 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.tests.integration.journal;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.activemq.core.journal.IOCompletion;
+import org.apache.activemq.core.journal.PreparedTransactionInfo;
+import org.apache.activemq.core.journal.RecordInfo;
+import org.apache.activemq.core.journal.impl.JournalImpl;
+import org.apache.activemq.core.journal.impl.NIOSequentialFileFactory;
+import org.apache.activemq.core.journal.impl.ShardedJournal;
+import org.apache.activemq.tests.util.UnitTestCase;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A {@link ShardedJournal} over NIO journals, each one on its own directory.
+ */
+public class NIOShardedJournalTest extends UnitTestCase
+{
+   private static final byte RECORD_TYPE = 1;
+
+   private ShardedJournal journal;
+
+   private List<RecordInfo> records;
+
+   private List<PreparedTransactionInfo> preparedTransactions;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      File dir = new File(getTestDir());
+      deleteDirectory(dir);
+      dir.mkdirs();
+   }
+
+   @Override
+   @After
+   public void tearDown() throws Exception
+   {
+      stopJournal();
+
+      super.tearDown();
+   }
+
+   @Test
+   public void testNonTransactionalRecords() throws Exception
+   {
+      startJournal(3);
+
+      for (long id = 0; id < 30; id++)
+      {
+         journal.appendAddRecord(id, RECORD_TYPE, data(id), true);
+      }
+
+      for (long id = 0; id < 30; id += 2)
+      {
+         journal.appendUpdateRecord(id, RECORD_TYPE, data(id + 1000), true);
+      }
+
+      for (long id = 0; id < 30; id += 3)
+      {
+         journal.appendDeleteRecord(id, true);
+      }
+
+      // spread over all the shards by record ID, so all the deleted records were on the first one
+      Assert.assertEquals(0, journal.getShard(0).getNumberOfRecords());
+      Assert.assertEquals(10, journal.getShard(1).getNumberOfRecords());
+      Assert.assertEquals(10, journal.getShard(2).getNumberOfRecords());
+
+      restartJournal(3);
+
+      Assert.assertEquals(0, preparedTransactions.size());
+      Assert.assertEquals(20, getRecordIDs().size());
+   }
+
+   @Test
+   public void testTransactionOnOneShard() throws Exception
+   {
+      startJournal(3);
+
+      // all the records added by a transaction go to its shard
+      for (long id = 1; id <= 10; id++)
+      {
+         journal.appendAddRecordTransactional(100, id, RECORD_TYPE, data(id));
+         journal.appendUpdateRecordTransactional(100, id, RECORD_TYPE, data(id + 1));
+      }
+      journal.appendCommitRecord(100, true);
+
+      Assert.assertEquals(10, journal.getShard(100 % 3).getNumberOfRecords());
+      Assert.assertEquals(10, journal.getNumberOfRecords());
+
+      journal.appendUpdateRecord(2, RECORD_TYPE, data(3), true);
+
+      restartJournal(3);
+
+      Assert.assertEquals(10, journal.getShard(100 % 3).getNumberOfRecords());
+      Assert.assertEquals(10, getRecordIDs().size());
+
+      // found on the shard of the transaction after a restart
+      for (long id = 1; id <= 10; id++)
+      {
+         journal.appendUpdateRecord(id, RECORD_TYPE, data(id), true);
+         journal.appendDeleteRecord(id, true);
+      }
+
+      Assert.assertEquals(0, journal.getNumberOfRecords());
+   }
+
+   @Test
+   public void testTransactionOnSeveralShards() throws Exception
+   {
+      startJournal(3);
+
+      for (long id = 0; id < 9; id++)
+      {
+         journal.appendAddRecord(id, RECORD_TYPE, data(id), true);
+      }
+
+      for (long id = 0; id < 9; id++)
+      {
+         journal.appendUpdateRecordTransactional(100, id, RECORD_TYPE, data(id + 1));
+      }
+      journal.appendDeleteRecordTransactional(100, 0);
+      journal.appendAddRecordTransactional(100, 10, RECORD_TYPE, data(10));
+      journal.appendCommitRecord(100, true);
+
+      for (long id = 1; id < 9; id++)
+      {
+         journal.appendDeleteRecordTransactional(101, id);
+      }
+      journal.appendRollbackRecord(101, true);
+
+      // the commit markers are deleted by the next commit
+      journal.appendAddRecordTransactional(102, 11, RECORD_TYPE, data(11));
+      journal.appendCommitRecord(102, true);
+
+      Assert.assertEquals(10, journal.getNumberOfRecords());
+
+      restartJournal(3);
+
+      Assert.assertEquals(0, preparedTransactions.size());
+      Assert.assertEquals(10, getRecordIDs().size());
+      Assert.assertFalse(getRecordIDs().contains(0L));
+      Assert.assertTrue(getRecordIDs().contains(10L));
+      Assert.assertTrue(getRecordIDs().contains(11L));
+      Assert.assertEquals(10, journal.getNumberOfRecords());
+   }
+
+   @Test
+   public void testPreparedOnSeveralShards() throws Exception
+   {
+      startJournal(2);
+
+      journal.appendAddRecord(1, RECORD_TYPE, data(1), true);
+      journal.appendAddRecord(2, RECORD_TYPE, data(2), true);
+
+      journal.appendUpdateRecordTransactional(100, 1, RECORD_TYPE, data(10));
+      journal.appendUpdateRecordTransactional(100, 2, RECORD_TYPE, data(20));
+      journal.appendAddRecordTransactional(100, 3, RECORD_TYPE, data(3));
+      journal.appendPrepareRecord(100, new byte[]{1, 2, 3}, true);
+
+      restartJournal(2);
+
+      // the prepares of the shards are a single transaction again
+      Assert.assertEquals(1, preparedTransactions.size());
+      PreparedTransactionInfo prepared = preparedTransactions.get(0);
+      Assert.assertEquals(100, prepared.id);
+      Assert.assertArrayEquals(new byte[]{1, 2, 3}, prepared.extraData);
+      Assert.assertEquals(3, prepared.records.size());
+
+      journal.appendCommitRecord(100, true);
+
+      restartJournal(2);
+
+      Assert.assertEquals(0, preparedTransactions.size());
+      Map<Long, byte[]> data = getRecordData();
+      Assert.assertEquals(3, data.size());
+      Assert.assertArrayEquals(data(10), data.get(1L));
+      Assert.assertArrayEquals(data(20), data.get(2L));
+
+      journal.appendDeleteRecord(3, true);
+   }
+
+   @Test
+   public void testCommitOnSomeShards() throws Exception
+   {
+      startJournal(2);
+
+      journal.appendAddRecord(1, RECORD_TYPE, data(1), true);
+      journal.appendAddRecord(2, RECORD_TYPE, data(2), true);
+
+      journal.appendUpdateRecordTransactional(100, 1, RECORD_TYPE, data(10));
+      journal.appendUpdateRecordTransactional(100, 2, RECORD_TYPE, data(20));
+      journal.appendPrepareRecord(100, new byte[0], true);
+
+      // the journal stopped after committing the first shard
+      JournalImpl shard = journal.getShard(0);
+      shard.appendAddRecordTransactional(100, ~100L, ShardedJournal.COMMIT_MARKER_RECORD, new byte[0]);
+      shard.appendCommitRecord(100, true);
+
+      restartJournal(2);
+
+      Assert.assertEquals(0, preparedTransactions.size());
+      Map<Long, byte[]> data = getRecordData();
+      Assert.assertEquals(2, data.size());
+      Assert.assertArrayEquals(data(10), data.get(1L));
+      Assert.assertArrayEquals(data(20), data.get(2L));
+
+      restartJournal(2);
+
+      // committed and without markers
+      Assert.assertEquals(0, preparedTransactions.size());
+      Assert.assertEquals(2, getRecordIDs().size());
+      Assert.assertEquals(2, journal.getNumberOfRecords());
+   }
+
+   @Test
+   public void testCommitNotSyncedOnSomeShards() throws Exception
+   {
+      startJournal(2, 1);
+
+      journal.appendAddRecord(1, RECORD_TYPE, data(1), true);
+      journal.appendAddRecord(2, RECORD_TYPE, data(2), true);
+
+      journal.appendUpdateRecordTransactional(100, 1, RECORD_TYPE, data(10));
+      journal.appendUpdateRecordTransactional(100, 2, RECORD_TYPE, data(20));
+
+      // the journal stops after committing the first shard, the second one must be prepared anyway
+      try
+      {
+         journal.appendCommitRecord(100, false);
+         Assert.fail("the second shard should have failed");
+      }
+      catch (IllegalStateException expected)
+      {
+      }
+
+      restartJournal(2);
+
+      Assert.assertEquals(0, preparedTransactions.size());
+      Map<Long, byte[]> data = getRecordData();
+      Assert.assertEquals(2, data.size());
+      Assert.assertArrayEquals(data(10), data.get(1L));
+      Assert.assertArrayEquals(data(20), data.get(2L));
+   }
+
+   @Test
+   public void testRecordsLoadedByID() throws Exception
+   {
+      startJournal(2);
+
+      // 2 and 4 live on the shard of the transaction, written after 5 on its commit
+      journal.appendAddRecordTransactional(101, 2, RECORD_TYPE, data(2));
+      journal.appendAddRecordTransactional(101, 4, RECORD_TYPE, data(4));
+      journal.appendAddRecord(5, RECORD_TYPE, data(5), true);
+      journal.appendAddRecord(1, RECORD_TYPE, data(1), true);
+      journal.appendCommitRecord(101, true);
+
+      journal.appendUpdateRecord(4, RECORD_TYPE, data(40), true);
+      journal.appendUpdateRecord(4, RECORD_TYPE, data(41), true);
+
+      restartJournal(2);
+
+      List<Long> ids = new ArrayList<Long>();
+      for (RecordInfo record : records)
+      {
+         ids.add(record.id);
+      }
+      Assert.assertEquals(Arrays.asList(1L, 2L, 4L, 4L, 4L, 5L), ids);
+
+      // the updates are still after the add
+      Assert.assertArrayEquals(data(41), records.get(4).data);
+   }
+
+   @Test
+   public void testInternalPrepareRolledBack() throws Exception
+   {
+      startJournal(2);
+
+      journal.appendAddRecord(1, RECORD_TYPE, data(1), true);
+      journal.appendAddRecord(2, RECORD_TYPE, data(2), true);
+
+      // the journal stopped after preparing the transaction on the second shard only
+      JournalImpl shard = journal.getShard(1);
+      shard.appendUpdateRecordTransactional(100, 1, RECORD_TYPE, data(10));
+      shard.appendPrepareRecord(100, ByteBuffer.allocate(5).putInt(0x53485244).put((byte) 0).array(), true);
+
+      restartJournal(2);
+
+      Assert.assertEquals(0, preparedTransactions.size());
+      Map<Long, byte[]> data = getRecordData();
+      Assert.assertEquals(2, data.size());
+      Assert.assertArrayEquals(data(1), data.get(1L));
+   }
+
+   @Test
+   public void testAddShard() throws Exception
+   {
+      startJournal(1);
+
+      for (long id = 0; id < 10; id++)
+      {
+         journal.appendAddRecord(id, RECORD_TYPE, data(id), true);
+      }
+
+      restartJournal(3);
+
+      Assert.assertEquals(10, getRecordIDs().size());
+
+      // the records are still on the first shard
+      for (long id = 0; id < 10; id++)
+      {
+         journal.appendUpdateRecord(id, RECORD_TYPE, data(id + 1), true);
+      }
+      for (long id = 0; id < 10; id += 2)
+      {
+         journal.appendDeleteRecord(id, true);
+      }
+
+      for (long id = 10; id < 20; id++)
+      {
+         journal.appendAddRecord(id, RECORD_TYPE, data(id), true);
+      }
+
+      restartJournal(3);
+
+      Assert.assertEquals(15, getRecordIDs().size());
+      // 5 records left from before the restart, and 12, 15 and 18
+      Assert.assertEquals(8, journal.getShard(0).getNumberOfRecords());
+   }
+
+   private void startJournal(final int shards) throws Exception
+   {
+      startJournal(shards, -1);
+   }
+
+   /**
+    * @param failingShard a shard failing to commit, as if the journal stopped before writing it
+    */
+   private void startJournal(final int shards, final int failingShard) throws Exception
+   {
+      JournalImpl[] journals = new JournalImpl[shards];
+
+      for (int i = 0; i < shards; i++)
+      {
+         File dir = new File(getTestDir(), "shard" + i);
+         dir.mkdirs();
+
+         NIOSequentialFileFactory factory = new NIOSequentialFileFactory(dir.getPath(), true);
+
+         if (i == failingShard)
+         {
+            journals[i] = new JournalImpl(10 * 1024, 2, 0, 0, factory, "amq", "amq", 1)
+            {
+               @Override
+               public void appendCommitRecord(final long txID,
+                                              final boolean sync,
+                                              final IOCompletion callback,
+                                              final boolean lineUpContext) throws Exception
+               {
+                  throw new IllegalStateException("stopped");
+               }
+            };
+         }
+         else
+         {
+            journals[i] = new JournalImpl(10 * 1024, 2, 0, 0, factory, "amq", "amq", 1);
+         }
+      }
+
+      journal = new ShardedJournal(journals);
+      journal.start();
+
+      records = new ArrayList<RecordInfo>();
+      preparedTransactions = new ArrayList<PreparedTransactionInfo>();
+
+      journal.load(records, preparedTransactions, null);
+   }
+
+   private void restartJournal(final int shards) throws Exception
+   {
+      stopJournal();
+      startJournal(shards);
+   }
+
+   private void stopJournal() throws Exception
+   {
+      if (journal != null)
+      {
+         journal.stop();
+         journal = null;
+      }
+   }
+
+   private List<Long> getRecordIDs()
+   {
+      return new ArrayList<Long>(getRecordData().keySet());
+   }
+
+   private Map<Long, byte[]> getRecordData()
+   {
+      Map<Long, byte[]> data = new HashMap<Long, byte[]>();
+
+      for (RecordInfo record : records)
+      {
+         data.put(record.id, record.data);
+      }
+
+      return data;
+   }
+
+   private static byte[] data(final long value)
+   {
+      return ByteBuffer.allocate(8).putLong(value).array();
+   }
+}
@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.tests.integration.journal;
+
+import org.apache.activemq.core.asyncio.impl.URingAsynchronousFileImpl;
+import org.apache.activemq.core.journal.SequentialFileFactory;
+import org.apache.activemq.core.journal.impl.AIOSequentialFileFactory;
+import org.apache.activemq.tests.unit.core.journal.impl.SequentialFileFactoryTestBase;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * The {@link SequentialFileFactoryTestBase} tests on an {@link AIOSequentialFileFactory} using io_uring.
+ */
+public class URingSequentialFileFactoryTest extends SequentialFileFactoryTestBase
+{
+
+   @BeforeClass
+   public static void hasURing()
+   {
+      org.junit.Assume.assumeTrue("Test case needs io_uring to run", URingAsynchronousFileImpl.isSupported());
+   }
+
+   @Override
+   protected SequentialFileFactory createFactory()
+   {
+      AIOSequentialFileFactory factory = new AIOSequentialFileFactory(getTestDir());
+      factory.setUseURing(true);
+      return factory;
+   }
+
+   @Test
+   public void testUsesURing() throws Exception
+   {
+      Assert.assertTrue(((AIOSequentialFileFactory) factory).isUseURing());
+   }
+
+}
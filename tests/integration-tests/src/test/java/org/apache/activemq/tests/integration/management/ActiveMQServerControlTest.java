@@ -39,6 +39,7 @@ import org.apache.activemq.api.core.management.QueueControl;
 import org.apache.activemq.api.core.management.RoleInfo;
 import org.apache.activemq.core.asyncio.impl.AsynchronousFileImpl;
 import org.apache.activemq.core.config.Configuration;
+import org.apache.activemq.core.journal.Journal;
 import org.apache.activemq.core.messagecounter.impl.MessageCounterManagerImpl;
 import org.apache.activemq.core.remoting.impl.invm.InVMAcceptorFactory;
 import org.apache.activemq.core.remoting.impl.invm.InVMConnectorFactory;
@@ -138,6 +139,8 @@ public class ActiveMQServerControlTest extends ManagementTestBase
       Assert.assertEquals(conf.isCreateBindingsDir(), serverControl.isCreateBindingsDir());
       Assert.assertEquals(conf.isCreateJournalDir(), serverControl.isCreateJournalDir());
       Assert.assertEquals(conf.getPagingDirectory(), serverControl.getPagingDirectory());
+      Assert.assertEquals(conf.getGlobalMaxSize(), serverControl.getGlobalMaxSize());
+      Assert.assertTrue(serverControl.getGlobalAddressSize() >= 0);
       Assert.assertEquals(conf.getLargeMessagesDirectory(), serverControl.getLargeMessagesDirectory());
       Assert.assertEquals(conf.isWildcardRoutingEnabled(), serverControl.isWildcardRoutingEnabled());
       Assert.assertEquals(conf.getTransactionTimeout(), serverControl.getTransactionTimeout());
@@ -150,6 +153,77 @@ public class ActiveMQServerControlTest extends ManagementTestBase
       Assert.assertEquals(conf.isPersistenceEnabled(), serverControl.isPersistenceEnabled());
    }
 
+   @Test
+   public void testJournalCompactStatistics() throws Exception
+   {
+      ActiveMQServerControl serverControl = createManagementControl();
+
+      Assert.assertEquals(0, serverControl.getJournalCompactCount());
+
+      Journal journal = server.getStorageManager().getMessageJournal();
+
+      // there needs to be a data file to compact
+      journal.forceMoveNextFile();
+      journal.scheduleCompactAndBlock(60);
+
+      Assert.assertEquals(1, serverControl.getJournalCompactCount());
+      Assert.assertEquals(serverControl.getJournalLastCompactDuration(), serverControl.getJournalTotalCompactDuration());
+      Assert.assertEquals(serverControl.getJournalLastCompactReclaimedBytes(), serverControl.getJournalTotalCompactReclaimedBytes());
+      Assert.assertEquals(serverControl.getJournalLastCompactStallTime(), serverControl.getJournalMaxCompactStallTime());
+      Assert.assertTrue(serverControl.getJournalLastCompactStallTime() >= 0);
+   }
+
+   @Test
+   public void testJournalIOStatistics() throws Exception
+   {
+      ActiveMQServerControl serverControl = createManagementControl();
+
+      ServerLocator locator = ActiveMQClient.createServerLocatorWithoutHA(new TransportConfiguration(UnitTestCase.INVM_CONNECTOR_FACTORY));
+      ClientSessionFactory csf = createSessionFactory(locator);
+      ClientSession session = csf.createSession();
+
+      String queue = RandomUtil.randomString();
+      session.createQueue(queue, queue, true);
+
+      serverControl.resetJournalIOStatistics();
+
+      ClientProducer producer = session.createProducer(queue);
+      for (int i = 0; i < 10; i++)
+      {
+         producer.send(session.createMessage(true));
+      }
+
+      session.close();
+      locator.close();
+
+      // every durable send is synced
+      Assert.assertTrue(serverControl.getJournalSyncCount() > 0);
+      Assert.assertTrue(serverControl.getJournalFlushedRecords() >= 10);
+      Assert.assertTrue(serverControl.getJournalFlushedBytes() > 0);
+      Assert.assertEquals(serverControl.getJournalFlushCount(), serverControl.getJournalSizeFlushCount() +
+         serverControl.getJournalTimeoutFlushCount() + serverControl.getJournalForcedFlushCount());
+      Assert.assertTrue(serverControl.getJournalMaxSyncTime() <= serverControl.getJournalTotalSyncTime());
+
+      JSONArray histogram = new JSONArray(serverControl.listJournalSyncTimeHistogramAsJSON());
+      long syncs = 0;
+      for (int i = 0; i < histogram.length(); i++)
+      {
+         syncs += histogram.getJSONObject(i).getLong("count");
+      }
+      Assert.assertEquals(serverControl.getJournalSyncCount(), syncs);
+      Assert.assertEquals(-1, histogram.getJSONObject(histogram.length() - 1).getLong("maxTime"));
+
+      // the flushes of the timed buffer are written from pooled buffers
+      Assert.assertTrue(serverControl.getJournalBufferPoolHits() + serverControl.getJournalBufferPoolMisses() > 0);
+      Assert.assertTrue(serverControl.getJournalOutstandingBufferBytes() >= 0);
+
+      serverControl.resetJournalIOStatistics();
+
+      Assert.assertEquals(0, serverControl.getJournalSyncCount());
+      Assert.assertEquals(0, serverControl.getJournalFlushCount());
+      Assert.assertEquals(0, serverControl.getJournalFlushedBytes());
+   }
+
    @Test
    public void testGetConnectors() throws Exception
    {
@@ -315,6 +315,16 @@ public class ActiveMQServerControlUsingCoreTest extends ActiveMQServerControlTes
             return (String) proxy.retrieveAttributeValue("pagingDirectory");
          }
 
+         public long getGlobalMaxSize()
+         {
+            return (Long) proxy.retrieveAttributeValue("globalMaxSize", Long.class);
+         }
+
+         public long getGlobalAddressSize()
+         {
+            return (Long) proxy.retrieveAttributeValue("globalAddressSize", Long.class);
+         }
+
          public int getScheduledThreadPoolMaxSize()
          {
             return (Integer) proxy.retrieveAttributeValue("scheduledThreadPoolMaxSize");
@@ -480,6 +490,16 @@ public class ActiveMQServerControlUsingCoreTest extends ActiveMQServerControlTes
             proxy.invokeOperation("resetAllMessageCounterHistories");
          }
 
+         public String listJournalSyncTimeHistogramAsJSON() throws Exception
+         {
+            return (String) proxy.invokeOperation("listJournalSyncTimeHistogramAsJSON");
+         }
+
+         public void resetJournalIOStatistics() throws Exception
+         {
+            proxy.invokeOperation("resetJournalIOStatistics");
+         }
+
          public void resetAllMessageCounters() throws Exception
          {
             proxy.invokeOperation("resetAllMessageCounters");
@@ -525,6 +545,136 @@ public class ActiveMQServerControlUsingCoreTest extends ActiveMQServerControlTes
             return (Integer) proxy.retrieveAttributeValue("JournalCompactPercentage");
          }
 
+         public long getJournalCompactCount()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalCompactCount", Long.class);
+         }
+
+         public long getJournalLastCompactDuration()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalLastCompactDuration", Long.class);
+         }
+
+         public long getJournalTotalCompactDuration()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalTotalCompactDuration", Long.class);
+         }
+
+         public long getJournalLastCompactReclaimedBytes()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalLastCompactReclaimedBytes", Long.class);
+         }
+
+         public long getJournalTotalCompactReclaimedBytes()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalTotalCompactReclaimedBytes", Long.class);
+         }
+
+         public long getJournalLastCompactStallTime()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalLastCompactStallTime", Long.class);
+         }
+
+         public long getJournalMaxCompactStallTime()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalMaxCompactStallTime", Long.class);
+         }
+
+         public long getJournalFlushCount()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalFlushCount", Long.class);
+         }
+
+         public long getJournalSizeFlushCount()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalSizeFlushCount", Long.class);
+         }
+
+         public long getJournalTimeoutFlushCount()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalTimeoutFlushCount", Long.class);
+         }
+
+         public long getJournalForcedFlushCount()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalForcedFlushCount", Long.class);
+         }
+
+         public long getJournalFlushedBytes()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalFlushedBytes", Long.class);
+         }
+
+         public long getJournalFlushedRecords()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalFlushedRecords", Long.class);
+         }
+
+         public long getJournalSyncCount()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalSyncCount", Long.class);
+         }
+
+         public long getJournalTotalSyncTime()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalTotalSyncTime", Long.class);
+         }
+
+         public long getJournalMaxSyncTime()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalMaxSyncTime", Long.class);
+         }
+
+         public double getJournalAverageAIOQueueDepth()
+         {
+            return (Double) proxy.retrieveAttributeValue("journalAverageAIOQueueDepth", Double.class);
+         }
+
+         public double getJournalAverageAIOSubmitBatchSize()
+         {
+            return (Double) proxy.retrieveAttributeValue("journalAverageAIOSubmitBatchSize", Double.class);
+         }
+
+         public long getJournalMaxAIOQueueDepth()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalMaxAIOQueueDepth", Long.class);
+         }
+
+         public long getJournalLockWaitCount()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalLockWaitCount", Long.class);
+         }
+
+         public long getJournalLockWaitTime()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalLockWaitTime", Long.class);
+         }
+
+         public long getJournalAppendLockWaitCount()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalAppendLockWaitCount", Long.class);
+         }
+
+         public long getJournalAppendLockWaitTime()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalAppendLockWaitTime", Long.class);
+         }
+
+         public long getJournalBufferPoolHits()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalBufferPoolHits", Long.class);
+         }
+
+         public long getJournalBufferPoolMisses()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalBufferPoolMisses", Long.class);
+         }
+
+         public long getJournalOutstandingBufferBytes()
+         {
+            return (Long) proxy.retrieveAttributeValue("journalOutstandingBufferBytes", Long.class);
+         }
+
          public boolean isPersistenceEnabled()
          {
             return (Boolean) proxy.retrieveAttributeValue("PersistenceEnabled");
@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.tests.integration.paging;
+
+import java.util.HashMap;
+
+import org.apache.activemq.api.core.SimpleString;
+import org.apache.activemq.api.core.client.ClientConsumer;
+import org.apache.activemq.api.core.client.ClientMessage;
+import org.apache.activemq.api.core.client.ClientProducer;
+import org.apache.activemq.api.core.client.ClientSession;
+import org.apache.activemq.api.core.client.ClientSessionFactory;
+import org.apache.activemq.api.core.client.ServerLocator;
+import org.apache.activemq.core.config.Configuration;
+import org.apache.activemq.core.paging.PagingManager;
+import org.apache.activemq.core.paging.PagingStore;
+import org.apache.activemq.core.server.ActiveMQServer;
+import org.apache.activemq.core.settings.impl.AddressSettings;
+import org.apache.activemq.tests.util.ServiceTestBase;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GlobalMaxSizeTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS_A = new SimpleString("global-a");
+
+   private static final SimpleString ADDRESS_B = new SimpleString("global-b");
+
+   private static final int PAGE_SIZE = 10 * 1024;
+
+   private static final long GLOBAL_MAX_SIZE = 50 * 1024;
+
+   private static final int MESSAGE_SIZE = 1024;
+
+   private ServerLocator locator;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+      locator = createInVMNonHALocator();
+   }
+
+   @Test
+   public void testLargestAddressPagesFirst() throws Exception
+   {
+      Configuration config = createDefaultConfig()
+         .setGlobalMaxSize(GLOBAL_MAX_SIZE);
+
+      // no limit per address, only the global one
+      ActiveMQServer server = createServer(true, config, PAGE_SIZE, -1, new HashMap<String, AddressSettings>());
+      server.start();
+
+      ClientSessionFactory sf = createSessionFactory(locator);
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS_A, ADDRESS_A, null, true);
+      session.createQueue(ADDRESS_B, ADDRESS_B, null, true);
+
+      PagingManager pagingManager = server.getPagingManager();
+      PagingStore storeA = pagingManager.getPageStore(ADDRESS_A);
+      PagingStore storeB = pagingManager.getPageStore(ADDRESS_B);
+
+      ClientProducer producerA = session.createProducer(ADDRESS_A);
+      ClientProducer producerB = session.createProducer(ADDRESS_B);
+
+      int sentA = 0;
+      int sentB = 0;
+
+      for (int i = 0; i < 5; i++)
+      {
+         producerA.send(createMessage(session, sentA++));
+      }
+
+      // B goes over the global limit, and is the largest address
+      while (!pagingManager.isGlobalFull())
+      {
+         producerB.send(createMessage(session, sentB++));
+      }
+
+      assertTrue(storeB.isPaging());
+      assertFalse(storeA.isPaging());
+      assertEquals(storeA.getAddressSize() + storeB.getAddressSize(), pagingManager.getGlobalSize());
+
+      // B is paged now, so its messages don't take any more memory
+      long globalSize = pagingManager.getGlobalSize();
+      for (int i = 0; i < 20; i++)
+      {
+         producerB.send(createMessage(session, sentB++));
+      }
+      assertEquals(globalSize, pagingManager.getGlobalSize());
+      assertFalse(storeA.isPaging());
+
+      // still over the limit, so A is next
+      producerA.send(createMessage(session, sentA++));
+      assertTrue(storeA.isPaging());
+
+      session.start();
+      receive(session, ADDRESS_A, sentA);
+      receive(session, ADDRESS_B, sentB);
+
+      // cleanup may need more than one pass to leave page mode
+      long timeout = System.currentTimeMillis() + 5000;
+      while ((storeA.isPaging() || storeB.isPaging()) && System.currentTimeMillis() < timeout)
+      {
+         storeA.getCursorProvider().cleanup();
+         storeB.getCursorProvider().cleanup();
+         Thread.sleep(10);
+      }
+      assertFalse(storeA.isPaging());
+      assertFalse(storeB.isPaging());
+      assertEquals(0, pagingManager.getGlobalSize());
+
+      session.close();
+      server.stop();
+   }
+
+   @Test
+   public void testGlobalSizeWithoutGlobalMaxSize() throws Exception
+   {
+      ActiveMQServer server = createServer(true, createDefaultConfig(), PAGE_SIZE, -1, new HashMap<String, AddressSettings>());
+      server.start();
+
+      ClientSessionFactory sf = createSessionFactory(locator);
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS_A, ADDRESS_A, null, true);
+      session.createQueue(ADDRESS_B, ADDRESS_B, null, true);
+
+      PagingManager pagingManager = server.getPagingManager();
+      PagingStore storeA = pagingManager.getPageStore(ADDRESS_A);
+      PagingStore storeB = pagingManager.getPageStore(ADDRESS_B);
+
+      ClientProducer producerA = session.createProducer(ADDRESS_A);
+      ClientProducer producerB = session.createProducer(ADDRESS_B);
+
+      for (int i = 0; i < 10; i++)
+      {
+         producerA.send(createMessage(session, i));
+         producerB.send(createMessage(session, i));
+      }
+
+      assertEquals(-1, pagingManager.getGlobalMaxSize());
+      assertFalse(pagingManager.isGlobalFull());
+      assertTrue(storeA.getAddressSize() > 0);
+      assertEquals(storeA.getAddressSize() + storeB.getAddressSize(), pagingManager.getGlobalSize());
+
+      session.close();
+      server.stop();
+   }
+
+   private ClientMessage createMessage(final ClientSession session, final int id)
+   {
+      ClientMessage message = session.createMessage(true);
+      message.getBodyBuffer().writeBytes(new byte[MESSAGE_SIZE]);
+      message.putIntProperty("id", id);
+      return message;
+   }
+
+   private void receive(final ClientSession session, final SimpleString address, final int count) throws Exception
+   {
+      ClientConsumer consumer = session.createConsumer(address);
+      for (int i = 0; i < count; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull(message);
+         assertEquals(i, message.getIntProperty("id").intValue());
+         message.acknowledge();
+      }
+      assertNull(consumer.receiveImmediate());
+      consumer.close();
+   }
+}
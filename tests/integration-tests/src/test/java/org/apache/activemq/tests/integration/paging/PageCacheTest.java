@@ -0,0 +1,355 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.tests.integration.paging;
+
+import java.util.HashMap;
+
+import org.apache.activemq.api.core.SimpleString;
+import org.apache.activemq.api.core.client.ClientConsumer;
+import org.apache.activemq.api.core.client.ClientMessage;
+import org.apache.activemq.api.core.client.ClientProducer;
+import org.apache.activemq.api.core.client.ClientSession;
+import org.apache.activemq.api.core.client.ClientSessionFactory;
+import org.apache.activemq.api.core.client.ServerLocator;
+import org.apache.activemq.api.core.management.AddressControl;
+import org.apache.activemq.api.core.management.ResourceNames;
+import org.apache.activemq.core.config.Configuration;
+import org.apache.activemq.core.paging.PagedMessage;
+import org.apache.activemq.core.paging.PagingStore;
+import org.apache.activemq.core.paging.cursor.PageCacheBudget;
+import org.apache.activemq.core.paging.cursor.PageCursorProvider;
+import org.apache.activemq.core.paging.cursor.impl.PagePositionImpl;
+import org.apache.activemq.core.server.ActiveMQServer;
+import org.apache.activemq.core.settings.impl.AddressFullMessagePolicy;
+import org.apache.activemq.core.settings.impl.AddressSettings;
+import org.apache.activemq.tests.util.ServiceTestBase;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PageCacheTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS_A = new SimpleString("page-cache-a");
+
+   private static final SimpleString ADDRESS_B = new SimpleString("page-cache-b");
+
+   private static final int PAGE_SIZE = 10 * 1024;
+
+   private static final int PAGE_MAX = 20 * 1024;
+
+   private static final int MESSAGE_SIZE = 1024;
+
+   private static final int NUMBER_OF_MESSAGES = 200;
+
+   private ServerLocator locator;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+      locator = createInVMNonHALocator();
+   }
+
+   @Test
+   public void testAddressCacheLimit() throws Exception
+   {
+      AddressSettings settings = new AddressSettings();
+      settings.setPageSizeBytes(PAGE_SIZE);
+      settings.setMaxSizeBytes(PAGE_MAX);
+      settings.setAddressFullMessagePolicy(AddressFullMessagePolicy.PAGE);
+      settings.setPageCacheMaxSize(2);
+
+      HashMap<String, AddressSettings> map = new HashMap<String, AddressSettings>();
+      map.put(ADDRESS_A.toString(), settings);
+
+      // pages read ahead can briefly be over the limit
+      Configuration config = createDefaultConfig()
+         .setPageReadAhead(0);
+
+      ActiveMQServer server = createServer(true, config, PAGE_SIZE, PAGE_MAX, map);
+      server.start();
+
+      ClientSessionFactory sf = createSessionFactory(locator);
+      ClientSession session = addClientSession(sf.createSession(false, true, false));
+      session.createQueue(ADDRESS_A, ADDRESS_A, null, true);
+
+      send(session, ADDRESS_A);
+      assertTrue(server.getPagingManager().getPageStore(ADDRESS_A).getNumberOfPages() > 2);
+
+      receive(session, ADDRESS_A);
+
+      PageCursorProvider provider = server.getPagingManager().getPageStore(ADDRESS_A).getCursorProvider();
+      assertTrue(provider.getCacheSize() <= 2);
+      assertTrue(provider.getCacheMisses() > 2);
+      assertTrue(provider.getCacheEvictions() > 0);
+      assertTrue(provider.getCacheHits() > 0);
+
+      AddressControl control = (AddressControl) server.getManagementService().getResource(ResourceNames.CORE_ADDRESS + ADDRESS_A);
+      assertEquals(provider.getCacheMisses(), control.getPageCacheMisses());
+      assertEquals(provider.getCacheEvictions(), control.getPageCacheEvictions());
+      assertEquals(provider.getCacheMemorySize(), control.getPageCacheSize());
+
+      session.commit();
+      session.close();
+      server.stop();
+   }
+
+   @Test
+   public void testGlobalBudgetEvictsAcrossAddresses() throws Exception
+   {
+      final long budgetSize = 3 * PAGE_SIZE;
+
+      Configuration config = createDefaultConfig()
+         .setGlobalPageCacheMaxSize(budgetSize);
+
+      ActiveMQServer server = createServer(true, config, PAGE_SIZE, PAGE_MAX, new HashMap<String, AddressSettings>());
+      server.start();
+
+      ClientSessionFactory sf = createSessionFactory(locator);
+      ClientSession session = addClientSession(sf.createSession(false, true, false));
+      session.createQueue(ADDRESS_A, ADDRESS_A, null, true);
+      session.createQueue(ADDRESS_B, ADDRESS_B, null, true);
+
+      send(session, ADDRESS_A);
+      send(session, ADDRESS_B);
+
+      receive(session, ADDRESS_A);
+      receive(session, ADDRESS_B);
+
+      PageCacheBudget budget = server.getPagingManager().getPageCacheBudget();
+      assertEquals(budgetSize, budget.getMaxSize());
+      assertTrue(budget.toString(), budget.getSize() > 0);
+      assertTrue(budget.toString(), budget.getSize() <= budgetSize);
+
+      PageCursorProvider providerA = server.getPagingManager().getPageStore(ADDRESS_A).getCursorProvider();
+      PageCursorProvider providerB = server.getPagingManager().getPageStore(ADDRESS_B).getCursorProvider();
+      assertEquals(budget.getSize(), providerA.getCacheMemorySize() + providerB.getCacheMemorySize());
+
+      // the first address was read first, so its pages made room for the second one
+      assertTrue(providerA.getCacheEvictions() > 0);
+      assertTrue(providerA.getCacheMemorySize() < providerB.getCacheMemorySize());
+
+      // once everything is acked the pages are removed and their memory is given back
+      session.commit();
+      // cleanup may need more than one pass once the address leaves page mode
+      long timeout = System.currentTimeMillis() + 5000;
+      while (budget.getSize() != 0 && System.currentTimeMillis() < timeout)
+      {
+         providerA.cleanup();
+         providerB.cleanup();
+         Thread.sleep(10);
+      }
+      assertEquals(0, budget.getSize());
+
+      session.close();
+      server.stop();
+   }
+
+   @Test
+   public void testSingleMessageReadBypassesCache() throws Exception
+   {
+      ActiveMQServer server = createServer(true, createDefaultConfig(), PAGE_SIZE, PAGE_MAX, new HashMap<String, AddressSettings>());
+      server.start();
+
+      ClientSessionFactory sf = createSessionFactory(locator);
+      ClientSession session = addClientSession(sf.createSession(false, true, false));
+      session.createQueue(ADDRESS_A, ADDRESS_A, null, true);
+
+      send(session, ADDRESS_A);
+
+      PagingStore store = server.getPagingManager().getPageStore(ADDRESS_A);
+      PageCursorProvider provider = store.getCursorProvider();
+      long firstPage = store.getFirstPage();
+      assertTrue(firstPage < store.getCurrentWritingPage());
+
+      while (provider.evictOldestCache())
+      {
+         // make sure the first page is not on the cache
+      }
+
+      long misses = provider.getCacheMisses();
+      int cacheSize = provider.getCacheSize();
+
+      // a single message, read through the page index
+      PagedMessage third = provider.getMessage(new PagePositionImpl(firstPage, 3));
+      assertNotNull(third);
+      assertEquals(misses, provider.getCacheMisses());
+      assertEquals(cacheSize, provider.getCacheSize());
+
+      // the same message when the whole page is read
+      PagedMessage cached = provider.getPageCache(firstPage).getMessage(3);
+      assertEquals(misses + 1, provider.getCacheMisses());
+      assertEquals(cached.getMessage().getMessageID(), third.getMessage().getMessageID());
+      assertEquals(cached.getMessage().getIntProperty("id"), third.getMessage().getIntProperty("id"));
+
+      session.close();
+      server.stop();
+   }
+
+   @Test
+   public void testReadAhead() throws Exception
+   {
+      Configuration config = createDefaultConfig()
+         .setPageReadAhead(2);
+
+      ActiveMQServer server = createServer(true, config, PAGE_SIZE, PAGE_MAX, new HashMap<String, AddressSettings>());
+      server.start();
+
+      ClientSessionFactory sf = createSessionFactory(locator);
+      ClientSession session = addClientSession(sf.createSession(false, true, false));
+      session.createQueue(ADDRESS_A, ADDRESS_A, null, true);
+
+      send(session, ADDRESS_A);
+
+      PagingStore store = server.getPagingManager().getPageStore(ADDRESS_A);
+      PageCursorProvider provider = store.getCursorProvider();
+      long firstPage = store.getFirstPage();
+      assertTrue(firstPage + 2 < store.getCurrentWritingPage());
+
+      while (provider.evictOldestCache())
+      {
+         // start with only the live page on the cache
+      }
+
+      long misses = provider.getCacheMisses();
+      provider.readAhead(firstPage);
+
+      long timeout = System.currentTimeMillis() + 5000;
+      while (provider.getCacheMisses() != misses + 2 && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+      assertEquals(misses + 2, provider.getCacheMisses());
+
+      // the cursor now finds both pages on the cache
+      long hits = provider.getCacheHits();
+      assertNotNull(provider.getPageCache(firstPage + 1));
+      assertNotNull(provider.getPageCache(firstPage + 2));
+      assertEquals(hits + 2, provider.getCacheHits());
+      assertEquals(misses + 2, provider.getCacheMisses());
+
+      // nothing more to read ahead from the same page
+      provider.readAhead(firstPage);
+      Thread.sleep(100);
+      assertEquals(misses + 2, provider.getCacheMisses());
+
+      receive(session, ADDRESS_A);
+      session.commit();
+      session.close();
+      server.stop();
+   }
+
+   @Test
+   public void testSelectiveSubscriptionSkipsPages() throws Exception
+   {
+      SimpleString allQueue = new SimpleString("page-cache-all");
+      SimpleString redQueue = new SimpleString("page-cache-red");
+
+      ActiveMQServer server = createServer(true, createDefaultConfig(), PAGE_SIZE, PAGE_MAX, new HashMap<String, AddressSettings>());
+      server.start();
+
+      ClientSessionFactory sf = createSessionFactory(locator);
+      ClientSession session = addClientSession(sf.createSession(false, true, false));
+      session.createQueue(ADDRESS_A, allQueue, null, true);
+      session.createQueue(ADDRESS_A, redQueue, new SimpleString("color='red'"), true);
+
+      PagingStore store = server.getPagingManager().getPageStore(ADDRESS_A);
+      PageCursorProvider provider = store.getCursorProvider();
+
+      // only the last message is red
+      ClientProducer producer = session.createProducer(ADDRESS_A);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.getBodyBuffer().writeBytes(new byte[MESSAGE_SIZE]);
+         message.putIntProperty("id", i);
+         message.putStringProperty("color", i == NUMBER_OF_MESSAGES - 1 ? "red" : "blue");
+         producer.send(message);
+      }
+      session.commit();
+
+      long firstPage = store.getFirstPage();
+      long currentPage = store.getCurrentWritingPage();
+      assertTrue(firstPage + 2 < currentPage);
+      for (long page = firstPage; page < currentPage; page++)
+      {
+         assertNotNull(provider.getPageSummary(page));
+      }
+
+      while (provider.evictOldestCache())
+      {
+         // the summaries stay
+      }
+
+      long misses = provider.getCacheMisses();
+
+      session.start();
+      ClientConsumer consumer = session.createConsumer(redQueue);
+      ClientMessage message = consumer.receive(5000);
+      assertNotNull(message);
+      assertEquals(NUMBER_OF_MESSAGES - 1, message.getIntProperty("id").intValue());
+      message.acknowledge();
+      assertNull(consumer.receiveImmediate());
+      consumer.close();
+      session.commit();
+
+      // no page with only blue messages was read for the red queue
+      assertTrue(provider.getCacheMisses() - misses <= 1);
+
+      consumer = session.createConsumer(allQueue);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         message = consumer.receive(5000);
+         assertNotNull(message);
+         assertEquals(i, message.getIntProperty("id").intValue());
+         message.acknowledge();
+      }
+      consumer.close();
+      session.commit();
+
+      session.close();
+      server.stop();
+   }
+
+   private void send(final ClientSession session, final SimpleString address) throws Exception
+   {
+      ClientProducer producer = session.createProducer(address);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.getBodyBuffer().writeBytes(new byte[MESSAGE_SIZE]);
+         message.putIntProperty("id", i);
+         producer.send(message);
+      }
+      session.commit();
+      producer.close();
+   }
+
+   private void receive(final ClientSession session, final SimpleString address) throws Exception
+   {
+      session.start();
+      ClientConsumer consumer = session.createConsumer(address);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull(message);
+         assertEquals(i, message.getIntProperty("id").intValue());
+         message.acknowledge();
+      }
+      consumer.close();
+   }
+}
@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.tests.integration.paging;
+
+import java.util.HashMap;
+
+import org.apache.activemq.api.core.SimpleString;
+import org.apache.activemq.api.core.client.ClientConsumer;
+import org.apache.activemq.api.core.client.ClientMessage;
+import org.apache.activemq.api.core.client.ClientProducer;
+import org.apache.activemq.api.core.client.ClientSession;
+import org.apache.activemq.api.core.client.ClientSessionFactory;
+import org.apache.activemq.api.core.client.ServerLocator;
+import org.apache.activemq.api.core.management.AddressControl;
+import org.apache.activemq.api.core.management.ResourceNames;
+import org.apache.activemq.core.paging.PagingStore;
+import org.apache.activemq.core.server.ActiveMQServer;
+import org.apache.activemq.core.settings.impl.AddressFullMessagePolicy;
+import org.apache.activemq.core.settings.impl.AddressSettings;
+import org.apache.activemq.tests.util.ServiceTestBase;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PageCompressionTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS_A = new SimpleString("compressed-a");
+
+   private static final SimpleString ADDRESS_B = new SimpleString("uncompressed-b");
+
+   private static final int PAGE_SIZE = 20 * 1024;
+
+   private static final int PAGE_MAX = 40 * 1024;
+
+   private static final int MESSAGE_SIZE = 2048;
+
+   private static final int NUMBER_OF_MESSAGES = 200;
+
+   private ServerLocator locator;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+      locator = createInVMNonHALocator();
+   }
+
+   @Test
+   public void testCompressedPagesSurviveRestart() throws Exception
+   {
+      HashMap<String, AddressSettings> settings = new HashMap<String, AddressSettings>();
+      settings.put(ADDRESS_A.toString(), createSettings(true));
+      settings.put(ADDRESS_B.toString(), createSettings(false));
+
+      ActiveMQServer server = createServer(true, createDefaultConfig(), PAGE_SIZE, PAGE_MAX, settings);
+      server.start();
+
+      ClientSessionFactory sf = createSessionFactory(locator);
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS_A, ADDRESS_A, null, true);
+      session.createQueue(ADDRESS_B, ADDRESS_B, null, true);
+
+      send(session, ADDRESS_A);
+      send(session, ADDRESS_B);
+
+      PagingStore storeA = server.getPagingManager().getPageStore(ADDRESS_A);
+      PagingStore storeB = server.getPagingManager().getPageStore(ADDRESS_B);
+      assertTrue(storeA.isPaging());
+      assertTrue(storeB.isPaging());
+
+      // the same messages take less pages compressed
+      assertTrue(storeA.getNumberOfPages() < storeB.getNumberOfPages());
+      assertTrue(storeA.getPageCompressor().getCompressedRecords() > 0);
+      assertEquals(0, storeB.getPageCompressor().getCompressedRecords());
+
+      AddressControl controlA = (AddressControl) server.getManagementService().getResource(ResourceNames.CORE_ADDRESS + ADDRESS_A);
+      AddressControl controlB = (AddressControl) server.getManagementService().getResource(ResourceNames.CORE_ADDRESS + ADDRESS_B);
+      assertTrue(controlA.getPageCompressionRatio() < 0.5);
+      assertEquals(1.0, controlB.getPageCompressionRatio(), 0);
+      assertTrue(controlA.getPageCompressTime() >= 0);
+
+      session.close();
+      sf.close();
+      server.stop();
+
+      server.start();
+
+      sf = createSessionFactory(locator);
+      session = addClientSession(sf.createSession(false, true, true));
+      session.start();
+
+      receive(session, ADDRESS_A);
+      receive(session, ADDRESS_B);
+
+      session.close();
+      server.stop();
+   }
+
+   private AddressSettings createSettings(final boolean pageCompression)
+   {
+      AddressSettings settings = new AddressSettings();
+      settings.setPageSizeBytes(PAGE_SIZE);
+      settings.setMaxSizeBytes(PAGE_MAX);
+      settings.setAddressFullMessagePolicy(AddressFullMessagePolicy.PAGE);
+      settings.setPageCompression(pageCompression);
+      return settings;
+   }
+
+   private void send(final ClientSession session, final SimpleString address) throws Exception
+   {
+      ClientProducer producer = session.createProducer(address);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         for (int j = 0; j < MESSAGE_SIZE; j++)
+         {
+            message.getBodyBuffer().writeByte(getSamplebyte(j));
+         }
+         message.putIntProperty("id", i);
+         producer.send(message);
+      }
+      producer.close();
+   }
+
+   private void receive(final ClientSession session, final SimpleString address) throws Exception
+   {
+      ClientConsumer consumer = session.createConsumer(address);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull(message);
+         assertEquals(i, message.getIntProperty("id").intValue());
+         assertEquals(MESSAGE_SIZE, message.getBodySize());
+         for (int j = 0; j < MESSAGE_SIZE; j++)
+         {
+            assertEquals(getSamplebyte(j), message.getBodyBuffer().readByte());
+         }
+         message.acknowledge();
+      }
+      assertNull(consumer.receiveImmediate());
+      consumer.close();
+   }
+}
@@ -153,6 +153,78 @@ public class PagingCounterTest extends ServiceTestBase
    }
 
 
+   @Test
+   public void testCoalesceIncrementsOnTX() throws Exception
+   {
+      Queue queue = server.createQueue(new SimpleString("A1"), new SimpleString("A1"), null, true, false);
+
+      PageSubscriptionCounterImpl counter = (PageSubscriptionCounterImpl) locateCounter(queue);
+
+      StorageManager storage = server.getStorageManager();
+
+      // as many increments as messages paged on the TX, written as a single record
+      Transaction tx = new TransactionImpl(storage);
+      for (int i = 0; i < 500; i++)
+      {
+         counter.increment(tx, 1);
+      }
+      tx.commit();
+      storage.waitOnOperations();
+
+      assertEquals(500, counter.getValue());
+      assertEquals(1, counter.getIncrementRecordCount());
+
+      // acks that cancel the sends on the same TX don't need a record
+      tx = new TransactionImpl(storage);
+      for (int i = 0; i < 100; i++)
+      {
+         counter.increment(tx, 1);
+         counter.increment(tx, -1);
+      }
+      tx.commit();
+      storage.waitOnOperations();
+
+      assertEquals(500, counter.getValue());
+      assertEquals(1, counter.getIncrementRecordCount());
+
+      // nothing is written for a TX rolled back
+      tx = new TransactionImpl(storage);
+      for (int i = 0; i < 100; i++)
+      {
+         counter.increment(tx, -1);
+      }
+      tx.rollback();
+      storage.waitOnOperations();
+
+      assertEquals(500, counter.getValue());
+      assertEquals(1, counter.getIncrementRecordCount());
+
+      tx = new TransactionImpl(storage);
+      for (int i = 0; i < 200; i++)
+      {
+         counter.increment(tx, -1);
+      }
+      tx.commit();
+      storage.waitOnOperations();
+
+      assertEquals(300, counter.getValue());
+      assertEquals(2, counter.getIncrementRecordCount());
+
+      sl.close();
+
+      server.stop();
+
+      server = newActiveMQServer();
+
+      server.start();
+
+      queue = server.locateQueue(new SimpleString("A1"));
+
+      assertNotNull(queue);
+
+      assertEquals(300, locateCounter(queue).getValue());
+   }
+
    @Test
    public void testCleanupCounterNonPersistent() throws Exception
    {
@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.tests.integration.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.apache.activemq.api.core.SimpleString;
+import org.apache.activemq.api.core.client.ClientConsumer;
+import org.apache.activemq.api.core.client.ClientMessage;
+import org.apache.activemq.api.core.client.ClientProducer;
+import org.apache.activemq.api.core.client.ClientSession;
+import org.apache.activemq.api.core.client.ClientSessionFactory;
+import org.apache.activemq.api.core.client.ServerLocator;
+import org.apache.activemq.core.persistence.impl.journal.DescribeJournal;
+import org.apache.activemq.core.persistence.impl.journal.JournalRecordIds;
+import org.apache.activemq.core.persistence.impl.journal.JournalSummary;
+import org.apache.activemq.core.server.ActiveMQServer;
+import org.apache.activemq.tests.util.ServiceTestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The summary of a message journal, and its description with the surviving records read from the files.
+ */
+public class JournalSummaryTest extends ServiceTestBase
+{
+   private static final SimpleString QUEUE1 = new SimpleString("queue1");
+
+   private static final SimpleString QUEUE2 = new SimpleString("queue2");
+
+   @Test
+   public void testSummary() throws Exception
+   {
+      ActiveMQServer server = createServer(true);
+      server.start();
+
+      ServerLocator locator = createInVMNonHALocator().setBlockOnAcknowledge(true).setBlockOnDurableSend(true);
+      ClientSessionFactory sf = createSessionFactory(locator);
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(QUEUE1, QUEUE1, true);
+      session.createQueue(QUEUE2, QUEUE2, true);
+
+      long queue1ID = server.locateQueue(QUEUE1).getID();
+      long queue2ID = server.locateQueue(QUEUE2).getID();
+
+      send(session, QUEUE1, 10);
+      send(session, QUEUE2, 5);
+
+      session.start();
+      ClientConsumer consumer = session.createConsumer(QUEUE1);
+      for (int i = 0; i < 4; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         Assert.assertNotNull(message);
+         message.acknowledge();
+      }
+
+      session.close();
+      sf.close();
+      locator.close();
+
+      String journalDir = server.getConfiguration().getJournalDirectory();
+
+      server.stop();
+
+      JournalSummary summary = JournalSummary.summarizeMessagesJournal(journalDir, 2);
+
+      Assert.assertEquals(15, summary.getRecordTypes().get(JournalRecordIds.ADD_MESSAGE).getCount());
+      Assert.assertEquals(10, summary.getQueues().get(queue1ID).getReferences());
+      Assert.assertEquals(4, summary.getQueues().get(queue1ID).getAcknowledgements());
+      Assert.assertEquals(5, summary.getQueues().get(queue2ID).getReferences());
+      Assert.assertEquals(0, summary.getQueues().get(queue2ID).getAcknowledgements());
+      Assert.assertEquals(4, summary.getDeletes().getCount());
+
+      long liveBytes = 0;
+      for (JournalSummary.FileSummary file : summary.getFiles())
+      {
+         Assert.assertTrue(file.getLiveRatio() >= 0 && file.getLiveRatio() <= 1);
+         liveBytes += file.getLiveBytes();
+      }
+      Assert.assertTrue(liveBytes > 0);
+
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      summary.print(new PrintStream(output, true));
+      Assert.assertTrue(output.toString().contains("ADD_MESSAGE(" + JournalRecordIds.ADD_MESSAGE + ");count=15"));
+
+      // the surviving records are the ones not deleted by the acknowledgements
+      output.reset();
+      PrintStream systemOut = System.out;
+      System.setOut(new PrintStream(output, true));
+      try
+      {
+         DescribeJournal.describeMessagesJournal(journalDir);
+      }
+      finally
+      {
+         System.setOut(systemOut);
+      }
+
+      String description = output.toString();
+      Assert.assertTrue(description.contains("message count=11"));
+      Assert.assertTrue(description.contains("queue id " + queue1ID + ",count=6"));
+      Assert.assertTrue(description.contains("queue id " + queue2ID + ",count=5"));
+   }
+
+   private static void send(final ClientSession session, final SimpleString address, final int count) throws Exception
+   {
+      ClientProducer producer = session.createProducer(address);
+
+      for (int i = 0; i < count; i++)
+      {
+         producer.send(session.createMessage(true));
+      }
+
+      producer.close();
+   }
+}
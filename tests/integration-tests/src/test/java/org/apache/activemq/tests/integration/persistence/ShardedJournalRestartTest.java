@@ -0,0 +1,236 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.tests.integration.persistence;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.activemq.api.core.SimpleString;
+import org.apache.activemq.api.core.client.ClientConsumer;
+import org.apache.activemq.api.core.client.ClientMessage;
+import org.apache.activemq.api.core.client.ClientProducer;
+import org.apache.activemq.api.core.client.ClientSession;
+import org.apache.activemq.api.core.client.ClientSessionFactory;
+import org.apache.activemq.api.core.client.ServerLocator;
+import org.apache.activemq.core.config.Configuration;
+import org.apache.activemq.core.journal.impl.ShardedJournal;
+import org.apache.activemq.core.persistence.StorageManager;
+import org.apache.activemq.core.persistence.impl.journal.JournalStorageManager;
+import org.apache.activemq.core.server.ActiveMQServer;
+import org.apache.activemq.core.server.ServerMessage;
+import org.apache.activemq.core.server.impl.ServerMessageImpl;
+import org.apache.activemq.tests.util.ServiceTestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A server whose message journal is sharded over several directories.
+ */
+public class ShardedJournalRestartTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS = new SimpleString("address");
+
+   private static final String PROPERTY = "count";
+
+   @Test
+   public void testRestart() throws Exception
+   {
+      List<String> shardDirectories = new ArrayList<String>();
+      shardDirectories.add(getTestDir() + "/journal-shard1");
+      shardDirectories.add(getTestDir() + "/journal-shard2");
+
+      Configuration config = createDefaultConfig().setJournalShardDirectories(shardDirectories);
+
+      ActiveMQServer server = createServer(true, config);
+      server.start();
+
+      Assert.assertTrue(server.getStorageManager().getMessageJournal() instanceof ShardedJournal);
+      Assert.assertEquals(3, ((ShardedJournal) server.getStorageManager().getMessageJournal()).getShardCount());
+
+      // the sharded journal loads the records by ID, so IDs are not leased in blocks
+      Assert.assertEquals(1, ((JournalStorageManager) server.getStorageManager()).getIDBlockSize());
+
+      ServerLocator locator = createInVMNonHALocator();
+      ClientSessionFactory sf = createSessionFactory(locator);
+      ClientSession session = addClientSession(sf.createSession(false, false, false));
+      session.createQueue(ADDRESS, ADDRESS, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+
+      for (int i = 0; i < 100; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.putIntProperty(PROPERTY, i);
+         producer.send(message);
+
+         if (i % 10 == 9)
+         {
+            session.commit();
+         }
+      }
+
+      // acknowledging messages written by several transactions
+      session.start();
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+      receive(consumer, 0, 30);
+      session.commit();
+
+      receive(consumer, 30, 40);
+      session.rollback();
+
+      session.close();
+      sf.close();
+
+      server.stop();
+
+      for (String directory : shardDirectories)
+      {
+         Assert.assertTrue(new File(directory).list().length > 0);
+      }
+
+      server.start();
+
+      sf = createSessionFactory(locator);
+      session = addClientSession(sf.createSession(false, false, false));
+      session.start();
+      consumer = session.createConsumer(ADDRESS);
+      receive(consumer, 30, 100);
+      session.commit();
+      Assert.assertNull(consumer.receiveImmediate());
+
+      session.close();
+      sf.close();
+
+      server.stop();
+      server.start();
+
+      sf = createSessionFactory(locator);
+      session = addClientSession(sf.createSession(false, true, true));
+      session.start();
+      consumer = session.createConsumer(ADDRESS);
+      Assert.assertNull(consumer.receiveImmediate());
+
+      session.close();
+      sf.close();
+      locator.close();
+      server.stop();
+   }
+
+   /**
+    * A producer's messages can get their IDs on a different thread each, like when its session runs
+    * on a thread pool. The sharded journal loads the messages back by ID, so the IDs must keep the
+    * order they were given in whatever thread asks for them.
+    */
+   @Test
+   public void testRestartKeepsOrderOfIDsGeneratedOnSeveralThreads() throws Exception
+   {
+      final int threads = 3;
+      final int messages = 300;
+
+      List<String> shardDirectories = new ArrayList<String>();
+      shardDirectories.add(getTestDir() + "/journal-shard1");
+      shardDirectories.add(getTestDir() + "/journal-shard2");
+
+      ActiveMQServer server = createServer(true, createDefaultConfig().setJournalShardDirectories(shardDirectories));
+      server.start();
+
+      ServerLocator locator = createInVMNonHALocator();
+      ClientSessionFactory sf = createSessionFactory(locator);
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS, ADDRESS, true);
+      session.close();
+
+      final StorageManager storageManager = server.getStorageManager();
+      final long queueID = server.locateQueue(ADDRESS).getID();
+
+      ExecutorService[] executors = new ExecutorService[threads];
+      for (int i = 0; i < threads; i++)
+      {
+         executors[i] = Executors.newSingleThreadExecutor();
+      }
+
+      try
+      {
+         for (int i = 0; i < messages; i++)
+         {
+            final int count = i;
+            executors[i % threads].submit(new Callable<Void>()
+            {
+               public Void call() throws Exception
+               {
+                  ServerMessage message = new ServerMessageImpl(storageManager.generateID(), 1024);
+                  message.setAddress(ADDRESS);
+                  message.setDurable(true);
+                  message.putIntProperty(PROPERTY, count);
+                  storageManager.storeMessage(message);
+                  storageManager.storeReference(queueID, message.getMessageID(), true);
+                  return null;
+               }
+            }).get();
+         }
+      }
+      finally
+      {
+         for (ExecutorService executor : executors)
+         {
+            executor.shutdown();
+         }
+      }
+
+      server.stop();
+      server.start();
+
+      sf = createSessionFactory(locator);
+      session = addClientSession(sf.createSession(false, true, true));
+      session.start();
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+      receive(consumer, 0, messages);
+      Assert.assertNull(consumer.receiveImmediate());
+
+      session.close();
+      sf.close();
+      locator.close();
+      server.stop();
+   }
+
+   @Test
+   public void testIDsLeasedInBlocksWithoutShards() throws Exception
+   {
+      ActiveMQServer server = createServer(true, createDefaultConfig());
+      server.start();
+
+      Assert.assertFalse(server.getStorageManager().getMessageJournal() instanceof ShardedJournal);
+      Assert.assertTrue(((JournalStorageManager) server.getStorageManager()).getIDBlockSize() > 1);
+
+      server.stop();
+   }
+
+   private static void receive(final ClientConsumer consumer, final int from, final int to) throws Exception
+   {
+      for (int i = from; i < to; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         Assert.assertNotNull(message);
+         Assert.assertEquals(i, message.getIntProperty(PROPERTY).intValue());
+         message.acknowledge();
+      }
+   }
+}
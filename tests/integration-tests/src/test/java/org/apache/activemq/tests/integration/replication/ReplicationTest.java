@@ -52,6 +52,8 @@ import org.apache.activemq.core.journal.EncodingSupport;
 import org.apache.activemq.core.journal.IOAsyncTask;
 import org.apache.activemq.core.journal.IOCompletion;
 import org.apache.activemq.core.journal.Journal;
+import org.apache.activemq.core.journal.JournalCompactStatistics;
+import org.apache.activemq.core.journal.JournalIOStatistics;
 import org.apache.activemq.core.journal.JournalLoadInformation;
 import org.apache.activemq.core.journal.LoaderCallback;
 import org.apache.activemq.core.journal.PreparedTransactionInfo;
@@ -956,6 +958,18 @@ public final class ReplicationTest extends ServiceTestBase
       {
       }
 
+      @Override
+      public JournalCompactStatistics getCompactStatistics()
+      {
+         return new JournalCompactStatistics();
+      }
+
+      @Override
+      public JournalIOStatistics getIOStatistics()
+      {
+         return new JournalIOStatistics();
+      }
+
       @Override
       public void replicationSyncPreserveOldFiles()
       {
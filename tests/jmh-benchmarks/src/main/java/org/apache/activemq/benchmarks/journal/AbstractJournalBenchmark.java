@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.benchmarks.journal;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import org.apache.activemq.core.journal.PreparedTransactionInfo;
+import org.apache.activemq.core.journal.RecordInfo;
+import org.apache.activemq.core.journal.SequentialFileFactory;
+import org.apache.activemq.core.journal.impl.JournalImpl;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * The journal and the parameters shared by the journal benchmarks.
+ * <p>
+ * Every journal is created on its own directory under {@code java.io.tmpdir}, or under the
+ * {@code benchmark.dir} system property when set, which is deleted when the journal is destroyed.
+ */
+public abstract class AbstractJournalBenchmark
+{
+   protected static final byte RECORD_TYPE = 1;
+
+   private static final int FILE_SIZE = 10 * 1024 * 1024;
+
+   private static final int MIN_FILES = 2;
+
+   @Param({"FAKE", "NIO", "AIO", "URING"})
+   public JournalType type;
+
+   @Param({"128", "1024", "10240"})
+   public int recordSize;
+
+   protected SequentialFileFactory fileFactory;
+
+   protected JournalImpl journal;
+
+   private File directory;
+
+   protected byte[] newRecord()
+   {
+      return new byte[recordSize];
+   }
+
+   /**
+    * Creates an empty journal and loads it. The compaction is disabled, so it only happens when a
+    * benchmark asks for it.
+    */
+   protected void createJournal() throws Exception
+   {
+      directory = new File(System.getProperty("benchmark.dir", System.getProperty("java.io.tmpdir")),
+                           "journal-benchmark-" + System.nanoTime());
+      directory.mkdirs();
+
+      fileFactory = type.newFactory(directory.getPath());
+
+      startJournal();
+   }
+
+   /**
+    * Starts and loads the journal on the current directory, which may already have records.
+    */
+   protected void startJournal() throws Exception
+   {
+      journal = newJournal();
+      journal.start();
+      journal.load(new ArrayList<RecordInfo>(), new ArrayList<PreparedTransactionInfo>(), null);
+   }
+
+   /**
+    * @return a journal on the current directory, not started
+    */
+   protected JournalImpl newJournal()
+   {
+      return new JournalImpl(FILE_SIZE, MIN_FILES, 0, 0, fileFactory, "amq", "amq", 500);
+   }
+
+   protected void stopJournal() throws Exception
+   {
+      if (journal != null)
+      {
+         journal.stop();
+         journal = null;
+      }
+   }
+
+   protected void destroyJournal() throws Exception
+   {
+      stopJournal();
+
+      if (directory != null)
+      {
+         deleteDirectory(directory);
+         directory = null;
+      }
+   }
+
+   private static void deleteDirectory(final File directory)
+   {
+      File[] files = directory.listFiles();
+
+      if (files != null)
+      {
+         for (File file : files)
+         {
+            if (file.isDirectory())
+            {
+               deleteDirectory(file);
+            }
+            else
+            {
+               file.delete();
+            }
+         }
+      }
+
+      directory.delete();
+   }
+}
@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.benchmarks.journal;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Appends on a journal shared by all the benchmark threads, whose number is given with {@code -t}.
+ * <p>
+ * Nothing is ever reclaimed, so the journal is recreated on every iteration to bound the space it takes,
+ * which is also why the iterations are short.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalAppendBenchmark extends AbstractJournalBenchmark
+{
+   /**
+    * The records updated by {@link #appendUpdateRecord()}, with IDs from 1 to this number
+    */
+   private static final int UPDATED_RECORDS = 1000;
+
+   @Param({"false", "true"})
+   public boolean sync;
+
+   private final AtomicLong ids = new AtomicLong();
+
+   private byte[] record;
+
+   @Setup(Level.Iteration)
+   public void setUp() throws Exception
+   {
+      createJournal();
+
+      record = newRecord();
+
+      for (long id = 1; id <= UPDATED_RECORDS; id++)
+      {
+         journal.appendAddRecord(id, RECORD_TYPE, record, false);
+      }
+
+      ids.set(UPDATED_RECORDS);
+   }
+
+   @TearDown(Level.Iteration)
+   public void tearDown() throws Exception
+   {
+      destroyJournal();
+   }
+
+   @Benchmark
+   public void appendAddRecord() throws Exception
+   {
+      journal.appendAddRecord(ids.incrementAndGet(), RECORD_TYPE, record, sync);
+   }
+
+   @Benchmark
+   public void appendUpdateRecord() throws Exception
+   {
+      long id = ThreadLocalRandom.current().nextInt(UPDATED_RECORDS) + 1;
+
+      journal.appendUpdateRecord(id, RECORD_TYPE, record, sync);
+   }
+
+   /**
+    * A delete needs a record to delete, so this is the cost of {@link #appendAddRecord()} and of a delete.
+    */
+   @Benchmark
+   public void appendAddAndDeleteRecord() throws Exception
+   {
+      long id = ids.incrementAndGet();
+
+      journal.appendAddRecord(id, RECORD_TYPE, record, false);
+      journal.appendDeleteRecord(id, sync);
+   }
+
+   /**
+    * A transaction adding two records, committed with the sync parameter.
+    */
+   @Benchmark
+   public void appendCommitRecord() throws Exception
+   {
+      long txID = ids.incrementAndGet();
+
+      journal.appendAddRecordTransactional(txID, ids.incrementAndGet(), RECORD_TYPE, record);
+      journal.appendAddRecordTransactional(txID, ids.incrementAndGet(), RECORD_TYPE, record);
+      journal.appendCommitRecord(txID, sync);
+   }
+}
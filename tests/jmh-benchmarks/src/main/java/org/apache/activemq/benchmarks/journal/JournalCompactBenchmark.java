@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.benchmarks.journal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compacts a journal where only some of the records added are still alive. The journal is written again
+ * before every compaction, which is measured alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JournalCompactBenchmark extends AbstractJournalBenchmark
+{
+   @Param({"10000", "100000"})
+   public int records;
+
+   /**
+    * One record out of this number is kept alive
+    */
+   @Param({"2", "10"})
+   public int liveRatio;
+
+   @Setup(Level.Iteration)
+   public void setUp() throws Exception
+   {
+      createJournal();
+
+      byte[] record = newRecord();
+
+      for (long id = 0; id < records; id++)
+      {
+         journal.appendAddRecord(id, RECORD_TYPE, record, false);
+      }
+
+      for (long id = 0; id < records; id++)
+      {
+         if (id % liveRatio != 0)
+         {
+            journal.appendDeleteRecord(id, false);
+         }
+      }
+
+      // the current file is never compacted
+      journal.forceMoveNextFile();
+   }
+
+   @TearDown(Level.Iteration)
+   public void tearDown() throws Exception
+   {
+      destroyJournal();
+   }
+
+   @Benchmark
+   public void compact() throws Exception
+   {
+      journal.scheduleCompactAndBlock(600);
+   }
+}
@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.benchmarks.journal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.core.journal.PreparedTransactionInfo;
+import org.apache.activemq.core.journal.RecordInfo;
+import org.apache.activemq.core.journal.impl.JournalImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loads a journal written once for the whole trial: added records, a quarter of them updated, half of them
+ * deleted, and one record out of ten added by a committed transaction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JournalLoadBenchmark extends AbstractJournalBenchmark
+{
+   @Param({"10000", "100000"})
+   public int records;
+
+   @Setup(Level.Trial)
+   public void setUp() throws Exception
+   {
+      createJournal();
+
+      byte[] record = newRecord();
+
+      long txID = records;
+
+      for (long id = 0; id < records; id++)
+      {
+         if (id % 10 == 0)
+         {
+            journal.appendAddRecordTransactional(++txID, id, RECORD_TYPE, record);
+            journal.appendCommitRecord(txID, false);
+         }
+         else
+         {
+            journal.appendAddRecord(id, RECORD_TYPE, record, false);
+         }
+      }
+
+      for (long id = 0; id < records; id += 4)
+      {
+         journal.appendUpdateRecord(id, RECORD_TYPE, record, false);
+      }
+
+      for (long id = 0; id < records; id += 2)
+      {
+         journal.appendDeleteRecord(id, false);
+      }
+
+      stopJournal();
+
+      // the first load may reclaim files, the measured ones all find the same journal
+      load();
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() throws Exception
+   {
+      destroyJournal();
+   }
+
+   @Benchmark
+   public int load() throws Exception
+   {
+      JournalImpl loaded = newJournal();
+
+      List<RecordInfo> committedRecords = new ArrayList<RecordInfo>();
+
+      loaded.start();
+      try
+      {
+         loaded.load(committedRecords, new ArrayList<PreparedTransactionInfo>(), null);
+      }
+      finally
+      {
+         loaded.stop();
+      }
+
+      return committedRecords.size();
+   }
+}
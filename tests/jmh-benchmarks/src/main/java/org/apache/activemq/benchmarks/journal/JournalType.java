@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.benchmarks.journal;
+
+import org.apache.activemq.core.asyncio.impl.AsynchronousFileImpl;
+import org.apache.activemq.core.asyncio.impl.URingAsynchronousFileImpl;
+import org.apache.activemq.core.journal.SequentialFileFactory;
+import org.apache.activemq.core.journal.impl.AIOSequentialFileFactory;
+import org.apache.activemq.core.journal.impl.NIOSequentialFileFactory;
+import org.apache.activemq.tests.unit.core.journal.impl.fakes.FakeSequentialFileFactory;
+
+/**
+ * The file factories a journal benchmark can run over.
+ */
+public enum JournalType
+{
+   /**
+    * In memory files, to measure the journal itself without any IO
+    */
+   FAKE
+   {
+      @Override
+      SequentialFileFactory newFactory(final String directory)
+      {
+         return new FakeSequentialFileFactory();
+      }
+   },
+
+   /**
+    * Buffered NIO files, as used by the server
+    */
+   NIO
+   {
+      @Override
+      SequentialFileFactory newFactory(final String directory)
+      {
+         return new NIOSequentialFileFactory(directory, true);
+      }
+   },
+
+   /**
+    * Linux AIO files, only available where the native library could be loaded
+    */
+   AIO
+   {
+      @Override
+      SequentialFileFactory newFactory(final String directory)
+      {
+         if (!AsynchronousFileImpl.isLoaded())
+         {
+            throw new IllegalStateException("AIO isn't available on this platform");
+         }
+         return new AIOSequentialFileFactory(directory);
+      }
+   },
+
+   /**
+    * Linux AIO files on io_uring instead of libaio
+    */
+   URING
+   {
+      @Override
+      SequentialFileFactory newFactory(final String directory)
+      {
+         if (!URingAsynchronousFileImpl.isSupported())
+         {
+            throw new IllegalStateException("io_uring isn't available on this platform");
+         }
+         AIOSequentialFileFactory factory = new AIOSequentialFileFactory(directory);
+         factory.setUseURing(true);
+         return factory;
+      }
+   };
+
+   abstract SequentialFileFactory newFactory(String directory);
+}
@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.benchmarks.server;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.api.core.SimpleString;
+import org.apache.activemq.api.core.TransportConfiguration;
+import org.apache.activemq.api.core.client.ActiveMQClient;
+import org.apache.activemq.api.core.client.ClientMessage;
+import org.apache.activemq.api.core.client.ClientProducer;
+import org.apache.activemq.api.core.client.ClientSession;
+import org.apache.activemq.api.core.client.ClientSessionFactory;
+import org.apache.activemq.api.core.client.ServerLocator;
+import org.apache.activemq.core.config.Configuration;
+import org.apache.activemq.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.core.remoting.impl.invm.InVMAcceptorFactory;
+import org.apache.activemq.core.remoting.impl.invm.InVMConnectorFactory;
+import org.apache.activemq.core.server.ActiveMQServer;
+import org.apache.activemq.core.server.ActiveMQServers;
+import org.apache.activemq.core.server.JournalType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Durable sends to a queue of an in-VM server, with a producer per benchmark thread (given with {@code -t})
+ * blocking on every send. Every send goes through the storage manager lock, so this is the benchmark
+ * to run with many threads when changing it.
+ * <p>
+ * The server data is written under {@code java.io.tmpdir}, or under the {@code benchmark.dir} system property
+ * when set, and deleted at the end of the trial. Nothing is consumed, so the journal grows during a trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DurableSendBenchmark
+{
+   private static final SimpleString QUEUE = new SimpleString("benchmark");
+
+   @Param({"NIO", "ASYNCIO"})
+   public JournalType journalType;
+
+   @Param({"1024"})
+   public int messageSize;
+
+   private File directory;
+
+   private ActiveMQServer server;
+
+   private ServerLocator locator;
+
+   @Setup(Level.Trial)
+   public void startServer() throws Exception
+   {
+      directory = new File(System.getProperty("benchmark.dir", System.getProperty("java.io.tmpdir")),
+                           "send-benchmark-" + System.nanoTime());
+
+      Configuration config = new ConfigurationImpl()
+         .setSecurityEnabled(false)
+         .setJournalType(journalType)
+         .setBindingsDirectory(new File(directory, "bindings").getPath())
+         .setJournalDirectory(new File(directory, "journal").getPath())
+         .setPagingDirectory(new File(directory, "paging").getPath())
+         .setLargeMessagesDirectory(new File(directory, "large-messages").getPath())
+         .addAcceptorConfiguration(new TransportConfiguration(InVMAcceptorFactory.class.getName()));
+
+      server = ActiveMQServers.newActiveMQServer(config, true);
+      server.start();
+
+      locator = ActiveMQClient.createServerLocatorWithoutHA(new TransportConfiguration(InVMConnectorFactory.class.getName()))
+         .setBlockOnDurableSend(true);
+
+      ClientSessionFactory factory = locator.createSessionFactory();
+      ClientSession session = factory.createSession();
+      session.createQueue(QUEUE, QUEUE, true);
+      session.close();
+      factory.close();
+   }
+
+   @TearDown(Level.Trial)
+   public void stopServer() throws Exception
+   {
+      locator.close();
+      server.stop();
+      deleteDirectory(directory);
+   }
+
+   @State(Scope.Thread)
+   public static class Producer
+   {
+      private ClientSessionFactory factory;
+
+      private ClientSession session;
+
+      private ClientProducer producer;
+
+      private byte[] body;
+
+      @Setup(Level.Trial)
+      public void createProducer(final DurableSendBenchmark benchmark) throws Exception
+      {
+         factory = benchmark.locator.createSessionFactory();
+         session = factory.createSession();
+         producer = session.createProducer(QUEUE);
+         body = new byte[benchmark.messageSize];
+      }
+
+      @TearDown(Level.Trial)
+      public void closeProducer() throws Exception
+      {
+         session.close();
+         factory.close();
+      }
+   }
+
+   @Benchmark
+   public void send(final Producer producer) throws Exception
+   {
+      ClientMessage message = producer.session.createMessage(true);
+      message.getBodyBuffer().writeBytes(producer.body);
+      producer.producer.send(message);
+   }
+
+   private static void deleteDirectory(final File directory)
+   {
+      File[] files = directory.listFiles();
+
+      if (files != null)
+      {
+         for (File file : files)
+         {
+            if (file.isDirectory())
+            {
+               deleteDirectory(file);
+            }
+            else
+            {
+               file.delete();
+            }
+         }
+      }
+
+      directory.delete();
+   }
+}
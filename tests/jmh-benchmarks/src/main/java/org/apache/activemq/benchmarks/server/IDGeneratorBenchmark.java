@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.benchmarks.server;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.core.persistence.impl.journal.BatchingIDGenerator;
+import org.apache.activemq.core.persistence.impl.nullpm.NullStorageManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generates IDs from 32 threads by default (override with {@code -t}), with the checkpoint size the
+ * storage manager uses. A {@code blockSize} of 1 is the single shared counter, as before the IDs were
+ * leased in blocks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(32)
+@Fork(1)
+public class IDGeneratorBenchmark
+{
+   @Param({"1", "64"})
+   public int blockSize;
+
+   private NullStorageManager storageManager;
+
+   private BatchingIDGenerator generator;
+
+   @Setup
+   public void setUp() throws Exception
+   {
+      storageManager = new NullStorageManager();
+      storageManager.start();
+      generator = new BatchingIDGenerator(0, Integer.MAX_VALUE, blockSize, storageManager);
+   }
+
+   @TearDown
+   public void tearDown() throws Exception
+   {
+      storageManager.stop();
+   }
+
+   @Benchmark
+   public long generateID()
+   {
+      return generator.generateID();
+   }
+}
@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.benchmarks.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.core.persistence.impl.journal.OperationContextImpl;
+import org.apache.activemq.utils.OrderedExecutorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The store-then-wait pattern of a session: every benchmark thread (given with {@code -t}) owns a context
+ * on an ordered executor over a shared pool, lines up {@code stores} operations and waits for them, while
+ * a single IO thread completes the stores, as the journal callbacks do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationContextBenchmark
+{
+   @State(Scope.Benchmark)
+   public static class Shared
+   {
+      ExecutorService pool;
+
+      ExecutorService io;
+
+      OrderedExecutorFactory factory;
+
+      @Setup
+      public void setUp()
+      {
+         pool = Executors.newCachedThreadPool();
+         io = Executors.newSingleThreadExecutor();
+         factory = new OrderedExecutorFactory(pool);
+      }
+
+      @TearDown
+      public void tearDown()
+      {
+         io.shutdown();
+         pool.shutdown();
+      }
+   }
+
+   @State(Scope.Thread)
+   public static class Session
+   {
+      OperationContextImpl context;
+
+      Runnable done;
+
+      @Setup(Level.Trial)
+      public void setUp(final Shared shared)
+      {
+         context = new OperationContextImpl(shared.factory.getExecutor());
+         done = new Runnable()
+         {
+            public void run()
+            {
+               context.done();
+            }
+         };
+      }
+   }
+
+   @Param({"1", "10"})
+   public int stores;
+
+   @Benchmark
+   public boolean storeThenWait(final Shared shared, final Session session) throws Exception
+   {
+      for (int i = 0; i < stores; i++)
+      {
+         session.context.storeLineUp();
+         shared.io.execute(session.done);
+      }
+      return session.context.waitCompletion(5000);
+   }
+}
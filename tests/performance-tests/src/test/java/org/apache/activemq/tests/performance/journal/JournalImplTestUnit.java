@@ -24,10 +24,15 @@ import java.util.ArrayList;
 import org.junit.Assert;
 
 import org.apache.activemq.core.asyncio.impl.AsynchronousFileImpl;
+import org.apache.activemq.core.journal.EncodingSupport;
 import org.apache.activemq.core.journal.Journal;
 import org.apache.activemq.core.journal.PreparedTransactionInfo;
 import org.apache.activemq.core.journal.RecordInfo;
+import org.apache.activemq.core.journal.SequentialFileFactory;
+import org.apache.activemq.core.journal.impl.JournalFile;
 import org.apache.activemq.core.journal.impl.JournalImpl;
+import org.apache.activemq.core.journal.impl.JournalRecordCompressor;
+import org.apache.activemq.core.journal.impl.dataformat.ByteArrayEncoding;
 import org.apache.activemq.tests.unit.UnitTestLogger;
 import org.apache.activemq.tests.unit.core.journal.impl.JournalImplTestBase;
 import org.apache.activemq.tests.unit.core.journal.impl.fakes.SimpleEncoding;
@@ -256,6 +261,74 @@ public abstract class JournalImplTestUnit extends JournalImplTestBase
 
    }
 
+   /**
+    * Bytes written and throughput of the same verbose records with and without compressing them
+    */
+   @Test
+   public void testSpeedCompressed() throws Exception
+   {
+      StringBuilder xml = new StringBuilder("<order>");
+      for (int i = 0; i < 20; i++)
+      {
+         xml.append("<item id=\"").append(i).append("\"><product>product-").append(i * 7919 % 1000)
+            .append("</product><quantity>").append(i % 13).append("</quantity><price currency=\"EUR\">")
+            .append(i * 31 % 100).append(".99</price></item>");
+      }
+      xml.append("</order>");
+
+      EncodingSupport data = new ByteArrayEncoding(xml.toString().getBytes("UTF-8"));
+
+      // warm up
+      internalTestSpeedCompressed(data, null);
+      internalTestSpeedCompressed(data, new JournalRecordCompressor());
+
+      internalTestSpeedCompressed(data, null);
+      internalTestSpeedCompressed(data, new JournalRecordCompressor());
+   }
+
+   private void internalTestSpeedCompressed(final EncodingSupport data, final JournalRecordCompressor compressor) throws Exception
+   {
+      final int numMessages = 20000;
+
+      SequentialFileFactory factory = getFileFactory();
+
+      JournalImpl journal = new JournalImpl(10 * 1024 * 1024, 2, 0, 0, factory, "activemq-data", "amq", 5000);
+
+      journal.setRecordCompressor(compressor);
+
+      journal.start();
+
+      journal.load(new ArrayList<RecordInfo>(), null, null);
+
+      long start = System.currentTimeMillis();
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         journal.appendAddRecord(i, (byte)0, data, i % 100 == 99);
+      }
+
+      journal.appendDeleteRecord(0, true);
+
+      long end = System.currentTimeMillis();
+
+      long bytesWritten = 0;
+
+      for (JournalFile file : journal.getDataFiles())
+      {
+         bytesWritten += file.getFile().size();
+      }
+
+      bytesWritten += journal.getCurrentFile().getFile().position();
+
+      journal.stop();
+
+      double rate = 1000 * (double)numMessages / (end - start);
+
+      JournalImplTestUnit.log.info((compressor == null ? "Uncompressed: " : "Compressed: ") + numMessages + " records of " +
+                                      data.getEncodeSize() + " bytes, " + bytesWritten + " bytes written, rate " + rate + " records/sec" +
+                                      (compressor == null ? "" : ", " + compressor));
+   }
+
    private void internaltestSpeedNonTransactional() throws Exception
    {
       final long numMessages = 10000;
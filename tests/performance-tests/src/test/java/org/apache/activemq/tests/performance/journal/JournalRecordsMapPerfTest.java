@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.tests.performance.journal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.activemq.core.journal.impl.JournalFile;
+import org.apache.activemq.core.journal.impl.JournalFileImpl;
+import org.apache.activemq.core.journal.impl.JournalRecord;
+import org.apache.activemq.tests.unit.UnitTestLogger;
+import org.apache.activemq.tests.util.UnitTestCase;
+import org.apache.activemq.utils.ConcurrentLongHashMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the heap used and the throughput of the map holding the live records on
+ * {@link org.apache.activemq.core.journal.impl.JournalImpl} with the ConcurrentHashMap it used before.
+ */
+public class JournalRecordsMapPerfTest extends UnitTestCase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int NUMBER_OF_RECORDS = 2000000;
+
+   private static final int THREADS = 8;
+
+   private final JournalFile file = new JournalFileImpl(null, 1, 2);
+
+   /**
+    * The two operations the journal does on its records, with both map implementations
+    */
+   private interface RecordsMap
+   {
+      void put(long id, JournalRecord record);
+
+      JournalRecord get(long id);
+
+      JournalRecord remove(long id);
+
+      int size();
+   }
+
+   private static final class BoxedRecords implements RecordsMap
+   {
+      private final ConcurrentHashMap<Long, JournalRecord> map = new ConcurrentHashMap<Long, JournalRecord>();
+
+      public void put(final long id, final JournalRecord record)
+      {
+         map.put(id, record);
+      }
+
+      public JournalRecord get(final long id)
+      {
+         return map.get(id);
+      }
+
+      public JournalRecord remove(final long id)
+      {
+         return map.remove(id);
+      }
+
+      public int size()
+      {
+         return map.size();
+      }
+   }
+
+   private static final class PrimitiveRecords implements RecordsMap
+   {
+      private final ConcurrentLongHashMap<JournalRecord> map = new ConcurrentLongHashMap<JournalRecord>();
+
+      public void put(final long id, final JournalRecord record)
+      {
+         map.put(id, record);
+      }
+
+      public JournalRecord get(final long id)
+      {
+         return map.get(id);
+      }
+
+      public JournalRecord remove(final long id)
+      {
+         return map.remove(id);
+      }
+
+      public int size()
+      {
+         return map.size();
+      }
+   }
+
+   @Test
+   public void testMemoryPerRecord() throws Exception
+   {
+      long boxed = measureBytesPerRecord(new BoxedRecords());
+      long primitive = measureBytesPerRecord(new PrimitiveRecords());
+
+      log.info("Heap per live record: ConcurrentHashMap = " + boxed + " bytes, ConcurrentLongHashMap = " + primitive + " bytes");
+
+      Assert.assertTrue("ConcurrentLongHashMap should use less memory per record", primitive < boxed);
+   }
+
+   @Test
+   public void testThroughput() throws Exception
+   {
+      // warm up
+      measureThroughput(new BoxedRecords());
+      measureThroughput(new PrimitiveRecords());
+
+      long boxed = measureThroughput(new BoxedRecords());
+      long primitive = measureThroughput(new PrimitiveRecords());
+
+      log.info("add/update/delete operations per second with " + THREADS + " threads: ConcurrentHashMap = " + boxed +
+                  ", ConcurrentLongHashMap = " + primitive);
+   }
+
+   private long measureBytesPerRecord(final RecordsMap map) throws Exception
+   {
+      JournalRecord[] records = new JournalRecord[NUMBER_OF_RECORDS];
+      for (int i = 0; i < NUMBER_OF_RECORDS; i++)
+      {
+         records[i] = new JournalRecord(file, 100);
+      }
+
+      long before = usedMemory();
+
+      for (int i = 0; i < NUMBER_OF_RECORDS; i++)
+      {
+         map.put(i, records[i]);
+      }
+
+      long after = usedMemory();
+
+      Assert.assertEquals(NUMBER_OF_RECORDS, map.size());
+
+      return (after - before) / NUMBER_OF_RECORDS;
+   }
+
+   private long measureThroughput(final RecordsMap map) throws Exception
+   {
+      final int recordsPerThread = NUMBER_OF_RECORDS / THREADS;
+      final CountDownLatch start = new CountDownLatch(1);
+      final JournalRecord record = new JournalRecord(file, 100);
+
+      Thread[] threads = new Thread[THREADS];
+
+      for (int t = 0; t < THREADS; t++)
+      {
+         final long firstID = (long) t * recordsPerThread;
+
+         threads[t] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+               }
+               catch (InterruptedException e)
+               {
+                  return;
+               }
+
+               // same pattern as appendAdd, appendUpdate and appendDelete
+               for (long id = firstID; id < firstID + recordsPerThread; id++)
+               {
+                  map.put(id, record);
+               }
+               for (long id = firstID; id < firstID + recordsPerThread; id++)
+               {
+                  map.get(id);
+               }
+               for (long id = firstID; id < firstID + recordsPerThread; id++)
+               {
+                  map.remove(id);
+               }
+            }
+         };
+         threads[t].start();
+      }
+
+      long startTime = System.nanoTime();
+
+      start.countDown();
+
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      long elapsed = System.nanoTime() - startTime;
+
+      return (long) recordsPerThread * THREADS * 3 * 1000000000L / elapsed;
+   }
+
+   private static long usedMemory() throws Exception
+   {
+      Runtime runtime = Runtime.getRuntime();
+      for (int i = 0; i < 5; i++)
+      {
+         System.gc();
+         Thread.sleep(100);
+      }
+      return runtime.totalMemory() - runtime.freeMemory();
+   }
+}
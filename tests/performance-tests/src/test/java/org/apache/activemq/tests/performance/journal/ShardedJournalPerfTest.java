@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.tests.performance.journal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.activemq.core.journal.Journal;
+import org.apache.activemq.core.journal.PreparedTransactionInfo;
+import org.apache.activemq.core.journal.RecordInfo;
+import org.apache.activemq.core.journal.impl.JournalImpl;
+import org.apache.activemq.core.journal.impl.NIOSequentialFileFactory;
+import org.apache.activemq.core.journal.impl.ShardedJournal;
+import org.apache.activemq.tests.unit.UnitTestLogger;
+import org.apache.activemq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Synced appends from several threads on a {@link ShardedJournal} with more and more shards.
+ * <p>
+ * The shards of this test are all on the test directory, so they only scale when that disk can take
+ * several syncs in parallel. Point each shard to its own disk to measure the real gain.
+ */
+public class ShardedJournalPerfTest extends UnitTestCase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int THREADS = 16;
+
+   private static final int RECORDS_PER_THREAD = 1000;
+
+   private static final int RECORD_SIZE = 1024;
+
+   @Test
+   public void testSyncedAppends() throws Exception
+   {
+      // warm up
+      measure(1, false);
+
+      for (int shards = 1; shards <= 4; shards *= 2)
+      {
+         long nonTransactional = measure(shards, false);
+         long transactional = measure(shards, true);
+
+         log.info(shards + " shard(s): " + nonTransactional + " synced appends/s, " + transactional +
+                     " synced transactions of 2 records/s");
+      }
+   }
+
+   private long measure(final int shardCount, final boolean transactional) throws Exception
+   {
+      File dir = new File(getTestDir());
+      deleteDirectory(dir);
+
+      JournalImpl[] shards = new JournalImpl[shardCount];
+
+      for (int i = 0; i < shardCount; i++)
+      {
+         File shardDir = new File(dir, "shard" + i);
+         shardDir.mkdirs();
+
+         shards[i] = new JournalImpl(10 * 1024 * 1024, 2, 0, 0, new NIOSequentialFileFactory(shardDir.getPath(), true), "amq", "amq", 1);
+      }
+
+      final Journal journal = new ShardedJournal(shards);
+      journal.start();
+      journal.load(new ArrayList<RecordInfo>(), new ArrayList<PreparedTransactionInfo>(), null);
+
+      final byte[] data = new byte[RECORD_SIZE];
+      final AtomicLong ids = new AtomicLong(0);
+      final CountDownLatch start = new CountDownLatch(1);
+      final ArrayList<Throwable> errors = new ArrayList<Throwable>();
+
+      Thread[] threads = new Thread[THREADS];
+
+      for (int t = 0; t < THREADS; t++)
+      {
+         threads[t] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+
+                  for (int i = 0; i < RECORDS_PER_THREAD; i++)
+                  {
+                     if (transactional)
+                     {
+                        long txID = ids.incrementAndGet();
+                        journal.appendAddRecordTransactional(txID, ids.incrementAndGet(), (byte) 1, data);
+                        journal.appendAddRecordTransactional(txID, ids.incrementAndGet(), (byte) 1, data);
+                        journal.appendCommitRecord(txID, true);
+                     }
+                     else
+                     {
+                        journal.appendAddRecord(ids.incrementAndGet(), (byte) 1, data, true);
+                     }
+                  }
+               }
+               catch (Throwable e)
+               {
+                  synchronized (errors)
+                  {
+                     errors.add(e);
+                  }
+               }
+            }
+         };
+         threads[t].start();
+      }
+
+      long startTime = System.nanoTime();
+
+      start.countDown();
+
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      long elapsed = System.nanoTime() - startTime;
+
+      journal.stop();
+
+      Assert.assertTrue(errors.toString(), errors.isEmpty());
+
+      return (long) THREADS * RECORDS_PER_THREAD * 1000000000L / elapsed;
+   }
+}
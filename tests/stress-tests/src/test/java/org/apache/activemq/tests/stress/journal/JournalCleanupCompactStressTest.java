@@ -280,7 +280,7 @@ public class JournalCleanupCompactStressTest extends ServiceTestBase
 
       reloadJournal();
 
-      Collection<Long> records = journal.getRecords().keySet();
+      Collection<Long> records = journal.getRecords().keys();
 
       System.out.println("Deleting everything!");
       for (Long delInfo : records)
@@ -37,6 +37,8 @@ import org.apache.activemq.api.core.ActiveMQException;
 import org.apache.activemq.core.asyncio.AIOCallback;
 import org.apache.activemq.core.asyncio.BufferCallback;
 import org.apache.activemq.core.asyncio.impl.AsynchronousFileImpl;
+import org.apache.activemq.core.asyncio.impl.URingAsynchronousFileImpl;
+import org.apache.activemq.core.journal.JournalIOStatistics;
 import org.apache.activemq.core.journal.impl.AIOSequentialFileFactory;
 import org.apache.activemq.tests.unit.UnitTestLogger;
 import org.apache.activemq.tests.util.UnitTestCase;
@@ -529,6 +531,94 @@ public class AsynchronousFileTest extends AIOTestBase
       buffers.clear();
    }
 
+   @Test
+   public void testBatchedWrites() throws Exception
+   {
+      batchedWrites(new AsynchronousFileImpl(executor, pollerExecutor));
+   }
+
+   @Test
+   public void testBatchedWritesOnURing() throws Exception
+   {
+      org.junit.Assume.assumeTrue("Test case needs io_uring to run", URingAsynchronousFileImpl.isSupported());
+
+      batchedWrites(new URingAsynchronousFileImpl(executor, pollerExecutor));
+   }
+
+   private void batchedWrites(final AsynchronousFileImpl file) throws Exception
+   {
+      controller = file;
+      JournalIOStatistics statistics = new JournalIOStatistics();
+      controller.setIOStatistics(statistics);
+
+      final int NUMBER_LINES = 100;
+      final int SIZE = 512;
+
+      controller.open(fileName, NUMBER_LINES);
+
+      controller.fill(0, 1, NUMBER_LINES * SIZE, (byte) 'j');
+
+      controller.setBufferCallback(bufferCallbackDestroy);
+
+      // the writes queue up while the executor is busy, and are submitted together after that
+      final CountDownLatch executorBlocked = new CountDownLatch(1);
+      executor.execute(new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               executorBlocked.await();
+            }
+            catch (InterruptedException ignored)
+            {
+            }
+         }
+      });
+
+      CountDownLatch latch = new CountDownLatch(NUMBER_LINES);
+      ArrayList<Integer> result = new ArrayList<Integer>();
+      for (int i = 0; i < NUMBER_LINES; i++)
+      {
+         ByteBuffer buffer1 = AsynchronousFileImpl.newBuffer(SIZE);
+         buffer1.rewind();
+         for (int j = 0; j < SIZE; j++)
+         {
+            buffer1.put((byte) ((i + j) % Byte.MAX_VALUE));
+         }
+         controller.write(i * SIZE, SIZE, buffer1, new CountDownCallback(latch, null, result, i));
+      }
+
+      executorBlocked.countDown();
+
+      Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+      // the callbacks are still called on the order of the writes
+      CountDownCallback.checkResults(NUMBER_LINES, result);
+
+      Assert.assertEquals(1, statistics.getAIOSubmitCount());
+      Assert.assertEquals(NUMBER_LINES, statistics.getAverageAIOSubmitBatchSize(), 0);
+
+      controller.close();
+
+      // every write went to its own position
+      InputStream in = new BufferedInputStream(new FileInputStream(fileName));
+      try
+      {
+         for (int i = 0; i < NUMBER_LINES; i++)
+         {
+            for (int j = 0; j < SIZE; j++)
+            {
+               Assert.assertEquals((i + j) % Byte.MAX_VALUE, in.read());
+            }
+         }
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
    @Test
    public void testBufferCallbackAwaysSameBuffer() throws Exception
    {
@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.tests.unit.core.journal.impl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.activemq.core.journal.JournalIOStatistics;
+import org.apache.activemq.core.journal.impl.DirectBufferPool;
+import org.apache.activemq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DirectBufferPoolTest extends UnitTestCase
+{
+   private final AtomicInteger allocated = new AtomicInteger();
+
+   private final AtomicInteger freed = new AtomicInteger();
+
+   private final AtomicInteger cleared = new AtomicInteger();
+
+   private JournalIOStatistics statistics;
+
+   private DirectBufferPool pool;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      statistics = new JournalIOStatistics();
+
+      pool = new DirectBufferPool(100 * 1024, new DirectBufferPool.Allocator()
+      {
+         public ByteBuffer allocate(final int size)
+         {
+            allocated.incrementAndGet();
+            return ByteBuffer.allocateDirect(size);
+         }
+
+         public void free(final ByteBuffer buffer)
+         {
+            freed.incrementAndGet();
+         }
+
+         public void clear(final ByteBuffer buffer)
+         {
+            cleared.incrementAndGet();
+         }
+      }, statistics);
+   }
+
+   @Test
+   public void testSizeClasses()
+   {
+      Assert.assertEquals(128 * 1024, pool.getLargestClassSize());
+
+      ByteBuffer buffer = pool.borrow(1000);
+      Assert.assertEquals(1024, buffer.capacity());
+      Assert.assertEquals(0, buffer.position());
+      Assert.assertEquals(1000, buffer.limit());
+
+      Assert.assertEquals(512, pool.borrow(1).capacity());
+      Assert.assertEquals(128 * 1024, pool.borrow(100 * 1024).capacity());
+
+      Assert.assertTrue(pool.isPooledCapacity(64 * 1024));
+      Assert.assertFalse(pool.isPooledCapacity(1000));
+      Assert.assertFalse(pool.isPooledCapacity(256 * 1024));
+   }
+
+   @Test
+   public void testReuse()
+   {
+      ByteBuffer buffer = pool.borrow(1000);
+      pool.release(buffer);
+
+      ByteBuffer reused = pool.borrow(600);
+      Assert.assertSame(buffer, reused);
+      Assert.assertEquals(600, reused.limit());
+
+      Assert.assertEquals(1, allocated.get());
+      Assert.assertEquals(1, cleared.get());
+      Assert.assertEquals(1, statistics.getBufferPoolHits());
+      Assert.assertEquals(1, statistics.getBufferPoolMisses());
+      Assert.assertEquals(1024, statistics.getOutstandingBufferBytes());
+
+      pool.release(reused);
+      Assert.assertEquals(0, statistics.getOutstandingBufferBytes());
+
+      // another class
+      Assert.assertNotSame(buffer, pool.borrow(2000));
+   }
+
+   @Test
+   public void testReleasedByAnotherThread() throws Exception
+   {
+      // too big for the cache of the thread
+      final ByteBuffer buffer = pool.borrow(100 * 1024);
+
+      Thread thread = new Thread()
+      {
+         @Override
+         public void run()
+         {
+            pool.release(buffer);
+         }
+      };
+      thread.start();
+      thread.join();
+
+      Assert.assertSame(buffer, pool.borrow(100 * 1024));
+      Assert.assertEquals(1, statistics.getBufferPoolHits());
+   }
+
+   @Test
+   public void testOversizedBuffer()
+   {
+      ByteBuffer buffer = pool.borrow(1024 * 1024);
+      Assert.assertEquals(1024 * 1024, buffer.capacity());
+
+      pool.release(buffer);
+      Assert.assertEquals(1, freed.get());
+
+      Assert.assertNotSame(buffer, pool.borrow(1024 * 1024));
+      Assert.assertEquals(2, statistics.getBufferPoolMisses());
+   }
+
+   @Test
+   public void testStop()
+   {
+      ByteBuffer small = pool.borrow(100);
+      ByteBuffer large = pool.borrow(100 * 1024);
+      ByteBuffer notReleased = pool.borrow(100);
+
+      pool.release(small);
+      pool.release(large);
+
+      pool.stop();
+      Assert.assertEquals(2, freed.get());
+
+      // released after the stop
+      pool.release(notReleased);
+      Assert.assertEquals(3, freed.get());
+
+      pool.start();
+      Assert.assertNotSame(small, pool.borrow(100));
+   }
+}
@@ -30,6 +30,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Assert;
 
 import org.apache.activemq.core.journal.IOAsyncTask;
+import org.apache.activemq.core.journal.JournalIOStatistics;
+import org.apache.activemq.core.journal.JournalIOStatistics.FlushReason;
 import org.apache.activemq.core.journal.impl.TimedBuffer;
 import org.apache.activemq.core.journal.impl.TimedBufferObserver;
 import org.apache.activemq.tests.util.UnitTestCase;
@@ -144,6 +146,89 @@ public class TimedBufferTest extends UnitTestCase
 
    }
 
+   @Test
+   public void testFlushStatistics() throws Exception
+   {
+      class TestObserver implements TimedBufferObserver
+      {
+         public void flushBuffer(final ByteBuffer buffer, final boolean sync, final List<IOAsyncTask> callbacks)
+         {
+            for (IOAsyncTask callback : callbacks)
+            {
+               callback.done();
+            }
+         }
+
+         public ByteBuffer newBuffer(final int minSize, final int maxSize)
+         {
+            return ByteBuffer.allocate(maxSize);
+         }
+
+         public int getRemainingBytes()
+         {
+            return 1024 * 1024;
+         }
+      }
+
+      JournalIOStatistics statistics = new JournalIOStatistics();
+
+      TimedBuffer timedBuffer = new TimedBuffer(100, TimedBufferTest.ONE_SECOND_IN_NANOS / 1000, false, statistics);
+
+      timedBuffer.start();
+
+      try
+      {
+         timedBuffer.setObserver(new TestObserver());
+
+         for (int i = 0; i < 10; i++)
+         {
+            timedBuffer.checkSize(10);
+            timedBuffer.addBytes(ActiveMQBuffers.wrappedBuffer(new byte[10]), false, dummyCallback);
+         }
+
+         // the buffer is full
+         timedBuffer.checkSize(10);
+
+         Assert.assertEquals(1, statistics.getFlushCount(FlushReason.SIZE));
+         Assert.assertEquals(100, statistics.getFlushedBytes());
+         Assert.assertEquals(10, statistics.getFlushedRecords());
+
+         timedBuffer.addBytes(ActiveMQBuffers.wrappedBuffer(new byte[10]), true, dummyCallback);
+
+         long timeout = System.currentTimeMillis() + 5000;
+         while (statistics.getSyncCount() == 0 && System.currentTimeMillis() < timeout)
+         {
+            Thread.sleep(10);
+         }
+
+         Assert.assertEquals(1, statistics.getFlushCount(FlushReason.TIMEOUT));
+         Assert.assertEquals(1, statistics.getSyncCount());
+         long syncs = 0;
+         for (long count : statistics.getSyncTimeHistogram())
+         {
+            syncs += count;
+         }
+         Assert.assertEquals(1, syncs);
+
+         timedBuffer.checkSize(10);
+         timedBuffer.addBytes(ActiveMQBuffers.wrappedBuffer(new byte[10]), false, dummyCallback);
+         timedBuffer.flush();
+
+         Assert.assertEquals(1, statistics.getFlushCount(FlushReason.FORCED));
+         Assert.assertEquals(3, statistics.getFlushCount());
+         Assert.assertEquals(12, statistics.getFlushedRecords());
+
+         statistics.reset();
+
+         Assert.assertEquals(0, statistics.getFlushCount());
+         Assert.assertEquals(0, statistics.getSyncCount());
+      }
+      finally
+      {
+         timedBuffer.stop();
+      }
+   }
+
    @Test
    public void testTimingAndFlush() throws Exception
    {
@@ -406,4 +491,225 @@ public class TimedBufferTest extends UnitTestCase
          timedBuffer.stop();
       }
    }
+
+   /**
+    * The adaptive mode can sleep for much less than a sleep usually takes, which must not be taken as
+    * the sleep not working
+    */
+   @Test
+   public void testStillSleepsOnSmallAdaptiveTimeout() throws Exception
+   {
+      class TestObserver implements TimedBufferObserver
+      {
+         public void flushBuffer(final ByteBuffer buffer, final boolean sync, final List<IOAsyncTask> callbacks)
+         {
+         }
+
+         public ByteBuffer newBuffer(final int minSize, final int maxSize)
+         {
+            return ByteBuffer.allocate(maxSize);
+         }
+
+         public int getRemainingBytes()
+         {
+            return 1024 * 1024;
+         }
+      }
+
+      final CountDownLatch sleptLatch = new CountDownLatch(TimedBuffer.MAX_CHECKS_ON_SLEEP * 2);
+
+      TimedBuffer timedBuffer = new TimedBuffer(100, TimedBufferTest.ONE_SECOND_IN_NANOS / 1000, false)
+      {
+         @Override
+         protected void stopSpin()
+         {
+            // keeps spinning forever
+         }
+
+         @Override
+         public int getCurrentTimeout()
+         {
+            // 10 microseconds
+            return TimedBufferTest.ONE_SECOND_IN_NANOS / 100000;
+         }
+
+         @Override
+         protected void sleep(int sleepMillis, int sleepNanos) throws InterruptedException
+         {
+            // much longer than requested
+            Thread.sleep(1);
+            sleptLatch.countDown();
+         }
+      };
+
+      timedBuffer.setAdaptiveTimeout(true);
+
+      timedBuffer.start();
+
+      try
+      {
+         timedBuffer.setObserver(new TestObserver());
+
+         timedBuffer.checkSize(10);
+         timedBuffer.addBytes(ActiveMQBuffers.wrappedBuffer(new byte[10]), true, dummyCallback);
+
+         assertTrue(sleptLatch.await(10, TimeUnit.SECONDS));
+
+         assertTrue(timedBuffer.isUseSleep());
+      }
+      finally
+      {
+         timedBuffer.stop();
+      }
+   }
+
+   /**
+    * Records can be added while the file is still taking the previous flush
+    */
+   @Test
+   public void testAddBytesWhileFlushing() throws Exception
+   {
+      final CountDownLatch flushing = new CountDownLatch(1);
+      final CountDownLatch releaseFlush = new CountDownLatch(1);
+
+      class TestObserver implements TimedBufferObserver
+      {
+         public void flushBuffer(final ByteBuffer buffer, final boolean sync, final List<IOAsyncTask> callbacks)
+         {
+            flushing.countDown();
+            try
+            {
+               releaseFlush.await(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+            }
+         }
+
+         public ByteBuffer newBuffer(final int minSize, final int maxSize)
+         {
+            return ByteBuffer.allocate(maxSize);
+         }
+
+         public int getRemainingBytes()
+         {
+            return 1024 * 1024;
+         }
+      }
+
+      final TimedBuffer timedBuffer = new TimedBuffer(100, TimedBufferTest.ONE_SECOND_IN_NANOS, false);
+
+      timedBuffer.start();
+
+      try
+      {
+         timedBuffer.setObserver(new TestObserver());
+
+         timedBuffer.checkSize(10);
+         timedBuffer.addBytes(ActiveMQBuffers.wrappedBuffer(new byte[10]), false, dummyCallback);
+
+         Thread flusher = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               timedBuffer.flush();
+            }
+         };
+         flusher.start();
+
+         assertTrue(flushing.await(10, TimeUnit.SECONDS));
+
+         // the flush is blocked on the observer, but there is still room on the buffer
+         long start = System.currentTimeMillis();
+         assertTrue(timedBuffer.checkSize(10));
+         timedBuffer.addBytes(ActiveMQBuffers.wrappedBuffer(new byte[10]), false, dummyCallback);
+         assertTrue(System.currentTimeMillis() - start < 5000);
+
+         releaseFlush.countDown();
+
+         flusher.join();
+      }
+      finally
+      {
+         releaseFlush.countDown();
+         timedBuffer.stop();
+      }
+   }
+
+   @Test
+   public void testAdaptiveTimeout() throws Exception
+   {
+      final AtomicInteger flushTimes = new AtomicInteger(0);
+
+      class TestObserver implements TimedBufferObserver
+      {
+         public void flushBuffer(final ByteBuffer buffer, final boolean sync, final List<IOAsyncTask> callbacks)
+         {
+            flushTimes.incrementAndGet();
+            try
+            {
+               // simulates the sync
+               Thread.sleep(2);
+            }
+            catch (InterruptedException e)
+            {
+            }
+            for (IOAsyncTask callback : callbacks)
+            {
+               callback.done();
+            }
+         }
+
+         public ByteBuffer newBuffer(final int minSize, final int maxSize)
+         {
+            return ByteBuffer.allocate(maxSize);
+         }
+
+         public int getRemainingBytes()
+         {
+            return Integer.MAX_VALUE;
+         }
+      }
+
+      TimedBuffer timedBuffer = new TimedBuffer(1024 * 1024, TimedBufferTest.ONE_SECOND_IN_NANOS / 10, false);
+
+      timedBuffer.setAdaptiveTimeout(true);
+
+      timedBuffer.start();
+
+      try
+      {
+         timedBuffer.setObserver(new TestObserver());
+
+         // idle: syncs arrive slower than they are done, so they are flushed straight away
+         for (int i = 0; i < 5; i++)
+         {
+            timedBuffer.checkSize(10);
+            timedBuffer.addBytes(ActiveMQBuffers.wrappedBuffer(new byte[10]), true, dummyCallback);
+            Thread.sleep(50);
+         }
+
+         assertEquals(0, timedBuffer.getCurrentTimeout());
+         assertEquals(5, flushTimes.get());
+
+         // loaded: syncs arrive much faster than they are done, so they are batched
+         flushTimes.set(0);
+
+         for (int i = 0; i < 2000; i++)
+         {
+            timedBuffer.checkSize(10);
+            timedBuffer.addBytes(ActiveMQBuffers.wrappedBuffer(new byte[10]), true, dummyCallback);
+         }
+
+         int currentTimeout = timedBuffer.getCurrentTimeout();
+         assertTrue("timeout = " + currentTimeout, currentTimeout > 0);
+         assertTrue("timeout = " + currentTimeout, currentTimeout <= TimedBufferTest.ONE_SECOND_IN_NANOS / 10);
+         assertTrue("flushes = " + flushTimes.get(), flushTimes.get() < 2000);
+      }
+      finally
+      {
+         timedBuffer.stop();
+      }
+   }
 }
@@ -30,6 +30,7 @@ import org.apache.activemq.api.core.ActiveMQExceptionType;
 import org.apache.activemq.core.asyncio.BufferCallback;
 import org.apache.activemq.core.journal.EncodingSupport;
 import org.apache.activemq.core.journal.IOAsyncTask;
+import org.apache.activemq.core.journal.JournalIOStatistics;
 import org.apache.activemq.core.journal.SequentialFile;
 import org.apache.activemq.core.journal.SequentialFileFactory;
 import org.apache.activemq.core.journal.impl.TimedBuffer;
@@ -57,6 +58,8 @@ public class FakeSequentialFileFactory implements SequentialFileFactory
 
    private final List<CallbackRunnable> callbacksInHold;
 
+   private final JournalIOStatistics ioStatistics = new JournalIOStatistics();
+
    public FakeSequentialFileFactory(final int alignment, final boolean supportsCallback)
    {
       this.alignment = alignment;
@@ -717,6 +720,12 @@ public class FakeSequentialFileFactory implements SequentialFileFactory
    {
    }
 
+   @Override
+   public JournalIOStatistics getIOStatistics()
+   {
+      return ioStatistics;
+   }
+
    @Override
    public void onIOError(Exception exception, String message, SequentialFile file)
    {
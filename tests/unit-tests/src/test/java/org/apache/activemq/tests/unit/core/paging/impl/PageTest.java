@@ -24,6 +24,7 @@ import org.apache.activemq.api.core.ActiveMQBuffer;
 import org.apache.activemq.api.core.SimpleString;
 import org.apache.activemq.core.journal.SequentialFile;
 import org.apache.activemq.core.journal.SequentialFileFactory;
+import org.apache.activemq.core.journal.impl.JournalRecordCompressor;
 import org.apache.activemq.core.journal.impl.NIOSequentialFileFactory;
 import org.apache.activemq.core.paging.PagedMessage;
 import org.apache.activemq.core.paging.impl.Page;
@@ -80,6 +81,169 @@ public class PageTest extends UnitTestCase
       testDamagedPage(new FakeSequentialFileFactory(1, false), 100);
    }
 
+   @Test
+   public void testIndexWithNIO() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      NIOSequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.open();
+
+      SimpleString simpleDestination = new SimpleString("Test");
+      ArrayList<ActiveMQBuffer> buffers = addPageElements(simpleDestination, impl, 100);
+      int pageSize = impl.getSize();
+      impl.sync();
+      impl.close();
+
+      file = factory.createSequentialFile("00010.page", 1);
+      file.open();
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      int[] index = impl.readIndex();
+      Assert.assertEquals(101, index.length);
+      Assert.assertEquals(0, index[0]);
+      Assert.assertEquals(pageSize, index[100]);
+      Assert.assertEquals(100, impl.getNumberOfMessages());
+
+      List<PagedMessage> msgs = impl.read(new NullStorageManager(), index, 37, 1);
+      Assert.assertEquals(1, msgs.size());
+      Assert.assertEquals(37, msgs.get(0).getMessage().getMessageID());
+      UnitTestCase.assertEqualsByteArrays(buffers.get(37).toByteBuffer().array(), msgs.get(0)
+         .getMessage()
+         .getBodyBuffer()
+         .toByteBuffer()
+         .array());
+
+      msgs = impl.read(new NullStorageManager(), index, 90, 10);
+      Assert.assertEquals(10, msgs.size());
+      for (int i = 0; i < msgs.size(); i++)
+      {
+         Assert.assertEquals(90 + i, msgs.get(i).getMessage().getMessageID());
+         Assert.assertEquals(simpleDestination, msgs.get(i).getMessage().getAddress());
+      }
+
+      try
+      {
+         impl.read(new NullStorageManager(), index, 95, 6);
+         Assert.fail("message 100 is not on the page");
+      }
+      catch (IndexOutOfBoundsException expected)
+      {
+      }
+
+      impl.delete(null);
+   }
+
+   @Test
+   public void testCompressedWithNIO() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      NIOSequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.open();
+
+      // compressed and uncompressed messages on the same page
+      JournalRecordCompressor compressor = new JournalRecordCompressor(100);
+      ArrayList<ActiveMQBuffer> buffers = new ArrayList<ActiveMQBuffer>();
+      int uncompressedSize = 0;
+      for (int i = 0; i < 20; i++)
+      {
+         impl.setCompressor(i < 10 ? null : compressor);
+
+         ServerMessage msg = new ServerMessageImpl(i, 3000);
+         for (int j = 0; j < 2000; j++)
+         {
+            msg.getBodyBuffer().writeByte((byte) ('a' + j % 4));
+         }
+         msg.setAddress(new SimpleString("Test"));
+         buffers.add(msg.getBodyBuffer());
+
+         PagedMessage pagedMessage = new PagedMessageImpl(msg, new long[]{1, 2});
+         uncompressedSize += pagedMessage.getEncodeSize() + Page.SIZE_RECORD;
+         int written = impl.write(pagedMessage);
+         if (i < 10)
+         {
+            Assert.assertEquals(pagedMessage.getEncodeSize() + Page.SIZE_RECORD, written);
+         }
+         else
+         {
+            Assert.assertTrue(written < pagedMessage.getEncodeSize() / 2);
+         }
+      }
+
+      Assert.assertEquals(10, compressor.getCompressedRecords());
+      Assert.assertTrue(compressor.getCompressedBytes() < compressor.getUncompressedBytes() / 2);
+      Assert.assertTrue(impl.getSize() < uncompressedSize);
+      impl.sync();
+      impl.close();
+
+      file = factory.createSequentialFile("00010.page", 1);
+      file.open();
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      List<PagedMessage> msgs = impl.read(new NullStorageManager());
+      Assert.assertEquals(20, msgs.size());
+      for (int i = 0; i < msgs.size(); i++)
+      {
+         ServerMessage msg = msgs.get(i).getMessage();
+         Assert.assertEquals(i, msg.getMessageID());
+         Assert.assertEquals(new SimpleString("Test"), msg.getAddress());
+         UnitTestCase.assertEqualsByteArrays(buffers.get(i).toByteBuffer().array(), msg.getBodyBuffer().toByteBuffer().array());
+         Assert.assertEquals(2, msgs.get(i).getQueueIDs().length);
+      }
+
+      impl.setCompressor(compressor);
+      int[] index = impl.readIndex();
+      Assert.assertEquals(21, index.length);
+      msgs = impl.read(new NullStorageManager(), index, 9, 3);
+      Assert.assertEquals(3, msgs.size());
+      for (int i = 0; i < msgs.size(); i++)
+      {
+         Assert.assertEquals(9 + i, msgs.get(i).getMessage().getMessageID());
+      }
+      Assert.assertTrue(compressor.getDecompressTime() > 0);
+
+      impl.delete(null);
+   }
+
+   @Test
+   public void testIndexDamagedPageWithNIO() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      NIOSequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.open();
+
+      SimpleString simpleDestination = new SimpleString("Test");
+      addPageElements(simpleDestination, impl, 20);
+      impl.sync();
+
+      // a record without its end, as on a crash while writing
+      long position = file.position();
+      addPageElements(simpleDestination, impl, 1);
+      impl.close();
+
+      file = factory.createSequentialFile("00010.page", 1);
+      file.open();
+      file.position(file.size() - 1);
+      file.writeDirect(ByteBuffer.wrap(new byte[]{'Z'}), true);
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      int[] index = impl.readIndex();
+      Assert.assertEquals(21, index.length);
+      Assert.assertEquals(position, index[20]);
+      Assert.assertEquals(20, impl.getNumberOfMessages());
+      Assert.assertEquals(19, impl.read(new NullStorageManager(), index, 19, 1).get(0).getMessage().getMessageID());
+
+      impl.delete(null);
+   }
+
    /**
     * Validate if everything we add is recovered
     */
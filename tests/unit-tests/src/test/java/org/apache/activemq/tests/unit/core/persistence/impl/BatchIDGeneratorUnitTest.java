@@ -16,6 +16,15 @@
  */
 package org.apache.activemq.tests.unit.core.persistence.impl;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.activemq.api.core.ActiveMQBuffer;
 import org.apache.activemq.api.core.ActiveMQBuffers;
@@ -125,6 +134,150 @@ public class BatchIDGeneratorUnitTest extends UnitTestCase
 
    }
 
+   @Test
+   public void testBlocksUniqueAfterCrash() throws Exception
+   {
+      NIOSequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+      Journal journal = new JournalImpl(10 * 1024, 2, 0, 0, factory, "activemq-bindings", "bindings", 1);
+
+      journal.start();
+
+      journal.load(new ArrayList<RecordInfo>(), new ArrayList<PreparedTransactionInfo>(), null);
+
+      final Set<Long> ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+      BatchingIDGenerator batch = new BatchingIDGenerator(0, 1000, 64, getJournalStorageManager(journal));
+
+      // an ID leased before the reload must not be used after it
+      batch.generateID();
+      journal.stop();
+      loadIDs(journal, batch);
+      Assert.assertTrue(batch.generateID() >= 1000);
+
+      for (int i = 0; i < 3; i++)
+      {
+         generateIDs(batch, ids, 8, 10000);
+
+         // simulated crash, the IDs still leased by the threads are lost
+         journal.stop();
+         batch = new BatchingIDGenerator(0, 1000, 64, getJournalStorageManager(journal));
+         loadIDs(journal, batch);
+      }
+
+      journal.stop();
+   }
+
+   @Test
+   public void testLeasedIDsAboveCheckpointAfterRestart() throws Exception
+   {
+      NIOSequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+      Journal journal = new JournalImpl(10 * 1024, 2, 0, 0, factory, "activemq-bindings", "bindings", 1);
+
+      journal.start();
+
+      journal.load(new ArrayList<RecordInfo>(), new ArrayList<PreparedTransactionInfo>(), null);
+
+      final BatchingIDGenerator batch = new BatchingIDGenerator(0, 1000, 64, getJournalStorageManager(journal));
+
+      // the same threads before and after the reload, so they still hold the blocks leased before it
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+
+      try
+      {
+         long lastID = -1;
+
+         for (int restart = 0; restart < 3; restart++)
+         {
+            long checkpoint = batch.getCurrentID();
+
+            for (Long id : generateIDs(executor, batch, 4, 500))
+            {
+               Assert.assertTrue("ID " + id + " below the checkpoint " + checkpoint, id >= checkpoint);
+               Assert.assertTrue("ID " + id + " not above " + lastID, id > lastID);
+            }
+
+            lastID = Collections.max(generateIDs(executor, batch, 4, 1));
+
+            // simulated crash, without persisting the current ID
+            journal.stop();
+            loadIDs(journal, batch);
+
+            Assert.assertTrue(batch.getCurrentID() > lastID);
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+         journal.stop();
+      }
+   }
+
+   private List<Long> generateIDs(final ExecutorService executor, final BatchingIDGenerator batch, final int tasks, final int idsPerTask) throws Exception
+   {
+      List<Future<List<Long>>> futures = new ArrayList<Future<List<Long>>>();
+
+      for (int i = 0; i < tasks; i++)
+      {
+         futures.add(executor.submit(new Callable<List<Long>>()
+         {
+            public List<Long> call()
+            {
+               List<Long> ids = new ArrayList<Long>(idsPerTask);
+               for (int j = 0; j < idsPerTask; j++)
+               {
+                  ids.add(batch.generateID());
+               }
+               return ids;
+            }
+         }));
+      }
+
+      List<Long> ids = new ArrayList<Long>();
+
+      for (Future<List<Long>> future : futures)
+      {
+         ids.addAll(future.get());
+      }
+
+      return ids;
+   }
+
+   private void generateIDs(final BatchingIDGenerator batch, final Set<Long> ids, final int threads, final int idsPerThread) throws Exception
+   {
+      final AtomicInteger duplicates = new AtomicInteger(0);
+
+      Thread[] generators = new Thread[threads];
+
+      for (int i = 0; i < threads; i++)
+      {
+         generators[i] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               long last = -1;
+               for (int j = 0; j < idsPerThread; j++)
+               {
+                  long id = batch.generateID();
+                  if (id <= last || !ids.add(id))
+                  {
+                     duplicates.incrementAndGet();
+                  }
+                  last = id;
+               }
+            }
+         };
+         generators[i].start();
+      }
+
+      for (Thread generator : generators)
+      {
+         generator.join();
+      }
+
+      Assert.assertEquals(0, duplicates.get());
+   }
+
    protected void loadIDs(final Journal journal, final BatchingIDGenerator batch) throws Exception
    {
       ArrayList<RecordInfo> records = new ArrayList<RecordInfo>();
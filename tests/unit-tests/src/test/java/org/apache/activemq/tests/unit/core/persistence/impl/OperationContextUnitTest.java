@@ -16,7 +16,11 @@
  */
 package org.apache.activemq.tests.unit.core.persistence.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -109,6 +113,123 @@ public class OperationContextUnitTest extends UnitTestCase
       }
    }
 
+   @Test
+   public void testConcurrentCompletionsInOrder() throws Exception
+   {
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try
+      {
+         final OperationContextImpl impl = new OperationContextImpl(executor);
+
+         final int tasks = 1000;
+         final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+         final CountDownLatch latch = new CountDownLatch(tasks);
+
+         for (int i = 0; i < tasks; i++)
+         {
+            final int task = i;
+            impl.storeLineUp();
+            impl.executeOnCompletion(new IOAsyncTask()
+            {
+               public void onError(int errorCode, String errorMessage)
+               {
+               }
+
+               public void done()
+               {
+                  executed.add(task);
+                  latch.countDown();
+               }
+            });
+         }
+
+         // the stores complete on several threads at once
+         Thread[] threads = new Thread[4];
+         for (int t = 0; t < threads.length; t++)
+         {
+            threads[t] = new Thread(new Runnable()
+            {
+               public void run()
+               {
+                  for (int i = 0; i < tasks / 4; i++)
+                  {
+                     impl.done();
+                  }
+               }
+            });
+            threads[t].start();
+         }
+
+         assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+         for (Thread thread : threads)
+         {
+            thread.join();
+         }
+
+         for (int i = 0; i < tasks; i++)
+         {
+            assertEquals(i, executed.get(i).intValue());
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void testTasksCompletedTogetherExecutedOnce() throws Exception
+   {
+      final ExecutorService executor = Executors.newSingleThreadExecutor();
+      final AtomicInteger executions = new AtomicInteger(0);
+      try
+      {
+         OperationContextImpl impl = new OperationContextImpl(new Executor()
+         {
+            public void execute(final Runnable command)
+            {
+               executions.incrementAndGet();
+               executor.execute(command);
+            }
+         });
+
+         final CountDownLatch latch = new CountDownLatch(10);
+
+         for (int i = 0; i < 10; i++)
+         {
+            impl.storeLineUp();
+         }
+
+         for (int i = 0; i < 10; i++)
+         {
+            impl.executeOnCompletion(new IOAsyncTask()
+            {
+               public void onError(int errorCode, String errorMessage)
+               {
+               }
+
+               public void done()
+               {
+                  latch.countDown();
+               }
+            });
+         }
+
+         for (int i = 0; i < 10; i++)
+         {
+            impl.done();
+         }
+
+         assertTrue(latch.await(10, TimeUnit.SECONDS));
+         assertEquals(1, executions.get());
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+
    @Test
    public void testCaptureExceptionOnExecutor() throws Exception
    {
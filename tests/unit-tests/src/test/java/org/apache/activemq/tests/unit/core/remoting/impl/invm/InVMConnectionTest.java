@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.activemq.tests.unit.core.remoting.impl.invm;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.activemq.api.core.ActiveMQBuffer;
+import org.apache.activemq.api.core.ActiveMQBuffers;
+import org.apache.activemq.core.remoting.impl.invm.InVMConnection;
+import org.apache.activemq.spi.core.remoting.BufferHandler;
+import org.apache.activemq.spi.core.remoting.SharedFileChannel;
+import org.apache.activemq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InVMConnectionTest extends UnitTestCase
+{
+   /**
+    * The in-VM transport can't hand a file region over, so it's read into the buffer instead.
+    */
+   @Test
+   public void testWriteFileRegion() throws Exception
+   {
+      File file = new File(getTestDir(), "region.bin");
+      file.getParentFile().mkdirs();
+
+      byte[] content = new byte[1000];
+      for (int i = 0; i < content.length; i++)
+      {
+         content[i] = UnitTestCase.getSamplebyte(i);
+      }
+
+      FileOutputStream out = new FileOutputStream(file);
+      try
+      {
+         out.write(content);
+      }
+      finally
+      {
+         out.close();
+      }
+
+      final AtomicReference<ActiveMQBuffer> received = new AtomicReference<ActiveMQBuffer>();
+
+      InVMConnection connection = new InVMConnection(0, new BufferHandler()
+      {
+         public void bufferReceived(final Object connectionID, final ActiveMQBuffer buffer)
+         {
+            received.set(buffer);
+         }
+      }, null, new Executor()
+      {
+         public void execute(final Runnable command)
+         {
+            command.run();
+         }
+      });
+
+      Assert.assertFalse(connection.isFileRegionSupported());
+
+      ActiveMQBuffer header = ActiveMQBuffers.fixedBuffer(8);
+      header.writeInt(4 + 100 + 1);
+      header.writeInt(7);
+
+      ActiveMQBuffer trailer = ActiveMQBuffers.fixedBuffer(1);
+      trailer.writeByte((byte) 3);
+
+      SharedFileChannel channel = new SharedFileChannel(file);
+
+      connection.write(header, channel.newRegion(200, 100), trailer);
+
+      // the region released its reference, only the opener's is left
+      Assert.assertEquals(1, channel.refCnt());
+      channel.release();
+
+      // the length is read by the connection
+      ActiveMQBuffer buffer = received.get();
+      Assert.assertNotNull(buffer);
+      Assert.assertEquals(4 + 100 + 1, buffer.readableBytes());
+      Assert.assertEquals(7, buffer.readInt());
+      for (int i = 200; i < 300; i++)
+      {
+         Assert.assertEquals(content[i], buffer.readByte());
+      }
+      Assert.assertEquals(3, buffer.readByte());
+   }
+}
@@ -23,6 +23,7 @@ import org.apache.activemq.api.core.SimpleString;
 import org.apache.activemq.core.paging.PageTransactionInfo;
 import org.apache.activemq.core.paging.PagingManager;
 import org.apache.activemq.core.paging.PagingStore;
+import org.apache.activemq.core.paging.cursor.PageCacheBudget;
 import org.apache.activemq.core.postoffice.PostOffice;
 import org.apache.activemq.core.server.ServerMessage;
 
@@ -175,6 +176,21 @@ public final class FakePagingManager implements PagingManager
    {
    }
 
+   public PageCacheBudget getPageCacheBudget()
+   {
+      return new PageCacheBudget(Long.MAX_VALUE);
+   }
+
+   public long getGlobalSize()
+   {
+      return 0;
+   }
+
+   public long getGlobalMaxSize()
+   {
+      return -1;
+   }
+
    /*
     * (non-Javadoc)
     * @see org.apache.activemq.core.settings.HierarchicalRepositoryChangeListener#onChange()